@@ -0,0 +1,165 @@
+package com.example.courr;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Синтетические заголовки и файлы для бенчмарков.
+ * Заголовок строится по сигнатуре из таблицы: значимые биты шаблона копируются, остальные байты случайны.
+ */
+final class BenchmarkCorpus {
+    /**
+     * Размер заголовка, если сигнатуре не нужно больше: столько байтов читается с начала файла на практике.
+     */
+    static final int HEADER_SIZE = 4096;
+
+    /**
+     * Обозначение файла без известной сигнатуры в параметрах бенчмарков.
+     */
+    static final String UNKNOWN = "unknown";
+
+    /**
+     * Доли форматов в смешанной выборке, в процентах. Распределение приближено к типичному
+     * пользовательскому каталогу: больше всего фотографий, документов и архивов, заметная доля
+     * файлов, для которых сигнатура не находится.
+     */
+    private static final Object[][] MIX = {
+            {"jpg", 30}, {"png", 12}, {"pdf", 10}, {"zip", 8}, {"mp3", 8}, {UNKNOWN, 10},
+            {"gif", 3}, {"exe", 3}, {"mkv", 3}, {"avi", 2}, {"wav", 2}, {"xml", 2}, {"7z", 1},
+            {"rar", 1}, {"tif", 1}, {"bmp", 1}, {"class", 1}, {"elf", 1}, {"tar", 1}};
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Строит заголовок файла указанного формата.
+     *
+     * @param matcher   Набор сигнатур.
+     * @param extension Расширение из таблицы сигнатур или {@link #UNKNOWN}.
+     * @param random    Источник случайных байтов.
+     * @return Байты начала файла.
+     */
+    static byte[] header(SignatureMatcher matcher, String extension, Random random) {
+        if (UNKNOWN.equals(extension)) {
+            return text("txt", random);
+        }
+        for (Signature signature : matcher.signatures()) {
+            if (signature.extension().equals(extension)) {
+                return header(signature, random);
+            }
+        }
+        throw new IllegalArgumentException("No signature for " + extension);
+    }
+
+    /**
+     * Строит заголовок, совпадающий с сигнатурой.
+     *
+     * @param signature Сигнатура.
+     * @param random    Источник случайных байтов.
+     * @return Байты начала файла.
+     */
+    static byte[] header(Signature signature, Random random) {
+        long size = Math.max(HEADER_SIZE, Math.max(signature.minSize(), signature.window().end()));
+        byte[] bytes = new byte[(int) size];
+        random.nextBytes(bytes);
+        byte[] pattern = signature.pattern();
+        byte[] mask = signature.mask();
+        int offset = (int) signature.offset();
+        for (int i = 0; i < pattern.length; i++) {
+            bytes[offset + i] = (byte) ((pattern[i] & mask[i]) | (bytes[offset + i] & ~mask[i]));
+        }
+        return bytes;
+    }
+
+    /**
+     * Строит начало текстового файла указанного формата длиной {@link #HEADER_SIZE}: структура повторяется
+     * до конца окна, поэтому классификатору приходится проверить окно целиком.
+     *
+     * @param extension Расширение текстового формата: txt, json, jsonl, xml, html, csv или sh.
+     * @param random    Источник случайных чисел.
+     * @return Байты начала файла.
+     */
+    static byte[] text(String extension, Random random) {
+        StringBuilder text = new StringBuilder(HEADER_SIZE + 64);
+        switch (extension) {
+            case "json" -> text.append("{\"items\": [");
+            case "xml" -> text.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<items>\n");
+            case "html" -> text.append("<!DOCTYPE html>\n<html>\n<body>\n");
+            case "csv" -> text.append("id,name,value\n");
+            case "sh" -> text.append("#!/bin/sh\n");
+            case "txt", "jsonl" -> {
+            }
+            default -> throw new IllegalArgumentException("No text format " + extension);
+        }
+        while (text.length() < HEADER_SIZE) {
+            int n = random.nextInt(100_000);
+            switch (extension) {
+                case "json" -> text.append("{\"id\": ").append(n).append(", \"name\": \"item\"}, ");
+                case "jsonl" -> text.append("{\"id\": ").append(n).append(", \"name\": \"item\"}\n");
+                case "xml" -> text.append("  <item id=\"").append(n).append("\">value</item>\n");
+                case "html" -> text.append("<p>paragraph ").append(n).append("</p>\n");
+                case "csv" -> text.append(n).append(",item,").append(n % 97).append('\n');
+                case "sh" -> text.append("echo line ").append(n).append('\n');
+                default -> text.append("line ").append(n).append(" of plain text\n");
+            }
+        }
+        return text.substring(0, HEADER_SIZE).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Строит выборку заголовков со смешанным распределением форматов.
+     *
+     * @param matcher Набор сигнатур.
+     * @param count   Количество заголовков.
+     * @param seed    Начальное значение генератора, чтобы выборка совпадала между запусками.
+     * @return Заголовки в случайном порядке.
+     */
+    static List<byte[]> mixed(SignatureMatcher matcher, int count, long seed) {
+        Random random = new Random(seed);
+        List<String> formats = new ArrayList<>(100);
+        for (Object[] share : MIX) {
+            for (int i = 0; i < (Integer) share[1]; i++) {
+                formats.add((String) share[0]);
+            }
+        }
+        List<byte[]> headers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            headers.add(header(matcher, formats.get(random.nextInt(formats.size())), random));
+        }
+        return headers;
+    }
+
+    /**
+     * Создаёт каталог для файлов корпуса; по возможности в памяти ({@code /dev/shm}),
+     * чтобы измерялись системные вызовы, а не устройство.
+     *
+     * @return Пустой временный каталог.
+     * @throws IOException Если каталог не удалось создать.
+     */
+    static Path directory() throws IOException {
+        Path shm = Path.of("/dev/shm");
+        return Files.isDirectory(shm) && Files.isWritable(shm)
+                ? Files.createTempDirectory(shm, "courr-bench")
+                : Files.createTempDirectory("courr-bench");
+    }
+
+    /**
+     * Удаляет каталог корпуса вместе с файлами.
+     *
+     * @param directory Каталог, созданный {@link #directory()}.
+     * @throws IOException Если каталог не удалось удалить.
+     */
+    static void delete(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.courr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Определение расширения по двоичным сигнатурам для заголовка, уже находящегося в памяти, отдельно для каждого
+ * формата. Вариант {@code linear} — последовательная проверка сигнатур в порядке таблицы, как в исходной цепочке
+ * условий; он служит базой для сравнения с префиксным деревом {@link SignatureMatcher}. Оба варианта проверяют
+ * только сигнатуры: текстовые форматы, которые определяются после промаха, измеряет {@link TextClassifierBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-bench.xml")
+public class DetectExtensionBenchmark {
+
+    @Param({"jpg", "png", "pdf", "gif", "mp3", "exe", "zip", "rar", "wav", "ico", "bmp", "tif", "elf", "class",
+            "psd", "iso", "midi", "7z", "mkv", "xml", "webp", "rtf", "tar", "avi", BenchmarkCorpus.UNKNOWN})
+    public String format;
+
+    private FileExtensionRecoveryService service;
+    private List<Signature> signatures;
+    private FileHeader header;
+
+    @Setup
+    public void setUp() {
+        service = new FileExtensionRecoveryService();
+        SignatureMatcher matcher = SignatureDatabase.load();
+        signatures = matcher.signatures();
+        byte[] bytes = BenchmarkCorpus.header(matcher, format, new Random(format.hashCode()));
+        header = FileHeader.wrap(bytes, bytes.length);
+    }
+
+    @Benchmark
+    public String trie() {
+        return service.detectSignature(header);
+    }
+
+    @Benchmark
+    public String linear() {
+        for (Signature signature : signatures) {
+            if (signature.matches(header)) {
+                return signature.extension();
+            }
+        }
+        return "";
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.courr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Определение расширения на выборке заголовков со смешанным распределением форматов
+ * ({@link BenchmarkCorpus#mixed}). Порядок форматов случаен, поэтому ветвления не предсказываются
+ * так легко, как в {@link DetectExtensionBenchmark}. Как и там, сравниваются только двоичные сигнатуры.
+ * Результат — среднее время на один заголовок.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-bench.xml")
+public class MixedDetectionBenchmark {
+    private static final int HEADERS = 4096;
+
+    private FileExtensionRecoveryService service;
+    private List<Signature> signatures;
+    private FileHeader[] headers;
+
+    @Setup
+    public void setUp() {
+        service = new FileExtensionRecoveryService();
+        SignatureMatcher matcher = SignatureDatabase.load();
+        signatures = matcher.signatures();
+        List<byte[]> corpus = BenchmarkCorpus.mixed(matcher, HEADERS, 42);
+        headers = new FileHeader[HEADERS];
+        for (int i = 0; i < HEADERS; i++) {
+            headers[i] = FileHeader.wrap(corpus.get(i), corpus.get(i).length);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HEADERS)
+    public void trie(Blackhole blackhole) {
+        for (FileHeader header : headers) {
+            blackhole.consume(service.detectSignature(header));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HEADERS)
+    public void linear(Blackhole blackhole) {
+        for (FileHeader header : headers) {
+            String extension = "";
+            for (Signature signature : signatures) {
+                if (signature.matches(header)) {
+                    extension = signature.extension();
+                    break;
+                }
+            }
+            blackhole.consume(extension);
+        }
+    }
+}
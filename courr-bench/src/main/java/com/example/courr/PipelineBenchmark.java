@@ -0,0 +1,91 @@
+package com.example.courr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработка одного файла на корпусе в памяти ({@code /dev/shm}): чтение окон заголовка, определение
+ * расширения и переименование. Каждый вызов берёт следующий файл корпуса; переименованный файл
+ * при следующем обращении переименовывается обратно, поэтому каждый вызов выполняет одно перемещение,
+ * как при восстановлении.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-bench.xml")
+public class PipelineBenchmark {
+
+    @Param({"1024"})
+    public int files;
+
+    private FileExtensionRecoveryService service;
+    private HeaderWindowReader reader;
+    private Path directory;
+    private Path[] plain;
+    private Path[] renamed;
+    private boolean[] moved;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        service = new FileExtensionRecoveryService();
+        reader = new HeaderWindowReader(service.requiredWindows());
+        directory = BenchmarkCorpus.directory();
+        List<byte[]> corpus = BenchmarkCorpus.mixed(SignatureDatabase.load(), files, 7);
+        plain = new Path[files];
+        renamed = new Path[files];
+        moved = new boolean[files];
+        for (int i = 0; i < files; i++) {
+            plain[i] = Files.write(directory.resolve(String.format("f%05d", i)), corpus.get(i));
+            String extension = service.detectExtension(corpus.get(i));
+            renamed[i] = extension.isEmpty() ? null : directory.resolve(plain[i].getFileName() + "." + extension);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkCorpus.delete(directory);
+    }
+
+    @Benchmark
+    public String readClassify() throws IOException {
+        int i = advance();
+        return service.detectExtension(reader.read(moved[i] ? renamed[i] : plain[i]));
+    }
+
+    @Benchmark
+    public String readClassifyMove() throws IOException {
+        int i = advance();
+        Path source = moved[i] ? renamed[i] : plain[i];
+        String extension = service.detectExtension(reader.read(source));
+        if (renamed[i] != null) {
+            Files.move(source, moved[i] ? plain[i] : renamed[i]);
+            moved[i] = !moved[i];
+        }
+        return extension;
+    }
+
+    private int advance() {
+        int i = next;
+        next = i + 1 == files ? 0 : i + 1;
+        return i;
+    }
+}
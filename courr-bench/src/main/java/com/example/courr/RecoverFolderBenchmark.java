@@ -0,0 +1,79 @@
+package com.example.courr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный запуск {@link FileExtensionRecoveryService#recoverExtensions} на каталоге в памяти:
+ * обход, параллельная обработка и переименование всех файлов. Перед каждым запуском расширения
+ * снимаются, и это время в измерение не входит.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-bench.xml")
+public class RecoverFolderBenchmark {
+
+    @Param({"10000"})
+    public int files;
+
+    @Param({"1", "4", "16"})
+    public int threads;
+
+    private FileExtensionRecoveryService service;
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        service = new FileExtensionRecoveryService();
+        directory = BenchmarkCorpus.directory();
+        List<byte[]> corpus = BenchmarkCorpus.mixed(SignatureDatabase.load(), files, 11);
+        for (int i = 0; i < files; i++) {
+            Files.write(directory.resolve(String.format("f%05d", i)), corpus.get(i));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void stripExtensions() throws IOException {
+        try (var entries = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) entries::iterator) {
+                String name = file.getFileName().toString();
+                int dot = name.indexOf('.');
+                if (dot > 0) {
+                    Files.move(file, file.resolveSibling(name.substring(0, dot)));
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkCorpus.delete(directory);
+    }
+
+    @Benchmark
+    public RecoverySummary recoverFolder() throws IOException {
+        return service.recoverExtensions(directory.toString(), new RecoveryOptions().parallelism(threads),
+                result -> {
+                });
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.courr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Определение текстовых форматов по начальному окну {@link TextClassifier#WINDOW} байтов, отдельно от сигнатур.
+ * Вариант {@code classify} измеряет только классификатор, {@code detect} — полный путь
+ * {@link FileExtensionRecoveryService#detectExtension(FileHeader)}: промах сигнатур и затем классификатор.
+ * Формат {@code binary} — случайные байты без сигнатуры, которые классификатор отвергает на первых словах.
+ * XML с объявлением {@code <?xml } совпадает с двоичной сигнатурой, поэтому {@code detect} для него
+ * до классификатора не доходит.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-bench.xml")
+public class TextClassifierBenchmark {
+
+    @Param({"txt", "json", "jsonl", "xml", "html", "csv", "sh", "binary"})
+    public String format;
+
+    private FileExtensionRecoveryService service;
+    private TextClassifier classifier;
+    private FileHeader header;
+
+    @Setup
+    public void setUp() {
+        service = new FileExtensionRecoveryService();
+        classifier = new TextClassifier();
+        Random random = new Random(format.hashCode());
+        byte[] bytes;
+        if ("binary".equals(format)) {
+            bytes = new byte[BenchmarkCorpus.HEADER_SIZE];
+            random.nextBytes(bytes);
+            // Первые байты обнуляются, чтобы случайно не совпала ни одна сигнатура
+            bytes[0] = 0;
+            bytes[1] = 0;
+            bytes[2] = 0;
+        } else {
+            bytes = BenchmarkCorpus.text(format, random);
+        }
+        header = FileHeader.wrap(bytes, bytes.length, bytes.length * 4L);
+    }
+
+    @Benchmark
+    public String classify() {
+        return classifier.classify(header);
+    }
+
+    @Benchmark
+    public String detect() {
+        return service.detectExtension(header);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.courr;
+
+/**
+ * Результат классификации одного файла внутри архива.
+ *
+ * @param name      Имя файла в архиве, включая путь.
+ * @param size      Размер файла без сжатия в байтах.
+ * @param extension Определённое расширение или null, если формат не определён.
+ */
+record ArchiveEntry(String name, long size, String extension) {
+
+    /**
+     * Возвращает имя с исправленным расширением.
+     *
+     * @return Новое имя или null, если формат не определён, имя уже оканчивается нужным расширением
+     * в любом регистре или у текстового файла уже есть расширение.
+     */
+    String correctedName() {
+        if (extension == null || RecoveryEngine.keepsName(name, extension)) {
+            return null;
+        }
+        return name + "." + extension;
+    }
+}
@@ -0,0 +1,1052 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Определяет форматы файлов внутри архивов ZIP и TAR без распаковки на диск.
+ * Центральный каталог ZIP и заголовки TAR читаются потоком, поэтому в памяти находится одна запись
+ * каталога или один заголовок, а не весь список файлов. Из каждого файла читаются только окна
+ * {@link HeaderWindowReader}: несжатые данные — позиционным чтением окон, сжатые методом Deflate —
+ * распаковкой до конца последнего окна. Файлы, сжатые другими методами или зашифрованные, не классифицируются.
+ * <p>
+ * Если задан выходной файл, архив переписывается с исправленными именами. Данные файлов копируются
+ * {@link FileChannel#transferTo} как есть, без распаковки и повторного сжатия; для переписывания ZIP
+ * в памяти хранятся только смещения заголовков, по одному числу на файл.
+ * <p>
+ * Жёсткие и символические ссылки TAR, указывающие на переименованный файл, перенаправляются на новое имя:
+ * цель жёсткой ссылки всегда стоит в архиве раньше ссылки. Если символическая ссылка стоит раньше своей цели,
+ * цель не переименовывается, потому что ссылка уже записана. Для этого при переписывании TAR в памяти хранятся
+ * имена переименованных файлов и цели символических ссылок.
+ * Экземпляр не является потокобезопасным.
+ */
+final class ArchiveInspector implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ArchiveInspector.class.getName());
+
+    private static final int ZIP_LOCAL_HEADER = 0x04034b50;
+    private static final int ZIP_CENTRAL_HEADER = 0x02014b50;
+    private static final int ZIP_END = 0x06054b50;
+    private static final int ZIP64_END = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int ZIP_LOCAL_SIZE = 30;
+    private static final int ZIP_CENTRAL_SIZE = 46;
+    private static final int ZIP_END_SIZE = 22;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final long ZIP_UNKNOWN_32 = 0xFFFFFFFFL;
+    private static final int ZIP_UNKNOWN_16 = 0xFFFF;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final int TAR_BLOCK = 512;
+    /**
+     * Предел размера длинного имени GNU и расширенного заголовка PAX, которые держатся в памяти.
+     */
+    private static final int TAR_META_LIMIT = 1 << 20;
+
+    private static final int INPUT_CHUNK = 4096;
+    private static final byte[] NO_SUFFIX = new byte[0];
+
+    private final FileExtensionRecoveryService service;
+    private final HeaderWindowReader reader;
+    private final byte[] window;
+    private final byte[] input = new byte[INPUT_CHUNK];
+    private final Inflater inflater = new Inflater(true);
+
+    /**
+     * Создаёт инспектор, определяющий форматы сигнатурами сервиса.
+     *
+     * @param service Сервис восстановления расширений.
+     */
+    ArchiveInspector(FileExtensionRecoveryService service) {
+        this.service = service;
+        List<ByteWindow> windows = service.requiredWindows();
+        this.reader = new HeaderWindowReader(windows);
+        long end = 0;
+        for (ByteWindow byteWindow : windows) {
+            end = Math.max(end, byteWindow.end());
+        }
+        this.window = new byte[Math.toIntExact(end)];
+    }
+
+    /**
+     * Определяет форматы файлов архива и, если задан выходной файл, записывает копию архива с исправленными именами.
+     *
+     * @param archive  Путь к архиву ZIP или TAR.
+     * @param output   Путь к переписанному архиву или null, чтобы только определить форматы.
+     * @param listener Получатель результата по каждому файлу архива в порядке архива; каталоги и ссылки
+     *                 не передаются.
+     * @return Формат архива: {@code zip} или {@code tar}.
+     * @throws IOException Если файл не является архивом, повреждён или копию не удалось записать.
+     */
+    String inspect(Path archive, Path output, Consumer<ArchiveEntry> listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            String format = formatOf(channel);
+            if (format == null) {
+                throw new IOException("Not a ZIP or TAR archive: " + archive);
+            }
+            if (output == null) {
+                inspect(format, channel, null, listener);
+                return format;
+            }
+            if (Files.exists(output) && Files.isSameFile(archive, output)) {
+                throw new IOException("Output must differ from the archive: " + output);
+            }
+            try (FileChannel target = FileChannel.open(output, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ArchiveOutput out = new ArchiveOutput(target);
+                inspect(format, channel, out, listener);
+                out.flush();
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(output);
+                throw e;
+            }
+            return format;
+        }
+    }
+
+    /**
+     * Освобождает распаковщик.
+     */
+    @Override
+    public void close() {
+        inflater.end();
+    }
+
+    private void inspect(String format, FileChannel channel, ArchiveOutput out, Consumer<ArchiveEntry> listener)
+            throws IOException {
+        if (format.equals("zip")) {
+            inspectZip(channel, out, listener);
+        } else {
+            inspectTar(channel, out, listener);
+        }
+    }
+
+    private String formatOf(FileChannel channel) throws IOException {
+        String extension = service.detectExtension(reader.read(channel));
+        if ("zip".equals(extension) || "tar".equals(extension)) {
+            return extension;
+        }
+        // Пустой архив ZIP состоит из одной записи конца центрального каталога
+        if (channel.size() >= ZIP_END_SIZE) {
+            ByteBuffer start = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, start, 0);
+            if (start.getInt(0) == ZIP_END) {
+                return "zip";
+            }
+        }
+        return null;
+    }
+
+    private String extensionOf(FileHeader header) {
+        String extension = service.detectExtension(header);
+        return extension == null || extension.isEmpty() ? null : extension;
+    }
+
+    // ZIP
+
+    private void inspectZip(FileChannel channel, ArchiveOutput out, Consumer<ArchiveEntry> listener)
+            throws IOException {
+        ZipDirectory directory = ZipDirectory.locate(channel);
+        if (directory.entries > Integer.MAX_VALUE) {
+            throw new IOException("Too many ZIP entries: " + directory.entries);
+        }
+        int entries = (int) directory.entries;
+        long[] localOffsets = out == null ? null : localOffsets(channel, directory, entries);
+        long[] newOffsets = out == null ? null : new long[entries];
+        String[] corrected = out == null ? null : new String[entries];
+        try (DataInputStream in = directory.open(channel)) {
+            for (int i = 0; i < entries; i++) {
+                ZipCentralEntry entry = ZipCentralEntry.read(in);
+                if (!entry.isDirectory()) {
+                    ArchiveEntry result = new ArchiveEntry(entry.name(), entry.uncompressedSize, classify(channel, entry));
+                    listener.accept(result);
+                    if (out != null && result.correctedName() != null) {
+                        corrected[i] = result.extension();
+                    }
+                }
+                if (out != null) {
+                    newOffsets[i] = out.position();
+                    copyLocalEntry(channel, entry.localOffset, suffix(corrected[i]),
+                            regionEnd(localOffsets, entry.localOffset, directory.offset), out);
+                }
+            }
+        }
+        if (out == null) {
+            return;
+        }
+        long directoryStart = out.position();
+        try (DataInputStream in = directory.open(channel)) {
+            for (int i = 0; i < entries; i++) {
+                ZipCentralEntry.read(in).write(out, suffix(corrected[i]), newOffsets[i]);
+            }
+        }
+        directory.writeEnd(out, directoryStart, out.position() - directoryStart);
+    }
+
+    /**
+     * Определяет формат файла ZIP по его началу.
+     *
+     * @return Расширение или null, если формат не определён или данные нельзя прочитать без распаковки целиком.
+     */
+    private String classify(FileChannel channel, ZipCentralEntry entry) throws IOException {
+        if (entry.isEncrypted() || (entry.method != STORED && entry.method != DEFLATED)) {
+            return null;
+        }
+        ByteBuffer local = ByteBuffer.allocate(ZIP_LOCAL_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, local, entry.localOffset);
+        if (local.getInt(0) != ZIP_LOCAL_HEADER) {
+            throw new IOException("Corrupt ZIP local header at offset " + entry.localOffset);
+        }
+        long dataStart = entry.localOffset + ZIP_LOCAL_SIZE + (local.getShort(26) & 0xFFFF)
+                + (local.getShort(28) & 0xFFFF);
+        if (entry.method == STORED) {
+            return extensionOf(reader.read(channel, dataStart, entry.uncompressedSize));
+        }
+        try {
+            return extensionOf(inflate(channel, dataStart, entry.compressedSize, entry.uncompressedSize));
+        } catch (DataFormatException e) {
+            logger.warn("Corrupt deflate data in ZIP entry {}", entry.name(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Распаковывает начало файла, сжатого методом Deflate, не дальше конца последнего окна заголовка.
+     */
+    private FileHeader inflate(FileChannel channel, long position, long compressedSize, long size)
+            throws IOException, DataFormatException {
+        int limit = (int) Math.min(window.length, size);
+        inflater.reset();
+        long consumed = 0;
+        int produced = 0;
+        while (produced < limit && !inflater.finished()) {
+            if (inflater.needsInput()) {
+                int chunk = (int) Math.min(input.length, compressedSize - consumed);
+                if (chunk <= 0) {
+                    break;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(input, 0, chunk);
+                readFully(channel, buffer, position + consumed);
+                consumed += chunk;
+                inflater.setInput(input, 0, chunk);
+            }
+            int inflated = inflater.inflate(window, produced, limit - produced);
+            if (inflated == 0 && inflater.needsDictionary()) {
+                break;
+            }
+            produced += inflated;
+        }
+        return FileHeader.wrap(window, produced, size);
+    }
+
+    /**
+     * Собирает смещения локальных заголовков в порядке возрастания: данные файла при переписывании копируются
+     * до следующего заголовка, вместе с дескриптором данных, если он есть.
+     */
+    private static long[] localOffsets(FileChannel channel, ZipDirectory directory, int entries) throws IOException {
+        long[] offsets = new long[entries];
+        try (DataInputStream in = directory.open(channel)) {
+            for (int i = 0; i < entries; i++) {
+                offsets[i] = ZipCentralEntry.read(in).localOffset;
+            }
+        }
+        Arrays.sort(offsets);
+        return offsets;
+    }
+
+    private static long regionEnd(long[] sortedOffsets, long offset, long directoryOffset) {
+        int index = Arrays.binarySearch(sortedOffsets, offset);
+        while (index + 1 < sortedOffsets.length && sortedOffsets[index + 1] == offset) {
+            index++;
+        }
+        return index + 1 < sortedOffsets.length ? sortedOffsets[index + 1] : directoryOffset;
+    }
+
+    /**
+     * Копирует локальный заголовок с дополненным именем и данные файла.
+     */
+    private static void copyLocalEntry(FileChannel channel, long offset, byte[] suffix, long end, ArchiveOutput out)
+            throws IOException {
+        ByteBuffer fixed = ByteBuffer.allocate(ZIP_LOCAL_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, fixed, offset);
+        if (fixed.getInt(0) != ZIP_LOCAL_HEADER) {
+            throw new IOException("Corrupt ZIP local header at offset " + offset);
+        }
+        int nameLength = fixed.getShort(26) & 0xFFFF;
+        int extraLength = fixed.getShort(28) & 0xFFFF;
+        ByteBuffer variable = ByteBuffer.allocate(nameLength + extraLength);
+        readFully(channel, variable, offset + ZIP_LOCAL_SIZE);
+        if (nameLength + suffix.length > 0xFFFF) {
+            throw new IOException("ZIP entry name too long at offset " + offset);
+        }
+        fixed.putShort(26, (short) (nameLength + suffix.length));
+        out.put(fixed.array());
+        out.put(variable.array(), 0, nameLength);
+        out.put(suffix);
+        out.put(variable.array(), nameLength, extraLength);
+        long dataStart = offset + ZIP_LOCAL_SIZE + nameLength + extraLength;
+        out.transferFrom(channel, dataStart, end - dataStart);
+    }
+
+    // TAR
+
+    private void inspectTar(FileChannel channel, ArchiveOutput out, Consumer<ArchiveEntry> listener)
+            throws IOException {
+        long size = channel.size();
+        ByteBuffer block = ByteBuffer.allocate(TAR_BLOCK);
+        byte[] header = block.array();
+        TarMeta longName = null;
+        TarMeta longLink = null;
+        TarMeta pax = null;
+        TarLinks links = out == null ? null : new TarLinks();
+        long position = 0;
+        while (position + TAR_BLOCK <= size) {
+            block.clear();
+            readFully(channel, block, position);
+            if (isZeroBlock(header)) {
+                break;
+            }
+            if (!hasValidChecksum(header)) {
+                throw new IOException("Corrupt TAR header at offset " + position);
+            }
+            long length = tarSize(header);
+            long dataStart = position + TAR_BLOCK;
+            if (length < 0 || dataStart + length > size) {
+                throw new IOException("Truncated TAR entry at offset " + position);
+            }
+            byte type = header[156];
+            switch (type) {
+                case 'L' -> longName = new TarMeta(header.clone(), readMeta(channel, dataStart, length));
+                case 'K' -> longLink = new TarMeta(header.clone(), readMeta(channel, dataStart, length));
+                case 'x' -> pax = new TarMeta(header.clone(), readMeta(channel, dataStart, length));
+                case 'g' -> {
+                    if (out != null) {
+                        out.put(header);
+                        out.transferFrom(channel, dataStart, length);
+                        out.pad(TAR_BLOCK);
+                    }
+                }
+                default -> {
+                    byte[] paxPath = pax == null ? null : paxValue(pax.data(), "path");
+                    byte[] name = paxPath != null ? paxPath
+                            : longName != null ? cString(longName.data(), 0, longName.data().length)
+                            : ustarName(header);
+                    String entryName = new String(name, StandardCharsets.UTF_8);
+                    String extension = null;
+                    if (type == '0' || type == 0 || type == '7') {
+                        ArchiveEntry entry = new ArchiveEntry(entryName, length,
+                                extensionOf(reader.read(channel, dataStart, length)));
+                        listener.accept(entry);
+                        extension = entry.correctedName() == null ? null : entry.extension();
+                    }
+                    if (out != null) {
+                        byte[] linkSuffix = NO_SUFFIX;
+                        if (type == '1' || type == '2') {
+                            byte[] paxLink = pax == null ? null : paxValue(pax.data(), "linkpath");
+                            byte[] link = paxLink != null ? paxLink
+                                    : longLink != null ? cString(longLink.data(), 0, longLink.data().length)
+                                    : cString(header, 157, 100);
+                            linkSuffix = suffix(links.link(entryName, new String(link, StandardCharsets.UTF_8),
+                                    type == '2'));
+                        } else if (extension != null && !links.rename(entryName, extension)) {
+                            logger.info("Not renaming {} in TAR: an earlier symbolic link points to it", entryName);
+                            extension = null;
+                        }
+                        writeTarEntry(out, header, name, suffix(extension), linkSuffix, longName, longLink, pax,
+                                channel, dataStart, length);
+                    }
+                    longName = null;
+                    longLink = null;
+                    pax = null;
+                }
+            }
+            position = dataStart + align(length);
+        }
+        if (out != null) {
+            out.put(new byte[2 * TAR_BLOCK]);
+        }
+    }
+
+    /**
+     * Записывает файл TAR с дополненным именем или целью ссылки. Новое значение попадает туда же, откуда
+     * было прочитано: в запись PAX {@code path} или {@code linkpath}, в длинное имя GNU или в поле заголовка;
+     * если поле переполняется, перед заголовком добавляется длинное имя GNU.
+     */
+    private static void writeTarEntry(ArchiveOutput out, byte[] header, byte[] name, byte[] suffix,
+                                      byte[] linkSuffix, TarMeta longName, TarMeta longLink, TarMeta pax,
+                                      FileChannel channel, long dataStart, long length) throws IOException {
+        byte[] paxPath = pax == null ? null : paxValue(pax.data(), "path");
+        byte[] paxLink = pax == null ? null : paxValue(pax.data(), "linkpath");
+        if (pax != null) {
+            byte[] data = pax.data();
+            if (suffix.length > 0 && paxPath != null) {
+                data = replacePaxValue(data, "path", concat(paxPath, suffix));
+            }
+            if (linkSuffix.length > 0 && paxLink != null) {
+                data = replacePaxValue(data, "linkpath", concat(paxLink, linkSuffix));
+            }
+            writeTarMeta(out, pax.header(), data);
+        }
+        byte[] main = header.clone();
+        writeTarField(out, main, 0, name, suffix, paxPath != null, longName, 'L');
+        writeTarField(out, main, 157, cString(main, 157, 100), linkSuffix, paxLink != null, longLink, 'K');
+        out.put(main);
+        out.transferFrom(channel, dataStart, length);
+        out.pad(TAR_BLOCK);
+    }
+
+    /**
+     * Дополняет имя или цель ссылки: в длинном имени GNU, если оно было, иначе в 100-байтовом поле заголовка,
+     * а при его переполнении — в новом длинном имени GNU перед заголовком. Значение из записи PAX уже заменено.
+     */
+    private static void writeTarField(ArchiveOutput out, byte[] main, int offset, byte[] value, byte[] suffix,
+                                      boolean fromPax, TarMeta longValue, char longType) throws IOException {
+        boolean changed = suffix.length > 0 && !fromPax;
+        if (longValue != null) {
+            writeTarMeta(out, longValue.header(), changed
+                    ? concat(concat(cString(longValue.data(), 0, longValue.data().length), suffix), new byte[1])
+                    : longValue.data());
+        } else if (changed) {
+            int fieldLength = cLength(main, offset, 100);
+            if (fieldLength + suffix.length <= 100) {
+                System.arraycopy(suffix, 0, main, offset + fieldLength, suffix.length);
+                writeChecksum(main);
+            } else {
+                writeTarMeta(out, longLinkHeader(longType), concat(concat(value, suffix), new byte[1]));
+            }
+        }
+    }
+
+    private static void writeTarMeta(ArchiveOutput out, byte[] header, byte[] data) throws IOException {
+        byte[] copy = header.clone();
+        writeOctal(copy, 124, 12, data.length);
+        writeChecksum(copy);
+        out.put(copy);
+        out.put(data);
+        out.pad(TAR_BLOCK);
+    }
+
+    private static byte[] longLinkHeader(char type) throws IOException {
+        byte[] header = new byte[TAR_BLOCK];
+        byte[] name = "././@LongLink".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(name, 0, header, 0, name.length);
+        writeOctal(header, 100, 8, 0644);
+        writeOctal(header, 108, 8, 0);
+        writeOctal(header, 116, 8, 0);
+        writeOctal(header, 136, 12, 0);
+        header[156] = (byte) type;
+        byte[] magic = "ustar  \0".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, header, 257, magic.length);
+        return header;
+    }
+
+    private static byte[] readMeta(FileChannel channel, long position, long length) throws IOException {
+        if (length > TAR_META_LIMIT) {
+            throw new IOException("TAR extended header too large at offset " + position);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        readFully(channel, buffer, position);
+        return buffer.array();
+    }
+
+    /**
+     * Возвращает имя из заголовка; в формате POSIX ustar к нему добавляется префикс каталога.
+     */
+    private static byte[] ustarName(byte[] header) {
+        byte[] name = cString(header, 0, 100);
+        boolean posix = header[257] == 'u' && header[258] == 's' && header[259] == 't' && header[260] == 'a'
+                && header[261] == 'r' && header[262] == 0;
+        if (!posix || header[345] == 0) {
+            return name;
+        }
+        return concat(concat(cString(header, 345, 155), new byte[]{'/'}), name);
+    }
+
+    private static long tarSize(byte[] header) {
+        if ((header[124] & 0x80) != 0) {
+            // Большие размеры записываются двоичным числом со старшим битом-признаком
+            long value = header[124] & 0x7F;
+            for (int i = 125; i < 136; i++) {
+                value = value << 8 | (header[i] & 0xFF);
+            }
+            return value;
+        }
+        return parseOctal(header, 124, 12);
+    }
+
+    private static long parseOctal(byte[] header, int offset, int length) {
+        long value = 0;
+        int i = offset;
+        int end = offset + length;
+        while (i < end && (header[i] == ' ' || header[i] == 0)) {
+            i++;
+        }
+        for (; i < end && header[i] >= '0' && header[i] <= '7'; i++) {
+            value = value << 3 | (header[i] - '0');
+        }
+        return value;
+    }
+
+    private static void writeOctal(byte[] header, int offset, int length, long value) throws IOException {
+        String digits = Long.toOctalString(value);
+        if (digits.length() > length - 1) {
+            throw new IOException("Value does not fit a TAR header field: " + value);
+        }
+        Arrays.fill(header, offset, offset + length - 1 - digits.length(), (byte) '0');
+        for (int i = 0; i < digits.length(); i++) {
+            header[offset + length - 1 - digits.length() + i] = (byte) digits.charAt(i);
+        }
+        header[offset + length - 1] = 0;
+    }
+
+    private static boolean hasValidChecksum(byte[] header) {
+        long stored = parseOctal(header, 148, 8);
+        long unsigned = 0;
+        long signed = 0;
+        for (int i = 0; i < TAR_BLOCK; i++) {
+            boolean field = i >= 148 && i < 156;
+            unsigned += field ? ' ' : header[i] & 0xFF;
+            signed += field ? ' ' : header[i];
+        }
+        return stored == unsigned || stored == signed;
+    }
+
+    private static void writeChecksum(byte[] header) {
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xFF;
+        }
+        byte[] digits = String.format("%06o", sum).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(digits, 0, header, 148, 6);
+        header[154] = 0;
+        header[155] = ' ';
+    }
+
+    private static boolean isZeroBlock(byte[] header) {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает значение записи расширенного заголовка PAX ({@code "<длина> <ключ>=<значение>\n"}).
+     */
+    private static byte[] paxValue(byte[] data, String key) {
+        byte[] value = null;
+        for (int position = 0; position < data.length; ) {
+            int length = paxRecordLength(data, position);
+            if (length <= 0) {
+                break;
+            }
+            int keyStart = indexOf(data, (byte) ' ', position, position + length) + 1;
+            int separator = indexOf(data, (byte) '=', keyStart, position + length);
+            if (keyStart > 0 && separator > 0
+                    && key.equals(new String(data, keyStart, separator - keyStart, StandardCharsets.UTF_8))) {
+                value = Arrays.copyOfRange(data, separator + 1, position + length - 1);
+            }
+            position += length;
+        }
+        return value;
+    }
+
+    private static byte[] replacePaxValue(byte[] data, String key, byte[] value) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(data.length + value.length);
+        for (int position = 0; position < data.length; ) {
+            int length = paxRecordLength(data, position);
+            if (length <= 0) {
+                result.write(data, position, data.length - position);
+                break;
+            }
+            int keyStart = indexOf(data, (byte) ' ', position, position + length) + 1;
+            int separator = indexOf(data, (byte) '=', keyStart, position + length);
+            if (keyStart > 0 && separator > 0
+                    && key.equals(new String(data, keyStart, separator - keyStart, StandardCharsets.UTF_8))) {
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                // Длина записи включает собственные цифры
+                int base = 1 + keyBytes.length + 1 + value.length + 1;
+                int total = base + 1;
+                while (total != base + Integer.toString(total).length()) {
+                    total = base + Integer.toString(total).length();
+                }
+                result.writeBytes((total + " ").getBytes(StandardCharsets.US_ASCII));
+                result.writeBytes(keyBytes);
+                result.write('=');
+                result.writeBytes(value);
+                result.write('\n');
+            } else {
+                result.write(data, position, length);
+            }
+            position += length;
+        }
+        return result.toByteArray();
+    }
+
+    private static int paxRecordLength(byte[] data, int position) {
+        int length = 0;
+        int i = position;
+        for (; i < data.length && data[i] >= '0' && data[i] <= '9'; i++) {
+            length = length * 10 + (data[i] - '0');
+        }
+        if (i == position || i >= data.length || data[i] != ' ' || position + length > data.length) {
+            return -1;
+        }
+        return length;
+    }
+
+    private static int indexOf(byte[] data, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long align(long length) {
+        return (length + TAR_BLOCK - 1) / TAR_BLOCK * TAR_BLOCK;
+    }
+
+    // Общие функции
+
+    private static byte[] suffix(String extension) {
+        return extension == null ? NO_SUFFIX : ("." + extension).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int cLength(byte[] bytes, int offset, int length) {
+        int end = indexOf(bytes, (byte) 0, offset, offset + length);
+        return (end < 0 ? offset + length : end) - offset;
+    }
+
+    private static byte[] cString(byte[] bytes, int offset, int length) {
+        return Arrays.copyOfRange(bytes, offset, offset + cLength(bytes, offset, length));
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of archive at offset " + (offset + buffer.position()));
+            }
+        }
+    }
+
+    /**
+     * Переименованные файлы TAR и цели символических ссылок, уже записанных в переписанный архив.
+     * Имена сравниваются после нормализации: без {@code ./}, с разрешёнными {@code .} и {@code ..}.
+     */
+    private static final class TarLinks {
+        private final Map<String, String> renamed = new HashMap<>();
+        private final Set<String> symlinkTargets = new HashSet<>();
+
+        /**
+         * Запоминает переименование файла, если на него ещё не указывает записанная символическая ссылка.
+         *
+         * @return false, если файл переименовывать нельзя.
+         */
+        boolean rename(String name, String extension) {
+            String normalized = normalize(name);
+            if (normalized == null || symlinkTargets.contains(normalized)) {
+                return false;
+            }
+            renamed.put(normalized, extension);
+            return true;
+        }
+
+        /**
+         * Возвращает расширение, добавленное к цели ссылки, или null, если цель не переименована.
+         * Цель жёсткой ссылки — путь в архиве, цель символической — путь относительно каталога ссылки.
+         */
+        String link(String name, String target, boolean symbolic) {
+            String resolved = target;
+            if (symbolic && !target.startsWith("/")) {
+                int slash = name.lastIndexOf('/');
+                resolved = slash < 0 ? target : name.substring(0, slash + 1) + target;
+            }
+            String normalized = normalize(resolved);
+            if (normalized == null) {
+                return null;
+            }
+            String extension = renamed.get(normalized);
+            // К цели добавляется только суффикс, поэтому последний элемент ссылки должен совпадать с именем файла
+            if (extension != null && target.endsWith(normalized.substring(normalized.lastIndexOf('/') + 1))) {
+                return extension;
+            }
+            if (symbolic) {
+                symlinkTargets.add(normalized);
+            }
+            return null;
+        }
+
+        private static String normalize(String name) {
+            Deque<String> parts = new ArrayDeque<>();
+            for (String part : name.split("/")) {
+                if (part.isEmpty() || part.equals(".")) {
+                    continue;
+                }
+                if (part.equals("..")) {
+                    if (parts.pollLast() == null) {
+                        return null;
+                    }
+                } else {
+                    parts.addLast(part);
+                }
+            }
+            return parts.isEmpty() ? null : String.join("/", parts);
+        }
+    }
+
+    /**
+     * Длинное имя GNU или расширенный заголовок PAX, относящийся к следующему файлу TAR.
+     *
+     * @param header Заголовок записи.
+     * @param data   Содержимое записи.
+     */
+    private record TarMeta(byte[] header, byte[] data) {
+    }
+
+    /**
+     * Положение центрального каталога ZIP из записи его конца, в том числе в формате ZIP64.
+     */
+    private static final class ZipDirectory {
+        private final long offset;
+        private final long size;
+        private final long entries;
+        private final boolean zip64;
+        private final byte[] comment;
+
+        private ZipDirectory(long offset, long size, long entries, boolean zip64, byte[] comment) {
+            this.offset = offset;
+            this.size = size;
+            this.entries = entries;
+            this.zip64 = zip64;
+            this.comment = comment;
+        }
+
+        /**
+         * Находит запись конца центрального каталога; она расположена в последних 64 КиБ архива.
+         */
+        static ZipDirectory locate(FileChannel channel) throws IOException {
+            long fileSize = channel.size();
+            int tail = (int) Math.min(fileSize, ZIP_END_SIZE + 0xFFFF);
+            ByteBuffer buffer = ByteBuffer.allocate(tail).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, buffer, fileSize - tail);
+            int end = tail - ZIP_END_SIZE;
+            while (end >= 0 && !(buffer.getInt(end) == ZIP_END
+                    && end + ZIP_END_SIZE + (buffer.getShort(end + 20) & 0xFFFF) <= tail)) {
+                end--;
+            }
+            if (end < 0) {
+                throw new IOException("ZIP end of central directory not found");
+            }
+            long endPosition = fileSize - tail + end;
+            int disk = buffer.getShort(end + 4) & 0xFFFF;
+            int directoryDisk = buffer.getShort(end + 6) & 0xFFFF;
+            long entries = buffer.getShort(end + 10) & 0xFFFF;
+            long size = buffer.getInt(end + 12) & ZIP_UNKNOWN_32;
+            long offset = buffer.getInt(end + 16) & ZIP_UNKNOWN_32;
+            byte[] comment = Arrays.copyOfRange(buffer.array(), end + ZIP_END_SIZE,
+                    end + ZIP_END_SIZE + (buffer.getShort(end + 20) & 0xFFFF));
+            boolean zip64 = false;
+            if ((entries == ZIP_UNKNOWN_16 || size == ZIP_UNKNOWN_32 || offset == ZIP_UNKNOWN_32)
+                    && endPosition >= ZIP64_LOCATOR_SIZE) {
+                ByteBuffer locator = ByteBuffer.allocate(ZIP64_LOCATOR_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, locator, endPosition - ZIP64_LOCATOR_SIZE);
+                if (locator.getInt(0) == ZIP64_LOCATOR) {
+                    ByteBuffer record = ByteBuffer.allocate(ZIP64_END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                    readFully(channel, record, locator.getLong(8));
+                    if (record.getInt(0) != ZIP64_END) {
+                        throw new IOException("Corrupt ZIP64 end of central directory");
+                    }
+                    disk = record.getInt(16);
+                    directoryDisk = record.getInt(20);
+                    entries = record.getLong(32);
+                    size = record.getLong(40);
+                    offset = record.getLong(48);
+                    zip64 = true;
+                }
+            }
+            if (disk != 0 || directoryDisk != 0) {
+                throw new IOException("Multi-volume ZIP archives are not supported");
+            }
+            return new ZipDirectory(offset, size, entries, zip64, comment);
+        }
+
+        /**
+         * Открывает поток чтения центрального каталога. Закрытие потока не закрывает канал.
+         */
+        DataInputStream open(FileChannel channel) {
+            return new DataInputStream(new BufferedInputStream(new ChannelInput(channel, offset, size), 1 << 16));
+        }
+
+        /**
+         * Записывает конец центрального каталога; записи ZIP64 добавляются, если они были в исходном архиве
+         * или значения не помещаются в 32-битные поля.
+         */
+        void writeEnd(ArchiveOutput out, long directoryOffset, long directorySize) throws IOException {
+            if (zip64 || entries >= ZIP_UNKNOWN_16 || directoryOffset >= ZIP_UNKNOWN_32
+                    || directorySize >= ZIP_UNKNOWN_32) {
+                long recordPosition = out.position();
+                ByteBuffer record = ByteBuffer.allocate(ZIP64_END_SIZE + ZIP64_LOCATOR_SIZE)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                record.putInt(ZIP64_END).putLong(ZIP64_END_SIZE - 12).putShort((short) 45).putShort((short) 45)
+                        .putInt(0).putInt(0).putLong(entries).putLong(entries).putLong(directorySize)
+                        .putLong(directoryOffset);
+                record.putInt(ZIP64_LOCATOR).putInt(0).putLong(recordPosition).putInt(1);
+                out.put(record.array());
+            }
+            ByteBuffer end = ByteBuffer.allocate(ZIP_END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            short count = (short) Math.min(entries, ZIP_UNKNOWN_16);
+            end.putInt(ZIP_END).putShort((short) 0).putShort((short) 0).putShort(count).putShort(count)
+                    .putInt((int) Math.min(directorySize, ZIP_UNKNOWN_32))
+                    .putInt((int) Math.min(directoryOffset, ZIP_UNKNOWN_32))
+                    .putShort((short) comment.length);
+            out.put(end.array());
+            out.put(comment);
+        }
+    }
+
+    /**
+     * Запись центрального каталога ZIP.
+     */
+    private static final class ZipCentralEntry {
+        private final byte[] fixed;
+        private final byte[] name;
+        private final byte[] extra;
+        private final byte[] comment;
+        private final int flags;
+        private final int method;
+        private final long compressedSize;
+        private final long uncompressedSize;
+        private final long localOffset;
+        /**
+         * Позиция смещения локального заголовка в дополнительном поле ZIP64 или -1.
+         */
+        private final int offsetField;
+
+        private ZipCentralEntry(byte[] fixed, byte[] name, byte[] extra, byte[] comment) throws IOException {
+            this.fixed = fixed;
+            this.name = name;
+            this.extra = extra;
+            this.comment = comment;
+            ByteBuffer buffer = ByteBuffer.wrap(fixed).order(ByteOrder.LITTLE_ENDIAN);
+            this.flags = buffer.getShort(8) & 0xFFFF;
+            this.method = buffer.getShort(10) & 0xFFFF;
+            long compressed = buffer.getInt(20) & ZIP_UNKNOWN_32;
+            long uncompressed = buffer.getInt(24) & ZIP_UNKNOWN_32;
+            long offset = buffer.getInt(42) & ZIP_UNKNOWN_32;
+            int field = -1;
+            ByteBuffer fields = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+            for (int position = 0; position + 4 <= extra.length; ) {
+                int id = fields.getShort(position) & 0xFFFF;
+                int length = fields.getShort(position + 2) & 0xFFFF;
+                int end = position + 4 + length;
+                if (id == 0x0001) {
+                    // Поля ZIP64 присутствуют только для значений, не поместившихся в 32 бита, в этом порядке
+                    int next = position + 4;
+                    if (uncompressed == ZIP_UNKNOWN_32 && next + 8 <= end) {
+                        uncompressed = fields.getLong(next);
+                        next += 8;
+                    }
+                    if (compressed == ZIP_UNKNOWN_32 && next + 8 <= end) {
+                        compressed = fields.getLong(next);
+                        next += 8;
+                    }
+                    if (offset == ZIP_UNKNOWN_32 && next + 8 <= end) {
+                        offset = fields.getLong(next);
+                        field = next;
+                    }
+                }
+                position = end;
+            }
+            this.compressedSize = compressed;
+            this.uncompressedSize = uncompressed;
+            this.localOffset = offset;
+            this.offsetField = field;
+        }
+
+        static ZipCentralEntry read(DataInputStream in) throws IOException {
+            byte[] fixed = new byte[ZIP_CENTRAL_SIZE];
+            in.readFully(fixed);
+            ByteBuffer buffer = ByteBuffer.wrap(fixed).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != ZIP_CENTRAL_HEADER) {
+                throw new IOException("Corrupt ZIP central directory");
+            }
+            byte[] name = new byte[buffer.getShort(28) & 0xFFFF];
+            byte[] extra = new byte[buffer.getShort(30) & 0xFFFF];
+            byte[] comment = new byte[buffer.getShort(32) & 0xFFFF];
+            in.readFully(name);
+            in.readFully(extra);
+            in.readFully(comment);
+            return new ZipCentralEntry(fixed, name, extra, comment);
+        }
+
+        String name() {
+            return new String(name, StandardCharsets.UTF_8);
+        }
+
+        boolean isDirectory() {
+            return name.length > 0 && name[name.length - 1] == '/';
+        }
+
+        boolean isEncrypted() {
+            return (flags & 1) != 0;
+        }
+
+        /**
+         * Записывает запись с дополненным именем и новым смещением локального заголовка.
+         */
+        void write(ArchiveOutput out, byte[] suffix, long newOffset) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(fixed.clone()).order(ByteOrder.LITTLE_ENDIAN);
+            if (name.length + suffix.length > 0xFFFF) {
+                throw new IOException("ZIP entry name too long: " + name());
+            }
+            buffer.putShort(28, (short) (name.length + suffix.length));
+            byte[] newExtra = extra;
+            if (offsetField >= 0) {
+                newExtra = extra.clone();
+                ByteBuffer.wrap(newExtra).order(ByteOrder.LITTLE_ENDIAN).putLong(offsetField, newOffset);
+            } else if (newOffset >= ZIP_UNKNOWN_32) {
+                throw new IOException("Rewritten archive needs a ZIP64 offset for " + name());
+            } else {
+                buffer.putInt(42, (int) newOffset);
+            }
+            out.put(buffer.array());
+            out.put(name);
+            out.put(suffix);
+            out.put(newExtra);
+            out.put(comment);
+        }
+    }
+
+    /**
+     * Поток чтения участка канала позиционными вызовами; позиция канала не меняется и канал не закрывается.
+     */
+    private static final class ChannelInput extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        ChannelInput(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, end - position)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Буферизованная запись в канал с копированием участков другого канала без промежуточного буфера.
+     */
+    private static final class ArchiveOutput {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private long position;
+
+        ArchiveOutput(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long position() {
+            return position;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            put(bytes, 0, bytes.length);
+        }
+
+        void put(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int chunk = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+                position += chunk;
+            }
+        }
+
+        void transferFrom(FileChannel source, long from, long count) throws IOException {
+            flush();
+            while (count > 0) {
+                long transferred = source.transferTo(from, count, channel);
+                if (transferred <= 0) {
+                    throw new EOFException("Unexpected end of archive at offset " + from);
+                }
+                from += transferred;
+                count -= transferred;
+                position += transferred;
+            }
+        }
+
+        /**
+         * Дополняет вывод нулями до границы блока.
+         */
+        void pad(int alignment) throws IOException {
+            put(new byte[(int) ((alignment - position % alignment) % alignment)]);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.courr;
+
+/**
+ * Диапазон байтов файла, который необходим детектору для определения формата.
+ *
+ * @param offset Смещение начала диапазона от начала файла.
+ * @param length Количество байтов в диапазоне.
+ */
+record ByteWindow(long offset, int length) {
+
+    /**
+     * Создаёт диапазон, проверяя корректность его границ.
+     *
+     * @param offset Смещение начала диапазона от начала файла.
+     * @param length Количество байтов в диапазоне.
+     */
+    ByteWindow {
+        if (offset < 0 || length <= 0) {
+            throw new IllegalArgumentException("Invalid byte window: offset=" + offset + ", length=" + length);
+        }
+    }
+
+    /**
+     * Возвращает смещение первого байта после диапазона.
+     *
+     * @return Смещение конца диапазона (не включительно).
+     */
+    long end() {
+        return offset + length;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.courr;
+
+import java.nio.file.Path;
+
+/**
+ * Файл, найденный в образе диска при вырезании.
+ *
+ * @param offset    Смещение начала файла в образе.
+ * @param length    Длина вырезанного участка в байтах.
+ * @param extension Определённое расширение.
+ * @param path      Путь к извлечённому файлу или null, если файлы не извлекались.
+ * @param truncated true, если признак конца файла не найден и участок ограничен наибольшим размером или концом образа.
+ */
+record CarvedFile(long offset, long length, String extension, Path path, boolean truncated) {
+}
@@ -0,0 +1,366 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Постоянный кэш результатов определения формата для повторных запусков по тому же дереву.
+ * Ключ записи — 64-битный хеш идентификатора файла ({@link BasicFileAttributes#fileKey()}, на Linux это
+ * устройство и inode; если идентификатор недоступен, используется путь), к которому прилагаются размер
+ * и время изменения файла. Запись считается действительной, только если размер и время совпадают.
+ * <p>
+ * Записи хранятся в примитивных массивах с открытой адресацией, на диске — в компактном двоичном виде
+ * (26 байт на файл), поэтому поиск в кэше дешевле открытия файла. Таблица разбита на {@value #STRIPES} сегментов
+ * по старшим битам ключа, у каждого сегмента своя блокировка, поэтому рабочие потоки не ждут друг друга.
+ * Кэш относится к одному дереву: при сохранении после полного обхода записи о файлах, не встреченных в этом
+ * запуске, считаются удалёнными и отбрасываются.
+ * <p>
+ * В заголовке файла хранится отпечаток правил определения формата
+ * ({@link FileExtensionRecoveryService#fingerprint(boolean)}). Если таблица сигнатур, версия классификатора
+ * или режим проверки структуры изменились, кэш отбрасывается целиком.
+ */
+final class ClassificationCache {
+    private static final Logger logger = LogManager.getLogger(ClassificationCache.class.getName());
+
+    private static final int MAGIC = 0x43524343;
+    private static final int VERSION = 2;
+    private static final int RECORD_SIZE = 8 + 8 + 8 + 2;
+    private static final short UNKNOWN = 0;
+    private static final int STRIPES = 64;
+
+    /**
+     * Результат поиска, означающий отсутствие действительной записи.
+     */
+    static final String MISS = null;
+
+    private final Path path;
+    private final long fingerprint;
+    private final List<String> extensions = new CopyOnWriteArrayList<>();
+    private final Map<String, Short> extensionIds = new ConcurrentHashMap<>();
+    private final Segment[] segments = new Segment[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ClassificationCache(Path path, long fingerprint, int expected) {
+        this.path = path;
+        this.fingerprint = fingerprint;
+        extensions.add("");
+        extensionIds.put("", UNKNOWN);
+        for (int i = 0; i < STRIPES; i++) {
+            segments[i] = new Segment(expected / STRIPES);
+        }
+    }
+
+    /**
+     * Загружает кэш из файла; если файла нет, он повреждён или записан при других правилах определения формата,
+     * возвращает пустой кэш.
+     *
+     * @param path        Путь к файлу кэша.
+     * @param fingerprint Отпечаток текущих правил определения формата.
+     * @return Кэш, который будет сохранён в тот же файл.
+     */
+    static ClassificationCache load(Path path, long fingerprint) {
+        if (!Files.isRegularFile(path)) {
+            return new ClassificationCache(path, fingerprint, 0);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a classification cache");
+            }
+            long stored = buffer.getLong();
+            if (stored != fingerprint) {
+                logger.info("Discarding classification cache {}: built with fingerprint {}, current is {}",
+                        path, Long.toHexString(stored), Long.toHexString(fingerprint));
+                return new ClassificationCache(path, fingerprint, 0);
+            }
+            int extensionCount = buffer.getInt();
+            String[] table = new String[extensionCount];
+            for (int i = 0; i < extensionCount; i++) {
+                byte[] name = new byte[buffer.get() & 0xFF];
+                buffer.get(name);
+                table[i] = new String(name, StandardCharsets.UTF_8);
+            }
+            int records = buffer.getInt();
+            if ((long) records * RECORD_SIZE > buffer.remaining()) {
+                throw new IOException("Truncated classification cache");
+            }
+            ClassificationCache cache = new ClassificationCache(path, fingerprint, records);
+            for (int i = 0; i < records; i++) {
+                long key = buffer.getLong();
+                long size = buffer.getLong();
+                long time = buffer.getLong();
+                cache.segment(key).insert(key, size, time, cache.idOf(table[buffer.getShort()]), false);
+            }
+            logger.info("Loaded classification cache {}: {} entries", path, records);
+            return cache;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable classification cache: {}", path, e);
+            return new ClassificationCache(path, fingerprint, 0);
+        }
+    }
+
+    /**
+     * Ищет действительный результат для файла и отмечает запись как встреченную.
+     *
+     * @param file       Путь к файлу.
+     * @param attributes Атрибуты файла.
+     * @return Расширение (пустая строка, если формат не определён) или {@link #MISS}.
+     */
+    String lookup(Path file, BasicFileAttributes attributes) {
+        long key = keyOf(file, attributes);
+        int value = segment(key).lookup(key, attributes.size(), attributes.lastModifiedTime().toMillis());
+        if (value < 0) {
+            misses.increment();
+            return MISS;
+        }
+        hits.increment();
+        return extensions.get(value);
+    }
+
+    /**
+     * Запоминает результат определения формата для файла.
+     *
+     * @param file       Путь к файлу после обработки.
+     * @param attributes Атрибуты файла, прочитанные при обходе.
+     * @param extension  Расширение или null, если формат не определён.
+     */
+    void put(Path file, BasicFileAttributes attributes, String extension) {
+        long key = keyOf(file, attributes);
+        segment(key).insert(key, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                idOf(extension == null ? "" : extension), true);
+    }
+
+    /**
+     * Сохраняет кэш в файл.
+     *
+     * @param evictUnseen true, если обход дерева был полным и записи о невстреченных файлах нужно удалить.
+     * @throws IOException Если файл не удалось записать.
+     */
+    synchronized void save(boolean evictUnseen) throws IOException {
+        // Записи снимаются до таблицы расширений, чтобы таблица содержала все их номера
+        List<Segment.Records> snapshots = new ArrayList<>(STRIPES);
+        int written = 0;
+        int count = 0;
+        for (Segment segment : segments) {
+            Segment.Records records = segment.snapshot(evictUnseen);
+            snapshots.add(records);
+            written += records.keys().length;
+            count += records.count();
+        }
+        List<String> table = List.copyOf(extensions);
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "courr-cache", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp),
+                    1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(fingerprint);
+                out.writeInt(table.size());
+                for (String extension : table) {
+                    byte[] name = extension.getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(name.length);
+                    out.write(name);
+                }
+                out.writeInt(written);
+                for (Segment.Records records : snapshots) {
+                    for (int i = 0; i < records.keys().length; i++) {
+                        out.writeLong(records.keys()[i]);
+                        out.writeLong(records.sizes()[i]);
+                        out.writeLong(records.modified()[i]);
+                        out.writeShort(records.values()[i]);
+                    }
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        logger.info("Classification cache {}: hits={} misses={} evicted={} entries={}",
+                path, hits.sum(), misses.sum(), count - written, written);
+    }
+
+    /**
+     * Возвращает количество успешных поисков.
+     *
+     * @return Количество попаданий в кэш.
+     */
+    long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Возвращает количество неудачных поисков.
+     *
+     * @return Количество промахов кэша.
+     */
+    long misses() {
+        return misses.sum();
+    }
+
+    private Segment segment(long key) {
+        return segments[(int) (key >>> 58)];
+    }
+
+    private short idOf(String extension) {
+        Short id = extensionIds.get(extension);
+        if (id != null) {
+            return id;
+        }
+        synchronized (extensions) {
+            id = extensionIds.get(extension);
+            if (id == null) {
+                // Номер публикуется только после добавления расширения в список
+                id = (short) extensions.size();
+                extensions.add(extension);
+                extensionIds.put(extension, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Вычисляет ключ файла: 64-битный хеш FNV-1a идентификатора файла или его абсолютного пути.
+     * Нулевое значение зарезервировано для пустых ячеек таблицы.
+     */
+    private static long keyOf(Path file, BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        String identity = fileKey != null ? fileKey.toString() : file.toAbsolutePath().toString();
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < identity.length(); i++) {
+            hash ^= identity.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Сегмент таблицы с открытой адресацией и собственной блокировкой.
+     */
+    private static final class Segment {
+        private long[] keys;
+        private long[] sizes;
+        private long[] modified;
+        private short[] values;
+        private boolean[] seen;
+        private int count;
+
+        Segment(int expected) {
+            allocate(Math.max(16, Integer.highestOneBit(Math.max(1, expected)) << 2));
+        }
+
+        /**
+         * Возвращает номер расширения действительной записи или -1.
+         */
+        synchronized int lookup(long key, long size, long time) {
+            int slot = find(key);
+            if (keys[slot] == key && sizes[slot] == size && modified[slot] == time) {
+                seen[slot] = true;
+                return values[slot];
+            }
+            return -1;
+        }
+
+        synchronized void insert(long key, long size, long time, short value, boolean markSeen) {
+            if ((count + 1) * 2 > keys.length) {
+                rehash();
+            }
+            int slot = find(key);
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                count++;
+            }
+            sizes[slot] = size;
+            modified[slot] = time;
+            values[slot] = value;
+            seen[slot] |= markSeen;
+        }
+
+        /**
+         * Копирует записи, которые нужно сохранить.
+         */
+        synchronized Records snapshot(boolean evictUnseen) {
+            int written = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0 && (seen[slot] || !evictUnseen)) {
+                    written++;
+                }
+            }
+            Records records = new Records(new long[written], new long[written], new long[written],
+                    new short[written], count);
+            int i = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0 && (seen[slot] || !evictUnseen)) {
+                    records.keys()[i] = keys[slot];
+                    records.sizes()[i] = sizes[slot];
+                    records.modified()[i] = modified[slot];
+                    records.values()[i] = values[slot];
+                    i++;
+                }
+            }
+            return records;
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            long[] oldSizes = sizes;
+            long[] oldModified = modified;
+            short[] oldValues = values;
+            boolean[] oldSeen = seen;
+            allocate(oldKeys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = find(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    sizes[slot] = oldSizes[i];
+                    modified[slot] = oldModified[i];
+                    values[slot] = oldValues[i];
+                    seen[slot] = oldSeen[i];
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            sizes = new long[capacity];
+            modified = new long[capacity];
+            values = new short[capacity];
+            seen = new boolean[capacity];
+        }
+
+        /**
+         * Сохраняемые записи сегмента и общее количество записей в нём.
+         */
+        record Records(long[] keys, long[] sizes, long[] modified, short[] values, int count) {
+        }
+    }
+}
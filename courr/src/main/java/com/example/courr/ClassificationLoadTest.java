@@ -0,0 +1,217 @@
+package com.example.courr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочная проверка {@link ClassificationServer}: несколько потоков по постоянным соединениям HTTP/1.1
+ * отправляют начала файлов-образцов одиночными или пакетными запросами в течение заданного времени.
+ * Клиент написан на сокетах, чтобы его собственные расходы не заслоняли расходы сервера.
+ */
+final class ClassificationLoadTest {
+
+    /**
+     * Итог проверки.
+     *
+     * @param requests     Количество выполненных запросов.
+     * @param items        Количество определённых начал файлов.
+     * @param errors       Количество ответов с ошибкой, кроме 503, и оборванных соединений.
+     * @param rejected     Количество ответов 503 из-за заполненной очереди сервера.
+     * @param elapsedNanos Длительность проверки.
+     * @param latency      Длительности запросов, измеренные клиентом.
+     */
+    record Result(long requests, long items, long errors, long rejected, long elapsedNanos,
+                  LatencyHistogram.Snapshot latency) {
+
+        /**
+         * Возвращает количество определений в секунду.
+         *
+         * @return Пропускная способность.
+         */
+        double itemsPerSecond() {
+            return items * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "requests=%d items=%d errors=%d rejected=%d elapsed=%dms rate=%.0f/s p50=%dus p99=%dus",
+                    requests, items, errors, rejected, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), itemsPerSecond(),
+                    TimeUnit.NANOSECONDS.toMicros(latency.percentileNanos(0.5)),
+                    TimeUnit.NANOSECONDS.toMicros(latency.percentileNanos(0.99)));
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final List<byte[]> samples;
+    private final int connections;
+    private final int batch;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder items = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Создаёт проверку.
+     *
+     * @param address     Адрес сервера.
+     * @param samples     Начала файлов-образцов; отправляются по кругу.
+     * @param connections Количество одновременных соединений, по одному потоку на соединение.
+     * @param batch       Количество начал файлов в запросе; 1 — одиночные запросы {@code /classify}.
+     */
+    ClassificationLoadTest(InetSocketAddress address, List<byte[]> samples, int connections, int batch) {
+        if (samples.isEmpty() || connections <= 0 || batch <= 0) {
+            throw new IllegalArgumentException("samples, connections and batch size must not be empty");
+        }
+        this.address = address;
+        this.samples = samples;
+        this.connections = connections;
+        this.batch = batch;
+    }
+
+    /**
+     * Выполняет проверку.
+     *
+     * @param durationMillis Длительность в миллисекундах.
+     * @return Итог проверки.
+     * @throws InterruptedException Если поток прерван.
+     */
+    Result run(long durationMillis) throws InterruptedException {
+        List<byte[]> bodies = bodies();
+        String path = batch == 1 ? "/classify" : "/classify/batch";
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        List<Thread> threads = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            int first = i;
+            Thread thread = new Thread(() -> connection(path, bodies, first, deadline), "loadtest-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            threads.forEach(Thread::interrupt);
+        }
+        return new Result(requests.sum(), items.sum(), errors.sum(), rejected.sum(), System.nanoTime() - start,
+                latency.snapshot());
+    }
+
+    /**
+     * Готовит тела запросов заранее, чтобы во время проверки клиент только писал байты в сокет.
+     */
+    private List<byte[]> bodies() {
+        if (batch == 1) {
+            return samples;
+        }
+        List<byte[]> bodies = new ArrayList<>(samples.size());
+        for (int first = 0; first < samples.size(); first++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                for (int i = 0; i < batch; i++) {
+                    byte[] sample = samples.get((first + i) % samples.size());
+                    out.writeInt(sample.length);
+                    out.writeLong(-1);
+                    out.write(sample);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            bodies.add(bytes.toByteArray());
+        }
+        return bodies;
+    }
+
+    private void connection(String path, List<byte[]> bodies, int next, long deadline) {
+        byte[] head = ("POST " + path + " HTTP/1.1\r\nHost: " + address.getHostString() + ":" + address.getPort()
+                + "\r\nContent-Type: application/octet-stream\r\nContent-Length: ")
+                .getBytes(StandardCharsets.US_ASCII);
+        while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+            try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+                socket.setTcpNoDelay(true);
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+                InputStream in = new BufferedInputStream(socket.getInputStream(), 1 << 16);
+                while (System.nanoTime() < deadline) {
+                    byte[] body = bodies.get(next++ % bodies.size());
+                    long start = System.nanoTime();
+                    out.write(head);
+                    out.write((body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                    out.write(body);
+                    out.flush();
+                    int status = readResponse(in);
+                    latency.record(System.nanoTime() - start);
+                    requests.increment();
+                    if (status == 200) {
+                        items.add(batch);
+                    } else if (status == 503) {
+                        rejected.increment();
+                    } else {
+                        errors.increment();
+                    }
+                }
+            } catch (IOException e) {
+                // Сервер закрыл соединение: запрос считается ошибкой, соединение открывается заново
+                errors.increment();
+            }
+        }
+    }
+
+    /**
+     * Читает ответ целиком, чтобы соединение можно было использовать для следующего запроса.
+     *
+     * @return Код ответа.
+     */
+    private static int readResponse(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        long length = 0;
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                length = Long.parseLong(line.substring(15).trim());
+            }
+        }
+        while (length > 0) {
+            long skipped = in.skip(length);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("response body truncated");
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+        return status;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException("connection closed");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.courr;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP-сервис определения форматов для инструментов, которые не могут встроить приложение:
+ * принимает начальные байты файлов и возвращает то же расширение, что
+ * {@link FileExtensionRecoveryService#detectExtension(FileHeader)}.
+ * <ul>
+ *     <li>{@code POST /classify} — тело запроса содержит начало файла; необязательный параметр {@code size}
+ *     задаёт полный размер файла для сигнатур с минимальным размером. Ответ: {@code {"extension":"png"}}.</li>
+ *     <li>{@code POST /classify/batch} — тело состоит из записей «длина (4 байта), размер файла (8 байтов,
+ *     -1 если неизвестен), байты»; числа в сетевом порядке. Ответ: {@code {"extensions":["png",null]}}.</li>
+ *     <li>{@code GET /stats} — счётчики и длительности обработки по адресам в микросекундах.</li>
+ * </ul>
+ * Соединения HTTP/1.1 поддерживаются открытыми между запросами. Запросы выполняет пул рабочих потоков
+ * с ограниченной очередью; если очередь заполнена, запрос без разбора тела получает ответ 503 от отдельного
+ * потока отказов, поэтому при перегрузке память не растёт, поток приёма соединений не блокируется,
+ * а клиент может повторить запрос позже.
+ * <p>
+ * Задержку ответов на постоянных соединениях убирает системное свойство {@code sun.net.httpserver.nodelay},
+ * которое команда {@code courr serve} задаёт до создания сервера.
+ */
+final class ClassificationServer implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(ClassificationServer.class.getName());
+
+    /**
+     * Наибольшая длина одного начала файла; для всех сигнатур и текстовых форматов достаточно меньшего.
+     */
+    static final int MAX_HEADER = 1 << 20;
+    /**
+     * Наибольшее количество записей в пакетном запросе.
+     */
+    static final int MAX_BATCH = 100_000;
+
+    private static final String JSON = "application/json";
+
+    /**
+     * Признак того, что запрос выполняется в потоке отказов, потому что очередь пула заполнена.
+     */
+    private static final ThreadLocal<Boolean> OVERLOADED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final FileExtensionRecoveryService service;
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor rejections;
+    private final int queueCapacity;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Создаёт сервер и занимает адрес; запросы принимаются после {@link #start()}.
+     *
+     * @param service       Сервис, определяющий расширения.
+     * @param address       Адрес для приёма соединений; порт 0 выбирается системой.
+     * @param threads       Количество рабочих потоков.
+     * @param queueCapacity Наибольшее количество запросов, ожидающих рабочего потока.
+     * @throws IOException Если адрес занять не удалось.
+     */
+    ClassificationServer(FileExtensionRecoveryService service, InetSocketAddress address, int threads,
+                         int queueCapacity) throws IOException {
+        this.service = service;
+        this.queueCapacity = queueCapacity;
+        AtomicInteger counter = new AtomicInteger();
+        this.rejections = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "classify-reject");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "classify-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (runnable, pool) -> {
+            // Ответ 503 отправляет отдельный поток: поток приёма соединений не должен ждать записи клиенту
+            // и дочитывания тела отклонённого запроса
+            rejected.increment();
+            rejections.execute(() -> {
+                OVERLOADED.set(Boolean.TRUE);
+                try {
+                    runnable.run();
+                } finally {
+                    OVERLOADED.set(Boolean.FALSE);
+                }
+            });
+        });
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        context("/classify", "POST", this::classify);
+        context("/classify/batch", "POST", this::classifyBatch);
+        context("/stats", "GET", this::stats);
+    }
+
+    /**
+     * Возвращает адрес, на котором сервер принимает соединения.
+     *
+     * @return Адрес с фактическим портом.
+     */
+    InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * Начинает приём запросов в фоновом потоке.
+     */
+    void start() {
+        server.start();
+        logger.info("Classification server listening on {}:{} with {} threads and queue {}",
+                address().getHostString(), address().getPort(), executor.getMaximumPoolSize(), queueCapacity);
+    }
+
+    /**
+     * Прекращает приём соединений и останавливает рабочие потоки.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        rejections.shutdownNow();
+        logger.info("Classification server stopped: {}", statsJson());
+    }
+
+    private void context(String path, String method, Handler handler) {
+        Endpoint endpoint = new Endpoint();
+        endpoints.put(path, endpoint);
+        server.createContext(path, new EndpointHandler(path, method, endpoint, handler));
+    }
+
+    private void classify(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        long size = sizeParameter(exchange.getRequestURI());
+        Scratch buffer = scratch.get();
+        int length;
+        try (InputStream in = exchange.getRequestBody()) {
+            length = buffer.readBody(in);
+        }
+        if (length < 0) {
+            respond(exchange, 413, error("header longer than " + MAX_HEADER + " bytes"));
+            return;
+        }
+        StringBuilder json = buffer.json();
+        json.append("{\"extension\":");
+        appendExtension(json, buffer.detect(length, size < 0 ? length : size));
+        json.append('}');
+        endpoint.items.increment();
+        respond(exchange, 200, json);
+    }
+
+    private void classifyBatch(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        Scratch buffer = scratch.get();
+        StringBuilder json = buffer.json();
+        json.append("{\"extensions\":[");
+        int items = 0;
+        try (DataInputStream in = new DataInputStream(exchange.getRequestBody())) {
+            while (true) {
+                // Тело кончается только на границе элементов; обрывок префикса длины — усечённый элемент
+                int first = in.read();
+                if (first < 0) {
+                    break;
+                }
+                int length = first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8
+                        | in.readUnsignedByte();
+                long size = in.readLong();
+                if (length < 0 || length > MAX_HEADER || items == MAX_BATCH) {
+                    respond(exchange, 413, error("batch item " + items + " exceeds the limits"));
+                    return;
+                }
+                in.readFully(buffer.ensure(length), 0, length);
+                appendExtension(json.append(items++ == 0 ? "" : ","), buffer.detect(length, size < 0 ? length : size));
+            }
+        } catch (EOFException e) {
+            respond(exchange, 400, error("truncated batch item " + items));
+            return;
+        }
+        json.append("]}");
+        endpoint.items.add(items);
+        respond(exchange, 200, json);
+    }
+
+    private void stats(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        exchange.getRequestBody().close();
+        respond(exchange, 200, new StringBuilder(statsJson()));
+    }
+
+    /**
+     * Возвращает счётчики сервера: пул, очередь, отклонённые запросы и длительности по адресам.
+     */
+    private String statsJson() {
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"uptimeMs\":").append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos))
+                .append(",\"threads\":").append(executor.getMaximumPoolSize())
+                .append(",\"active\":").append(executor.getActiveCount())
+                .append(",\"queued\":").append(executor.getQueue().size())
+                .append(",\"queueCapacity\":").append(queueCapacity)
+                .append(",\"rejected\":").append(rejected.sum())
+                .append(",\"endpoints\":{");
+        boolean first = true;
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            Endpoint endpoint = entry.getValue();
+            LatencyHistogram.Snapshot latency = endpoint.latency.snapshot();
+            JsonText.appendString(json.append(first ? "" : ","), entry.getKey());
+            json.append(":{\"requests\":").append(latency.count())
+                    .append(",\"items\":").append(endpoint.items.sum())
+                    .append(",\"errors\":").append(endpoint.errors.sum())
+                    .append(",\"latencyUs\":{\"mean\":").append(micros(latency.meanNanos()))
+                    .append(",\"p50\":").append(micros(latency.percentileNanos(0.5)))
+                    .append(",\"p90\":").append(micros(latency.percentileNanos(0.9)))
+                    .append(",\"p99\":").append(micros(latency.percentileNanos(0.99)))
+                    .append(",\"max\":").append(micros(latency.maxNanos()))
+                    .append("}}");
+            first = false;
+        }
+        return json.append("}}").toString();
+    }
+
+    private static long sizeParameter(URI uri) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return -1;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("size=")) {
+                try {
+                    return Long.parseLong(parameter.substring(5));
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static void appendExtension(StringBuilder json, String extension) {
+        JsonText.appendString(json, extension == null || extension.isEmpty() ? null : extension);
+    }
+
+    private static StringBuilder error(String message) {
+        return JsonText.appendString(new StringBuilder("{\"error\":"), message).append('}');
+    }
+
+    private static void respond(HttpExchange exchange, int status, CharSequence body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Обработчик одного адреса.
+     */
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange, Endpoint endpoint) throws IOException;
+    }
+
+    /**
+     * Счётчики одного адреса.
+     */
+    private static final class Endpoint {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder items = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+    }
+
+    /**
+     * Проверяет путь и метод, отвечает 503 при перегрузке и учитывает длительность и ошибки запроса.
+     */
+    private final class EndpointHandler implements HttpHandler {
+        private final String path;
+        private final String method;
+        private final Endpoint endpoint;
+        private final Handler handler;
+
+        private EndpointHandler(String path, String method, Endpoint endpoint, Handler handler) {
+            this.path = path;
+            this.method = method;
+            this.endpoint = endpoint;
+            this.handler = handler;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            long start = System.nanoTime();
+            try (exchange) {
+                if (OVERLOADED.get()) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    respond(exchange, 503, error("request queue is full"));
+                    return;
+                }
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    respond(exchange, 404, error("not found"));
+                } else if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    respond(exchange, 405, error(method + " expected"));
+                } else {
+                    handler.handle(exchange, endpoint);
+                    endpoint.latency.record(System.nanoTime() - start);
+                }
+                if (exchange.getResponseCode() >= 400) {
+                    endpoint.errors.increment();
+                }
+            } catch (IOException | RuntimeException e) {
+                endpoint.errors.increment();
+                logger.debug("Classification request failed: {}", exchange.getRequestURI(), e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Буферы одного рабочего потока: байты заголовка, заголовок поверх них и текст ответа.
+     */
+    private final class Scratch {
+        private byte[] bytes = new byte[1 << 16];
+        private FileHeader header = new FileHeader(bytes, 1);
+        private final StringBuilder json = new StringBuilder(1 << 12);
+
+        private byte[] ensure(int length) {
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+                header = new FileHeader(bytes, 1);
+            }
+            return bytes;
+        }
+
+        /**
+         * Читает тело запроса целиком.
+         *
+         * @return Длина тела или -1, если оно длиннее {@link #MAX_HEADER}.
+         */
+        private int readBody(InputStream in) throws IOException {
+            int length = 0;
+            while (true) {
+                if (length == bytes.length) {
+                    if (length == MAX_HEADER) {
+                        return in.read() < 0 ? length : -1;
+                    }
+                    ensure(Math.min(MAX_HEADER, length * 2));
+                }
+                int read = in.read(bytes, length, bytes.length - length);
+                if (read < 0) {
+                    return length;
+                }
+                length += read;
+            }
+        }
+
+        private String detect(int length, long size) {
+            header.reset(size);
+            header.addSegment(0, 0, length);
+            return service.detectExtension(header);
+        }
+
+        private StringBuilder json() {
+            json.setLength(0);
+            return json;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.courr;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Потоковое вычисление 64-битного хеша XXH64 содержимого файла.
+ * Данные передаются порциями произвольной длины в порядке следования; результат совпадает с эталонной
+ * реализацией XXH64 с нулевым начальным значением. Экземпляр переиспользуется после {@link #reset()}
+ * и не является потокобезопасным.
+ */
+final class ContentHasher {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] pending = new byte[STRIPE];
+    private int pendingLength;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long length;
+
+    /**
+     * Создаёт вычислитель в начальном состоянии.
+     */
+    ContentHasher() {
+        reset();
+    }
+
+    /**
+     * Возвращает вычислитель в начальное состояние перед очередным файлом.
+     */
+    void reset() {
+        v1 = PRIME1 + PRIME2;
+        v2 = PRIME2;
+        v3 = 0;
+        v4 = -PRIME1;
+        length = 0;
+        pendingLength = 0;
+    }
+
+    /**
+     * Добавляет очередную порцию данных.
+     *
+     * @param bytes  Массив с данными.
+     * @param offset Позиция начала порции в массиве.
+     * @param count  Количество байтов.
+     */
+    void update(byte[] bytes, int offset, int count) {
+        length += count;
+        if (pendingLength > 0) {
+            int take = Math.min(count, STRIPE - pendingLength);
+            System.arraycopy(bytes, offset, pending, pendingLength, take);
+            pendingLength += take;
+            offset += take;
+            count -= take;
+            if (pendingLength < STRIPE) {
+                return;
+            }
+            stripe(pending, 0);
+            pendingLength = 0;
+        }
+        int end = offset + count;
+        for (; offset + STRIPE <= end; offset += STRIPE) {
+            stripe(bytes, offset);
+        }
+        System.arraycopy(bytes, offset, pending, 0, end - offset);
+        pendingLength = end - offset;
+    }
+
+    /**
+     * Возвращает хеш переданных данных; состояние не меняется.
+     *
+     * @return Значение XXH64.
+     */
+    long digest() {
+        long hash;
+        if (length >= STRIPE) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+                    + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += length;
+        int i = 0;
+        for (; i + 8 <= pendingLength; i += 8) {
+            hash ^= round(0, (long) LONG.get(pending, i));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (i + 4 <= pendingLength) {
+            hash ^= ((int) INT.get(pending, i) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        for (; i < pendingLength; i++) {
+            hash ^= (pending[i] & 0xFFL) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private void stripe(byte[] bytes, int offset) {
+        v1 = round(v1, (long) LONG.get(bytes, offset));
+        v2 = round(v2, (long) LONG.get(bytes, offset + 8));
+        v3 = round(v3, (long) LONG.get(bytes, offset + 16));
+        v4 = round(v4, (long) LONG.get(bytes, offset + 24));
+    }
+
+    private static long round(long accumulator, long input) {
+        return Long.rotateLeft(accumulator + input * PRIME2, 31) * PRIME1;
+    }
+
+    private static long merge(long hash, long value) {
+        return (hash ^ round(0, value)) * PRIME1 + PRIME4;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Потоковый обход каталога для восстановления расширений.
+ * Записи читаются через {@link Files#walkFileTree}, который держит открытым только по одному
+ * {@link java.nio.file.DirectoryStream} на уровень вложенности, поэтому расход памяти не зависит
+ * от количества файлов в каталоге. Каждый найденный файл сразу передаётся получателю;
+ * если получатель блокируется (например, {@link RecoveryEngine#submit(Path, BasicFileAttributes)}), обход приостанавливается.
+ */
+final class DirectoryScanner {
+    private static final Logger logger = LogManager.getLogger(DirectoryScanner.class.getName());
+
+    /**
+     * Получатель найденных файлов.
+     */
+    @FunctionalInterface
+    interface FileSink {
+        /**
+         * Принимает найденный файл.
+         *
+         * @param file       Путь к файлу.
+         * @param attributes Атрибуты файла, прочитанные при обходе.
+         * @throws InterruptedException Если ожидание получателя было прервано.
+         */
+        void accept(Path file, BasicFileAttributes attributes) throws InterruptedException;
+    }
+
+    /**
+     * Получатель ошибок доступа к записям каталога.
+     */
+    @FunctionalInterface
+    interface ErrorSink {
+        /**
+         * Принимает ошибку доступа к записи.
+         *
+         * @param path  Путь к записи.
+         * @param error Ошибка ввода-вывода.
+         */
+        void accept(Path path, IOException error);
+    }
+
+    /**
+     * Получатель вложенных каталогов при обходе одного уровня.
+     */
+    @FunctionalInterface
+    interface DirectorySink {
+        /**
+         * Принимает вложенный каталог.
+         *
+         * @param directory  Путь к каталогу.
+         * @param attributes Атрибуты каталога, прочитанные при обходе.
+         */
+        void accept(Path directory, BasicFileAttributes attributes);
+    }
+
+    private final RecoveryOptions options;
+
+    /**
+     * Создаёт обходчик каталога.
+     *
+     * @param options Параметры запуска: рекурсия, глубина, правила для ссылок и скрытых файлов.
+     */
+    DirectoryScanner(RecoveryOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Обходит каталог и передаёт каждый обычный файл получателю.
+     *
+     * @param root   Корневой каталог.
+     * @param sink   Получатель файлов.
+     * @param errors Получатель ошибок доступа к записям.
+     * @throws IOException          Если корневой каталог не удалось прочитать.
+     * @throws InterruptedException Если обход был прерван.
+     */
+    void scan(Path root, FileSink sink, ErrorSink errors) throws IOException, InterruptedException {
+        int depth = options.recursive() ? options.maxDepth() : 1;
+        Visitor visitor = new Visitor(root, sink, null, errors);
+        Files.walkFileTree(root, visitOptions(), depth, visitor);
+        if (visitor.interrupted != null) {
+            throw visitor.interrupted;
+        }
+    }
+
+    /**
+     * Обходит только файлы самого каталога, а вложенные каталоги передаёт отдельному получателю,
+     * не спускаясь в них. Используется для обхода дерева частями ({@link ShardWorker}); правила для ссылок
+     * и скрытых записей те же, что в {@link #scan}, глубину отслеживает вызывающий.
+     *
+     * @param directory   Каталог.
+     * @param sink        Получатель файлов.
+     * @param directories Получатель вложенных каталогов.
+     * @param errors      Получатель ошибок доступа к записям.
+     * @throws IOException          Если каталог не удалось прочитать.
+     * @throws InterruptedException Если обход был прерван.
+     */
+    void scanLevel(Path directory, FileSink sink, DirectorySink directories, ErrorSink errors)
+            throws IOException, InterruptedException {
+        Visitor visitor = new Visitor(directory, sink, directories, errors);
+        Files.walkFileTree(directory, visitOptions(), 1, visitor);
+        if (visitor.interrupted != null) {
+            throw visitor.interrupted;
+        }
+    }
+
+    private Set<FileVisitOption> visitOptions() {
+        return options.linkPolicy() == LinkPolicy.FOLLOW
+                ? EnumSet.of(FileVisitOption.FOLLOW_LINKS)
+                : EnumSet.noneOf(FileVisitOption.class);
+    }
+
+    /**
+     * Посетитель дерева каталогов, применяющий правила обхода.
+     */
+    private final class Visitor extends SimpleFileVisitor<Path> {
+        private final Path root;
+        private final FileSink sink;
+        private final DirectorySink directories;
+        private final ErrorSink errors;
+        private InterruptedException interrupted;
+
+        private Visitor(Path root, FileSink sink, DirectorySink directories, ErrorSink errors) {
+            this.root = root;
+            this.sink = sink;
+            this.directories = directories;
+            this.errors = errors;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            if (!dir.equals(root) && !options.includeHidden() && Files.isHidden(dir)) {
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            if (Thread.currentThread().isInterrupted()) {
+                interrupted = new InterruptedException("Directory scan interrupted");
+                return FileVisitResult.TERMINATE;
+            }
+            if (!options.includeHidden() && Files.isHidden(file)) {
+                return FileVisitResult.CONTINUE;
+            }
+            // Ссылка на каталог передаётся как каталог, только если ссылки обходятся: тогда атрибуты уже её цели
+            if (attrs.isDirectory() && directories != null) {
+                directories.accept(file, attrs);
+                return FileVisitResult.CONTINUE;
+            }
+            BasicFileAttributes fileAttrs = attrs;
+            if (attrs.isSymbolicLink()) {
+                if (options.linkPolicy() != LinkPolicy.FILES) {
+                    return FileVisitResult.CONTINUE;
+                }
+                try {
+                    fileAttrs = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    errors.accept(file, e);
+                    return FileVisitResult.CONTINUE;
+                }
+            }
+            // Каталоги на пределе глубины, каналы и устройства не обрабатываются
+            if (!fileAttrs.isRegularFile()) {
+                return FileVisitResult.CONTINUE;
+            }
+            try {
+                sink.accept(file, fileAttrs);
+                return FileVisitResult.CONTINUE;
+            } catch (InterruptedException e) {
+                interrupted = e;
+                return FileVisitResult.TERMINATE;
+            }
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            if (exc instanceof FileSystemLoopException) {
+                logger.warn("Skipping symbolic link cycle: {}", file);
+            } else {
+                errors.accept(file, exc);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+            if (exc != null) {
+                errors.accept(dir, exc);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.courr;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индекс содержимого файлов одного запуска: по размеру и хешу {@link ContentHasher} находит первую копию
+ * и определённый для неё формат. Таблица с открытой адресацией хранится в примитивных массивах;
+ * на каждое уникальное содержимое приходятся две длинные ячейки, номер пути и номер расширения.
+ * Методы синхронизированы, так как индекс заполняют все рабочие потоки.
+ */
+final class DuplicateIndex {
+
+    /**
+     * Первая встреченная копия содержимого.
+     *
+     * @param path      Путь к копии после переименования.
+     * @param extension Определённое расширение или пустая строка, если формат не определён.
+     */
+    record Original(Path path, String extension) {
+    }
+
+    private final List<Path> paths = new ArrayList<>();
+    private final List<String> extensions = new ArrayList<>();
+    private final Map<String, Short> extensionIds = new HashMap<>();
+    private long[] hashes;
+    private long[] sizes;
+    private int[] files;
+    private short[] values;
+
+    /**
+     * Создаёт пустой индекс.
+     */
+    DuplicateIndex() {
+        allocate(1024);
+    }
+
+    /**
+     * Ищет первую копию содержимого.
+     *
+     * @param size Размер файла в байтах.
+     * @param hash Хеш содержимого.
+     * @return Первая копия или null, если такое содержимое ещё не встречалось.
+     */
+    synchronized Original find(long size, long hash) {
+        int slot = slotOf(keyOf(hash), size);
+        return hashes[slot] == 0 ? null : original(slot);
+    }
+
+    /**
+     * Запоминает файл как первую копию содержимого, если другой поток не сделал этого раньше.
+     *
+     * @param size      Размер файла в байтах.
+     * @param hash      Хеш содержимого.
+     * @param path      Путь к файлу после переименования.
+     * @param extension Определённое расширение или null, если формат не определён.
+     * @return Ранее запомненная копия или null, если файл запомнен как первая копия.
+     */
+    synchronized Original add(long size, long hash, Path path, String extension) {
+        long key = keyOf(hash);
+        int slot = slotOf(key, size);
+        if (hashes[slot] != 0) {
+            return original(slot);
+        }
+        hashes[slot] = key;
+        sizes[slot] = size;
+        files[slot] = paths.size();
+        values[slot] = idOf(extension == null ? "" : extension);
+        paths.add(path);
+        if (paths.size() * 2 > hashes.length) {
+            rehash();
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает количество различного содержимого в индексе.
+     *
+     * @return Количество первых копий.
+     */
+    synchronized int size() {
+        return paths.size();
+    }
+
+    private Original original(int slot) {
+        return new Original(paths.get(files[slot]), extensions.get(values[slot]));
+    }
+
+    private int slotOf(long key, long size) {
+        int mask = hashes.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (hashes[slot] != 0 && (hashes[slot] != key || sizes[slot] != size)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldHashes = hashes;
+        long[] oldSizes = sizes;
+        int[] oldFiles = files;
+        short[] oldValues = values;
+        allocate(oldHashes.length * 2);
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != 0) {
+                int slot = slotOf(oldHashes[i], oldSizes[i]);
+                hashes[slot] = oldHashes[i];
+                sizes[slot] = oldSizes[i];
+                files[slot] = oldFiles[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new long[capacity];
+        sizes = new long[capacity];
+        files = new int[capacity];
+        values = new short[capacity];
+    }
+
+    private short idOf(String extension) {
+        Short id = extensionIds.get(extension);
+        if (id == null) {
+            id = (short) extensions.size();
+            extensions.add(extension);
+            extensionIds.put(extension, id);
+        }
+        return id;
+    }
+
+    /**
+     * Нулевое значение зарезервировано для пустых ячеек таблицы.
+     */
+    private static long keyOf(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+}
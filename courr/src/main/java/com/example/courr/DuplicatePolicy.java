@@ -0,0 +1,19 @@
+package com.example.courr;
+
+/**
+ * Обработка файлов с одинаковым содержимым при восстановлении расширений.
+ */
+enum DuplicatePolicy {
+    /**
+     * Содержимое не хешируется, каждый файл определяется отдельно.
+     */
+    OFF,
+    /**
+     * Содержимое хешируется при чтении заголовка; повторная копия получает формат первой и отмечается в результатах.
+     */
+    REPORT,
+    /**
+     * Как {@link #REPORT}, но повторная копия после побайтового сравнения заменяется жёсткой ссылкой на первую.
+     */
+    LINK
+}
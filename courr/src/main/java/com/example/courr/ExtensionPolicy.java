@@ -0,0 +1,20 @@
+package com.example.courr;
+
+/**
+ * Отбор файлов по расширению, которое уже есть в имени. Применяется фильтром {@link MetadataFilter}
+ * до открытия файла.
+ */
+enum ExtensionPolicy {
+    /**
+     * Обрабатываются все файлы; файл с верным расширением получает итог {@link RecoveryStatus#UNCHANGED}.
+     */
+    ALL,
+    /**
+     * Пропускаются файлы, расширение которых совпадает с одним из известных форматов: такому расширению доверяют.
+     */
+    UNRECOGNIZED,
+    /**
+     * Обрабатываются только файлы без расширения.
+     */
+    MISSING
+}
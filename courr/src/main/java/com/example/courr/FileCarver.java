@@ -0,0 +1,530 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Вырезает файлы из образа диска (например, вывода {@code dd}) по сигнатурам, которые знает
+ * {@link FileExtensionRecoveryService#detectSignature(FileHeader)}.
+ * <p>
+ * Образ отображается в память окнами по {@link #MAP_WINDOW} и просматривается один раз автоматом
+ * Ахо — Корасик, развёрнутым в таблицу переходов: в него входят неизменяемые части всех сигнатур и признаки
+ * конца файлов. Состояние автомата переносится между окнами, поэтому окна не перекрываются.
+ * Найденное начало проверяется полным сопоставлением сигнатур по окнам {@link HeaderWindowReader}
+ * и проверкой структуры {@link SignatureValidator}. Сигнатуры, у которых меньше {@link #MIN_ANCHOR} неизменяемых
+ * байтов, на случайных данных срабатывают каждые несколько килобайтов, поэтому используются, только если
+ * для формата есть проверка структуры (кадр MP3, {@code MZ}, {@code BM}); начало JPEG ищется
+ * по трём байтам {@code FFD8FF} с учётом вложенных эскизов.
+ * <p>
+ * Конец файла определяется признаком конца (JPEG {@code FFD9} с учётом вложенных эскизов, PNG {@code IEND},
+ * PDF {@code %%EOF}), длиной из заголовка (RIFF, BMP, ISO 9660) или, для остальных форматов, началом следующего
+ * найденного файла. Участок не длиннее наибольшего размера; файл с признаком конца, который не найден
+ * в пределах этого размера, только перечисляется. Файлы извлекаются {@link FileChannel#transferTo}
+ * без копирования через память процесса.
+ * Экземпляр не является потокобезопасным.
+ */
+final class FileCarver {
+    private static final Logger logger = LogManager.getLogger(FileCarver.class.getName());
+
+    /**
+     * Размер окна, которым образ отображается в память.
+     */
+    static final long MAP_WINDOW = 64L << 20;
+    private static final int CHUNK = 1 << 20;
+    /**
+     * Наибольшее количество файлов, для которых одновременно ищется конец.
+     */
+    private static final int MAX_OPEN = 1024;
+    private static final int RECENT_STARTS = 256;
+    /**
+     * Наименьшее количество неизменяемых байтов сигнатуры, по которым ищется начало файла.
+     */
+    private static final int MIN_ANCHOR = 3;
+
+    private static final byte[] JPEG_START = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] JPEG_END = {(byte) 0xFF, (byte) 0xD9};
+    private static final byte[] PNG_END = {'I', 'E', 'N', 'D', (byte) 0xAE, 0x42, 0x60, (byte) 0x82};
+    private static final byte[] PDF_END = "%%EOF".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileExtensionRecoveryService service;
+    private final HeaderWindowReader reader;
+    private final SignatureValidator validator = new SignatureValidator();
+    private final Automaton automaton;
+    /**
+     * Для шаблона сигнатуры — смещение его начала от начала файла.
+     */
+    private final long[] anchorOffsets;
+    private final int[] patternLengths;
+    private final int anchorCount;
+    private final int jpegStart;
+    private final int jpegEnd;
+    private final int pngEnd;
+    private final int pdfEnd;
+    private final int alignment;
+    private final long maxSize;
+    private final Path outputDirectory;
+    private final byte[] chunk = new byte[CHUNK];
+
+    /**
+     * Создаёт вырезатель.
+     *
+     * @param service         Сервис восстановления расширений.
+     * @param outputDirectory Каталог для извлечённых файлов или null, чтобы только перечислить найденные файлы.
+     * @param alignment       Выравнивание начала файла в байтах; 1 — искать файлы с любого смещения.
+     * @param maxSize         Наибольший размер вырезаемого файла в байтах.
+     * @throws IllegalArgumentException Если выравнивание или размер не положительны.
+     */
+    FileCarver(FileExtensionRecoveryService service, Path outputDirectory, int alignment, long maxSize) {
+        if (alignment <= 0 || maxSize <= 0) {
+            throw new IllegalArgumentException("Alignment and maximum size must be positive");
+        }
+        this.service = service;
+        this.reader = new HeaderWindowReader(service.requiredWindows());
+        this.outputDirectory = outputDirectory;
+        this.alignment = alignment;
+        this.maxSize = maxSize;
+        List<Signature> signatures = service.signatures();
+        List<byte[]> patterns = new ArrayList<>();
+        long[] offsets = new long[signatures.size()];
+        for (Signature signature : signatures) {
+            int[] anchor = anchor(signature);
+            String extension = signature.extension();
+            if (anchor[1] >= MIN_ANCHOR || SignatureValidator.checks(extension) && !extension.equals("jpg")) {
+                offsets[patterns.size()] = signature.offset() + anchor[0];
+                patterns.add(Arrays.copyOfRange(signature.pattern(), anchor[0], anchor[0] + anchor[1]));
+            }
+        }
+        this.anchorCount = patterns.size();
+        this.anchorOffsets = Arrays.copyOf(offsets, anchorCount);
+        this.jpegStart = add(patterns, JPEG_START);
+        this.jpegEnd = add(patterns, JPEG_END);
+        this.pngEnd = add(patterns, PNG_END);
+        this.pdfEnd = add(patterns, PDF_END);
+        this.patternLengths = new int[patterns.size()];
+        for (int i = 0; i < patternLengths.length; i++) {
+            patternLengths[i] = patterns.get(i).length;
+        }
+        this.automaton = Automaton.build(patterns);
+    }
+
+    /**
+     * Просматривает образ и вырезает найденные файлы.
+     *
+     * @param image    Путь к образу диска.
+     * @param listener Получатель вырезанных файлов в порядке определения их конца.
+     * @return Количество просмотренных байтов.
+     * @throws IOException Если образ не удалось прочитать или файл не удалось записать.
+     */
+    long carve(Path image, Consumer<CarvedFile> listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+            long size = channel.size();
+            Scan scan = new Scan(channel, size, listener);
+            int[] next = automaton.next;
+            int[][] outputs = automaton.outputs;
+            int state = 0;
+            for (long base = 0; base < size; base += MAP_WINDOW) {
+                long length = Math.min(MAP_WINDOW, size - base);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+                for (int offset = 0; offset < length; offset += CHUNK) {
+                    int count = (int) Math.min(CHUNK, length - offset);
+                    window.get(offset, chunk, 0, count);
+                    long position = base + offset;
+                    for (int i = 0; i < count; i++) {
+                        state = next[state << 8 | (chunk[i] & 0xFF)];
+                        if (state < 0) {
+                            state &= Automaton.STATE_MASK;
+                            for (int pattern : outputs[state]) {
+                                scan.found(pattern, position + i + 1 - patternLengths[pattern]);
+                            }
+                        }
+                    }
+                    scan.expire(position + count);
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Carving interrupted at offset " + (position + count));
+                    }
+                }
+            }
+            scan.finish();
+            return size;
+        }
+    }
+
+    /**
+     * Выбирает в сигнатуре самый длинный участок без масок: только его можно искать автоматом.
+     *
+     * @return Позиция и длина участка.
+     */
+    private static int[] anchor(Signature signature) {
+        byte[] mask = signature.mask();
+        int bestStart = 0;
+        int bestLength = 0;
+        for (int i = 0; i < mask.length; ) {
+            if (mask[i] != (byte) 0xFF) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < mask.length && mask[i] == (byte) 0xFF) {
+                i++;
+            }
+            if (i - start > bestLength) {
+                bestStart = start;
+                bestLength = i - start;
+            }
+        }
+        if (bestLength == 0) {
+            throw new IllegalArgumentException("Signature without fixed bytes: " + signature.extension());
+        }
+        return new int[]{bestStart, bestLength};
+    }
+
+    private static int add(List<byte[]> patterns, byte[] pattern) {
+        patterns.add(pattern);
+        return patterns.size() - 1;
+    }
+
+    /**
+     * Состояние одного просмотра: файлы, для которых ищется конец, и недавно проверенные начала.
+     */
+    private final class Scan {
+        private final FileChannel channel;
+        private final long size;
+        private final Consumer<CarvedFile> listener;
+        private final List<Carve> open = new ArrayList<>();
+        private final ByteBuffer number = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final Map<Long, Boolean> recentStarts = new LinkedHashMap<>(RECENT_STARTS * 2, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > RECENT_STARTS;
+            }
+        };
+
+        Scan(FileChannel channel, long size, Consumer<CarvedFile> listener) {
+            this.channel = channel;
+            this.size = size;
+            this.listener = listener;
+        }
+
+        /**
+         * Обрабатывает совпадение шаблона автомата.
+         *
+         * @param pattern  Номер шаблона.
+         * @param position Смещение первого байта совпадения в образе.
+         */
+        void found(int pattern, long position) throws IOException {
+            if (pattern < anchorCount) {
+                candidate(position - anchorOffsets[pattern]);
+            } else if (pattern == jpegStart) {
+                boolean nested = false;
+                for (Carve carve : open) {
+                    if (carve.extension.equals("jpg") && carve.start < position) {
+                        carve.depth++;
+                        nested = true;
+                    }
+                }
+                if (!nested) {
+                    candidate(position);
+                }
+            } else if (pattern == jpegEnd) {
+                for (Iterator<Carve> iterator = open.iterator(); iterator.hasNext(); ) {
+                    Carve carve = iterator.next();
+                    if (carve.extension.equals("jpg") && carve.start < position && carve.depth-- == 0) {
+                        iterator.remove();
+                        close(carve, position + JPEG_END.length, false);
+                    }
+                }
+            } else {
+                String extension = pattern == pngEnd ? "png" : "pdf";
+                long end = position + patternLengths[pattern];
+                for (Iterator<Carve> iterator = open.iterator(); iterator.hasNext(); ) {
+                    Carve carve = iterator.next();
+                    if (carve.extension.equals(extension) && carve.start < position) {
+                        iterator.remove();
+                        close(carve, pattern == pdfEnd ? end + endOfLine(end) : end, false);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Проверяет возможное начало файла полным сопоставлением сигнатур.
+         */
+        private void candidate(long start) throws IOException {
+            if (start < 0 || start % alignment != 0 || recentStarts.containsKey(start)) {
+                return;
+            }
+            recentStarts.put(start, Boolean.TRUE);
+            String extension = service.detectSignature(reader.read(channel, start, size - start));
+            if (extension == null || extension.isEmpty()) {
+                return;
+            }
+            extension = validator.validate(channel, start, size - start, extension);
+            if (extension.equals(SignatureValidator.REJECTED)) {
+                return;
+            }
+            if (repeatsSignature(extension)) {
+                for (Carve carve : open) {
+                    if (carve.endsAtNext && carve.extension.equals(extension)) {
+                        return;
+                    }
+                }
+            }
+            // Файл без признака конца заканчивается там, где начинается следующий
+            for (Iterator<Carve> iterator = open.iterator(); iterator.hasNext(); ) {
+                Carve carve = iterator.next();
+                if (carve.endsAtNext && carve.start < start) {
+                    iterator.remove();
+                    close(carve, Math.min(start, carve.limit), false);
+                }
+            }
+            long declared = declaredLength(extension, start);
+            Carve carve = new Carve(start, extension, Math.min(size, start + maxSize));
+            if (declared > 0) {
+                close(carve, Math.min(carve.limit, start + declared), start + declared > carve.limit);
+                return;
+            }
+            carve.endsAtNext = !hasEndMarker(extension);
+            if (open.size() == MAX_OPEN) {
+                Carve oldest = open.remove(0);
+                close(oldest, oldest.limit, !oldest.endsAtNext);
+            }
+            open.add(carve);
+        }
+
+        /**
+         * Закрывает файлы, достигшие наибольшего размера.
+         *
+         * @param position Смещение, до которого образ просмотрен.
+         */
+        void expire(long position) throws IOException {
+            for (Iterator<Carve> iterator = open.iterator(); iterator.hasNext(); ) {
+                Carve carve = iterator.next();
+                if (carve.limit <= position) {
+                    iterator.remove();
+                    close(carve, carve.limit, !carve.endsAtNext);
+                }
+            }
+        }
+
+        /**
+         * Закрывает оставшиеся файлы в конце образа.
+         */
+        void finish() throws IOException {
+            for (Carve carve : open) {
+                close(carve, carve.limit, !carve.endsAtNext);
+            }
+            open.clear();
+        }
+
+        /**
+         * Возвращает длину файла из его заголовка или 0, если формат её не содержит или значение неправдоподобно.
+         */
+        private long declaredLength(String extension, long start) throws IOException {
+            long length;
+            switch (extension) {
+                case "wav", "webp", "avi" -> length = unsignedInt(start + 4) + 8;
+                case "bmp" -> length = unsignedInt(start + 2);
+                case "iso" -> length = unsignedInt(start + 0x8050) * (unsignedInt(start + 0x8080) & 0xFFFF);
+                default -> length = 0;
+            }
+            return length > 14 ? length : 0;
+        }
+
+        private boolean hasEndMarker(String extension) {
+            return extension.equals("jpg") || extension.equals("png") || extension.equals("pdf");
+        }
+
+        /**
+         * Проверяет, повторяется ли сигнатура внутри файла: каждый кадр MP3 и каждый член ZIP начинается
+         * с неё, поэтому такое совпадение продолжает открытый файл того же формата, а не начинает новый.
+         */
+        private boolean repeatsSignature(String extension) {
+            return extension.equals("mp3") || extension.equals("zip");
+        }
+
+        /**
+         * Возвращает длину перевода строки после {@code %%EOF}, который относится к файлу PDF.
+         */
+        private int endOfLine(long position) throws IOException {
+            ByteBuffer tail = ByteBuffer.allocate(2);
+            channel.read(tail, position);
+            int length = 0;
+            while (length < tail.position() && (tail.get(length) == '\r' || tail.get(length) == '\n')) {
+                length++;
+            }
+            return length;
+        }
+
+        private long unsignedInt(long position) throws IOException {
+            if (position + Integer.BYTES > size) {
+                return 0;
+            }
+            number.clear();
+            while (number.hasRemaining()) {
+                if (channel.read(number, position + number.position()) < 0) {
+                    return 0;
+                }
+            }
+            return number.getInt(0) & 0xFFFFFFFFL;
+        }
+
+        /**
+         * Извлекает участок образа в файл и сообщает о нём получателю.
+         */
+        private void close(Carve carve, long end, boolean truncated) throws IOException {
+            long length = end - carve.start;
+            if (length <= 0) {
+                return;
+            }
+            Path path = null;
+            if (outputDirectory != null && !truncated) {
+                path = outputDirectory.resolve(String.format("%012x.%s", carve.start, carve.extension));
+                try (FileChannel target = FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    long position = carve.start;
+                    while (position < end) {
+                        long transferred = channel.transferTo(position, end - position, target);
+                        if (transferred <= 0) {
+                            throw new EOFException("Unexpected end of image at offset " + position);
+                        }
+                        position += transferred;
+                    }
+                }
+            }
+            if (truncated) {
+                logger.debug("No end marker for {} at offset {}", carve.extension, carve.start);
+            }
+            listener.accept(new CarvedFile(carve.start, length, carve.extension, path, truncated));
+        }
+    }
+
+    /**
+     * Файл, для которого ищется конец.
+     */
+    private static final class Carve {
+        private final long start;
+        private final String extension;
+        private final long limit;
+        private boolean endsAtNext;
+        /**
+         * Глубина вложенных изображений JPEG, например эскизов EXIF.
+         */
+        private int depth;
+
+        Carve(long start, String extension, long limit) {
+            this.start = start;
+            this.extension = extension;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * Автомат Ахо — Корасик, развёрнутый в детерминированную таблицу переходов по 256 значениям байта.
+     */
+    private static final class Automaton {
+        /**
+         * Маска номера состояния; старший бит перехода означает, что в состоянии заканчиваются шаблоны,
+         * поэтому на каждый байт приходится одно чтение таблицы.
+         */
+        static final int STATE_MASK = Integer.MAX_VALUE;
+
+        /**
+         * Переход из состояния {@code s} по байту {@code b}: {@code next[s << 8 | b]}.
+         */
+        private final int[] next;
+        /**
+         * Номера шаблонов, заканчивающихся в состоянии, или null.
+         */
+        private final int[][] outputs;
+
+        private Automaton(int[] next, int[][] outputs) {
+            this.next = next;
+            this.outputs = outputs;
+        }
+
+        static Automaton build(List<byte[]> patterns) {
+            List<int[]> edges = new ArrayList<>();
+            List<List<Integer>> found = new ArrayList<>();
+            edges.add(newState());
+            found.add(new ArrayList<>());
+            for (int pattern = 0; pattern < patterns.size(); pattern++) {
+                int state = 0;
+                for (byte value : patterns.get(pattern)) {
+                    int b = value & 0xFF;
+                    if (edges.get(state)[b] < 0) {
+                        edges.get(state)[b] = edges.size();
+                        edges.add(newState());
+                        found.add(new ArrayList<>());
+                    }
+                    state = edges.get(state)[b];
+                }
+                found.get(state).add(pattern);
+            }
+            int states = edges.size();
+            int[] next = new int[states << 8];
+            int[] fail = new int[states];
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int b = 0; b < 256; b++) {
+                int child = edges.get(0)[b];
+                next[b] = Math.max(child, 0);
+                if (child > 0) {
+                    queue.add(child);
+                }
+            }
+            // Обход в ширину: переходы состояния без ребра берутся у состояния-ссылки, уже заполненного
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                found.get(state).addAll(found.get(fail[state]));
+                for (int b = 0; b < 256; b++) {
+                    int child = edges.get(state)[b];
+                    if (child >= 0) {
+                        fail[child] = next[fail[state] << 8 | b];
+                        next[state << 8 | b] = child;
+                        queue.add(child);
+                    } else {
+                        next[state << 8 | b] = next[fail[state] << 8 | b];
+                    }
+                }
+            }
+            int[][] outputs = new int[states][];
+            for (int state = 0; state < states; state++) {
+                List<Integer> list = found.get(state);
+                if (!list.isEmpty()) {
+                    outputs[state] = list.stream().mapToInt(Integer::intValue).toArray();
+                }
+            }
+            for (int i = 0; i < next.length; i++) {
+                if (outputs[next[i]] != null) {
+                    next[i] |= ~STATE_MASK;
+                }
+            }
+            return new Automaton(next, outputs);
+        }
+
+        private static int[] newState() {
+            int[] state = new int[256];
+            Arrays.fill(state, -1);
+            return state;
+        }
+    }
+}
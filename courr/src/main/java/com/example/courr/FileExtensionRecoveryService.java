@@ -0,0 +1,265 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Класс для восстановления расширений файлов на основе их содержимого.
+ */
+class FileExtensionRecoveryService {
+
+    private static final Logger logger = LogManager.getLogger(FileExtensionRecoveryService.class.getName());
+
+    /**
+     * Версия правил определения формата, не описанных таблицей сигнатур: текстовых форматов и проверки
+     * структуры. Увеличивается при каждом изменении, после которого те же файлы могут получить другой результат.
+     */
+    static final int CLASSIFIER_VERSION = 1;
+
+    /**
+     * Скомпилированный набор сигнатур из таблицы {@link SignatureDatabase}, общий для всех экземпляров сервиса.
+     */
+    private static final SignatureMatcher MATCHER = SignatureDatabase.load();
+
+    /**
+     * Окна сигнатур и начальное окно текстовых форматов.
+     */
+    private static final List<ByteWindow> WINDOWS = windows();
+
+    /**
+     * Расширения сигнатур и текстовых форматов.
+     */
+    private static final Set<String> KNOWN_EXTENSIONS = knownExtensionSet();
+
+    /**
+     * Классификаторы текстовых форматов, по одному на поток: сервис вызывается из рабочих потоков.
+     */
+    private static final ThreadLocal<TextClassifier> TEXT = ThreadLocal.withInitial(TextClassifier::new);
+
+    /**
+     * Возвращает диапазоны байтов файла, необходимые для {@link #detectExtension(FileHeader)}.
+     *
+     * @return Список окон заголовка.
+     */
+    public List<ByteWindow> requiredWindows() {
+        return WINDOWS;
+    }
+
+    /**
+     * Возвращает все расширения, которые может вернуть {@link #detectExtension(FileHeader)}.
+     *
+     * @return Неизменяемое множество расширений в нижнем регистре.
+     */
+    public Set<String> knownExtensions() {
+        return KNOWN_EXTENSIONS;
+    }
+
+    /**
+     * Возвращает сигнатуры, по которым {@link #detectExtension(FileHeader)} определяет форматы.
+     *
+     * @return Неизменяемый список сигнатур в порядке приоритета.
+     */
+    public List<Signature> signatures() {
+        return MATCHER.signatures();
+    }
+
+    /**
+     * Возвращает отпечаток правил определения формата: контрольную сумму таблицы сигнатур,
+     * {@link #CLASSIFIER_VERSION} и признак проверки структуры. Результаты, полученные при другом отпечатке,
+     * недействительны.
+     *
+     * @param validate true, если найденные сигнатуры подтверждаются проверкой структуры.
+     * @return Отпечаток правил.
+     */
+    long fingerprint(boolean validate) {
+        return MATCHER.tableCrc() << 32 | (long) CLASSIFIER_VERSION << 1 | (validate ? 1 : 0);
+    }
+
+    /**
+     * Восстанавливает расширения файлов в указанной директории с параметрами по умолчанию.
+     *
+     * @param folderPath Путь к целевой директории.
+     * @return Сводка по обработанным файлам.
+     * @throws IOException Если директория недоступна или её обход прервался ошибкой.
+     */
+    public RecoverySummary recoverExtensions(String folderPath) throws IOException {
+        return recoverExtensions(folderPath, new RecoveryOptions(), result -> {
+        });
+    }
+
+    /**
+     * Восстанавливает расширения файлов в указанной директории.
+     * Записи каталога читаются потоково обходчиком {@link DirectoryScanner} и обрабатываются
+     * параллельно движком {@link RecoveryEngine}.
+     *
+     * @param folderPath Путь к целевой директории.
+     * @param options    Параметры запуска.
+     * @param listener   Получатель результатов по каждому файлу; вызывается из рабочих потоков.
+     * @return Сводка по обработанным файлам.
+     * @throws IOException Если директория недоступна, журнал, отчёт или выходное дерево не удалось открыть
+     *                     или дописать либо обход директории прервался ошибкой.
+     */
+    public RecoverySummary recoverExtensions(String folderPath, RecoveryOptions options,
+                                             Consumer<FileRecoveryResult> listener) throws IOException {
+        return recoverExtensions(folderPath, options, listener, metrics -> {
+        });
+    }
+
+    /**
+     * Восстанавливает расширения файлов в указанной директории и передаёт показатели движка до начала обхода,
+     * чтобы вызывающий мог следить за количеством найденных файлов и прочитанных байтов.
+     *
+     * @param folderPath Путь к целевой директории.
+     * @param options    Параметры запуска.
+     * @param listener   Получатель результатов по каждому файлу; вызывается из рабочих потоков.
+     * @param started    Получатель показателей движка; вызывается один раз перед обходом.
+     * @return Сводка по обработанным файлам.
+     * @throws IOException Если директория недоступна, журнал, отчёт или выходное дерево не удалось открыть
+     *                     или дописать либо обход директории прервался ошибкой.
+     */
+    RecoverySummary recoverExtensions(String folderPath, RecoveryOptions options,
+                                      Consumer<FileRecoveryResult> listener,
+                                      Consumer<RecoveryMetrics> started) throws IOException {
+        logger.info("Recovering extensions in folder: {}", folderPath);
+        File folder = new File(folderPath);
+        if (!folder.isDirectory()) {
+            throw new FileSystemException(folderPath, null, "not a directory");
+        }
+        RecoveryEngine engine;
+        try {
+            engine = new RecoveryEngine(this, options, listener, null, folder.toPath());
+        } catch (IOException e) {
+            logger.error("Cannot open rename journal, report or output tree for folder: {}", folderPath, e);
+            throw e;
+        }
+        // Ошибка закрытия движка — недописанный журнал или отчёт — так же прерывает запуск, как ошибка обхода
+        try (engine) {
+            started.accept(engine.metrics());
+            new DirectoryScanner(options).scan(folder.toPath(), engine::submit, engine::reportFailure);
+            engine.awaitCompletion();
+        } catch (IOException e) {
+            logger.error("Recovery failed in folder: {}", folderPath, e);
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Recovery interrupted in folder: {}", folderPath);
+        }
+        // Сводка снимается после закрытия, чтобы учесть файлы, доработанные после прерывания
+        RecoverySummary summary = engine.summary();
+        logger.info("Recovery finished in folder {}: {}", folderPath, summary);
+        return summary;
+    }
+
+    /**
+     * Непрерывно восстанавливает расширения файлов, поступающих в указанную директорию.
+     * Метод возвращает управление, когда вызывающий поток прерван.
+     *
+     * @param folderPath Путь к наблюдаемой директории.
+     * @param options    Параметры запуска.
+     * @param listener   Получатель результатов по каждому файлу; вызывается из рабочих потоков.
+     * @return Сводка по обработанным файлам.
+     * @throws IOException Если директорию не удалось поставить под наблюдение.
+     */
+    public RecoverySummary watchExtensions(String folderPath, RecoveryOptions options,
+                                           Consumer<FileRecoveryResult> listener) throws IOException {
+        logger.info("Watching folder for new files: {}", folderPath);
+        RecoveryWatcher watcher = new RecoveryWatcher(this, options, listener);
+        try (watcher) {
+            watcher.watch(Path.of(folderPath));
+        }
+        // Сводка снимается после закрытия, чтобы учесть файлы, доработанные после остановки наблюдения
+        RecoverySummary summary = watcher.summary();
+        logger.info("Watch finished for folder {}: {}", folderPath, summary);
+        return summary;
+    }
+
+    /**
+     * Отменяет переименования, записанные в журнале.
+     *
+     * @param journal Путь к журналу переименований.
+     * @return Сводка по отменённым переименованиям.
+     * @throws IOException Если журнал не удалось прочитать или дописать.
+     */
+    public RecoverySummary undoRecovery(Path journal) throws IOException {
+        logger.info("Undoing renames from journal: {}", journal);
+        RecoverySummary summary = RenameJournal.undo(journal);
+        logger.info("Undo finished for journal {}: {}", journal, summary);
+        return summary;
+    }
+
+    /**
+     * Определяет расширение файла на основе его содержимого.
+     *
+     * @param bytes Массив байт содержимого файла.
+     * @return Расширение файла или null, если не удалось определить.
+     */
+    public String detectExtension(byte[] bytes) {
+        return detectExtension(bytes, bytes.length);
+    }
+
+    /**
+     * Определяет расширение файла по прочитанным окнам заголовка.
+     *
+     * @param header Заголовок файла.
+     * @return Расширение файла или null, если не удалось определить.
+     */
+    public String detectExtension(FileHeader header) {
+        String extension = detectSignature(header);
+        if (extension.isEmpty()) {
+            // Текст проверяется только после промаха сигнатур, поэтому двоичные форматы определяются так же быстро
+            extension = TEXT.get().classify(header);
+        }
+        return extension;
+    }
+
+    /**
+     * Определяет расширение файла только по двоичным сигнатурам, без текстовых форматов.
+     * Используется там, где текст не может быть началом файла, например при поиске файлов в образе диска.
+     *
+     * @param header Заголовок файла.
+     * @return Расширение файла или пустая строка, если ни одна сигнатура не совпала.
+     */
+    public String detectSignature(FileHeader header) {
+        int signature = MATCHER.match(header);
+        return signature >= 0 ? MATCHER.extension(signature) : "";
+    }
+
+    /**
+     * Определяет расширение файла по первым {@code length} байтам массива.
+     * Сигнатуры с ненулевым смещением проверяются, только если массив его покрывает.
+     *
+     * @param bytes  Массив байт содержимого файла.
+     * @param length Количество действительных байтов в массиве.
+     * @return Расширение файла или null, если не удалось определить.
+     */
+    public String detectExtension(byte[] bytes, int length) {
+        int signature = MATCHER.match(bytes, length);
+        // Заголовок для текстовых форматов создаётся только после промаха сигнатур
+        return signature >= 0 ? MATCHER.extension(signature) : TEXT.get().classify(FileHeader.wrap(bytes, length));
+    }
+
+    private static List<ByteWindow> windows() {
+        List<ByteWindow> windows = new ArrayList<>(MATCHER.requiredWindows());
+        windows.add(new ByteWindow(0, TextClassifier.WINDOW));
+        return List.copyOf(windows);
+    }
+
+    private static Set<String> knownExtensionSet() {
+        Set<String> extensions = new HashSet<>(TextClassifier.EXTENSIONS);
+        for (Signature signature : MATCHER.signatures()) {
+            extensions.add(signature.extension().toLowerCase(Locale.ROOT));
+        }
+        return Set.copyOf(extensions);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.courr;
+
+/**
+ * Прочитанные окна заголовка файла.
+ * Байты всех окон хранятся подряд в одном буфере; окно, начинающееся со смещения 0,
+ * всегда располагается в начале буфера, поэтому его можно передавать детекторам как обычный массив.
+ * Экземпляр переиспользуется читателем {@link HeaderWindowReader} и не является потокобезопасным.
+ */
+final class FileHeader {
+    private final byte[] buffer;
+    private final long[] segmentOffsets;
+    private final int[] segmentPositions;
+    private final int[] segmentLengths;
+    private int segmentCount;
+    private long fileSize;
+
+    /**
+     * Создаёт пустой заголовок поверх переданного буфера.
+     *
+     * @param buffer       Буфер для байтов окон.
+     * @param maxSegments  Максимальное количество окон.
+     */
+    FileHeader(byte[] buffer, int maxSegments) {
+        this.buffer = buffer;
+        this.segmentOffsets = new long[maxSegments];
+        this.segmentPositions = new int[maxSegments];
+        this.segmentLengths = new int[maxSegments];
+    }
+
+    /**
+     * Создаёт заголовок, содержащий первые {@code length} байтов массива.
+     *
+     * @param bytes  Массив байтов начала файла.
+     * @param length Количество действительных байтов в массиве.
+     * @return Заголовок с одним окном со смещения 0.
+     */
+    static FileHeader wrap(byte[] bytes, int length) {
+        return wrap(bytes, length, length);
+    }
+
+    /**
+     * Создаёт заголовок, содержащий первые {@code length} байтов файла известного размера.
+     *
+     * @param bytes    Массив байтов начала файла.
+     * @param length   Количество действительных байтов в массиве.
+     * @param fileSize Размер файла в байтах.
+     * @return Заголовок с одним окном со смещения 0.
+     */
+    static FileHeader wrap(byte[] bytes, int length, long fileSize) {
+        FileHeader header = new FileHeader(bytes, 1);
+        header.reset(fileSize);
+        header.addSegment(0, 0, length);
+        return header;
+    }
+
+    /**
+     * Сбрасывает прочитанные окна перед чтением очередного файла.
+     *
+     * @param fileSize Размер файла в байтах.
+     */
+    void reset(long fileSize) {
+        this.segmentCount = 0;
+        this.fileSize = fileSize;
+    }
+
+    /**
+     * Регистрирует прочитанное окно.
+     *
+     * @param offset   Смещение окна в файле.
+     * @param position Позиция окна в буфере.
+     * @param length   Количество прочитанных байтов.
+     */
+    void addSegment(long offset, int position, int length) {
+        if (length <= 0) {
+            return;
+        }
+        segmentOffsets[segmentCount] = offset;
+        segmentPositions[segmentCount] = position;
+        segmentLengths[segmentCount] = length;
+        segmentCount++;
+    }
+
+    /**
+     * Возвращает буфер с байтами окон. Байты окна со смещения 0 начинаются с позиции 0.
+     *
+     * @return Буфер заголовка.
+     */
+    byte[] array() {
+        return buffer;
+    }
+
+    /**
+     * Возвращает количество байтов, непрерывно прочитанных с начала файла.
+     *
+     * @return Длина начального окна или 0, если оно не читалось.
+     */
+    int length() {
+        return segmentCount > 0 && segmentOffsets[0] == 0 ? segmentLengths[0] : 0;
+    }
+
+    /**
+     * Возвращает общее количество прочитанных байтов во всех окнах.
+     *
+     * @return Количество байтов.
+     */
+    int totalLength() {
+        int total = 0;
+        for (int i = 0; i < segmentCount; i++) {
+            total += segmentLengths[i];
+        }
+        return total;
+    }
+
+    /**
+     * Возвращает размер файла.
+     *
+     * @return Размер файла в байтах.
+     */
+    long fileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Возвращает позицию в буфере, с которой начинаются {@code length} байтов файла со смещения {@code offset}.
+     *
+     * @param offset Смещение в файле.
+     * @param length Требуемое количество байтов.
+     * @return Позиция в буфере или -1, если диапазон не был прочитан целиком.
+     */
+    int positionOf(long offset, int length) {
+        for (int i = 0; i < segmentCount; i++) {
+            long start = segmentOffsets[i];
+            if (offset >= start && offset + length <= start + segmentLengths[i]) {
+                return segmentPositions[i] + (int) (offset - start);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Возвращает количество байтов, прочитанных подряд начиная со смещения {@code offset}.
+     *
+     * @param offset Смещение в файле.
+     * @return Количество доступных байтов или 0, если байт по смещению не был прочитан.
+     */
+    int remaining(long offset) {
+        for (int i = 0; i < segmentCount; i++) {
+            long start = segmentOffsets[i];
+            if (offset >= start && offset < start + segmentLengths[i]) {
+                return (int) (start + segmentLengths[i] - offset);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Возвращает байт файла по смещению.
+     *
+     * @param offset Смещение в файле.
+     * @return Значение байта от 0 до 255 или -1, если байт не был прочитан.
+     */
+    int byteAt(long offset) {
+        int position = positionOf(offset, 1);
+        return position < 0 ? -1 : buffer[position] & 0xFF;
+    }
+}
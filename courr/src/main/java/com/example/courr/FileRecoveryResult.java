@@ -0,0 +1,34 @@
+package com.example.courr;
+
+import java.nio.file.Path;
+
+/**
+ * Результат обработки одного файла.
+ *
+ * @param source      Исходный путь к файлу.
+ * @param target      Новый путь к файлу, путь к его копии в выходном дереве {@link OutputTree} или null,
+ *                    если файл не перемещался и не копировался.
+ * @param extension   Определённое расширение или null, если формат не определён.
+ * @param status      Итог обработки.
+ * @param error       Ошибка обработки или null.
+ * @param size        Размер файла в байтах при обходе или -1, если он неизвестен.
+ * @param duplicateOf Первая копия того же содержимого, формат которой использован для файла, или null.
+ */
+record FileRecoveryResult(Path source, Path target, String extension, RecoveryStatus status, Exception error,
+                          long size, Path duplicateOf) {
+
+    /**
+     * Создаёт результат для файла, не найденного среди копий.
+     *
+     * @param source    Исходный путь к файлу.
+     * @param target    Новый путь к файлу или null, если файл не перемещался.
+     * @param extension Определённое расширение или null, если формат не определён.
+     * @param status    Итог обработки.
+     * @param error     Ошибка обработки или null.
+     * @param size      Размер файла в байтах при обходе или -1, если он неизвестен.
+     */
+    FileRecoveryResult(Path source, Path target, String extension, RecoveryStatus status, Exception error,
+                       long size) {
+        this(source, target, extension, status, error, size, null);
+    }
+}
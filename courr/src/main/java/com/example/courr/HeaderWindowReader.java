@@ -0,0 +1,176 @@
+package com.example.courr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Читает из файла только те окна байтов, которые нужны детекторам.
+ * Чтение выполняется позиционными вызовами {@link FileChannel#read(ByteBuffer, long)} в один переиспользуемый буфер,
+ * поэтому объём ввода-вывода на файл не зависит от его размера.
+ * Если нужен хеш всего содержимого, {@link #read(FileChannel, ContentHasher)} читает файл целиком
+ * последовательно и берёт окна из того же потока данных.
+ * Экземпляр не является потокобезопасным: каждому рабочему потоку нужен собственный читатель.
+ */
+final class HeaderWindowReader {
+
+    /**
+     * Окна, разделённые промежутком не больше этого значения, читаются одним вызовом.
+     */
+    private static final int MERGE_GAP = 512;
+
+    /**
+     * Размер порции последовательного чтения при хешировании содержимого.
+     */
+    private static final int STREAM_CHUNK = 1 << 16;
+
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] positions;
+    private final ByteBuffer buffer;
+    private final FileHeader header;
+    private ByteBuffer stream;
+
+    /**
+     * Создаёт читателя для заданного набора окон.
+     *
+     * @param windows Окна, объявленные детекторами.
+     */
+    HeaderWindowReader(Collection<ByteWindow> windows) {
+        List<ByteWindow> merged = merge(windows);
+        this.offsets = new long[merged.size()];
+        this.lengths = new int[merged.size()];
+        this.positions = new int[merged.size()];
+        int capacity = 0;
+        for (int i = 0; i < merged.size(); i++) {
+            offsets[i] = merged.get(i).offset();
+            lengths[i] = merged.get(i).length();
+            positions[i] = capacity;
+            capacity += lengths[i];
+        }
+        byte[] array = new byte[capacity];
+        this.buffer = ByteBuffer.wrap(array);
+        this.header = new FileHeader(array, merged.size());
+    }
+
+    /**
+     * Читает окна заголовка указанного файла.
+     *
+     * @param path Путь к файлу.
+     * @return Заголовок файла; действителен до следующего вызова чтения.
+     * @throws IOException Если файл не удалось открыть или прочитать.
+     */
+    FileHeader read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Читает окна заголовка из открытого канала.
+     *
+     * @param channel Канал файла.
+     * @return Заголовок файла; действителен до следующего вызова чтения.
+     * @throws IOException Если чтение завершилось ошибкой.
+     */
+    FileHeader read(FileChannel channel) throws IOException {
+        return read(channel, 0, channel.size());
+    }
+
+    /**
+     * Читает окна заголовка участка канала, например члена архива, хранящегося без сжатия.
+     * Смещения окон отсчитываются от начала участка; байты за его концом не читаются.
+     *
+     * @param channel Канал файла.
+     * @param base    Смещение начала участка в канале.
+     * @param size    Размер участка в байтах.
+     * @return Заголовок участка; действителен до следующего вызова чтения.
+     * @throws IOException Если чтение завершилось ошибкой.
+     */
+    FileHeader read(FileChannel channel, long base, long size) throws IOException {
+        header.reset(size);
+        int position = 0;
+        for (int i = 0; i < offsets.length && offsets[i] < size; i++) {
+            int length = (int) Math.min(lengths[i], size - offsets[i]);
+            buffer.limit(position + length).position(position);
+            long offset = offsets[i];
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, base + offset + buffer.position() - position);
+                if (read < 0) {
+                    break;
+                }
+            }
+            header.addSegment(offset, position, buffer.position() - position);
+            position += lengths[i];
+        }
+        return header;
+    }
+
+    /**
+     * Читает канал целиком с начала, передавая все байты в вычислитель хеша, и заполняет окна заголовка
+     * из тех же порций. Размер заголовка равен количеству фактически прочитанных байтов.
+     *
+     * @param channel Канал файла.
+     * @param hasher  Вычислитель хеша; сбрасывается перед чтением.
+     * @return Заголовок файла; действителен до следующего вызова чтения.
+     * @throws IOException Если чтение завершилось ошибкой.
+     */
+    FileHeader read(FileChannel channel, ContentHasher hasher) throws IOException {
+        if (stream == null) {
+            stream = ByteBuffer.allocate(STREAM_CHUNK);
+        }
+        byte[] chunk = stream.array();
+        byte[] array = buffer.array();
+        hasher.reset();
+        long position = 0;
+        int read;
+        while ((read = channel.read(stream.clear(), position)) >= 0) {
+            hasher.update(chunk, 0, read);
+            long end = position + read;
+            for (int i = 0; i < offsets.length && offsets[i] < end; i++) {
+                long from = Math.max(offsets[i], position);
+                long to = Math.min(offsets[i] + lengths[i], end);
+                if (from < to) {
+                    System.arraycopy(chunk, (int) (from - position), array,
+                            positions[i] + (int) (from - offsets[i]), (int) (to - from));
+                }
+            }
+            position = end;
+        }
+        header.reset(position);
+        for (int i = 0; i < offsets.length && offsets[i] < position; i++) {
+            header.addSegment(offsets[i], positions[i], (int) Math.min(lengths[i], position - offsets[i]));
+        }
+        return header;
+    }
+
+    /**
+     * Сортирует окна по смещению и объединяет перекрывающиеся и близко расположенные.
+     *
+     * @param windows Исходные окна.
+     * @return Объединённые окна в порядке возрастания смещения.
+     */
+    private static List<ByteWindow> merge(Collection<ByteWindow> windows) {
+        List<ByteWindow> sorted = new ArrayList<>(windows);
+        sorted.sort(Comparator.comparingLong(ByteWindow::offset));
+        List<ByteWindow> merged = new ArrayList<>();
+        for (ByteWindow window : sorted) {
+            if (!merged.isEmpty()) {
+                ByteWindow last = merged.get(merged.size() - 1);
+                if (window.offset() <= last.end() + MERGE_GAP) {
+                    long end = Math.max(last.end(), window.end());
+                    merged.set(merged.size() - 1, new ByteWindow(last.offset(), Math.toIntExact(end - last.offset())));
+                    continue;
+                }
+            }
+            merged.add(window);
+        }
+        return merged;
+    }
+}
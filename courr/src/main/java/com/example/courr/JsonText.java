@@ -0,0 +1,42 @@
+package com.example.courr;
+
+/**
+ * Запись строковых значений в текст JSON без сторонних библиотек.
+ */
+final class JsonText {
+
+    private JsonText() {
+    }
+
+    /**
+     * Дописывает строку JSON в кавычках или {@code null}.
+     *
+     * @param out   Буфер вывода.
+     * @param value Значение или null.
+     * @return Тот же буфер вывода.
+     */
+    static StringBuilder appendString(StringBuilder out, String value) {
+        if (value == null) {
+            return out.append("null");
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        return out.append('"');
+    }
+}
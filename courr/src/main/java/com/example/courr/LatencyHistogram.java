@@ -0,0 +1,90 @@
+package com.example.courr;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма длительностей с логарифмическими интервалами: в интервал {@code i} попадают значения
+ * от {@code 2^(i-1)} до {@code 2^i - 1} наносекунд. Запись выполняется без блокировок и стоит
+ * несколько атомарных операций, поэтому гистограмму можно обновлять на каждом файле.
+ * Процентили оцениваются с точностью до интервала, то есть не хуже чем вдвое.
+ */
+final class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Учитывает одно измерение.
+     *
+     * @param nanos Длительность в наносекундах; отрицательные значения считаются нулём.
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+        total.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Возвращает снимок гистограммы. Измерения, записанные во время снятия снимка, могут учитываться частично.
+     *
+     * @return Снимок гистограммы.
+     */
+    Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, total.sum(), max.get());
+    }
+
+    /**
+     * Снимок гистограммы.
+     *
+     * @param buckets    Количество измерений в каждом интервале.
+     * @param count      Общее количество измерений.
+     * @param totalNanos Сумма измерений в наносекундах.
+     * @param maxNanos   Наибольшее измерение в наносекундах.
+     */
+    record Snapshot(long[] buckets, long count, long totalNanos, long maxNanos) {
+
+        /**
+         * Возвращает среднюю длительность.
+         *
+         * @return Среднее в наносекундах или 0, если измерений не было.
+         */
+        long meanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * Оценивает процентиль сверху: возвращает верхнюю границу интервала, в который он попадает.
+         *
+         * @param quantile Доля от 0 до 1.
+         * @return Оценка в наносекундах, не больше наибольшего измерения.
+         */
+        long percentileNanos(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    long upper = i == 0 ? 0 : i >= 63 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(upper, maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -2,16 +2,23 @@ package com.example.courr;
 
 /**
  * Класс Launcher служит в качестве точки входа для приложения.
- * Он запускает основной метод класса {@link FileExtensionRecoveryAppFX}.
+ * Без аргументов он запускает основной метод класса {@link FileExtensionRecoveryAppFX},
+ * с аргументами — консольный режим {@link RecoveryCli}, не загружающий JavaFX.
  */
 public class Launcher {
     /**
      * Основной метод класса Launcher.
-     * Запускает основной метод класса {@link FileExtensionRecoveryAppFX}.
+     * Запускает графический интерфейс, если аргументы не переданы, иначе консольный режим.
+     * Класс {@link FileExtensionRecoveryAppFX} разрешается только при вызове, поэтому в консольном режиме
+     * классы JavaFX не загружаются.
      *
      * @param args Аргументы командной строки, переданные приложению.
      */
     public static void main(String[] args) {
-        FileExtensionRecoveryAppFX.main(args);
+        if (args.length > 0) {
+            RecoveryCli.main(args);
+        } else {
+            FileExtensionRecoveryAppFX.main(args);
+        }
     }
 }
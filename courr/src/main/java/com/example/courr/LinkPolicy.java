@@ -0,0 +1,19 @@
+package com.example.courr;
+
+/**
+ * Правило обработки символических ссылок при обходе каталога.
+ */
+enum LinkPolicy {
+    /**
+     * Символические ссылки пропускаются.
+     */
+    SKIP,
+    /**
+     * Обрабатываются ссылки на файлы; ссылки на каталоги не обходятся.
+     */
+    FILES,
+    /**
+     * Ссылки на файлы и каталоги обрабатываются как обычные записи; циклы обнаруживаются и пропускаются.
+     */
+    FOLLOW
+}
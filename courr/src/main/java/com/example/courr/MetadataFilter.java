@@ -0,0 +1,152 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Отбор файлов по имени и атрибутам, прочитанным при обходе каталога: размеру, времени изменения,
+ * шаблонам имени и уже имеющемуся расширению. Отклонённый файл не открывается и не читается.
+ * Если атрибутов нет, проверяются только имя и расширение.
+ */
+final class MetadataFilter {
+    private static final Logger logger = LogManager.getLogger(MetadataFilter.class.getName());
+
+    /**
+     * Причина, по которой файл отклонён.
+     */
+    private enum Reason {
+        SIZE,
+        NAME,
+        EXTENSION,
+        MODIFIED
+    }
+
+    private final long minSize;
+    private final long maxSize;
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final ExtensionPolicy extensionPolicy;
+    private final Set<String> knownExtensions;
+    private final Instant modifiedAfter;
+    private final Instant modifiedBefore;
+    private final LongAdder[] rejected = new LongAdder[Reason.values().length];
+
+    private MetadataFilter(RecoveryOptions options, Set<String> knownExtensions) {
+        this.minSize = options.minSize();
+        this.maxSize = options.maxSize();
+        this.includes = options.includes().stream().map(MetadataFilter::matcher).toList();
+        this.excludes = options.excludes().stream().map(MetadataFilter::matcher).toList();
+        this.extensionPolicy = options.extensionPolicy();
+        this.knownExtensions = knownExtensions;
+        this.modifiedAfter = options.modifiedAfter();
+        this.modifiedBefore = options.modifiedBefore();
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Создаёт фильтр по параметрам запуска.
+     *
+     * @param options         Параметры запуска.
+     * @param knownExtensions Расширения известных форматов для {@link ExtensionPolicy#UNRECOGNIZED}.
+     * @return Фильтр или null, если параметры не задают ни одного условия.
+     */
+    static MetadataFilter of(RecoveryOptions options, Set<String> knownExtensions) {
+        boolean any = options.minSize() > 0 || options.maxSize() < Long.MAX_VALUE
+                || !options.includes().isEmpty() || !options.excludes().isEmpty()
+                || options.extensionPolicy() != ExtensionPolicy.ALL
+                || options.modifiedAfter() != null || options.modifiedBefore() != null;
+        return any ? new MetadataFilter(options, knownExtensions) : null;
+    }
+
+    /**
+     * Создаёт сопоставитель имени файла. Шаблон с префиксом {@code regex:} — регулярное выражение,
+     * с префиксом {@code glob:} или без префикса — шаблон вида {@code *.tmp}.
+     *
+     * @param pattern Шаблон.
+     * @return Сопоставитель.
+     * @throws IllegalArgumentException Если шаблон записан неверно.
+     */
+    static PathMatcher matcher(String pattern) {
+        String syntax = pattern.startsWith("regex:") || pattern.startsWith("glob:") ? pattern : "glob:" + pattern;
+        return FileSystems.getDefault().getPathMatcher(syntax);
+    }
+
+    /**
+     * Проверяет, нужно ли обрабатывать файл. С шаблонами сравнивается имя файла без каталога.
+     *
+     * @param file       Путь к файлу.
+     * @param attributes Атрибуты файла, прочитанные при обходе, или null.
+     * @return true, если файл нужно открыть и определить его формат.
+     */
+    boolean accepts(Path file, BasicFileAttributes attributes) {
+        Reason reason = rejection(file, attributes);
+        if (reason == null) {
+            return true;
+        }
+        rejected[reason.ordinal()].increment();
+        return false;
+    }
+
+    /**
+     * Записывает в журнал количество отклонённых файлов по причинам.
+     */
+    void logSummary() {
+        StringBuilder text = new StringBuilder();
+        for (Reason reason : Reason.values()) {
+            text.append(text.length() == 0 ? "" : ", ").append(reason.name().toLowerCase(Locale.ROOT)).append('=')
+                    .append(rejected[reason.ordinal()].sum());
+        }
+        logger.info("Metadata filter rejected: {}", text);
+    }
+
+    private Reason rejection(Path file, BasicFileAttributes attributes) {
+        if (attributes != null) {
+            long size = attributes.size();
+            if (size < minSize || size > maxSize) {
+                return Reason.SIZE;
+            }
+            if (modifiedAfter != null || modifiedBefore != null) {
+                Instant modified = attributes.lastModifiedTime().toInstant();
+                if (modifiedAfter != null && modified.isBefore(modifiedAfter)
+                        || modifiedBefore != null && !modified.isBefore(modifiedBefore)) {
+                    return Reason.MODIFIED;
+                }
+            }
+        }
+        Path name = file.getFileName();
+        if (!includes.isEmpty() && includes.stream().noneMatch(matcher -> matcher.matches(name))
+                || excludes.stream().anyMatch(matcher -> matcher.matches(name))) {
+            return Reason.NAME;
+        }
+        if (extensionPolicy != ExtensionPolicy.ALL) {
+            String extension = extensionOf(name.toString());
+            boolean skip = extensionPolicy == ExtensionPolicy.MISSING ? extension != null
+                    : extension != null && knownExtensions.contains(extension.toLowerCase(Locale.ROOT));
+            if (skip) {
+                return Reason.EXTENSION;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает расширение имени или null; у имени, начинающегося с точки, например {@code .profile},
+     * расширения нет.
+     */
+    private static String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && dot < name.length() - 1 ? name.substring(dot + 1) : null;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Выходное дерево: вместо переименования на месте каждый файл исходного каталога записывается в тот же
+ * относительный каталог выходного дерева под исправленным именем, а исходные файлы не изменяются.
+ * <p>
+ * Данные передаются {@link FileChannel#transferTo}, что в Linux выполняется ядром без копирования
+ * в память процесса. Записи выполняют рабочие потоки обработчика, поэтому копирование идёт параллельно.
+ * <p>
+ * По умолчанию данные копируются. Жёсткие ссылки включаются явно ({@code --hard-links}): если исходный
+ * и выходной каталоги находятся в одном хранилище, копия создаётся ссылкой без записи данных, но тогда
+ * изменение копии меняет и исходный файл.
+ * <p>
+ * Имя копии не зависит от порядка обработки: файл с исправленным именем, которое уже занято другим файлом
+ * того же исходного каталога, получает суффикс {@code ~1}, {@code ~2} и так далее перед расширением.
+ * Записи, уже существующие в выходном каталоге, не заменяются: занятое ими имя тоже пропускается,
+ * поэтому повторный запуск в непустое дерево добавляет копии с суффиксами, а не перезаписывает прежние.
+ */
+final class OutputTree {
+    private static final Logger logger = LogManager.getLogger(OutputTree.class.getName());
+
+    private final Path sourceRoot;
+    private final Path outputRoot;
+    private final boolean links;
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+    private final LongAdder copied = new LongAdder();
+    private final LongAdder copiedBytes = new LongAdder();
+    private final LongAdder linked = new LongAdder();
+
+    /**
+     * Создаёт выходное дерево и его корневой каталог.
+     *
+     * @param sourceRoot Корневой каталог исходных файлов.
+     * @param outputRoot Корневой каталог выходного дерева; не может находиться внутри исходного.
+     * @param links      true, чтобы создавать жёсткие ссылки, если оба каталога в одном хранилище.
+     * @throws IOException Если каталог не удалось создать или он находится внутри исходного.
+     */
+    OutputTree(Path sourceRoot, Path outputRoot, boolean links) throws IOException {
+        Path source = sourceRoot.toAbsolutePath().normalize();
+        Path output = outputRoot.toAbsolutePath().normalize();
+        if (output.startsWith(source)) {
+            throw new FileSystemException(outputRoot.toString(), sourceRoot.toString(),
+                    "output tree must not be inside the source folder");
+        }
+        Files.createDirectories(outputRoot);
+        this.sourceRoot = sourceRoot;
+        this.outputRoot = outputRoot;
+        this.links = links && Files.getFileStore(sourceRoot).equals(Files.getFileStore(outputRoot));
+        directories.add(outputRoot);
+        logger.info("Output tree {}: {}", outputRoot, this.links ? "hard links within the file store" : "copies");
+    }
+
+    /**
+     * Записывает копию файла в выходное дерево. Существующие записи выходного каталога не заменяются:
+     * если имя уже занято, копия получает следующий свободный суффикс {@code ~n}.
+     *
+     * @param source    Исходный файл внутри исходного каталога.
+     * @param channel   Открытый для чтения канал исходного файла.
+     * @param extension Расширение, добавляемое к имени, или null, если имя не меняется.
+     * @param modified  Время изменения исходного файла, переносимое на скопированные данные, или null.
+     * @return Путь к копии.
+     * @throws IOException Если копию не удалось записать.
+     */
+    Path copy(Path source, FileChannel channel, String extension, FileTime modified) throws IOException {
+        Path directory = outputRoot.resolve(sourceRoot.relativize(source.getParent()).toString());
+        if (!directories.contains(directory)) {
+            Files.createDirectories(directory);
+            directories.add(directory);
+        }
+        String name = source.getFileName().toString();
+        String stem = name;
+        String suffix = extension == null ? "" : "." + extension;
+        if (extension == null) {
+            // Суффикс вставляется перед расширением, которое уже есть у имени
+            int dot = name.lastIndexOf('.');
+            if (dot > 0) {
+                stem = name.substring(0, dot);
+                suffix = name.substring(dot);
+            }
+        }
+        for (int n = 0; ; n++) {
+            String candidate = n == 0 ? stem + suffix : stem + "~" + n + suffix;
+            // Имя не должно совпасть с другим файлом исходного каталога или с именем, которое тот может получить
+            if (n > 0 ? exists(source.resolveSibling(candidate)) || exists(source.resolveSibling(stem + "~" + n))
+                    : extension != null && exists(source.resolveSibling(candidate))) {
+                continue;
+            }
+            try {
+                return write(source, channel, directory.resolve(candidate), modified);
+            } catch (FileAlreadyExistsException e) {
+                logger.debug("Output entry already exists: {}", e.getFile());
+            }
+        }
+    }
+
+    /**
+     * Создаёт ссылку или копию под заданным именем.
+     *
+     * @throws FileAlreadyExistsException Если имя в выходном каталоге уже занято.
+     */
+    private Path write(Path source, FileChannel channel, Path target, FileTime modified) throws IOException {
+        if (links) {
+            try {
+                Files.createLink(target, source);
+                linked.increment();
+                return target;
+            } catch (FileAlreadyExistsException e) {
+                throw e;
+            } catch (IOException | UnsupportedOperationException e) {
+                // Вложенная точка монтирования или запрет ссылок на чужие файлы: данные копируются
+                logger.debug("Cannot link {} to {}: {}", target, source, e.toString());
+            }
+        }
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            try {
+                long size = channel.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = channel.transferTo(position, size - position, out);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                }
+                copiedBytes.add(position);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(target);
+                throw e;
+            }
+        }
+        if (modified != null) {
+            Files.setLastModifiedTime(target, modified);
+        }
+        copied.increment();
+        return target;
+    }
+
+    /**
+     * Записывает в журнал количество созданных копий и ссылок.
+     */
+    void logSummary() {
+        logger.info("Output tree {}: {} copied ({} bytes), {} linked", outputRoot, copied.sum(), copiedBytes.sum(),
+                linked.sum());
+    }
+
+    private static boolean exists(Path path) {
+        return Files.exists(path, LinkOption.NOFOLLOW_LINKS);
+    }
+}
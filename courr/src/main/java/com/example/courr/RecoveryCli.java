@@ -0,0 +1,872 @@
+package com.example.courr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Консольный режим восстановления расширений без графического интерфейса.
+ * Класс не ссылается на классы {@code javafx.*}, поэтому при запуске из командной строки
+ * инструментарий JavaFX не загружается и не инициализируется.
+ * <p>
+ * Коды завершения: {@link #EXIT_OK}, {@link #EXIT_FAILURES}, {@link #EXIT_USAGE}, {@link #EXIT_FATAL}.
+ */
+final class RecoveryCli {
+    /**
+     * Все файлы обработаны без ошибок.
+     */
+    static final int EXIT_OK = 0;
+    /**
+     * Часть файлов не удалось обработать.
+     */
+    static final int EXIT_FAILURES = 1;
+    /**
+     * Неверные аргументы командной строки.
+     */
+    static final int EXIT_USAGE = 2;
+    /**
+     * Запуск невозможен или его итог неполон: директория, журнал или отчёт недоступны либо не дописаны.
+     */
+    static final int EXIT_FATAL = 3;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: courr [recover] [options] <folder>...",
+            "       courr watch [options] <folder>",
+            "       courr undo [options] <journal>",
+            "       courr inspect [options] <archive>...",
+            "       courr carve [options] <image>",
+            "       courr coordinate [options] <folder>",
+            "       courr work [options] --connect <host:port>",
+            "       courr estimate [options] <folder>",
+            "       courr serve [options]",
+            "       courr loadtest [options] --connect <host:port> <sample>...",
+            "",
+            "Options:",
+            "  -r, --recursive          descend into subdirectories",
+            "      --max-depth <n>      maximum depth for --recursive",
+            "      --links <policy>     symbolic links: skip, files, follow (default skip)",
+            "      --no-hidden          skip hidden files and directories",
+            "      --size <min>..<max>  process only files in this size range, e.g. 1..64M, 4k.. or ..1G",
+            "      --include <pattern>  process only file names matching a glob (or regex:<expr>); repeatable",
+            "      --exclude <pattern>  skip file names matching a glob (or regex:<expr>); repeatable",
+            "      --existing <policy>  by current extension: all, unrecognized (skip known extensions)",
+            "                           or missing (only files without an extension); default all",
+            "      --modified-after <time>   skip files modified before <time> (2024-01-31 or ISO instant)",
+            "      --modified-before <time>  skip files modified at or after <time>",
+            "  -j, --threads <n>        number of worker threads",
+            "      --no-device-limits   do not adapt parallelism to each disk, SSD or network mount",
+            "      --journal <file>     write a rename journal for undo and resume",
+            "      --resume             skip renames already completed in --journal",
+            "      --cache <file>       reuse classification results from previous runs",
+            "      --report <file>      write one record per file to a report",
+            "      --report-format <f>  report format: jsonl or csv (default jsonl)",
+            "      --validate           confirm formats by reading a few structure fields",
+            "      --dedup <mode>       hash whole files and reuse formats of duplicates:",
+            "                           report or link (replace duplicates with hard links)",
+            "      --settle <ms>        watch: time a file must stay unchanged",
+            "      --rewrite <dir>      inspect: write archives with corrected names to <dir>",
+            "  -o, --output <dir>       recover: copy files with corrected names into a mirrored tree in <dir>",
+            "                           instead of renaming them; carve: extract carved files to <dir>",
+            "      --hard-links         recover --output: hard-link files on the same file system instead of copying",
+            "      --align <bytes>      carve: alignment of file starts (default 512, 1 for any offset)",
+            "      --max-size <MiB>     carve: maximum size of a carved file (default 64)",
+            "      --listen <[host:]port>  coordinate, serve: address to listen on (default 127.0.0.1:0)",
+            "      --connect <host:port>   work: address of the coordinator; loadtest: address of the server",
+            "      --queue <n>          serve: requests waiting for a thread before 503 (default 1024)",
+            "      --batch <n>          loadtest: samples per request (default 1)",
+            "      --duration <s>       loadtest: length of the test in seconds (default 10);",
+            "                           estimate: time spent sampling (default 10)",
+            "      --seed <n>           estimate: random seed, for a repeatable sample",
+            "      --format <format>    summary format: text or json (default text)",
+            "  -v, --verbose            print every file, not only renames and failures",
+            "  -q, --quiet              print only the summary",
+            "  -h, --help               print this help");
+
+    private static final String LOG_CONFIGURATION = "log4j2.configurationFile";
+    private static final String LOG_CONTEXT_FACTORY = "log4j2.loggerContextFactory";
+
+    /**
+     * Устанавливается обработчиком завершения: процесс уже завершается, и вызывать {@link System#exit} нельзя.
+     */
+    private static volatile boolean exiting;
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final RecoveryOptions options = new RecoveryOptions();
+    private final List<String> operands = new ArrayList<>();
+    private String command = "recover";
+    private Path rewriteDirectory;
+    private Path outputDirectory;
+    private int carveAlignment = 512;
+    private int carveMaxMegabytes = 64;
+    private InetSocketAddress listenAddress;
+    private InetSocketAddress coordinatorAddress;
+    private int queueCapacity = 1024;
+    private int batchSize = 1;
+    private int durationSeconds = 10;
+    private Long seed;
+    private boolean json;
+    private boolean verbose;
+    private boolean quiet;
+
+    private RecoveryCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Выполняет команду и завершает процесс с соответствующим кодом.
+     *
+     * @param args Аргументы командной строки.
+     */
+    public static void main(String[] args) {
+        // Файловый журнал log4j-core настраивается дольше, чем выполняется короткий запуск, и создаёт ./logs
+        // в текущем каталоге. Консольный режим пишет журнал простым регистратором log4j-api в stderr
+        // (log4j2.simplelog.properties), если конфигурация журнала не задана явно.
+        if (System.getProperty(LOG_CONFIGURATION) == null && System.getProperty(LOG_CONTEXT_FACTORY) == null) {
+            System.setProperty(LOG_CONTEXT_FACTORY, "org.apache.logging.log4j.simple.SimpleLoggerContextFactory");
+        }
+        int status = run(args);
+        if (!exiting) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Выполняет команду, описанную аргументами командной строки.
+     *
+     * @param args Аргументы командной строки.
+     * @return Код завершения.
+     */
+    static int run(String[] args) {
+        RecoveryCli cli = new RecoveryCli(System.out, System.err);
+        try {
+            if (!cli.parse(args)) {
+                cli.out.println(USAGE);
+                return EXIT_OK;
+            }
+        } catch (IllegalArgumentException e) {
+            cli.err.println("courr: " + e.getMessage());
+            cli.err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        return cli.execute();
+    }
+
+    /**
+     * Разбирает аргументы.
+     *
+     * @return false, если запрошена справка.
+     * @throws IllegalArgumentException Если аргументы неверны.
+     */
+    private boolean parse(String[] args) {
+        int i = 0;
+        if (args.length > 0 && List.of("recover", "watch", "undo", "inspect", "carve", "coordinate", "work",
+                "estimate", "serve", "loadtest")
+                .contains(args[0])) {
+            command = args[0];
+            i++;
+        }
+        for (; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h", "--help" -> {
+                    return false;
+                }
+                case "-r", "--recursive" -> options.recursive(true);
+                case "--max-depth" -> options.maxDepth(intValue(arg, value(args, ++i, arg)));
+                case "--links" -> options.linkPolicy(linkPolicy(value(args, ++i, arg)));
+                case "--no-hidden" -> options.includeHidden(false);
+                case "--size" -> sizeRange(arg, value(args, ++i, arg));
+                case "--include" -> options.include(value(args, ++i, arg));
+                case "--exclude" -> options.exclude(value(args, ++i, arg));
+                case "--existing" -> options.extensionPolicy(extensionPolicy(value(args, ++i, arg)));
+                case "--modified-after" -> options.modifiedAfter(instant(arg, value(args, ++i, arg)));
+                case "--modified-before" -> options.modifiedBefore(instant(arg, value(args, ++i, arg)));
+                case "-j", "--threads" -> options.parallelism(intValue(arg, value(args, ++i, arg)));
+                case "--no-device-limits" -> options.deviceLimits(false);
+                case "--hard-links" -> options.outputLinks(true);
+                case "--journal" -> options.journal(Path.of(value(args, ++i, arg)));
+                case "--resume" -> options.resume(true);
+                case "--cache" -> options.cache(Path.of(value(args, ++i, arg)));
+                case "--report" -> options.report(Path.of(value(args, ++i, arg)));
+                case "--report-format" -> options.reportFormat(reportFormat(value(args, ++i, arg)));
+                case "--validate" -> options.validate(true);
+                case "--dedup" -> options.duplicates(duplicatePolicy(value(args, ++i, arg)));
+                case "--settle" -> options.watchSettleMillis(intValue(arg, value(args, ++i, arg)));
+                case "--rewrite" -> rewriteDirectory = Path.of(value(args, ++i, arg));
+                case "-o", "--output" -> outputDirectory = Path.of(value(args, ++i, arg));
+                case "--align" -> carveAlignment = intValue(arg, value(args, ++i, arg));
+                case "--max-size" -> carveMaxMegabytes = intValue(arg, value(args, ++i, arg));
+                case "--listen" -> listenAddress = address(arg, value(args, ++i, arg), "127.0.0.1");
+                case "--connect" -> coordinatorAddress = address(arg, value(args, ++i, arg), null);
+                case "--queue" -> queueCapacity = intValue(arg, value(args, ++i, arg));
+                case "--batch" -> batchSize = intValue(arg, value(args, ++i, arg));
+                case "--duration" -> durationSeconds = intValue(arg, value(args, ++i, arg));
+                case "--seed" -> seed = (long) intValue(arg, value(args, ++i, arg));
+                case "--format" -> json = format(value(args, ++i, arg));
+                case "-v", "--verbose" -> verbose = true;
+                case "-q", "--quiet" -> quiet = true;
+                case "--" -> {
+                    for (i++; i < args.length; i++) {
+                        operands.add(args[i]);
+                    }
+                }
+                default -> {
+                    if (arg.startsWith("-") && arg.length() > 1) {
+                        throw new IllegalArgumentException("unknown option " + arg);
+                    }
+                    operands.add(arg);
+                }
+            }
+        }
+        if ((command.equals("work") || command.equals("loadtest")) && coordinatorAddress == null) {
+            throw new IllegalArgumentException(command + " requires --connect");
+        }
+        if (command.equals("work") || command.equals("serve")) {
+            if (!operands.isEmpty()) {
+                throw new IllegalArgumentException(command.equals("work")
+                        ? "work takes its folders from the coordinator" : "serve takes no paths");
+            }
+        } else if (operands.isEmpty()) {
+            throw new IllegalArgumentException(command.equals("undo") ? "journal is required"
+                    : command.equals("inspect") ? "archive is required"
+                    : command.equals("carve") ? "image is required"
+                    : command.equals("loadtest") ? "sample file is required" : "folder is required");
+        }
+        if (!command.equals("recover") && !command.equals("inspect") && !command.equals("loadtest")
+                && operands.size() > 1) {
+            throw new IllegalArgumentException(command + " accepts a single path");
+        }
+        if (rewriteDirectory != null && !command.equals("inspect")) {
+            throw new IllegalArgumentException("--rewrite requires the inspect command");
+        }
+        if (outputDirectory != null && !command.equals("carve") && !command.equals("recover")) {
+            throw new IllegalArgumentException("--output requires the recover or carve command");
+        }
+        if (outputDirectory == null && options.outputLinks()) {
+            throw new IllegalArgumentException("--hard-links requires --output");
+        }
+        if (outputDirectory != null && command.equals("recover")) {
+            if (operands.size() > 1) {
+                throw new IllegalArgumentException("--output accepts a single folder");
+            }
+            if (options.journal() != null) {
+                throw new IllegalArgumentException("--output leaves sources unchanged and does not use --journal");
+            }
+            options.output(outputDirectory);
+        }
+        if (listenAddress != null && !command.equals("coordinate") && !command.equals("serve")) {
+            throw new IllegalArgumentException("--listen requires the coordinate or serve command");
+        }
+        if (coordinatorAddress != null && !command.equals("work") && !command.equals("loadtest")) {
+            throw new IllegalArgumentException("--connect requires the work or loadtest command");
+        }
+        if (queueCapacity <= 0 || batchSize <= 0 || batchSize > ClassificationServer.MAX_BATCH
+                || durationSeconds <= 0) {
+            throw new IllegalArgumentException("--queue, --batch and --duration must be positive");
+        }
+        if (command.equals("coordinate") && options.cache() != null) {
+            throw new IllegalArgumentException("--cache is not supported by the coordinate command");
+        }
+        if (command.equals("work") && (options.journal() != null || options.report() != null)) {
+            throw new IllegalArgumentException("--journal and --report are kept by the coordinator; "
+                    + "pass them to the coordinate command");
+        }
+        if ((command.equals("coordinate") || command.equals("work")) && options.duplicates() != DuplicatePolicy.OFF) {
+            throw new IllegalArgumentException("--dedup is not supported by the " + command + " command");
+        }
+        if (carveAlignment <= 0 || carveMaxMegabytes <= 0) {
+            throw new IllegalArgumentException("--align and --max-size must be positive");
+        }
+        if (options.resume() && options.journal() == null) {
+            throw new IllegalArgumentException("--resume requires --journal");
+        }
+        return true;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " requires a value");
+        }
+        return args[index];
+    }
+
+    private static int intValue(String option, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number: " + value);
+        }
+    }
+
+    /**
+     * Разбирает адрес вида {@code host:port} или, если задан узел по умолчанию, {@code port}.
+     */
+    private static InetSocketAddress address(String option, String value, String defaultHost) {
+        int colon = value.lastIndexOf(':');
+        if (colon < 0 && defaultHost == null) {
+            throw new IllegalArgumentException(option + " expects host:port: " + value);
+        }
+        String host = colon < 0 ? defaultHost : value.substring(0, colon);
+        int port = intValue(option, value.substring(colon + 1));
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException(option + " expects a port from 0 to 65535: " + value);
+        }
+        return new InetSocketAddress(host, port);
+    }
+
+    /**
+     * Разбирает диапазон размеров {@code min..max}; любая граница может отсутствовать,
+     * к числу можно добавить множитель {@code k}, {@code M} или {@code G}.
+     */
+    private void sizeRange(String option, String value) {
+        int dots = value.indexOf("..");
+        if (dots < 0) {
+            throw new IllegalArgumentException(option + " expects <min>..<max>: " + value);
+        }
+        String min = value.substring(0, dots);
+        String max = value.substring(dots + 2);
+        options.sizeRange(min.isEmpty() ? 0 : bytes(option, min), max.isEmpty() ? Long.MAX_VALUE : bytes(option, max));
+    }
+
+    private static long bytes(String option, String value) {
+        char unit = Character.toUpperCase(value.charAt(value.length() - 1));
+        int shift = unit == 'K' ? 10 : unit == 'M' ? 20 : unit == 'G' ? 30 : 0;
+        try {
+            long number = Long.parseLong(shift == 0 ? value : value.substring(0, value.length() - 1));
+            if (number < 0 || number > Long.MAX_VALUE >> shift) {
+                throw new NumberFormatException();
+            }
+            return number << shift;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a size such as 4096, 4k, 64M or 1G: " + value);
+        }
+    }
+
+    /**
+     * Разбирает момент времени: дату (начало дня в часовом поясе системы), дату и время без пояса или момент ISO 8601.
+     */
+    private static Instant instant(String option, String value) {
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant();
+            }
+            if (value.endsWith("Z") || value.indexOf('+', 10) > 0 || value.indexOf('-', 10) > 0) {
+                return OffsetDateTime.parse(value).toInstant();
+            }
+            return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(option + " expects a date such as 2024-01-31 or 2024-01-31T12:00:00Z: "
+                    + value);
+        }
+    }
+
+    private static ExtensionPolicy extensionPolicy(String value) {
+        try {
+            return ExtensionPolicy.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("--existing expects all, unrecognized or missing: " + value);
+        }
+    }
+
+    private static LinkPolicy linkPolicy(String value) {
+        try {
+            return LinkPolicy.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("--links expects skip, files or follow: " + value);
+        }
+    }
+
+    private static DuplicatePolicy duplicatePolicy(String value) {
+        if (value.equalsIgnoreCase("report") || value.equalsIgnoreCase("link")) {
+            return DuplicatePolicy.valueOf(value.toUpperCase(Locale.ROOT));
+        }
+        throw new IllegalArgumentException("--dedup expects report or link: " + value);
+    }
+
+    private static ReportFormat reportFormat(String value) {
+        try {
+            return ReportFormat.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("--report-format expects jsonl or csv: " + value);
+        }
+    }
+
+    private static boolean format(String value) {
+        switch (value) {
+            case "text":
+                return false;
+            case "json":
+                return true;
+            default:
+                throw new IllegalArgumentException("--format expects text or json: " + value);
+        }
+    }
+
+    private int execute() {
+        boolean files = !command.equals("recover") && !command.equals("watch") && !command.equals("coordinate")
+                && !command.equals("estimate");
+        for (String operand : operands) {
+            Path path = Path.of(operand);
+            boolean exists = files ? Files.isRegularFile(path) : Files.isDirectory(path);
+            if (!exists) {
+                err.println("courr: " + (command.equals("undo") ? "journal not found: "
+                        : files ? "file not found: " : "not a directory: ") + operand);
+                return EXIT_FATAL;
+            }
+        }
+        for (Path directory : new Path[]{rewriteDirectory, outputDirectory}) {
+            if (directory != null && !Files.isDirectory(directory)) {
+                err.println("courr: not a directory: " + directory);
+                return EXIT_FATAL;
+            }
+        }
+        if (options.output() != null && options.output().toAbsolutePath().normalize()
+                .startsWith(Path.of(operands.get(0)).toAbsolutePath().normalize())) {
+            err.println("courr: --output must not be inside the source folder: " + options.output());
+            return EXIT_USAGE;
+        }
+        // Время от старта JVM до начала работы: разбор аргументов и загрузка таблицы сигнатур
+        FileExtensionRecoveryService service = new FileExtensionRecoveryService();
+        long startupMillis = startupMillis();
+        if (command.equals("inspect")) {
+            return inspect(service, startupMillis);
+        }
+        if (command.equals("carve")) {
+            return carve(service, startupMillis);
+        }
+        if (command.equals("estimate")) {
+            return estimate(service, startupMillis);
+        }
+        if (command.equals("serve")) {
+            return serve(service);
+        }
+        if (command.equals("loadtest")) {
+            return loadTest(startupMillis);
+        }
+        Consumer<FileRecoveryResult> listener = quiet || json ? result -> {
+        } : this::print;
+        RecoverySummary summary = RecoverySummary.empty();
+        try {
+            switch (command) {
+                case "undo" -> summary = service.undoRecovery(Path.of(operands.get(0)));
+                case "watch" -> summary = watch(service, listener);
+                case "coordinate" -> summary = coordinate(listener);
+                case "work" -> summary = work(service, listener);
+                default -> {
+                    for (String folder : operands) {
+                        summary = summary.plus(service.recoverExtensions(folder, options, listener));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            err.println("courr: " + e.getMessage());
+            return EXIT_FATAL;
+        }
+        out.println(json ? toJson(summary, startupMillis) : summary + " startup=" + startupMillis + "ms");
+        return summary.isSuccessful() ? EXIT_OK : EXIT_FAILURES;
+    }
+
+    /**
+     * Наблюдает за директорией до завершения процесса. Обработчик завершения прерывает поток наблюдения
+     * и дожидается, пока будут сохранены журнал, кэш и выведена сводка.
+     */
+    private RecoverySummary watch(FileExtensionRecoveryService service, Consumer<FileRecoveryResult> listener)
+            throws IOException {
+        interruptOnShutdown();
+        return service.watchExtensions(operands.get(0), options, listener);
+    }
+
+    /**
+     * Раздаёт части дерева рабочим процессам {@code courr work}. Адрес для подключения рабочих выводится
+     * первой строкой, чтобы сценарий запуска мог передать его рабочим.
+     */
+    private RecoverySummary coordinate(Consumer<FileRecoveryResult> listener) throws IOException {
+        InetSocketAddress address = listenAddress != null ? listenAddress : new InetSocketAddress("127.0.0.1", 0);
+        try (ShardCoordinator coordinator = new ShardCoordinator(Path.of(operands.get(0)), options, listener,
+                address)) {
+            InetSocketAddress bound = coordinator.address();
+            out.println("listening " + bound.getHostString() + ":" + bound.getPort());
+            out.flush();
+            Thread hook = interruptOnShutdown();
+            try {
+                return coordinator.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return coordinator.summary();
+            } finally {
+                removeShutdownHook(hook);
+            }
+        }
+    }
+
+    /**
+     * Обрабатывает части дерева, которые выдаёт координатор, пока он не сообщит об окончании работы.
+     */
+    private RecoverySummary work(FileExtensionRecoveryService service, Consumer<FileRecoveryResult> listener)
+            throws IOException {
+        Thread hook = null;
+        try (ShardWorker worker = new ShardWorker(service, coordinatorAddress, options.parallelism())) {
+            hook = interruptOnShutdown();
+            return worker.run(listener);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RecoverySummary.empty();
+        } finally {
+            removeShutdownHook(hook);
+        }
+    }
+
+    /**
+     * Регистрирует обработчик завершения, который прерывает текущий поток и дожидается, пока будут сохранены
+     * журнал и кэш и выведена сводка.
+     *
+     * @return Обработчик; команда, завершившаяся сама, снимает его {@link #removeShutdownHook(Thread)}, иначе
+     * он ждал бы поток, который уже вызвал {@link System#exit}.
+     */
+    private static Thread interruptOnShutdown() {
+        Thread main = Thread.currentThread();
+        Thread hook = new Thread(() -> {
+            exiting = true;
+            main.interrupt();
+            try {
+                main.join(Duration.ofSeconds(30).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "recovery-shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+        return hook;
+    }
+
+    private static void removeShutdownHook(Thread hook) {
+        if (hook == null) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException e) {
+            // Процесс уже завершается: обработчик дождётся вывода сводки
+        }
+    }
+
+    /**
+     * Определяет форматы файлов внутри архивов и, если задан {@code --rewrite}, записывает копии архивов
+     * с исправленными именами.
+     */
+    private int inspect(FileExtensionRecoveryService service, long startupMillis) {
+        long start = System.nanoTime();
+        long[] counts = new long[3];
+        Consumer<ArchiveEntry> listener = entry -> {
+            counts[0]++;
+            if (entry.extension() != null) {
+                counts[1]++;
+            }
+            if (entry.correctedName() != null) {
+                counts[2]++;
+            }
+            if (!quiet && !json && (verbose || entry.extension() != null)) {
+                out.println(String.format("%-6s %12d  %s%s", entry.extension() == null ? "?" : entry.extension(),
+                        entry.size(), entry.name(), entry.correctedName() == null ? ""
+                                : " -> " + entry.correctedName()));
+            }
+        };
+        try (ArchiveInspector inspector = new ArchiveInspector(service)) {
+            for (String operand : operands) {
+                Path archive = Path.of(operand);
+                Path output = rewriteDirectory == null ? null : rewriteDirectory.resolve(archive.getFileName());
+                inspector.inspect(archive, output, listener);
+                if (output != null && !quiet && !json) {
+                    out.println("written  " + output);
+                }
+            }
+        } catch (IOException e) {
+            err.println("courr: " + e.getMessage());
+            return EXIT_FATAL;
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        if (json) {
+            StringBuilder text = new StringBuilder(256);
+            text.append("{\"command\":\"inspect\",\"paths\":[");
+            for (int i = 0; i < operands.size(); i++) {
+                JsonText.appendString(text.append(i == 0 ? "" : ","), operands.get(i));
+            }
+            text.append("],\"entries\":").append(counts[0])
+                    .append(",\"identified\":").append(counts[1])
+                    .append(",\"misnamed\":").append(counts[2])
+                    .append(",\"rewritten\":").append(rewriteDirectory != null)
+                    .append(",\"elapsedMs\":").append(elapsedMillis)
+                    .append(",\"startupMs\":").append(startupMillis)
+                    .append('}');
+            out.println(text);
+        } else {
+            out.println(String.format("entries=%d identified=%d misnamed=%d elapsed=%dms startup=%dms",
+                    counts[0], counts[1], counts[2], elapsedMillis, startupMillis));
+        }
+        return EXIT_OK;
+    }
+
+    /**
+     * Вырезает файлы из образа диска и, если задан {@code --output}, извлекает их.
+     */
+    private int carve(FileExtensionRecoveryService service, long startupMillis) {
+        long start = System.nanoTime();
+        long[] counts = new long[3];
+        Consumer<CarvedFile> listener = file -> {
+            counts[0]++;
+            counts[1] += file.length();
+            if (file.truncated()) {
+                counts[2]++;
+            }
+            if (!quiet && !json) {
+                out.println(String.format("%-6s %#014x %12d%s%s", file.extension(), file.offset(), file.length(),
+                        file.truncated() ? "  truncated" : "", file.path() == null ? "" : "  " + file.path()));
+            }
+        };
+        long scanned;
+        try {
+            FileCarver carver = new FileCarver(service, outputDirectory, carveAlignment,
+                    (long) carveMaxMegabytes << 20);
+            scanned = carver.carve(Path.of(operands.get(0)), listener);
+        } catch (IOException e) {
+            err.println("courr: " + e.getMessage());
+            return EXIT_FATAL;
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        double megabytesPerSecond = scanned / 1048576.0 / Math.max(1e-3, elapsedMillis / 1000.0);
+        if (json) {
+            StringBuilder text = new StringBuilder(256);
+            text.append("{\"command\":\"carve\",\"paths\":[");
+            JsonText.appendString(text, operands.get(0));
+            text.append("],\"carved\":").append(counts[0])
+                    .append(",\"carvedBytes\":").append(counts[1])
+                    .append(",\"truncated\":").append(counts[2])
+                    .append(",\"scannedBytes\":").append(scanned)
+                    .append(",\"elapsedMs\":").append(elapsedMillis)
+                    .append(",\"startupMs\":").append(startupMillis)
+                    .append('}');
+            out.println(text);
+        } else {
+            out.println(String.format(Locale.ROOT,
+                    "carved=%d bytes=%d truncated=%d scanned=%d elapsed=%dms rate=%.1fMB/s startup=%dms",
+                    counts[0], counts[1], counts[2], scanned, elapsedMillis, megabytesPerSecond, startupMillis));
+        }
+        return EXIT_OK;
+    }
+
+    /**
+     * Оценивает состав дерева и длительность восстановления по случайной выборке файлов.
+     */
+    private int estimate(FileExtensionRecoveryService service, long startupMillis) {
+        TypeEstimator.Estimate estimate;
+        try {
+            long randomSeed = seed != null ? seed : System.nanoTime();
+            estimate = new TypeEstimator(service, options, randomSeed)
+                    .estimate(Path.of(operands.get(0)), durationSeconds * 1000L, Long.MAX_VALUE);
+        } catch (IOException e) {
+            err.println("courr: " + e.getMessage());
+            return EXIT_FATAL;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_FATAL;
+        }
+        if (json) {
+            StringBuilder text = new StringBuilder(512);
+            text.append("{\"command\":\"estimate\",\"paths\":[");
+            JsonText.appendString(text, operands.get(0));
+            text.append("],\"walks\":").append(estimate.walks())
+                    .append(",\"samples\":").append(estimate.samples())
+                    .append(",\"effectiveSamples\":").append(Math.round(estimate.effectiveSamples()))
+                    .append(",\"files\":").append(Math.round(estimate.files()))
+                    .append(",\"filesLow\":").append(Math.round(estimate.filesLow()))
+                    .append(",\"filesHigh\":").append(Math.round(estimate.filesHigh()))
+                    .append(",\"bytes\":").append(Math.round(estimate.bytes()))
+                    .append(",\"types\":[");
+            for (int i = 0; i < estimate.shares().size(); i++) {
+                TypeEstimator.Share share = estimate.shares().get(i);
+                text.append(i == 0 ? "" : ",").append("{\"extension\":");
+                JsonText.appendString(text, share.extension().isEmpty() ? null : share.extension());
+                text.append(",\"samples\":").append(share.samples())
+                        .append(String.format(Locale.ROOT, ",\"share\":%.4f,\"low\":%.4f,\"high\":%.4f",
+                                share.share(), share.low(), share.high()))
+                        .append(",\"files\":").append(Math.round(share.files()))
+                        .append('}');
+            }
+            text.append("],\"fileUs\":").append(estimate.fileNanos() / 1000)
+                    .append(",\"entryUs\":").append(estimate.entryNanos() / 1000)
+                    .append(",\"threads\":").append(estimate.threads())
+                    .append(",\"projectedClassifyMs\":").append(estimate.projectedClassifyNanos() / 1_000_000)
+                    .append(",\"projectedScanMs\":").append(estimate.projectedScanNanos() / 1_000_000)
+                    .append(",\"elapsedMs\":").append(estimate.elapsedNanos() / 1_000_000)
+                    .append(",\"startupMs\":").append(startupMillis)
+                    .append('}');
+            out.println(text);
+            return EXIT_OK;
+        }
+        if (!quiet) {
+            for (TypeEstimator.Share share : estimate.shares()) {
+                out.println(String.format(Locale.ROOT, "%-6s %5.1f%%  (%4.1f-%4.1f%%)  ~%d files  %d samples",
+                        share.extension().isEmpty() ? "?" : share.extension(), share.share() * 100,
+                        share.low() * 100, share.high() * 100, Math.round(share.files()), share.samples()));
+            }
+            out.println(String.format(Locale.ROOT,
+                    "projected: classify %s with %d threads (%dus/file), scan %s (%dus/entry)",
+                    duration(estimate.projectedClassifyNanos()), estimate.threads(),
+                    estimate.fileNanos() / 1000, duration(estimate.projectedScanNanos()),
+                    estimate.entryNanos() / 1000));
+        }
+        out.println(String.format(Locale.ROOT,
+                "files=%d (95%% %d-%d) bytes=%d walks=%d samples=%d effective=%d elapsed=%dms startup=%dms",
+                Math.round(estimate.files()), Math.round(estimate.filesLow()), Math.round(estimate.filesHigh()),
+                Math.round(estimate.bytes()), estimate.walks(), estimate.samples(),
+                Math.round(estimate.effectiveSamples()), estimate.elapsedNanos() / 1_000_000, startupMillis));
+        return EXIT_OK;
+    }
+
+    private static String duration(long nanos) {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(nanos);
+        if (seconds < 60) {
+            return String.format(Locale.ROOT, "%.1fs", nanos / 1e9);
+        }
+        return String.format(Locale.ROOT, "%dh%02dm%02ds", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    /**
+     * Определяет форматы по HTTP до завершения процесса. Адрес выводится первой строкой, как у
+     * {@code coordinate}, чтобы сценарий запуска мог передать его клиентам.
+     */
+    private int serve(FileExtensionRecoveryService service) {
+        InetSocketAddress address = listenAddress != null ? listenAddress : new InetSocketAddress("127.0.0.1", 0);
+        Thread hook = null;
+        // Заголовки и тело ответа записываются отдельно; с алгоритмом Нейгла тело ждало бы отложенного
+        // подтверждения клиента, и каждый запрос по постоянному соединению длился бы десятки миллисекунд.
+        // Настройка общая для процесса и читается при первом создании HTTP-сервера, поэтому задаётся здесь, до него.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        try (ClassificationServer server = new ClassificationServer(service, address, options.parallelism(),
+                queueCapacity)) {
+            server.start();
+            InetSocketAddress bound = server.address();
+            out.println("listening " + bound.getHostString() + ":" + bound.getPort());
+            out.flush();
+            hook = interruptOnShutdown();
+            Thread.sleep(Long.MAX_VALUE);
+        } catch (IOException e) {
+            err.println("courr: " + e.getMessage());
+            return EXIT_FATAL;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            removeShutdownHook(hook);
+        }
+        return EXIT_OK;
+    }
+
+    /**
+     * Нагружает сервер {@code courr serve} началами файлов-образцов и выводит пропускную способность.
+     */
+    private int loadTest(long startupMillis) {
+        List<byte[]> samples = new ArrayList<>(operands.size());
+        try {
+            for (String operand : operands) {
+                try (InputStream in = Files.newInputStream(Path.of(operand))) {
+                    samples.add(in.readNBytes(TextClassifier.WINDOW));
+                }
+            }
+        } catch (IOException e) {
+            err.println("courr: " + e.getMessage());
+            return EXIT_FATAL;
+        }
+        ClassificationLoadTest.Result result;
+        try {
+            result = new ClassificationLoadTest(coordinatorAddress, samples, options.parallelism(), batchSize)
+                    .run(durationSeconds * 1000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_FATAL;
+        }
+        if (json) {
+            StringBuilder text = new StringBuilder(256);
+            text.append("{\"command\":\"loadtest\",\"paths\":[");
+            for (int i = 0; i < operands.size(); i++) {
+                JsonText.appendString(text.append(i == 0 ? "" : ","), operands.get(i));
+            }
+            text.append("],\"connections\":").append(options.parallelism())
+                    .append(",\"batch\":").append(batchSize)
+                    .append(",\"requests\":").append(result.requests())
+                    .append(",\"items\":").append(result.items())
+                    .append(",\"errors\":").append(result.errors())
+                    .append(",\"rejected\":").append(result.rejected())
+                    .append(",\"itemsPerSecond\":").append(Math.round(result.itemsPerSecond()))
+                    .append(",\"p50Us\":").append(result.latency().percentileNanos(0.5) / 1000)
+                    .append(",\"p99Us\":").append(result.latency().percentileNanos(0.99) / 1000)
+                    .append(",\"elapsedMs\":").append(result.elapsedNanos() / 1_000_000)
+                    .append(",\"startupMs\":").append(startupMillis)
+                    .append('}');
+            out.println(text);
+        } else {
+            out.println(result + " startup=" + startupMillis + "ms");
+        }
+        return result.errors() == 0 ? EXIT_OK : EXIT_FAILURES;
+    }
+
+    private void print(FileRecoveryResult result) {
+        switch (result.status()) {
+            case RENAMED -> out.println("renamed  " + result.source() + " -> " + result.target()
+                    + (result.duplicateOf() != null ? "  duplicate of " + result.duplicateOf() : ""));
+            case FAILED -> err.println("failed   " + result.source() + ": " + result.error());
+            case UNKNOWN -> {
+                if (verbose) {
+                    out.println("unknown  " + result.source());
+                }
+            }
+            default -> {
+                if (verbose) {
+                    out.println(result.status().name().toLowerCase(Locale.ROOT) + "  " + result.source());
+                }
+            }
+        }
+    }
+
+    private String toJson(RecoverySummary summary, long startupMillis) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"command\":\"").append(command).append("\",\"paths\":[");
+        for (int i = 0; i < operands.size(); i++) {
+            JsonText.appendString(json.append(i == 0 ? "" : ","), operands.get(i));
+        }
+        json.append("],\"processed\":").append(summary.total());
+        for (RecoveryStatus status : RecoveryStatus.values()) {
+            json.append(",\"").append(status.name().toLowerCase(Locale.ROOT)).append("\":")
+                    .append(summary.count(status));
+        }
+        json.append(",\"elapsedMs\":").append(summary.elapsedNanos() / 1_000_000)
+                .append(",\"startupMs\":").append(startupMillis)
+                .append(",\"successful\":").append(summary.isSuccessful())
+                .append('}');
+        return json.toString();
+    }
+
+    /**
+     * Возвращает время от запуска процесса до текущего момента или -1, если время запуска неизвестно.
+     */
+    private static long startupMillis() {
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()).toMillis())
+                .orElse(-1L);
+    }
+}
@@ -0,0 +1,586 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Параллельный обработчик файлов для {@link FileExtensionRecoveryService}.
+ * Файлы обрабатываются пулом рабочих потоков, а если включены пределы устройств, сначала распределяются
+ * по очередям хранилищ {@link StoreScheduler}; количество файлов, одновременно находящихся в обработке,
+ * ограничено, поэтому {@link #submit(Path, BasicFileAttributes)} блокирует источник файлов, пока рабочие потоки не освободятся.
+ * Результат обработки файла зависит только от его имени и содержимого, но не от порядка выполнения;
+ * исключение — поиск копий {@link DuplicatePolicy}, где первой копией считается файл, обработанный раньше.
+ */
+final class RecoveryEngine implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(RecoveryEngine.class.getName());
+
+    /**
+     * Результат одного файла из стольких записывается в журнал на уровне DEBUG; полный перечень — в отчёте.
+     */
+    private static final int LOG_SAMPLE_RATE = 1000;
+
+    private final FileExtensionRecoveryService service;
+    private final Consumer<FileRecoveryResult> listener;
+    private final ThreadPoolExecutor executor;
+    private final StoreScheduler scheduler;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final ThreadLocal<HeaderWindowReader> readers;
+    private final ThreadLocal<SignatureValidator> validators;
+    private final ThreadLocal<ContentHasher> hashers;
+    private final DuplicatePolicy duplicatePolicy;
+    private final DuplicateIndex duplicates;
+    private final LongAdder linked = new LongAdder();
+    private final OutputTree output;
+    private final MetadataFilter filter;
+    private final RenameJournal journal;
+    private final RenameLog renames;
+    private final Set<Path> alreadyRenamed;
+    private final ClassificationCache cache;
+    private final RecoveryMetrics metrics;
+    private final RunReportWriter report;
+    private volatile boolean completed;
+    private final LongAdder[] counters = new LongAdder[RecoveryStatus.values().length];
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Создаёт обработчик.
+     *
+     * @param service  Сервис, определяющий расширения файлов.
+     * @param options  Параметры запуска.
+     * @param listener Получатель результатов; вызывается из рабочих потоков.
+     * @throws IOException Если не удалось открыть журнал переименований или создать отчёт.
+     */
+    RecoveryEngine(FileExtensionRecoveryService service, RecoveryOptions options, Consumer<FileRecoveryResult> listener)
+            throws IOException {
+        this(service, options, listener, null, null);
+    }
+
+    /**
+     * Создаёт обработчик, записывающий переименования во внешний журнал, например журнал координатора
+     * {@link ShardCoordinator}. Журнал из параметров запуска в этом случае не открывается.
+     *
+     * @param service  Сервис, определяющий расширения файлов.
+     * @param options  Параметры запуска.
+     * @param listener Получатель результатов; вызывается из рабочих потоков.
+     * @param renames  Внешний журнал переименований или null, чтобы использовать журнал из параметров запуска.
+     * @throws IOException Если не удалось открыть журнал переименований или создать отчёт.
+     */
+    RecoveryEngine(FileExtensionRecoveryService service, RecoveryOptions options, Consumer<FileRecoveryResult> listener,
+                   RenameLog renames) throws IOException {
+        this(service, options, listener, renames, null);
+    }
+
+    /**
+     * Создаёт обработчик файлов одного исходного каталога. Если в параметрах задано выходное дерево
+     * {@link RecoveryOptions#output()}, файлы не переименовываются, а копируются в него относительно этого каталога.
+     *
+     * @param service  Сервис, определяющий расширения файлов.
+     * @param options  Параметры запуска.
+     * @param listener Получатель результатов; вызывается из рабочих потоков.
+     * @param renames  Внешний журнал переименований или null, чтобы использовать журнал из параметров запуска.
+     * @param root     Исходный каталог или null; обязателен, если задано выходное дерево.
+     * @throws IOException Если не удалось открыть журнал переименований, создать отчёт или выходное дерево.
+     */
+    RecoveryEngine(FileExtensionRecoveryService service, RecoveryOptions options, Consumer<FileRecoveryResult> listener,
+                   RenameLog renames, Path root) throws IOException {
+        if (options.output() != null && (root == null || renames != null || options.journal() != null)) {
+            throw new IllegalArgumentException("output tree requires a source folder and no rename journal");
+        }
+        this.output = options.output() != null ? new OutputTree(root, options.output(), options.outputLinks()) : null;
+        this.report = options.report() != null ? RunReportWriter.open(options.report(), options.reportFormat()) : null;
+        try {
+            if (renames == null && options.journal() != null) {
+                this.journal = RenameJournal.open(options.journal(), options.journalBatchSize(),
+                        options.journalCommitWindowMillis());
+                this.alreadyRenamed = options.resume() ? journal.resume() : Set.of();
+                logger.info("Rename journal {}: {} files already renamed", options.journal(), alreadyRenamed.size());
+            } else {
+                this.journal = null;
+                this.alreadyRenamed = Set.of();
+            }
+        } catch (IOException e) {
+            if (report != null) {
+                report.close();
+            }
+            throw e;
+        }
+        this.renames = renames != null ? renames : journal;
+        this.cache = options.cache() != null ? ClassificationCache.load(options.cache(),
+                service.fingerprint(options.validate())) : null;
+        this.metrics = new RecoveryMetrics(options.metricsIntervalMillis());
+        this.filter = MetadataFilter.of(options, service.knownExtensions());
+        this.service = service;
+        this.listener = listener;
+        this.maxInFlight = options.maxInFlight();
+        this.inFlight = new Semaphore(maxInFlight);
+        this.readers = ThreadLocal.withInitial(() -> new HeaderWindowReader(service.requiredWindows()));
+        this.validators = options.validate() ? ThreadLocal.withInitial(SignatureValidator::new) : null;
+        this.duplicatePolicy = options.duplicates();
+        this.duplicates = duplicatePolicy != DuplicatePolicy.OFF ? new DuplicateIndex() : null;
+        this.hashers = duplicates != null ? ThreadLocal.withInitial(ContentHasher::new) : null;
+        this.executor = new ThreadPoolExecutor(options.parallelism(), options.parallelism(), 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new WorkerThreadFactory());
+        this.scheduler = options.deviceLimits() ? new StoreScheduler(executor, options.parallelism()) : null;
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Ставит файл в очередь на обработку.
+     * Блокирует вызывающий поток, если в обработке уже находится максимальное количество файлов.
+     *
+     * @param file       Путь к файлу.
+     * @param attributes Атрибуты файла, прочитанные при обходе, или null.
+     * @throws InterruptedException Если ожидание было прервано.
+     */
+    void submit(Path file, BasicFileAttributes attributes) throws InterruptedException {
+        metrics.fileScanned(sizeOf(attributes));
+        if (filter != null && !filter.accepts(file, attributes)) {
+            complete(new FileRecoveryResult(file, null, null, RecoveryStatus.SKIPPED, null, sizeOf(attributes)));
+            return;
+        }
+        if (attributes != null && attributes.size() == 0 && output == null) {
+            // Формат пустого файла определить нельзя, открывать его незачем
+            complete(new FileRecoveryResult(file, null, null, RecoveryStatus.UNKNOWN, null, 0));
+            return;
+        }
+        if (!alreadyRenamed.isEmpty() && alreadyRenamed.contains(file.toAbsolutePath())) {
+            complete(new FileRecoveryResult(file, null, null, RecoveryStatus.SKIPPED, null, sizeOf(attributes)));
+            return;
+        }
+        String known = null;
+        if (cache != null && attributes != null) {
+            String cached = cache.lookup(file, attributes);
+            if (cached != ClassificationCache.MISS) {
+                // Кэш заменяет только чтение и определение формата. Итог CACHED получает файл, с которым делать
+                // нечего; иначе файл переименовывается, копируется или сверяется с копиями так же, как без кэша
+                if (output == null && duplicates == null
+                        && (cached.isEmpty() || keepsName(file.getFileName().toString(), cached))) {
+                    complete(new FileRecoveryResult(file, null, cached.isEmpty() ? null : cached,
+                            RecoveryStatus.CACHED, null, attributes.size()));
+                    return;
+                }
+                known = cached;
+            }
+        }
+        String cachedExtension = known;
+        StoreScheduler.Lane lane = scheduler != null ? scheduler.laneOf(file, attributes) : null;
+        inFlight.acquire();
+        try {
+            Runnable task = () -> {
+                try {
+                    FileRecoveryResult result = process(file, attributes, lane, cachedExtension);
+                    if (cache != null && attributes != null && result.status() != RecoveryStatus.FAILED) {
+                        // Копия в выходном дереве не меняет исходный файл, поэтому кэш остаётся привязан к нему
+                        Path cached = output == null && result.target() != null ? result.target() : file;
+                        cache.put(cached, attributes, result.extension());
+                    }
+                    complete(result);
+                } finally {
+                    inFlight.release();
+                }
+            };
+            if (lane != null) {
+                lane.submit(task, attributes);
+            } else {
+                executor.execute(task);
+            }
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Учитывает файл, который не удалось передать в обработку.
+     *
+     * @param file  Путь к файлу.
+     * @param error Ошибка доступа к файлу.
+     */
+    void reportFailure(Path file, IOException error) {
+        logger.error("Error while processing file: {}", file, error);
+        complete(new FileRecoveryResult(file, null, null, RecoveryStatus.FAILED, error, -1));
+    }
+
+    /**
+     * Ожидает завершения обработки всех поставленных в очередь файлов.
+     * Вызов означает, что источник передал все файлы, то есть обход дерева был полным.
+     *
+     * @return Сводка по обработанным файлам.
+     * @throws InterruptedException Если ожидание было прервано.
+     */
+    RecoverySummary awaitCompletion() throws InterruptedException {
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+        completed = true;
+        return summary();
+    }
+
+    /**
+     * Возвращает сводку по файлам, обработанным на текущий момент.
+     *
+     * @return Сводка по обработанным файлам.
+     */
+    RecoverySummary summary() {
+        Map<RecoveryStatus, Long> counts = new EnumMap<>(RecoveryStatus.class);
+        for (RecoveryStatus status : RecoveryStatus.values()) {
+            counts.put(status, counters[status.ordinal()].sum());
+        }
+        return new RecoverySummary(counts, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Возвращает показатели запуска.
+     *
+     * @return Показатели, обновляемые рабочими потоками.
+     */
+    RecoveryMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Останавливает рабочие потоки, сохраняет кэш, закрывает журнал переименований и дописывает отчёт.
+     * Файлы, ещё не взятые в обработку, отбрасываются; начатые дорабатываются.
+     * Ошибка сохранения кэша только записывается в журнал событий: кэш лишь ускоряет следующий запуск.
+     *
+     * @throws IOException Если журнал переименований или отчёт не удалось дописать; закрытие всё равно
+     *                     выполняется до конца, последующие ошибки добавляются как подавленные.
+     */
+    @Override
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.clear();
+        }
+        executor.getQueue().clear();
+        executor.shutdown();
+        // Ожидание не прерывается: кэш и журнал можно закрыть только после того, как начатые файлы доработаны.
+        // Флаг прерывания снимается до конца закрытия, иначе каналы журнала и кэша закроются при первой записи.
+        boolean interrupted = Thread.interrupted();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (!executor.isTerminated()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                logger.warn("Recovery workers did not stop in time");
+                break;
+            }
+            try {
+                executor.awaitTermination(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (scheduler != null) {
+            scheduler.logSummary();
+        }
+        if (cache != null) {
+            try {
+                cache.save(completed);
+            } catch (IOException e) {
+                logger.error("Error while saving classification cache", e);
+            }
+        }
+        IOException failure = null;
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.error("Error while closing rename journal", e);
+                failure = e;
+            }
+        }
+        if (output != null) {
+            output.logSummary();
+        }
+        if (filter != null) {
+            filter.logSummary();
+        }
+        if (duplicates != null) {
+            logger.info("Duplicate index: {} distinct, {} duplicates ({} bytes), {} linked",
+                    duplicates.size(), metrics.getDuplicates(), metrics.getDuplicateBytes(), linked.sum());
+        }
+        if (report != null) {
+            try {
+                report.close();
+            } catch (IOException e) {
+                logger.error("Error while writing run report", e);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        metrics.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Определяет формат файла и переименовывает его или, если задано выходное дерево, копирует в него.
+     * Если включён поиск копий, файл читается целиком за один проход: хеш содержимого вычисляется
+     * при чтении окон заголовка, и для уже встречавшегося содержимого берётся формат первой копии.
+     * Формат, известный из кэша, не определяется заново; файл открывается, только если его нужно скопировать
+     * или вычислить хеш содержимого.
+     *
+     * @param file       Путь к файлу.
+     * @param attributes Атрибуты файла, прочитанные при обходе, или null.
+     * @param lane       Очередь хранилища, которой сообщается длительность открытия и чтения, или null.
+     * @param known      Расширение из кэша (пустая строка — формат не определён) или null.
+     * @return Результат обработки.
+     */
+    private FileRecoveryResult process(Path file, BasicFileAttributes attributes, StoreScheduler.Lane lane,
+                                       String known) {
+        long size = sizeOf(attributes);
+        try {
+            long start = System.nanoTime();
+            String extension = known;
+            long contentSize = 0;
+            long hash = 0;
+            DuplicateIndex.Original original = null;
+            if (known == null || output != null || hashers != null) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long opened = System.nanoTime();
+                    metrics.record(RecoveryStage.OPEN, opened - start);
+                    ContentHasher hasher = hashers != null ? hashers.get() : null;
+                    FileHeader header = hasher != null ? readers.get().read(channel, hasher)
+                            : readers.get().read(channel);
+                    long read = System.nanoTime();
+                    metrics.record(RecoveryStage.READ, read - opened);
+                    if (lane != null) {
+                        lane.latency(read - start);
+                    }
+                    long bytesRead = hasher != null ? header.fileSize() : header.totalLength();
+                    long classifyStart = System.nanoTime();
+                    if (hasher != null && header.fileSize() > 0) {
+                        contentSize = header.fileSize();
+                        hash = hasher.digest();
+                        original = duplicates.find(contentSize, hash);
+                    }
+                    if (original != null) {
+                        extension = original.extension();
+                    } else if (known == null) {
+                        extension = service.detectExtension(header);
+                        if (validators != null && extension != null && SignatureValidator.checks(extension)) {
+                            // Проверка структуры читает канал, поэтому он закрывается только после неё
+                            SignatureValidator validator = validators.get();
+                            extension = validator.validate(channel, 0, header.fileSize(), extension);
+                            bytesRead += validator.bytesRead();
+                        }
+                    }
+                    metrics.record(RecoveryStage.CLASSIFY, System.nanoTime() - classifyStart);
+                    metrics.bytesRead(bytesRead);
+                    if (output != null) {
+                        // Канал ещё открыт: данные копируются из него без повторного открытия исходного файла
+                        return copy(file, channel, attributes, extension, contentSize, hash, original);
+                    }
+                }
+            }
+            RecoveryStatus status;
+            Path target = null;
+            String fileName = file.getFileName().toString();
+            if (extension == null || extension.isEmpty()) {
+                extension = null;
+                status = RecoveryStatus.UNKNOWN;
+            } else if (keepsName(fileName, extension)) {
+                status = RecoveryStatus.UNCHANGED;
+            } else {
+                target = file.resolveSibling(fileName + "." + extension);
+                long moveStart = System.nanoTime();
+                if (renames != null && !renames.beforeRename(file, target)) {
+                    return new FileRecoveryResult(file, null, extension, RecoveryStatus.SKIPPED, null, size);
+                }
+                Files.move(file, target);
+                if (renames != null) {
+                    renames.afterRename(file, target);
+                }
+                metrics.record(RecoveryStage.MOVE, System.nanoTime() - moveStart);
+                status = RecoveryStatus.RENAMED;
+            }
+            Path duplicateOf = contentSize > 0
+                    ? deduplicate(target != null ? target : file, contentSize, hash, extension, original) : null;
+            return new FileRecoveryResult(file, target, extension, status, null, size, duplicateOf);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error while processing file: {}", file, e);
+            return new FileRecoveryResult(file, null, null, RecoveryStatus.FAILED, e, size);
+        }
+    }
+
+    /**
+     * Копирует файл в выходное дерево под исправленным именем; исходный файл не изменяется.
+     */
+    private FileRecoveryResult copy(Path file, FileChannel channel, BasicFileAttributes attributes, String extension,
+                                    long contentSize, long hash, DuplicateIndex.Original original) throws IOException {
+        RecoveryStatus status;
+        String added = null;
+        if (extension == null || extension.isEmpty()) {
+            extension = null;
+            status = RecoveryStatus.UNKNOWN;
+        } else if (keepsName(file.getFileName().toString(), extension)) {
+            status = RecoveryStatus.UNCHANGED;
+        } else {
+            added = extension;
+            status = RecoveryStatus.RENAMED;
+        }
+        long copyStart = System.nanoTime();
+        Path target = output.copy(file, channel, added, attributes != null ? attributes.lastModifiedTime() : null);
+        metrics.record(RecoveryStage.MOVE, System.nanoTime() - copyStart);
+        Path duplicateOf = contentSize > 0 ? deduplicate(target, contentSize, hash, extension, original) : null;
+        return new FileRecoveryResult(file, target, extension, status, null, sizeOf(attributes), duplicateOf);
+    }
+
+    /**
+     * Проверяет, нужно ли сохранить имя файла: оно уже оканчивается определённым расширением в любом регистре,
+     * например {@code photo.JPG} для jpg, или это текстовый файл с расширением {@link TextClassifier#keepsName}.
+     *
+     * @param fileName  Имя файла.
+     * @param extension Определённое расширение.
+     * @return true, если имя менять не нужно.
+     */
+    static boolean keepsName(String fileName, String extension) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith("." + extension.toLowerCase(Locale.ROOT))
+                || TextClassifier.keepsName(fileName, extension);
+    }
+
+    /**
+     * Запоминает файл как первую копию содержимого или учитывает его как повторную копию
+     * и, если это требуется правилом {@link DuplicatePolicy#LINK}, заменяет жёсткой ссылкой на первую.
+     *
+     * @param path      Путь к файлу после переименования.
+     * @param size      Размер содержимого в байтах.
+     * @param hash      Хеш содержимого.
+     * @param extension Определённое расширение или null.
+     * @param original  Первая копия, найденная до определения формата, или null.
+     * @return Путь к первой копии или null, если файл сам стал первой копией.
+     */
+    private Path deduplicate(Path path, long size, long hash, String extension, DuplicateIndex.Original original) {
+        if (original == null) {
+            // Одинаковые файлы, обработанные одновременно, оба определяются; первой копией остаётся записанный раньше
+            original = duplicates.add(size, hash, path, extension);
+            if (original == null) {
+                return null;
+            }
+        }
+        if (duplicatePolicy == DuplicatePolicy.LINK) {
+            try {
+                if (!Files.isSameFile(path, original.path())) {
+                    if (!linkDuplicate(path, original.path())) {
+                        logger.warn("Content hash collision: {} and {}", path, original.path());
+                        return null;
+                    }
+                    linked.increment();
+                }
+            } catch (IOException | UnsupportedOperationException e) {
+                logger.warn("Cannot link duplicate {} to {}: {}", path, original.path(), e.toString());
+            }
+        }
+        metrics.duplicate(size);
+        return original.path();
+    }
+
+    /**
+     * Заменяет повторную копию жёсткой ссылкой на первую, если их содержимое совпадает побайтово:
+     * совпадения хеша для удаления данных недостаточно.
+     *
+     * @param path     Повторная копия.
+     * @param original Первая копия.
+     * @return true, если копия заменена; false, если содержимое различается и файл оставлен как есть.
+     * @throws IOException Если файлы не удалось сравнить или заменить копию.
+     */
+    static boolean linkDuplicate(Path path, Path original) throws IOException {
+        if (Files.mismatch(path, original) != -1) {
+            return false;
+        }
+        replaceWithLink(path, original);
+        return true;
+    }
+
+    /**
+     * Атомарно заменяет файл жёсткой ссылкой: ссылка создаётся под временным именем рядом с файлом и переносится
+     * на его место. Временная ссылка удаляется и при ошибке переноса, поэтому файл остаётся прежним.
+     *
+     * @param path     Заменяемый файл.
+     * @param original Файл, на который ставится ссылка.
+     * @throws IOException Если ссылку не удалось создать или перенести.
+     */
+    static void replaceWithLink(Path path, Path original) throws IOException {
+        Path temp = path.resolveSibling("." + path.getFileName() + ".courr-link");
+        Files.createLink(temp, original);
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Учитывает результат в счётчиках и передаёт его получателю.
+     *
+     * @param result Результат обработки файла.
+     */
+    private void complete(FileRecoveryResult result) {
+        counters[result.status().ordinal()].increment();
+        if (report != null) {
+            report.accept(result);
+        }
+        if (logger.isDebugEnabled() && ThreadLocalRandom.current().nextInt(LOG_SAMPLE_RATE) == 0) {
+            logger.debug("Sampled result: {} {} -> {}", result.status(), result.source(), result.target());
+        }
+        if (result.status() == RecoveryStatus.FAILED) {
+            metrics.error();
+        } else if (result.status() == RecoveryStatus.UNKNOWN) {
+            metrics.unknown();
+        } else if (result.extension() != null) {
+            metrics.matched(result.extension());
+        }
+        try {
+            listener.accept(result);
+        } catch (RuntimeException e) {
+            logger.error("Result listener failed for file: {}", result.source(), e);
+        }
+    }
+
+    private static long sizeOf(BasicFileAttributes attributes) {
+        return attributes != null ? attributes.size() : -1;
+    }
+
+    /**
+     * Фабрика именованных рабочих потоков-демонов.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "recovery-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
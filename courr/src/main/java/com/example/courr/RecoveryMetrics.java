@@ -0,0 +1,293 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Показатели одного запуска восстановления: счётчики файлов и байтов и гистограммы длительности этапов
+ * {@link RecoveryStage}. Счётчики обновляются рабочими потоками без блокировок.
+ * Показатели публикуются через JMX ({@link RecoveryMetricsMXBean}) и, если задан интервал,
+ * периодически записываются в журнал одной строкой.
+ */
+final class RecoveryMetrics implements RecoveryMetricsMXBean, AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(RecoveryMetrics.class.getName());
+
+    private static final AtomicInteger RUNS = new AtomicInteger();
+
+    private final LongAdder filesScanned = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesScanned = new LongAdder();
+    private final LongAdder unknowns = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder duplicateBytes = new LongAdder();
+    private final Map<String, LongAdder> matches = new ConcurrentHashMap<>();
+    private final LatencyHistogram[] latencies = new LatencyHistogram[RecoveryStage.values().length];
+    private final long startNanos = System.nanoTime();
+    private final ScheduledExecutorService reporter;
+    private final ObjectName name;
+    private long lastFiles;
+    private long lastNanos = startNanos;
+    private volatile double lastRate = -1;
+
+    /**
+     * Создаёт показатели и регистрирует их в JMX.
+     *
+     * @param intervalMillis Интервал записи снимков показателей в журнал или 0, чтобы не записывать их.
+     */
+    RecoveryMetrics(long intervalMillis) {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        this.name = register();
+        if (intervalMillis > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "recovery-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(() -> logger.info("Metrics: {}", sample()), intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            reporter = null;
+        }
+    }
+
+    /**
+     * Учитывает файл, переданный в обработку.
+     *
+     * @param size Размер файла в байтах или -1, если он неизвестен.
+     */
+    void fileScanned(long size) {
+        filesScanned.increment();
+        if (size > 0) {
+            bytesScanned.add(size);
+        }
+    }
+
+    /**
+     * Учитывает байты, прочитанные из заголовка файла.
+     *
+     * @param bytes Количество байтов.
+     */
+    void bytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Учитывает файл, формат которого определён.
+     *
+     * @param extension Расширение файла.
+     */
+    void matched(String extension) {
+        LongAdder counter = matches.get(extension);
+        if (counter == null) {
+            counter = matches.computeIfAbsent(extension, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Учитывает файл, формат которого определить не удалось.
+     */
+    void unknown() {
+        unknowns.increment();
+    }
+
+    /**
+     * Учитывает файл, содержимое которого совпало с ранее обработанным.
+     *
+     * @param size Размер файла в байтах.
+     */
+    void duplicate(long size) {
+        duplicates.increment();
+        duplicateBytes.add(size);
+    }
+
+    /**
+     * Учитывает ошибку обработки файла.
+     */
+    void error() {
+        errors.increment();
+    }
+
+    /**
+     * Учитывает длительность этапа обработки файла.
+     *
+     * @param stage Этап.
+     * @param nanos Длительность в наносекундах.
+     */
+    void record(RecoveryStage stage, long nanos) {
+        latencies[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * Останавливает запись снимков, записывает итоговый снимок и снимает регистрацию в JMX.
+     */
+    @Override
+    public void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+        logger.info("Metrics: {}", this);
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                logger.warn("Cannot unregister metrics MBean {}", name, e);
+            }
+        }
+    }
+
+    @Override
+    public long getFilesScanned() {
+        return filesScanned.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesScanned() {
+        return bytesScanned.sum();
+    }
+
+    @Override
+    public Map<String, Long> getMatches() {
+        Map<String, Long> result = new TreeMap<>();
+        matches.forEach((extension, counter) -> result.put(extension, counter.sum()));
+        return result;
+    }
+
+    @Override
+    public long getUnknowns() {
+        return unknowns.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    @Override
+    public long getDuplicateBytes() {
+        return duplicateBytes.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        double rate = lastRate;
+        return rate >= 0 ? rate : getAverageFilesPerSecond();
+    }
+
+    @Override
+    public double getAverageFilesPerSecond() {
+        return rate(filesScanned.sum(), System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public Map<String, Long> getOpenLatency() {
+        return latency(RecoveryStage.OPEN);
+    }
+
+    @Override
+    public Map<String, Long> getReadLatency() {
+        return latency(RecoveryStage.READ);
+    }
+
+    @Override
+    public Map<String, Long> getClassifyLatency() {
+        return latency(RecoveryStage.CLASSIFY);
+    }
+
+    @Override
+    public Map<String, Long> getMoveLatency() {
+        return latency(RecoveryStage.MOVE);
+    }
+
+    /**
+     * Возвращает снимок показателей одной строкой: счётчики, скорость и процентили длительности этапов.
+     *
+     * @return Снимок показателей.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(256);
+        text.append(String.format("files=%d bytes=%d unknown=%d errors=%d duplicates=%d rate=%.1f/s",
+                getFilesScanned(), getBytesRead(), getUnknowns(), getErrors(), getDuplicates(), getFilesPerSecond()));
+        for (RecoveryStage stage : RecoveryStage.values()) {
+            LatencyHistogram.Snapshot snapshot = latencies[stage.ordinal()].snapshot();
+            text.append(String.format(" %s[p50=%dus p99=%dus max=%dus]", stage.name().toLowerCase(Locale.ROOT),
+                    micros(snapshot.percentileNanos(0.5)), micros(snapshot.percentileNanos(0.99)),
+                    micros(snapshot.maxNanos())));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Обновляет скорость за прошедший интервал и возвращает снимок показателей.
+     */
+    private synchronized String sample() {
+        long now = System.nanoTime();
+        long files = filesScanned.sum();
+        lastRate = rate(files - lastFiles, now - lastNanos);
+        lastFiles = files;
+        lastNanos = now;
+        return toString();
+    }
+
+    private Map<String, Long> latency(RecoveryStage stage) {
+        LatencyHistogram.Snapshot snapshot = latencies[stage.ordinal()].snapshot();
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("count", snapshot.count());
+        result.put("mean", micros(snapshot.meanNanos()));
+        result.put("p50", micros(snapshot.percentileNanos(0.5)));
+        result.put("p90", micros(snapshot.percentileNanos(0.9)));
+        result.put("p99", micros(snapshot.percentileNanos(0.99)));
+        result.put("max", micros(snapshot.maxNanos()));
+        return result;
+    }
+
+    private ObjectName register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("com.example.courr:type=RecoveryMetrics,name=run-"
+                    + RUNS.incrementAndGet());
+            server.registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            logger.warn("Cannot register metrics MBean", e);
+            return null;
+        }
+    }
+
+    private static double rate(long files, long nanos) {
+        return nanos <= 0 ? 0 : files * 1e9 / nanos;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
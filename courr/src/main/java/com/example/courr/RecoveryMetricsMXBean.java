@@ -0,0 +1,111 @@
+package com.example.courr;
+
+import java.util.Map;
+
+/**
+ * Показатели запуска восстановления расширений, публикуемые через JMX.
+ * Объект регистрируется под именем {@code com.example.courr:type=RecoveryMetrics,name=run-N}
+ * на время запуска. Длительности этапов возвращаются в микросекундах с ключами
+ * {@code count}, {@code mean}, {@code p50}, {@code p90}, {@code p99} и {@code max}.
+ */
+public interface RecoveryMetricsMXBean {
+
+    /**
+     * Возвращает количество файлов, переданных в обработку.
+     *
+     * @return Количество файлов.
+     */
+    long getFilesScanned();
+
+    /**
+     * Возвращает количество байтов, прочитанных из заголовков файлов.
+     *
+     * @return Количество байтов.
+     */
+    long getBytesRead();
+
+    /**
+     * Возвращает суммарный размер файлов, переданных в обработку.
+     *
+     * @return Количество байтов.
+     */
+    long getBytesScanned();
+
+    /**
+     * Возвращает количество файлов, формат которых определён, по расширениям.
+     *
+     * @return Количество файлов для каждого расширения.
+     */
+    Map<String, Long> getMatches();
+
+    /**
+     * Возвращает количество файлов, формат которых определить не удалось.
+     *
+     * @return Количество файлов.
+     */
+    long getUnknowns();
+
+    /**
+     * Возвращает количество файлов, обработка которых завершилась ошибкой.
+     *
+     * @return Количество ошибок.
+     */
+    long getErrors();
+
+    /**
+     * Возвращает количество файлов, содержимое которых совпало с ранее обработанным файлом.
+     *
+     * @return Количество повторных копий.
+     */
+    long getDuplicates();
+
+    /**
+     * Возвращает суммарный размер повторных копий.
+     *
+     * @return Количество байтов.
+     */
+    long getDuplicateBytes();
+
+    /**
+     * Возвращает скорость обработки за последний интервал снимков показателей,
+     * а если снимки не снимаются — за весь запуск.
+     *
+     * @return Количество файлов в секунду.
+     */
+    double getFilesPerSecond();
+
+    /**
+     * Возвращает среднюю скорость обработки за весь запуск.
+     *
+     * @return Количество файлов в секунду.
+     */
+    double getAverageFilesPerSecond();
+
+    /**
+     * Возвращает распределение длительности открытия файла.
+     *
+     * @return Показатели распределения в микросекундах.
+     */
+    Map<String, Long> getOpenLatency();
+
+    /**
+     * Возвращает распределение длительности чтения заголовка.
+     *
+     * @return Показатели распределения в микросекундах.
+     */
+    Map<String, Long> getReadLatency();
+
+    /**
+     * Возвращает распределение длительности определения формата.
+     *
+     * @return Показатели распределения в микросекундах.
+     */
+    Map<String, Long> getClassifyLatency();
+
+    /**
+     * Возвращает распределение длительности переименования.
+     *
+     * @return Показатели распределения в микросекундах.
+     */
+    Map<String, Long> getMoveLatency();
+}
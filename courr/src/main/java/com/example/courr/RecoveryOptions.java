@@ -0,0 +1,641 @@
+package com.example.courr;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Параметры запуска восстановления расширений.
+ * Методы-сеттеры возвращают этот же объект, чтобы параметры можно было задавать цепочкой.
+ */
+final class RecoveryOptions {
+    private int parallelism = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    private int maxInFlight = 0;
+    private boolean recursive = false;
+    private int maxDepth = Integer.MAX_VALUE;
+    private LinkPolicy linkPolicy = LinkPolicy.SKIP;
+    private boolean includeHidden = true;
+    private Path journal;
+    private boolean resume = false;
+    private int journalBatchSize = 256;
+    private long journalCommitWindowMillis = 0;
+    private Path cache;
+    private long watchSettleMillis = 200;
+    private int watchRescanLimit = 10_000;
+    private long metricsIntervalMillis = 10_000;
+    private Path report;
+    private ReportFormat reportFormat = ReportFormat.JSONL;
+    private boolean validate = false;
+    private DuplicatePolicy duplicates = DuplicatePolicy.OFF;
+    private boolean deviceLimits = true;
+    private Path output;
+    private boolean outputLinks = false;
+    private long minSize = 0;
+    private long maxSize = Long.MAX_VALUE;
+    private final List<String> includes = new ArrayList<>();
+    private final List<String> excludes = new ArrayList<>();
+    private ExtensionPolicy extensionPolicy = ExtensionPolicy.ALL;
+    private Instant modifiedAfter;
+    private Instant modifiedBefore;
+
+    /**
+     * Возвращает количество рабочих потоков.
+     *
+     * @return Количество рабочих потоков.
+     */
+    int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Задаёт количество рабочих потоков.
+     *
+     * @param parallelism Количество рабочих потоков, не меньше 1.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Возвращает максимальное количество файлов, одновременно находящихся в обработке.
+     * По умолчанию в четыре раза больше количества рабочих потоков.
+     *
+     * @return Предел количества файлов в обработке.
+     */
+    int maxInFlight() {
+        return maxInFlight > 0 ? maxInFlight : parallelism * 4;
+    }
+
+    /**
+     * Задаёт максимальное количество файлов, одновременно находящихся в обработке.
+     *
+     * @param maxInFlight Предел количества файлов в обработке, не меньше 1.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions maxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Проверяет, нужно ли обходить вложенные каталоги.
+     *
+     * @return true, если обход рекурсивный.
+     */
+    boolean recursive() {
+        return recursive;
+    }
+
+    /**
+     * Включает или выключает рекурсивный обход вложенных каталогов.
+     *
+     * @param recursive true для рекурсивного обхода.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions recursive(boolean recursive) {
+        this.recursive = recursive;
+        return this;
+    }
+
+    /**
+     * Возвращает максимальную глубину рекурсивного обхода; файлы целевого каталога имеют глубину 1.
+     *
+     * @return Максимальная глубина обхода.
+     */
+    int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Задаёт максимальную глубину рекурсивного обхода.
+     *
+     * @param maxDepth Максимальная глубина, не меньше 1.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions maxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Возвращает правило обработки символических ссылок.
+     *
+     * @return Правило обработки ссылок.
+     */
+    LinkPolicy linkPolicy() {
+        return linkPolicy;
+    }
+
+    /**
+     * Задаёт правило обработки символических ссылок.
+     *
+     * @param linkPolicy Правило обработки ссылок.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions linkPolicy(LinkPolicy linkPolicy) {
+        this.linkPolicy = linkPolicy;
+        return this;
+    }
+
+    /**
+     * Проверяет, нужно ли обрабатывать скрытые файлы и каталоги.
+     *
+     * @return true, если скрытые записи обрабатываются.
+     */
+    boolean includeHidden() {
+        return includeHidden;
+    }
+
+    /**
+     * Включает или выключает обработку скрытых файлов и каталогов.
+     *
+     * @param includeHidden true, чтобы обрабатывать скрытые записи.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions includeHidden(boolean includeHidden) {
+        this.includeHidden = includeHidden;
+        return this;
+    }
+
+    /**
+     * Возвращает путь к журналу переименований.
+     *
+     * @return Путь к журналу или null, если журнал не ведётся.
+     */
+    Path journal() {
+        return journal;
+    }
+
+    /**
+     * Задаёт путь к журналу переименований. Если журнал существует, новые записи дописываются в конец.
+     *
+     * @param journal Путь к журналу или null, чтобы не вести журнал.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions journal(Path journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * Проверяет, нужно ли продолжать прерванный запуск по журналу.
+     *
+     * @return true, если файлы, уже переименованные по журналу, пропускаются без чтения.
+     */
+    boolean resume() {
+        return resume;
+    }
+
+    /**
+     * Включает или выключает продолжение прерванного запуска по журналу.
+     *
+     * @param resume true, чтобы пропускать файлы, уже переименованные по журналу.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions resume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    /**
+     * Возвращает количество записей журнала, при накоплении которого они сбрасываются на диск без ожидания.
+     *
+     * @return Размер группы записей.
+     */
+    int journalBatchSize() {
+        return journalBatchSize;
+    }
+
+    /**
+     * Задаёт количество записей журнала, при накоплении которого они сбрасываются на диск без ожидания.
+     *
+     * @param journalBatchSize Размер группы записей, не меньше 1.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions journalBatchSize(int journalBatchSize) {
+        if (journalBatchSize < 1) {
+            throw new IllegalArgumentException("journalBatchSize must be positive: " + journalBatchSize);
+        }
+        this.journalBatchSize = journalBatchSize;
+        return this;
+    }
+
+    /**
+     * Возвращает время, в течение которого записи журнала собираются в группу перед сбросом на диск.
+     * По умолчанию 0: группу образуют записи, накопившиеся, пока выполнялся предыдущий сброс.
+     *
+     * @return Время сбора группы в миллисекундах.
+     */
+    long journalCommitWindowMillis() {
+        return journalCommitWindowMillis;
+    }
+
+    /**
+     * Задаёт время, в течение которого записи журнала собираются в группу перед сбросом на диск.
+     *
+     * @param journalCommitWindowMillis Время сбора группы в миллисекундах, не меньше 0.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions journalCommitWindowMillis(long journalCommitWindowMillis) {
+        if (journalCommitWindowMillis < 0) {
+            throw new IllegalArgumentException("journalCommitWindowMillis must not be negative: "
+                    + journalCommitWindowMillis);
+        }
+        this.journalCommitWindowMillis = journalCommitWindowMillis;
+        return this;
+    }
+
+    /**
+     * Возвращает путь к файлу кэша результатов определения формата.
+     *
+     * @return Путь к кэшу или null, если кэш не используется.
+     */
+    Path cache() {
+        return cache;
+    }
+
+    /**
+     * Задаёт путь к файлу кэша результатов определения формата.
+     * Кэш относится к одному дереву каталогов: после полного обхода записи о невстреченных файлах удаляются.
+     *
+     * @param cache Путь к кэшу или null, чтобы не использовать кэш.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions cache(Path cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Возвращает интервал, в течение которого файл не должен меняться, чтобы наблюдатель счёл запись завершённой.
+     *
+     * @return Интервал в миллисекундах.
+     */
+    long watchSettleMillis() {
+        return watchSettleMillis;
+    }
+
+    /**
+     * Задаёт интервал, в течение которого файл не должен меняться, чтобы наблюдатель счёл запись завершённой.
+     *
+     * @param watchSettleMillis Интервал в миллисекундах, не меньше 0.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions watchSettleMillis(long watchSettleMillis) {
+        if (watchSettleMillis < 0) {
+            throw new IllegalArgumentException("watchSettleMillis must not be negative: " + watchSettleMillis);
+        }
+        this.watchSettleMillis = watchSettleMillis;
+        return this;
+    }
+
+    /**
+     * Возвращает максимальное количество записей, перечитываемых в каталоге после переполнения очереди событий.
+     *
+     * @return Предел количества записей.
+     */
+    int watchRescanLimit() {
+        return watchRescanLimit;
+    }
+
+    /**
+     * Задаёт максимальное количество записей, перечитываемых в каталоге после переполнения очереди событий.
+     *
+     * @param watchRescanLimit Предел количества записей, не меньше 1.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions watchRescanLimit(int watchRescanLimit) {
+        if (watchRescanLimit < 1) {
+            throw new IllegalArgumentException("watchRescanLimit must be positive: " + watchRescanLimit);
+        }
+        this.watchRescanLimit = watchRescanLimit;
+        return this;
+    }
+
+    /**
+     * Возвращает интервал, с которым снимок показателей запуска записывается в журнал.
+     *
+     * @return Интервал в миллисекундах или 0, если снимки не записываются.
+     */
+    long metricsIntervalMillis() {
+        return metricsIntervalMillis;
+    }
+
+    /**
+     * Задаёт интервал, с которым снимок показателей запуска записывается в журнал.
+     *
+     * @param metricsIntervalMillis Интервал в миллисекундах, не меньше 0; 0 отключает снимки.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions metricsIntervalMillis(long metricsIntervalMillis) {
+        if (metricsIntervalMillis < 0) {
+            throw new IllegalArgumentException("metricsIntervalMillis must not be negative: " + metricsIntervalMillis);
+        }
+        this.metricsIntervalMillis = metricsIntervalMillis;
+        return this;
+    }
+
+    /**
+     * Возвращает путь к отчёту о запуске.
+     *
+     * @return Путь к файлу отчёта или null, если отчёт не записывается.
+     */
+    Path report() {
+        return report;
+    }
+
+    /**
+     * Задаёт путь к отчёту о запуске с одной записью на каждый обработанный файл.
+     *
+     * @param report Путь к файлу отчёта или null, чтобы не записывать отчёт.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions report(Path report) {
+        this.report = report;
+        return this;
+    }
+
+    /**
+     * Возвращает формат отчёта о запуске.
+     *
+     * @return Формат отчёта.
+     */
+    ReportFormat reportFormat() {
+        return reportFormat;
+    }
+
+    /**
+     * Задаёт формат отчёта о запуске.
+     *
+     * @param reportFormat Формат отчёта.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions reportFormat(ReportFormat reportFormat) {
+        if (reportFormat == null) {
+            throw new IllegalArgumentException("reportFormat must not be null");
+        }
+        this.reportFormat = reportFormat;
+        return this;
+    }
+
+    /**
+     * Проверяет, нужно ли подтверждать формат проверкой структуры файла {@link SignatureValidator}.
+     *
+     * @return true, если проверка структуры включена.
+     */
+    boolean validate() {
+        return validate;
+    }
+
+    /**
+     * Включает или выключает проверку структуры файла после совпадения сигнатуры.
+     *
+     * @param validate true, чтобы уточнять и отклонять совпадения коротких сигнатур.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions validate(boolean validate) {
+        this.validate = validate;
+        return this;
+    }
+
+    /**
+     * Возвращает обработку файлов с одинаковым содержимым.
+     *
+     * @return Правило для копий.
+     */
+    DuplicatePolicy duplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Задаёт обработку файлов с одинаковым содержимым. Кроме {@link DuplicatePolicy#OFF}, файлы читаются целиком
+     * ради хеша содержимого; файлы, результат которых взят из кэша, не хешируются.
+     *
+     * @param duplicates Правило для копий.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions duplicates(DuplicatePolicy duplicates) {
+        if (duplicates == null) {
+            throw new IllegalArgumentException("duplicates must not be null");
+        }
+        this.duplicates = duplicates;
+        return this;
+    }
+
+    /**
+     * Проверяет, распределяются ли файлы по очередям хранилищ с собственными пределами {@link StoreScheduler}.
+     *
+     * @return true, если пределы устройств включены.
+     */
+    boolean deviceLimits() {
+        return deviceLimits;
+    }
+
+    /**
+     * Включает или выключает пределы устройств. Без них все файлы обрабатываются общей очередью
+     * с пределом, равным количеству рабочих потоков.
+     *
+     * @param deviceLimits true, чтобы подстраивать параллельность под каждое хранилище.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions deviceLimits(boolean deviceLimits) {
+        this.deviceLimits = deviceLimits;
+        return this;
+    }
+
+    /**
+     * Возвращает корневой каталог выходного дерева.
+     *
+     * @return Путь к каталогу или null, если файлы переименовываются на месте.
+     */
+    Path output() {
+        return output;
+    }
+
+    /**
+     * Задаёт выходное дерево {@link OutputTree}: исходные файлы не изменяются, а копируются в тот же относительный
+     * каталог выходного дерева под исправленными именами. Журнал переименований при этом не ведётся.
+     *
+     * @param output Путь к каталогу вне исходного или null, чтобы переименовывать файлы на месте.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions output(Path output) {
+        this.output = output;
+        return this;
+    }
+
+    /**
+     * Проверяет, создаются ли в выходном дереве жёсткие ссылки вместо копий.
+     *
+     * @return true, если ссылки разрешены.
+     */
+    boolean outputLinks() {
+        return outputLinks;
+    }
+
+    /**
+     * Разрешает или запрещает жёсткие ссылки на исходные файлы, находящиеся в одном хранилище с выходным деревом.
+     * Ссылка не занимает места, но изменение копии изменит и исходный файл, поэтому по умолчанию данные копируются.
+     *
+     * @param outputLinks true, чтобы создавать ссылки, где это возможно.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions outputLinks(boolean outputLinks) {
+        this.outputLinks = outputLinks;
+        return this;
+    }
+
+    /**
+     * Возвращает наименьший размер обрабатываемого файла.
+     *
+     * @return Размер в байтах.
+     */
+    long minSize() {
+        return minSize;
+    }
+
+    /**
+     * Возвращает наибольший размер обрабатываемого файла.
+     *
+     * @return Размер в байтах.
+     */
+    long maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Задаёт диапазон размеров обрабатываемых файлов; файлы вне диапазона пропускаются без открытия.
+     *
+     * @param minSize Наименьший размер в байтах, не меньше 0.
+     * @param maxSize Наибольший размер в байтах, не меньше наименьшего.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions sizeRange(long minSize, long maxSize) {
+        if (minSize < 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("invalid size range: " + minSize + ".." + maxSize);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Возвращает шаблоны имён обрабатываемых файлов.
+     *
+     * @return Шаблоны; пустой список означает все файлы.
+     */
+    List<String> includes() {
+        return includes;
+    }
+
+    /**
+     * Добавляет шаблон имён обрабатываемых файлов; если шаблоны заданы, обрабатываются файлы,
+     * подходящие хотя бы к одному из них. Синтаксис описан в {@link MetadataFilter#matcher(String)}.
+     *
+     * @param pattern Шаблон имени файла.
+     * @return Этот объект параметров.
+     * @throws IllegalArgumentException Если шаблон записан неверно.
+     */
+    RecoveryOptions include(String pattern) {
+        MetadataFilter.matcher(pattern);
+        includes.add(pattern);
+        return this;
+    }
+
+    /**
+     * Возвращает шаблоны имён пропускаемых файлов.
+     *
+     * @return Шаблоны.
+     */
+    List<String> excludes() {
+        return excludes;
+    }
+
+    /**
+     * Добавляет шаблон имён файлов, которые пропускаются без открытия.
+     *
+     * @param pattern Шаблон имени файла.
+     * @return Этот объект параметров.
+     * @throws IllegalArgumentException Если шаблон записан неверно.
+     */
+    RecoveryOptions exclude(String pattern) {
+        MetadataFilter.matcher(pattern);
+        excludes.add(pattern);
+        return this;
+    }
+
+    /**
+     * Возвращает отбор файлов по уже имеющемуся расширению.
+     *
+     * @return Правило отбора.
+     */
+    ExtensionPolicy extensionPolicy() {
+        return extensionPolicy;
+    }
+
+    /**
+     * Задаёт отбор файлов по уже имеющемуся расширению.
+     *
+     * @param extensionPolicy Правило отбора.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions extensionPolicy(ExtensionPolicy extensionPolicy) {
+        if (extensionPolicy == null) {
+            throw new IllegalArgumentException("extensionPolicy must not be null");
+        }
+        this.extensionPolicy = extensionPolicy;
+        return this;
+    }
+
+    /**
+     * Возвращает начало окна времени изменения.
+     *
+     * @return Момент или null, если начало не ограничено.
+     */
+    Instant modifiedAfter() {
+        return modifiedAfter;
+    }
+
+    /**
+     * Задаёт начало окна времени изменения: файлы, изменённые раньше, пропускаются.
+     *
+     * @param modifiedAfter Момент включительно или null.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions modifiedAfter(Instant modifiedAfter) {
+        this.modifiedAfter = modifiedAfter;
+        return this;
+    }
+
+    /**
+     * Возвращает конец окна времени изменения.
+     *
+     * @return Момент или null, если конец не ограничен.
+     */
+    Instant modifiedBefore() {
+        return modifiedBefore;
+    }
+
+    /**
+     * Задаёт конец окна времени изменения: файлы, изменённые в этот момент или позже, пропускаются.
+     *
+     * @param modifiedBefore Момент, не входящий в окно, или null.
+     * @return Этот объект параметров.
+     */
+    RecoveryOptions modifiedBefore(Instant modifiedBefore) {
+        this.modifiedBefore = modifiedBefore;
+        return this;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.courr;
+
+/**
+ * Этап обработки файла, длительность которого измеряется {@link RecoveryMetrics}.
+ */
+enum RecoveryStage {
+    /**
+     * Открытие файла.
+     */
+    OPEN,
+    /**
+     * Чтение окон заголовка.
+     */
+    READ,
+    /**
+     * Определение формата по заголовку.
+     */
+    CLASSIFY,
+    /**
+     * Переименование файла, включая ожидание записи журнала, или его копирование в выходное дерево.
+     */
+    MOVE
+}
@@ -0,0 +1,31 @@
+package com.example.courr;
+
+/**
+ * Итог обработки одного файла при восстановлении расширений.
+ */
+enum RecoveryStatus {
+    /**
+     * Формат определён, файл переименован.
+     */
+    RENAMED,
+    /**
+     * Формат определён, но имя файла уже оканчивается на нужное расширение.
+     */
+    UNCHANGED,
+    /**
+     * Формат не удалось определить.
+     */
+    UNKNOWN,
+    /**
+     * Файл не изменился с прошлого запуска и имя менять не нужно; результат взят из кэша без чтения файла.
+     */
+    CACHED,
+    /**
+     * Файл пропущен без чтения.
+     */
+    SKIPPED,
+    /**
+     * При обработке файла произошла ошибка.
+     */
+    FAILED
+}
@@ -0,0 +1,87 @@
+package com.example.courr;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Сводка по завершённому запуску восстановления расширений.
+ *
+ * @param counts       Количество файлов по итогам обработки.
+ * @param elapsedNanos Длительность запуска в наносекундах.
+ */
+record RecoverySummary(Map<RecoveryStatus, Long> counts, long elapsedNanos) {
+
+    /**
+     * Создаёт сводку с неизменяемой копией счётчиков.
+     *
+     * @param counts       Количество файлов по итогам обработки.
+     * @param elapsedNanos Длительность запуска в наносекундах.
+     */
+    RecoverySummary {
+        counts = Collections.unmodifiableMap(new EnumMap<>(counts));
+    }
+
+    /**
+     * Возвращает сводку запуска, в котором не было обработано ни одного файла.
+     *
+     * @return Пустая сводка.
+     */
+    static RecoverySummary empty() {
+        return new RecoverySummary(new EnumMap<>(RecoveryStatus.class), 0);
+    }
+
+    /**
+     * Складывает сводки двух запусков.
+     *
+     * @param other Сводка другого запуска.
+     * @return Сводка с суммарными счётчиками и длительностью.
+     */
+    RecoverySummary plus(RecoverySummary other) {
+        Map<RecoveryStatus, Long> sum = new EnumMap<>(RecoveryStatus.class);
+        sum.putAll(counts);
+        other.counts.forEach((status, count) -> sum.merge(status, count, Long::sum));
+        return new RecoverySummary(sum, elapsedNanos + other.elapsedNanos);
+    }
+
+    /**
+     * Возвращает количество файлов с указанным итогом.
+     *
+     * @param status Итог обработки.
+     * @return Количество файлов.
+     */
+    long count(RecoveryStatus status) {
+        return counts.getOrDefault(status, 0L);
+    }
+
+    /**
+     * Возвращает общее количество обработанных файлов.
+     *
+     * @return Количество файлов.
+     */
+    long total() {
+        long total = 0;
+        for (long count : counts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Проверяет, что ни один файл не завершился ошибкой.
+     *
+     * @return true, если ошибок не было.
+     */
+    boolean isSuccessful() {
+        return count(RecoveryStatus.FAILED) == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "processed=%d renamed=%d unchanged=%d unknown=%d cached=%d skipped=%d failed=%d elapsed=%dms",
+                total(), count(RecoveryStatus.RENAMED), count(RecoveryStatus.UNCHANGED),
+                count(RecoveryStatus.UNKNOWN), count(RecoveryStatus.CACHED), count(RecoveryStatus.SKIPPED),
+                count(RecoveryStatus.FAILED), elapsedNanos / 1_000_000);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.courr;
+
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Фоновое восстановление расширений для графического интерфейса.
+ * Отдельного обхода для подсчёта файлов нет: доля выполненной работы считается от количества файлов, уже
+ * найденных обходчиком, и этот итог растёт, пока обход продолжается. Рабочие потоки только увеличивают
+ * счётчики; прогресс, скорость в файлах и мегабайтах прочитанных движком данных в секунду публикуются
+ * отдельным таймером не чаще {@link #UPDATE_MILLIS}, поэтому поток JavaFX не получает по событию на каждый файл.
+ * <p>
+ * {@link #stop()} прерывает обход; начатые файлы дорабатываются, и задача завершается успешно
+ * со сводкой по уже обработанным файлам. Если директорию, журнал или отчёт не удалось открыть либо обход
+ * прервался ошибкой ввода-вывода, задача завершается неуспешно.
+ */
+final class RecoveryTask extends Task<RecoverySummary> {
+    private static final long UPDATE_MILLIS = 200;
+
+    private final FileExtensionRecoveryService service;
+    private final String folderPath;
+    private final RecoveryOptions options;
+    private final Consumer<FileRecoveryResult> listener;
+    private final LongAdder completed = new LongAdder();
+    private volatile RecoveryMetrics metrics;
+    private Thread runner;
+    private volatile boolean stopRequested;
+
+    /**
+     * Создаёт задачу.
+     *
+     * @param service    Сервис восстановления расширений.
+     * @param folderPath Путь к целевой директории.
+     * @param options    Параметры запуска.
+     * @param listener   Получатель результата каждого файла; вызывается из рабочих потоков.
+     */
+    RecoveryTask(FileExtensionRecoveryService service, String folderPath, RecoveryOptions options,
+                 Consumer<FileRecoveryResult> listener) {
+        this.service = service;
+        this.folderPath = folderPath;
+        this.options = options;
+        this.listener = listener;
+    }
+
+    /**
+     * Запрашивает остановку: обход прерывается, файлы в обработке дорабатываются.
+     */
+    synchronized void stop() {
+        stopRequested = true;
+        if (runner != null) {
+            runner.interrupt();
+        }
+    }
+
+    /**
+     * Проверяет, была ли запрошена остановка.
+     *
+     * @return true, если задача была остановлена пользователем.
+     */
+    boolean isStopRequested() {
+        return stopRequested;
+    }
+
+    @Override
+    protected RecoverySummary call() throws IOException {
+        synchronized (this) {
+            if (stopRequested) {
+                return RecoverySummary.empty();
+            }
+            runner = Thread.currentThread();
+        }
+        updateMessage("Scanning files...");
+        updateProgress(-1, 1);
+        long start = System.nanoTime();
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "recovery-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> publish(start), 0, UPDATE_MILLIS, TimeUnit.MILLISECONDS);
+        try {
+            return service.recoverExtensions(folderPath, options, result -> {
+                completed.increment();
+                listener.accept(result);
+            }, started -> metrics = started);
+        } finally {
+            ticker.shutdownNow();
+            publish(start);
+            detach();
+        }
+    }
+
+    /**
+     * Отвязывает задачу от потока. Флаг прерывания не должен пережить задачу: поток может принадлежать пулу.
+     */
+    private synchronized void detach() {
+        runner = null;
+        Thread.interrupted();
+    }
+
+    private void publish(long start) {
+        RecoveryMetrics current = metrics;
+        if (current == null) {
+            return;
+        }
+        long done = completed.sum();
+        long found = current.getFilesScanned();
+        double seconds = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+        if (found > 0) {
+            updateProgress(Math.min(done, found), found);
+        }
+        updateMessage(String.format("%d / %d files, %.0f files/s, %.1f MB/s", done, found, done / seconds,
+                current.getBytesRead() / seconds / (1 << 20)));
+    }
+}
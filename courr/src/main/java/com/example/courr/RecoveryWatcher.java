@@ -0,0 +1,338 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Непрерывное восстановление расширений в каталоге, куда поступают новые файлы.
+ * Каталоги регистрируются в {@link WatchService}; события создания и изменения файла откладывают его обработку,
+ * пока файл не перестанет меняться в течение заданного времени, после чего он передаётся в {@link RecoveryEngine}.
+ * При переполнении очереди событий каталог, для которого оно произошло, перечитывается с ограничением
+ * на количество записей. В отсутствие событий поток наблюдателя заблокирован и не расходует процессор.
+ */
+final class RecoveryWatcher implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(RecoveryWatcher.class.getName());
+
+    /**
+     * Сколько путей, полученных при переименовании, помнит наблюдатель, чтобы не обрабатывать их повторно.
+     */
+    private static final int PRODUCED_LIMIT = 10_000;
+
+    private final RecoveryOptions options;
+    private final RecoveryEngine engine;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Map<Path, Pending> pending = new HashMap<>();
+    private final Map<Path, Boolean> produced;
+    private final long settleNanos;
+    private Path root;
+
+    /**
+     * Состояние файла, ожидающего окончания записи.
+     */
+    private static final class Pending {
+        private long deadline;
+        private long size;
+        private long modified;
+    }
+
+    /**
+     * Создаёт наблюдателя.
+     *
+     * @param service  Сервис, определяющий расширения файлов.
+     * @param options  Параметры запуска.
+     * @param listener Получатель результатов; вызывается из рабочих потоков.
+     * @throws IOException Если не удалось создать службу наблюдения или открыть журнал.
+     */
+    RecoveryWatcher(FileExtensionRecoveryService service, RecoveryOptions options,
+                    Consumer<FileRecoveryResult> listener) throws IOException {
+        this.options = options;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(options.watchSettleMillis());
+        this.produced = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Boolean> eldest) {
+                return size() > PRODUCED_LIMIT;
+            }
+        });
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            this.engine = new RecoveryEngine(service, options, result -> {
+                if (result.target() != null) {
+                    produced.put(result.target(), Boolean.TRUE);
+                }
+                listener.accept(result);
+            });
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Наблюдает за каталогом, пока поток не будет прерван или наблюдатель не будет закрыт.
+     * Файлы, уже находящиеся в каталоге, обрабатываются при запуске.
+     *
+     * @param root Корневой каталог.
+     * @throws IOException Если корневой каталог не удалось зарегистрировать.
+     */
+    void watch(Path root) throws IOException {
+        this.root = root;
+        try {
+            register(root, options.recursive() ? options.maxDepth() : 1, true);
+            logger.info("Watching {} ({} directories)", root, directories.size());
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = nextKey();
+                if (key != null) {
+                    handle(key);
+                }
+                submitSettled();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            logger.info("Watch service closed for {}", root);
+        }
+    }
+
+    /**
+     * Возвращает сводку по обработанным файлам. Полная сводка доступна после {@link #close()}, когда
+     * файлы, переданные в обработку до остановки наблюдения, доработаны.
+     *
+     * @return Сводка по обработанным файлам.
+     */
+    RecoverySummary summary() {
+        return engine.summary();
+    }
+
+    /**
+     * Закрывает службу наблюдения и останавливает обработку.
+     *
+     * @throws IOException Если журнал переименований или отчёт не удалось дописать.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.error("Error while closing watch service", e);
+        }
+        engine.close();
+    }
+
+    /**
+     * Ожидает очередное событие не дольше, чем до ближайшего срока проверки отложенного файла.
+     */
+    private WatchKey nextKey() throws InterruptedException {
+        if (pending.isEmpty()) {
+            return watchService.take();
+        }
+        long next = Long.MAX_VALUE;
+        for (Pending file : pending.values()) {
+            next = Math.min(next, file.deadline);
+        }
+        long wait = next - System.nanoTime();
+        return wait > 0 ? watchService.poll(wait, TimeUnit.NANOSECONDS) : watchService.poll();
+    }
+
+    private void handle(WatchKey key) throws InterruptedException {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (directory == null) {
+                continue;
+            }
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                rescan(directory);
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                pending.remove(path);
+            } else if (!produced.containsKey(path)) {
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    // Глубина отсчитывается от корня: каталог на предельной глубине не наблюдается, как и при обходе
+                    int depth = options.maxDepth() - root.relativize(path).getNameCount();
+                    if (kind == StandardWatchEventKinds.ENTRY_CREATE && options.recursive() && depth > 0) {
+                        try {
+                            register(path, depth, false);
+                        } catch (IOException e) {
+                            logger.error("Cannot watch directory: {}", path, e);
+                        }
+                    }
+                } else {
+                    defer(path);
+                }
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    /**
+     * Откладывает обработку файла до окончания записи.
+     */
+    private void defer(Path file) {
+        if (!options.includeHidden() && isHidden(file)) {
+            return;
+        }
+        Pending state = pending.computeIfAbsent(file, path -> new Pending());
+        state.deadline = System.nanoTime() + settleNanos;
+        state.size = -1;
+    }
+
+    /**
+     * Передаёт в обработку файлы, которые не менялись с прошлой проверки.
+     */
+    private void submitSettled() throws InterruptedException {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Pending>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Pending> entry = iterator.next();
+            Pending state = entry.getValue();
+            if (state.deadline > now) {
+                continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(entry.getKey(), BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException e) {
+                iterator.remove();
+                continue;
+            } catch (IOException e) {
+                iterator.remove();
+                engine.reportFailure(entry.getKey(), e);
+                continue;
+            }
+            long modified = attributes.lastModifiedTime().toMillis();
+            if (state.size != attributes.size() || state.modified != modified) {
+                // Файл ещё записывается: ждём следующего интервала без изменений
+                state.size = attributes.size();
+                state.modified = modified;
+                state.deadline = now + settleNanos;
+                continue;
+            }
+            iterator.remove();
+            // Событие о собственном переименовании могло прийти раньше, чем рабочий поток отметил новый путь
+            if (attributes.isRegularFile() && produced.remove(entry.getKey()) == null) {
+                engine.submit(entry.getKey(), attributes);
+            }
+        }
+    }
+
+    /**
+     * Перечитывает каталог после переполнения очереди событий, не более заданного количества записей.
+     */
+    private void rescan(Path directory) {
+        int limit = options.watchRescanLimit();
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                if (count++ >= limit) {
+                    logger.warn("Rescan of {} stopped after {} entries", directory, limit);
+                    break;
+                }
+                if (Files.isRegularFile(entry, LinkOption.NOFOLLOW_LINKS) && !produced.containsKey(entry)) {
+                    defer(entry);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error while rescanning directory: {}", directory, e);
+        }
+        logger.warn("Watch events overflowed for {}; rescanned {} entries", directory, Math.min(count, limit));
+    }
+
+    private static boolean isHidden(Path path) {
+        try {
+            return Files.isHidden(path);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Регистрирует каталог (и вложенные, если обход рекурсивный). Уже лежащие в нём файлы, которые не менялись
+     * дольше интервала ожидания, сразу передаются в обработку, остальные откладываются.
+     *
+     * @param start  Регистрируемый каталог.
+     * @param depth  Оставшаяся глубина обхода от этого каталога.
+     * @param isRoot true для корневого каталога наблюдения.
+     */
+    private void register(Path start, int depth, boolean isRoot) throws IOException, InterruptedException {
+        long settledBefore = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(settleNanos);
+        InterruptedException[] interrupted = new InterruptedException[1];
+        Files.walkFileTree(start, EnumSet.noneOf(FileVisitOption.class), depth,
+                new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                        if (!dir.equals(start) && !options.includeHidden() && isHidden(dir)) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        try {
+                            WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                            directories.put(key, dir);
+                        } catch (IOException e) {
+                            if (dir.equals(start) && isRoot) {
+                                throw e;
+                            }
+                            logger.error("Cannot watch directory: {}", dir, e);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (!attrs.isRegularFile() || (!options.includeHidden() && isHidden(file))) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        if (attrs.lastModifiedTime().toMillis() >= settledBefore) {
+                            defer(file);
+                            return FileVisitResult.CONTINUE;
+                        }
+                        try {
+                            engine.submit(file, attrs);
+                            return FileVisitResult.CONTINUE;
+                        } catch (InterruptedException e) {
+                            interrupted[0] = e;
+                            return FileVisitResult.TERMINATE;
+                        }
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        logger.error("Cannot read directory entry: {}", file, exc);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+        if (interrupted[0] != null) {
+            throw interrupted[0];
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал переименований с упреждающей записью.
+ * Перед перемещением файла в журнал добавляется запись о запланированном переименовании, и перемещение
+ * выполняется только после того, как запись сброшена на диск; после перемещения добавляется запись о завершении.
+ * Сброс на диск ({@link FileChannel#force(boolean)}) выполняется группами: поток, первым дождавшийся своей очереди,
+ * записывает накопленные записи всех потоков одним вызовом, поэтому стоимость синхронизации делится между файлами.
+ * <p>
+ * Каждая запись снабжена контрольной суммой; незавершённая запись в конце файла после сбоя отбрасывается при открытии.
+ */
+final class RenameJournal implements RenameLog, Closeable {
+    private static final Logger logger = LogManager.getLogger(RenameJournal.class.getName());
+
+    private static final int MAGIC = 0x43524A31;
+
+    /**
+     * Тип записи журнала.
+     */
+    enum RecordType {
+        /**
+         * Переименование запланировано.
+         */
+        PLANNED,
+        /**
+         * Переименование выполнено.
+         */
+        COMPLETED,
+        /**
+         * Переименование отменено.
+         */
+        UNDONE
+    }
+
+    /**
+     * Запись журнала.
+     *
+     * @param type   Тип записи.
+     * @param source Исходный путь к файлу.
+     * @param target Новый путь к файлу.
+     */
+    record Entry(RecordType type, Path source, Path target) {
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int batchSize;
+    private final long commitWindowNanos;
+    private final Object lock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private int pendingRecords;
+    private long appendedSequence;
+    private long durableSequence;
+    private boolean syncing;
+    private IOException failure;
+
+    private RenameJournal(Path path, FileChannel channel, int batchSize, long commitWindowMillis) {
+        this.path = path;
+        this.channel = channel;
+        this.batchSize = batchSize;
+        this.commitWindowNanos = commitWindowMillis * 1_000_000;
+    }
+
+    /**
+     * Открывает журнал для дописывания, создавая его при необходимости.
+     * Повреждённый хвост, оставшийся после сбоя, обрезается.
+     *
+     * @param path               Путь к файлу журнала.
+     * @param batchSize          Количество записей, при накоплении которого сброс на диск выполняется немедленно.
+     * @param commitWindowMillis Время, в течение которого поток-лидер ждёт записи других потоков перед сбросом.
+     * @return Открытый журнал.
+     * @throws IOException Если журнал не удалось открыть или он имеет неверный формат.
+     */
+    static RenameJournal open(Path path, int batchSize, long commitWindowMillis) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                channel.write(ByteBuffer.allocate(4).putInt(0, MAGIC));
+                channel.force(true);
+            } else {
+                long validEnd = scan(channel, null);
+                if (validEnd < channel.size()) {
+                    logger.warn("Truncating incomplete journal tail: {} ({} bytes)", path, channel.size() - validEnd);
+                    channel.truncate(validEnd);
+                }
+            }
+            channel.position(channel.size());
+            return new RenameJournal(path, channel, batchSize, commitWindowMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Читает все целые записи журнала.
+     *
+     * @param path Путь к файлу журнала.
+     * @return Записи в порядке добавления.
+     * @throws IOException Если журнал не удалось прочитать или он имеет неверный формат.
+     */
+    static List<Entry> read(Path path) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            scan(channel, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Добавляет запись о запланированном переименовании.
+     *
+     * @param source Исходный путь к файлу.
+     * @param target Новый путь к файлу.
+     * @return Порядковый номер записи для {@link #awaitDurable(long)}.
+     */
+    long planned(Path source, Path target) {
+        return append(RecordType.PLANNED, source, target);
+    }
+
+    /**
+     * Добавляет запись о выполненном переименовании. Запись попадает на диск вместе со следующей группой.
+     *
+     * @param source Исходный путь к файлу.
+     * @param target Новый путь к файлу.
+     */
+    void completed(Path source, Path target) {
+        append(RecordType.COMPLETED, source, target);
+    }
+
+    @Override
+    public boolean beforeRename(Path source, Path target) throws IOException {
+        awaitDurable(planned(source, target));
+        return true;
+    }
+
+    @Override
+    public void afterRename(Path source, Path target) {
+        completed(source, target);
+    }
+
+    /**
+     * Ожидает, пока запись с указанным номером не будет сброшена на диск.
+     * Если сброс в этот момент никто не выполняет, вызывающий поток становится лидером группы и выполняет его сам.
+     *
+     * @param sequence Порядковый номер записи.
+     * @throws IOException Если запись или сброс журнала завершились ошибкой.
+     */
+    void awaitDurable(long sequence) throws IOException {
+        while (true) {
+            byte[] batch;
+            long batchSequence;
+            synchronized (lock) {
+                while (true) {
+                    if (failure != null) {
+                        throw new IOException("Rename journal is unusable", failure);
+                    }
+                    if (durableSequence >= sequence) {
+                        return;
+                    }
+                    if (!syncing) {
+                        break;
+                    }
+                    waitOnLock(0);
+                }
+                syncing = true;
+                // Лидер даёт другим потокам время присоединиться к группе
+                long deadline = System.nanoTime() + commitWindowNanos;
+                long remaining;
+                try {
+                    while (pendingRecords < batchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                        waitOnLock(remaining);
+                    }
+                } catch (InterruptedIOException e) {
+                    syncing = false;
+                    lock.notifyAll();
+                    throw e;
+                }
+                batch = pending.toByteArray();
+                batchSequence = appendedSequence;
+                pending = new ByteArrayOutputStream();
+                pendingRecords = 0;
+            }
+            IOException error = null;
+            try {
+                write(batch);
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (lock) {
+                syncing = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSequence = batchSequence;
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает накопленные записи на диск и закрывает журнал.
+     *
+     * @throws IOException Если запись или закрытие завершились ошибкой.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            synchronized (lock) {
+                while (syncing) {
+                    waitOnLock(0);
+                }
+                if (failure == null) {
+                    write(pending.toByteArray());
+                    channel.force(false);
+                    pending = new ByteArrayOutputStream();
+                    durableSequence = appendedSequence;
+                }
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Отменяет переименования, записанные в журнале, в обратном порядке.
+     * Файл возвращается на прежнее место, только если исходное имя свободно. Каждая отмена записывается в журнал,
+     * поэтому повторный вызов после прерывания продолжает с того же места.
+     *
+     * @param path Путь к файлу журнала.
+     * @return Сводка: {@link RecoveryStatus#RENAMED} — возвращённые файлы, {@link RecoveryStatus#SKIPPED} —
+     * уже отменённые или отсутствующие, {@link RecoveryStatus#FAILED} — ошибки.
+     * @throws IOException Если журнал не удалось прочитать или дописать.
+     */
+    static RecoverySummary undo(Path path) throws IOException {
+        long start = System.nanoTime();
+        Map<Path, Path> renamed = new LinkedHashMap<>();
+        for (Entry entry : read(path)) {
+            switch (entry.type()) {
+                case PLANNED:
+                    // Перемещение могло завершиться до сбоя, не успев попасть в журнал
+                    if (Files.exists(entry.target()) && !Files.exists(entry.source())) {
+                        renamed.put(entry.target(), entry.source());
+                    }
+                    break;
+                case COMPLETED:
+                    renamed.put(entry.target(), entry.source());
+                    break;
+                case UNDONE:
+                    renamed.remove(entry.target());
+                    break;
+                default:
+                    break;
+            }
+        }
+        List<Map.Entry<Path, Path>> moves = new ArrayList<>(renamed.entrySet());
+        Collections.reverse(moves);
+        Map<RecoveryStatus, Long> counts = new EnumMap<>(RecoveryStatus.class);
+        try (RenameJournal journal = open(path, Integer.MAX_VALUE, 0)) {
+            for (Map.Entry<Path, Path> move : moves) {
+                Path target = move.getKey();
+                Path source = move.getValue();
+                RecoveryStatus status;
+                if (!Files.exists(target) || Files.exists(source)) {
+                    logger.warn("Cannot undo rename of {} to {}: file missing or original name taken", source, target);
+                    status = RecoveryStatus.SKIPPED;
+                } else {
+                    try {
+                        Files.move(target, source);
+                        journal.append(RecordType.UNDONE, source, target);
+                        status = RecoveryStatus.RENAMED;
+                    } catch (IOException e) {
+                        logger.error("Error while undoing rename of {} to {}", source, target, e);
+                        status = RecoveryStatus.FAILED;
+                    }
+                }
+                counts.merge(status, 1L, Long::sum);
+            }
+        }
+        return new RecoverySummary(counts, System.nanoTime() - start);
+    }
+
+    /**
+     * Восстанавливает состояние прерванного запуска по журналу.
+     * Переименования, выполненные до сбоя, но не отмеченные как завершённые, дописываются в журнал.
+     *
+     * @return Пути, которые файлы получили в результате выполненных и не отменённых переименований.
+     * @throws IOException Если журнал не удалось прочитать.
+     */
+    Set<Path> resume() throws IOException {
+        Map<Path, Path> planned = new LinkedHashMap<>();
+        Set<Path> done = new HashSet<>();
+        for (Entry entry : read(path)) {
+            switch (entry.type()) {
+                case PLANNED:
+                    planned.put(entry.source(), entry.target());
+                    break;
+                case COMPLETED:
+                    planned.remove(entry.source());
+                    done.add(entry.target());
+                    break;
+                case UNDONE:
+                    done.remove(entry.target());
+                    break;
+                default:
+                    break;
+            }
+        }
+        for (Map.Entry<Path, Path> entry : planned.entrySet()) {
+            if (Files.exists(entry.getValue()) && !Files.exists(entry.getKey())) {
+                completed(entry.getKey(), entry.getValue());
+                done.add(entry.getValue());
+            }
+        }
+        return done;
+    }
+
+    private long append(RecordType type, Path source, Path target) {
+        byte[] record = encode(type, source, target);
+        synchronized (lock) {
+            pending.write(record, 0, record.length);
+            pendingRecords++;
+            if (pendingRecords >= batchSize) {
+                lock.notifyAll();
+            }
+            return ++appendedSequence;
+        }
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void waitOnLock(long nanos) throws InterruptedIOException {
+        try {
+            if (nanos > 0) {
+                lock.wait(nanos / 1_000_000, (int) (nanos % 1_000_000));
+            } else {
+                lock.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for rename journal");
+        }
+    }
+
+    /**
+     * Формирует запись: длина содержимого, тип, пути в UTF-8 и CRC32 содержимого.
+     */
+    private static byte[] encode(RecordType type, Path source, Path target) {
+        byte[] sourceBytes = source.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+        byte[] targetBytes = target.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+        int payloadLength = 1 + 4 + sourceBytes.length + 4 + targetBytes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + payloadLength + 4);
+        buffer.putInt(payloadLength);
+        buffer.put((byte) type.ordinal());
+        buffer.putInt(sourceBytes.length).put(sourceBytes);
+        buffer.putInt(targetBytes.length).put(targetBytes);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, payloadLength);
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Читает записи журнала с начала файла.
+     *
+     * @param channel Канал файла журнала.
+     * @param entries Список для прочитанных записей или null.
+     * @return Смещение конца последней целой записи.
+     */
+    private static long scan(FileChannel channel, List<Entry> entries) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        if (channel.read(header, 0) < 4 || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a rename journal");
+        }
+        long size = channel.size();
+        long position = 4;
+        ByteBuffer length = ByteBuffer.allocate(4);
+        while (position + 4 <= size) {
+            length.clear();
+            channel.read(length, position);
+            int payloadLength = length.getInt(0);
+            if (payloadLength < 9 || position + 4 + payloadLength + 4 > size) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(payloadLength + 4);
+            while (record.hasRemaining() && channel.read(record, position + 4 + record.position()) > 0) {
+                // Чтение продолжается, пока запись не прочитана целиком
+            }
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 0, payloadLength);
+            if ((int) crc.getValue() != record.getInt(payloadLength)) {
+                break;
+            }
+            if (entries != null) {
+                record.flip();
+                RecordType type = RecordType.values()[record.get()];
+                byte[] source = new byte[record.getInt()];
+                record.get(source);
+                byte[] target = new byte[record.getInt()];
+                record.get(target);
+                entries.add(new Entry(type, Path.of(new String(source, StandardCharsets.UTF_8)),
+                        Path.of(new String(target, StandardCharsets.UTF_8))));
+            }
+            position += 4 + payloadLength + 4;
+        }
+        return position;
+    }
+}
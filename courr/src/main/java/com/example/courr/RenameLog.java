@@ -0,0 +1,29 @@
+package com.example.courr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Журнал переименований, которые выполняет {@link RecoveryEngine}: намерение записывается до перемещения файла,
+ * факт перемещения — после него.
+ */
+interface RenameLog {
+
+    /**
+     * Регистрирует запланированное переименование и ожидает, пока запись не станет долговечной.
+     *
+     * @param source Исходный путь к файлу.
+     * @param target Новый путь к файлу.
+     * @return false, если файл уже переименован другим процессом и перемещать его нельзя.
+     * @throws IOException Если запись не удалось сохранить.
+     */
+    boolean beforeRename(Path source, Path target) throws IOException;
+
+    /**
+     * Регистрирует выполненное переименование.
+     *
+     * @param source Исходный путь к файлу.
+     * @param target Новый путь к файлу.
+     */
+    void afterRename(Path source, Path target);
+}
@@ -0,0 +1,15 @@
+package com.example.courr;
+
+/**
+ * Формат отчёта о запуске, записываемого {@link RunReportWriter}.
+ */
+enum ReportFormat {
+    /**
+     * Одна запись JSON на строку.
+     */
+    JSONL,
+    /**
+     * Значения, разделённые запятыми, со строкой заголовка.
+     */
+    CSV
+}
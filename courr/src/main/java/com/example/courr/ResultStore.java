@@ -0,0 +1,328 @@
+package com.example.courr;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Результаты запуска в столбцовом виде для таблицы в графическом интерфейсе.
+ * Строка хранится как несколько примитивных значений: номер каталога, смещение имени в общем буфере UTF-8,
+ * номер расширения, итог и размер — около 20 байт плюс длина имени. Объекты {@link Path} и строки
+ * создаются только для отображаемых строк. Каталоги и расширения хранятся один раз в таблицах.
+ * <p>
+ * Экземпляр не является потокобезопасным: строки добавляются и читаются из одного потока.
+ */
+final class ResultStore {
+    /**
+     * Номер расширения строки, для которой формат не определён.
+     */
+    static final int NO_EXTENSION = 0;
+
+    /**
+     * Столбец, по которому можно сортировать строки.
+     */
+    enum Column {
+        FOLDER, NAME, TYPE, STATUS, SIZE
+    }
+
+    private static final RecoveryStatus[] STATUSES = RecoveryStatus.values();
+
+    private final List<String> directories = new ArrayList<>();
+    private final Map<Path, Integer> directoryIds = new HashMap<>();
+    private final List<String> extensions = new ArrayList<>(List.of(""));
+    private final Map<String, Integer> extensionIds = new HashMap<>(Map.of("", NO_EXTENSION));
+    private int[] directoryOf = new int[1024];
+    private int[] nameStart = new int[1025];
+    private byte[] extensionOf = new byte[1024];
+    private byte[] statusOf = new byte[1024];
+    private long[] sizeOf = new long[1024];
+    private byte[] names = new byte[16 * 1024];
+    private int count;
+
+    /**
+     * Добавляет результат обработки файла.
+     *
+     * @param result Результат обработки.
+     * @return Номер добавленной строки.
+     */
+    int add(FileRecoveryResult result) {
+        if (count == directoryOf.length) {
+            int capacity = count * 2;
+            directoryOf = Arrays.copyOf(directoryOf, capacity);
+            nameStart = Arrays.copyOf(nameStart, capacity + 1);
+            extensionOf = Arrays.copyOf(extensionOf, capacity);
+            statusOf = Arrays.copyOf(statusOf, capacity);
+            sizeOf = Arrays.copyOf(sizeOf, capacity);
+        }
+        Path source = result.source();
+        Path parent = source.getParent();
+        Integer directory = directoryIds.get(parent);
+        if (directory == null) {
+            directory = directories.size();
+            directories.add(parent == null ? "" : parent.toString());
+            directoryIds.put(parent, directory);
+        }
+        Path fileName = source.getFileName();
+        byte[] name = (fileName == null ? source.toString() : fileName.toString()).getBytes(StandardCharsets.UTF_8);
+        int start = nameStart[count];
+        if (start + name.length > names.length) {
+            names = Arrays.copyOf(names, Math.max(names.length * 2, start + name.length));
+        }
+        System.arraycopy(name, 0, names, start, name.length);
+        directoryOf[count] = directory;
+        nameStart[count + 1] = start + name.length;
+        extensionOf[count] = (byte) extensionId(result.extension());
+        statusOf[count] = (byte) result.status().ordinal();
+        sizeOf[count] = result.size();
+        return count++;
+    }
+
+    /**
+     * Возвращает количество строк.
+     *
+     * @return Количество строк.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Возвращает каталог файла.
+     *
+     * @param row Номер строки.
+     * @return Путь к каталогу.
+     */
+    String directory(int row) {
+        return directories.get(directoryOf[row]);
+    }
+
+    /**
+     * Возвращает исходное имя файла.
+     *
+     * @param row Номер строки.
+     * @return Имя файла.
+     */
+    String name(int row) {
+        return new String(names, nameStart[row], nameStart[row + 1] - nameStart[row], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Возвращает имя файла после обработки.
+     *
+     * @param row Номер строки.
+     * @return Новое имя, если файл переименован, иначе исходное.
+     */
+    String targetName(int row) {
+        String name = name(row);
+        return status(row) == RecoveryStatus.RENAMED ? name + "." + extension(row) : name;
+    }
+
+    /**
+     * Возвращает определённое расширение.
+     *
+     * @param row Номер строки.
+     * @return Расширение или пустая строка, если формат не определён.
+     */
+    String extension(int row) {
+        return extensions.get(extensionId(row));
+    }
+
+    /**
+     * Возвращает номер расширения в таблице {@link #extensions()}.
+     *
+     * @param row Номер строки.
+     * @return Номер расширения; {@link #NO_EXTENSION}, если формат не определён.
+     */
+    int extensionId(int row) {
+        return extensionOf[row] & 0xFF;
+    }
+
+    /**
+     * Возвращает итог обработки.
+     *
+     * @param row Номер строки.
+     * @return Итог обработки.
+     */
+    RecoveryStatus status(int row) {
+        return STATUSES[statusOf[row]];
+    }
+
+    /**
+     * Возвращает размер файла.
+     *
+     * @param row Номер строки.
+     * @return Размер в байтах или -1, если он неизвестен.
+     */
+    long size(int row) {
+        return sizeOf[row];
+    }
+
+    /**
+     * Возвращает таблицу расширений; нулевой элемент — пустая строка для неопределённого формата.
+     *
+     * @return Неизменяемый список расширений.
+     */
+    List<String> extensions() {
+        return Collections.unmodifiableList(extensions);
+    }
+
+    /**
+     * Возвращает сравнение строк по столбцу. Имена сравниваются побайтово в UTF-8, то есть по кодовым точкам,
+     * без создания строк; каталоги и расширения — по заранее вычисленному порядку.
+     *
+     * @param column Столбец.
+     * @return Сравнение номеров строк.
+     */
+    IntBinaryOperator comparator(Column column) {
+        switch (column) {
+            case FOLDER: {
+                int[] rank = rank(directories);
+                return (a, b) -> Integer.compare(rank[directoryOf[a]], rank[directoryOf[b]]);
+            }
+            case NAME:
+                return this::compareNames;
+            case TYPE: {
+                int[] rank = rank(extensions);
+                return (a, b) -> Integer.compare(rank[extensionOf[a] & 0xFF], rank[extensionOf[b] & 0xFF]);
+            }
+            case STATUS:
+                return (a, b) -> Byte.compare(statusOf[a], statusOf[b]);
+            default:
+                return (a, b) -> Long.compare(sizeOf[a], sizeOf[b]);
+        }
+    }
+
+    /**
+     * Вычисляет ключи сортировки строк: порядок ключей совпадает с порядком {@link #comparator(Column)},
+     * а для имён ключ — первые восемь байтов, и равные ключи нужно различать сравнением.
+     *
+     * @param column Столбец.
+     * @param rows   Номера строк.
+     * @param length Количество строк в начале массива.
+     * @return Ключи в порядке номеров строк массива.
+     */
+    long[] sortKeys(Column column, int[] rows, int length) {
+        long[] keys = new long[length];
+        int[] rank = column == Column.FOLDER ? rank(directories) : column == Column.TYPE ? rank(extensions) : null;
+        for (int i = 0; i < length; i++) {
+            int row = rows[i];
+            switch (column) {
+                case FOLDER:
+                    keys[i] = rank[directoryOf[row]];
+                    break;
+                case NAME:
+                    keys[i] = namePrefix(row);
+                    break;
+                case TYPE:
+                    keys[i] = rank[extensionOf[row] & 0xFF];
+                    break;
+                case STATUS:
+                    keys[i] = statusOf[row];
+                    break;
+                default:
+                    keys[i] = sizeOf[row];
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Устойчиво сортирует номера строк сортировкой слиянием без упаковки в объекты. Строки сравниваются
+     * по ключам, а при равных ключах — дополнительным сравнением.
+     *
+     * @param rows     Номера строк.
+     * @param keys     Ключи строк из {@link #sortKeys(Column, int[], int)}; переставляются вместе со строками.
+     * @param length   Количество сортируемых элементов в начале массивов.
+     * @param tieBreak Сравнение номеров строк с равными ключами.
+     */
+    static void sort(int[] rows, long[] keys, int length, IntBinaryOperator tieBreak) {
+        int[] fromRows = rows;
+        long[] fromKeys = keys;
+        int[] toRows = new int[length];
+        long[] toKeys = new long[length];
+        for (int width = 1; width < length; width *= 2) {
+            for (int low = 0; low < length; low += 2 * width) {
+                int middle = Math.min(low + width, length);
+                int high = Math.min(low + 2 * width, length);
+                int i = low;
+                int j = middle;
+                int k = low;
+                while (i < middle && j < high) {
+                    int order = Long.compare(fromKeys[j], fromKeys[i]);
+                    if (order < 0 || order == 0 && tieBreak.applyAsInt(fromRows[j], fromRows[i]) < 0) {
+                        toKeys[k] = fromKeys[j];
+                        toRows[k++] = fromRows[j++];
+                    } else {
+                        toKeys[k] = fromKeys[i];
+                        toRows[k++] = fromRows[i++];
+                    }
+                }
+                System.arraycopy(fromRows, i, toRows, k, middle - i);
+                System.arraycopy(fromKeys, i, toKeys, k, middle - i);
+                System.arraycopy(fromRows, j, toRows, k + middle - i, high - j);
+                System.arraycopy(fromKeys, j, toKeys, k + middle - i, high - j);
+            }
+            int[] swapRows = fromRows;
+            fromRows = toRows;
+            toRows = swapRows;
+            long[] swapKeys = fromKeys;
+            fromKeys = toKeys;
+            toKeys = swapKeys;
+        }
+        if (fromRows != rows) {
+            System.arraycopy(fromRows, 0, rows, 0, length);
+            System.arraycopy(fromKeys, 0, keys, 0, length);
+        }
+    }
+
+    /**
+     * Возвращает первые восемь байтов имени как число, знаковое сравнение которого повторяет
+     * беззнаковое сравнение байтов.
+     */
+    private long namePrefix(int row) {
+        long prefix = 0;
+        int start = nameStart[row];
+        int end = nameStart[row + 1];
+        for (int i = 0; i < Long.BYTES; i++) {
+            prefix = prefix << 8 | (start + i < end ? names[start + i] & 0xFF : 0);
+        }
+        return prefix ^ Long.MIN_VALUE;
+    }
+
+    private int compareNames(int a, int b) {
+        return Arrays.compareUnsigned(names, nameStart[a], nameStart[a + 1], names, nameStart[b], nameStart[b + 1]);
+    }
+
+    private int extensionId(String extension) {
+        String key = extension == null ? "" : extension;
+        Integer id = extensionIds.get(key);
+        if (id == null) {
+            if (extensions.size() > 0xFF) {
+                throw new IllegalStateException("Too many distinct extensions: " + extensions.size());
+            }
+            id = extensions.size();
+            extensions.add(key);
+            extensionIds.put(key, id);
+        }
+        return id;
+    }
+
+    private static int[] rank(List<String> values) {
+        Integer[] order = new Integer[values.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> values.get(a).compareTo(values.get(b)));
+        int[] rank = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            rank[order[i]] = i;
+        }
+        return rank;
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.courr;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Таблица результатов запуска с фильтрами по формату, итогу и размеру.
+ * Результаты из рабочих потоков ставятся в очередь и переносятся в {@link ResultStore} пачками
+ * по таймеру {@link #DRAIN_MILLIS} в потоке JavaFX. Элементы таблицы — номера строк хранилища
+ * в массиве {@code int}; {@link TableView} создаёт ячейки только для видимых строк, поэтому таблица
+ * остаётся отзывчивой и на миллионах строк.
+ * <p>
+ * Пока запуск идёт, новые строки добавляются в конец таблицы, даже если включена сортировка: пересортировка
+ * всех строк на каждой пачке заняла бы поток JavaFX. Строки пересортировываются при смене сортировки
+ * или фильтра и по окончании запуска. Больше {@link #SYNC_SORT_ROWS} строк сортируются в фоновом потоке;
+ * пока сортировка идёт, хранилище не меняется, а новые результаты ждут в очереди.
+ */
+final class ResultsView {
+    private static final long DRAIN_MILLIS = 250;
+    private static final int SYNC_SORT_ROWS = 50_000;
+    private static final String ALL = "All";
+    private static final String UNKNOWN_TYPE = "(unknown)";
+
+    private final ConcurrentLinkedQueue<FileRecoveryResult> pending = new ConcurrentLinkedQueue<>();
+    private final TableView<Integer> table = new TableView<>();
+    private final ComboBox<String> typeFilter = new ComboBox<>();
+    private final ComboBox<String> statusFilter = new ComboBox<>();
+    private final TextField minSizeField = new TextField();
+    private final TextField maxSizeField = new TextField();
+    private final Label countLabel = new Label();
+    private final Timeline drainer = new Timeline(new KeyFrame(Duration.millis(DRAIN_MILLIS), event -> drain()));
+    private final ExecutorService sorter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "results-sort");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final VBox root;
+    private ResultStore store = new ResultStore();
+    private Rows rows = new Rows(new int[0], 0);
+    private int knownTypes;
+    private int typeId = -1;
+    private RecoveryStatus status;
+    private long minSize = Long.MIN_VALUE;
+    private long maxSize = Long.MAX_VALUE;
+    private List<String> sortedBy = List.of();
+    private int sortGeneration;
+    private boolean sorting;
+
+    /**
+     * Создаёт пустую таблицу результатов.
+     */
+    ResultsView() {
+        table.getColumns().add(column("Folder", ResultStore.Column.FOLDER, 200, store -> store::directory));
+        table.getColumns().add(column("Name", ResultStore.Column.NAME, 160, store -> store::name));
+        table.getColumns().add(column("New name", ResultStore.Column.NAME, 160, store -> store::targetName));
+        table.getColumns().add(column("Type", ResultStore.Column.TYPE, 60, store -> store::extension));
+        table.getColumns().add(column("Status", ResultStore.Column.STATUS, 90, store -> store::status));
+        table.getColumns().add(column("Size", ResultStore.Column.SIZE, 90, store -> store::size));
+        table.setSortPolicy(tableView -> {
+            sort(rows.items, rows.size, false);
+            return true;
+        });
+        table.setItems(rows);
+        table.setPlaceholder(new Label("No results"));
+
+        typeFilter.getItems().add(ALL);
+        typeFilter.setValue(ALL);
+        typeFilter.setOnAction(event -> refresh());
+        statusFilter.getItems().add(ALL);
+        for (RecoveryStatus value : RecoveryStatus.values()) {
+            statusFilter.getItems().add(value.name());
+        }
+        statusFilter.setValue(ALL);
+        statusFilter.setOnAction(event -> refresh());
+        minSizeField.setPromptText("min KB");
+        minSizeField.setPrefColumnCount(6);
+        minSizeField.setOnAction(event -> refresh());
+        maxSizeField.setPromptText("max KB");
+        maxSizeField.setPrefColumnCount(6);
+        maxSizeField.setOnAction(event -> refresh());
+        drainer.setCycleCount(Timeline.INDEFINITE);
+
+        HBox filters = new HBox(8, new Label("Type:"), typeFilter, new Label("Status:"), statusFilter,
+                new Label("Size:"), minSizeField, new Label("–"), maxSizeField, countLabel);
+        filters.setPadding(new Insets(0, 0, 4, 0));
+        VBox.setVgrow(table, Priority.ALWAYS);
+        root = new VBox(filters, table);
+        updateCount();
+    }
+
+    /**
+     * Возвращает элемент интерфейса с фильтрами и таблицей.
+     *
+     * @return Корневой элемент.
+     */
+    Node node() {
+        return root;
+    }
+
+    /**
+     * Ставит результат в очередь на отображение. Может вызываться из любого потока.
+     *
+     * @param result Результат обработки файла.
+     */
+    void accept(FileRecoveryResult result) {
+        pending.add(result);
+    }
+
+    /**
+     * Очищает таблицу и начинает переносить результаты нового запуска. Вызывается в потоке JavaFX.
+     */
+    void start() {
+        pending.clear();
+        store = new ResultStore();
+        sorting = false;
+        knownTypes = 0;
+        typeFilter.getItems().setAll(ALL);
+        typeFilter.setValue(ALL);
+        refresh();
+        drainer.play();
+    }
+
+    /**
+     * Переносит оставшиеся результаты и сортирует таблицу. Вызывается в потоке JavaFX после завершения запуска.
+     */
+    void finish() {
+        drainer.stop();
+        drain();
+        sort(rows.items, rows.size, true);
+    }
+
+    /**
+     * Переносит накопленные результаты в хранилище и добавляет подходящие под фильтр строки в конец таблицы.
+     */
+    private void drain() {
+        if (sorting) {
+            return;
+        }
+        int from = rows.size;
+        FileRecoveryResult result;
+        while ((result = pending.poll()) != null) {
+            int row = store.add(result);
+            if (matches(row)) {
+                rows.append(row);
+            }
+        }
+        if (rows.size > from) {
+            rows.added(from, rows.size);
+        }
+        List<String> extensions = store.extensions();
+        for (; knownTypes < extensions.size(); knownTypes++) {
+            String extension = extensions.get(knownTypes);
+            typeFilter.getItems().add(extension.isEmpty() ? UNKNOWN_TYPE : extension);
+        }
+        updateCount();
+    }
+
+    /**
+     * Читает фильтры и заново строит список отображаемых строк.
+     */
+    private void refresh() {
+        String type = typeFilter.getValue();
+        typeId = type == null || ALL.equals(type) ? -1 : typeFilter.getItems().indexOf(type) - 1;
+        String statusName = statusFilter.getValue();
+        status = statusName == null || ALL.equals(statusName) ? null : RecoveryStatus.valueOf(statusName);
+        minSize = parseKilobytes(minSizeField, Long.MIN_VALUE);
+        maxSize = parseKilobytes(maxSizeField, Long.MAX_VALUE);
+        int size = store.size();
+        int[] items = new int[Math.max(16, size)];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (matches(row)) {
+                items[count++] = row;
+            }
+        }
+        sort(items, count, true);
+    }
+
+    /**
+     * Сортирует строки по порядку сортировки таблицы и показывает результат. Строки без сортировки
+     * показываются в порядке обработки.
+     *
+     * @param items Номера строк; массив переходит во владение таблицы.
+     * @param count Количество строк в начале массива.
+     * @param force true, чтобы пересортировать строки, даже если порядок сортировки не изменился.
+     */
+    private void sort(int[] items, int count, boolean force) {
+        List<String> order = new ArrayList<>();
+        List<IntBinaryOperator> comparators = new ArrayList<>();
+        for (TableColumn<Integer, ?> column : table.getSortOrder()) {
+            ResultStore.Column key = (ResultStore.Column) column.getUserData();
+            boolean descending = column.getSortType() == TableColumn.SortType.DESCENDING;
+            order.add(key + (descending ? "-" : "+"));
+            IntBinaryOperator comparator = store.comparator(key);
+            comparators.add(descending ? (a, b) -> comparator.applyAsInt(b, a) : comparator);
+        }
+        if (!force && order.equals(sortedBy)) {
+            return;
+        }
+        sortedBy = order;
+        int generation = ++sortGeneration;
+        int[] sorted = items == rows.items ? Arrays.copyOf(items, Math.max(16, count)) : items;
+        if (comparators.isEmpty()) {
+            Arrays.sort(sorted, 0, count);
+            show(sorted, count);
+            return;
+        }
+        TableColumn<Integer, ?> first = table.getSortOrder().get(0);
+        ResultStore.Column firstKey = (ResultStore.Column) first.getUserData();
+        boolean descending = first.getSortType() == TableColumn.SortType.DESCENDING;
+        ResultStore sortedStore = store;
+        Runnable task = () -> {
+            // Первый столбец сравнивается по числовым ключам, остальные — только при равных ключах
+            long[] keys = sortedStore.sortKeys(firstKey, sorted, count);
+            if (descending) {
+                for (int i = 0; i < count; i++) {
+                    keys[i] = ~keys[i];
+                }
+            }
+            ResultStore.sort(sorted, keys, count, (a, b) -> {
+                for (IntBinaryOperator comparator : comparators) {
+                    int result = comparator.applyAsInt(a, b);
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+                return Integer.compare(a, b);
+            });
+        };
+        if (count <= SYNC_SORT_ROWS) {
+            task.run();
+            show(sorted, count);
+            return;
+        }
+        sorting = true;
+        countLabel.setText("Sorting " + count + " files...");
+        sorter.execute(() -> {
+            task.run();
+            Platform.runLater(() -> {
+                if (generation == sortGeneration && sortedStore == store) {
+                    show(sorted, count);
+                    drain();
+                }
+            });
+        });
+    }
+
+    private void show(int[] items, int count) {
+        sorting = false;
+        rows = new Rows(items, count);
+        table.setItems(rows);
+        updateCount();
+    }
+
+    private boolean matches(int row) {
+        long size = store.size(row);
+        return (typeId < 0 || store.extensionId(row) == typeId)
+                && (status == null || store.status(row) == status)
+                && size >= minSize && size <= maxSize;
+    }
+
+    private void updateCount() {
+        countLabel.setText(String.format("%d of %d files", rows.size, store.size()));
+    }
+
+    private static long parseKilobytes(TextField field, long fallback) {
+        String text = field.getText().trim();
+        if (text.isEmpty()) {
+            return fallback;
+        }
+        try {
+            return Math.round(Double.parseDouble(text) * 1024);
+        } catch (NumberFormatException e) {
+            field.setText("");
+            return fallback;
+        }
+    }
+
+    /**
+     * Создаёт столбец, значения которого читаются из текущего хранилища по номеру строки.
+     */
+    private <T> TableColumn<Integer, T> column(String title, ResultStore.Column key, double width,
+                                               Function<ResultStore, RowValue<T>> value) {
+        TableColumn<Integer, T> column = new TableColumn<>(title);
+        column.setUserData(key);
+        column.setPrefWidth(width);
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(value.apply(store).get(cell.getValue())));
+        return column;
+    }
+
+    /**
+     * Значение ячейки по номеру строки хранилища.
+     */
+    @FunctionalInterface
+    private interface RowValue<T> {
+        T get(int row);
+    }
+
+    /**
+     * Элементы таблицы: номера строк хранилища в массиве без упаковки всех номеров в объекты.
+     */
+    private static final class Rows extends ObservableListBase<Integer> {
+        private int[] items;
+        private int size;
+
+        Rows(int[] items, int size) {
+            this.items = items;
+            this.size = size;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return items[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Добавляет строку в конец без уведомления таблицы.
+         */
+        void append(int row) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, Math.max(16, size * 2));
+            }
+            items[size++] = row;
+        }
+
+        /**
+         * Сообщает таблице о строках, добавленных в конец.
+         */
+        void added(int from, int to) {
+            beginChange();
+            nextAdd(from, to);
+            endChange();
+        }
+    }
+}
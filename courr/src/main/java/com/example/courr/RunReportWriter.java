@@ -0,0 +1,253 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Отчёт о запуске: одна запись на каждый обработанный файл в формате {@link ReportFormat}.
+ * Рабочие потоки только ставят результат в ограниченную очередь; запись в файл выполняет отдельный поток
+ * пачками через буфер, который сбрасывается на диск, когда очередь пустеет. Если очередь заполнена,
+ * рабочие потоки ждут, поэтому объём памяти под отчёт не растёт при медленном диске.
+ */
+final class RunReportWriter implements Consumer<FileRecoveryResult>, Closeable {
+    private static final Logger logger = LogManager.getLogger(RunReportWriter.class.getName());
+
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int BATCH_SIZE = 1024;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long FLUSH_MILLIS = 100;
+
+    /**
+     * Маркер конца очереди, который ставит {@link #close()}.
+     */
+    private static final FileRecoveryResult END = new FileRecoveryResult(Path.of(""), null, null,
+            RecoveryStatus.SKIPPED, null, -1);
+
+    private final Path path;
+    private final ReportFormat format;
+    private final Writer out;
+    private final BlockingQueue<FileRecoveryResult> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private final StringBuilder line = new StringBuilder(256);
+    private IOException failure;
+    private long written;
+
+    private RunReportWriter(Path path, ReportFormat format, Writer out) {
+        this.path = path;
+        this.format = format;
+        this.out = out;
+        this.thread = new Thread(this::run, "recovery-report");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Создаёт файл отчёта и запускает поток записи.
+     *
+     * @param path   Путь к файлу отчёта; существующий файл перезаписывается.
+     * @param format Формат отчёта.
+     * @return Открытый отчёт.
+     * @throws IOException Если файл не удалось создать.
+     */
+    static RunReportWriter open(Path path, ReportFormat format) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+        RunReportWriter report = new RunReportWriter(path, format, out);
+        if (format == ReportFormat.CSV) {
+            out.write("source,target,extension,status,size,error,duplicate_of\n");
+        }
+        report.thread.start();
+        return report;
+    }
+
+    /**
+     * Ставит результат в очередь на запись; ждёт, если очередь заполнена.
+     *
+     * @param result Результат обработки файла.
+     */
+    @Override
+    public void accept(FileRecoveryResult result) {
+        try {
+            queue.put(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Report record dropped for interrupted worker: {}", result.source());
+        }
+    }
+
+    /**
+     * Дописывает оставшиеся в очереди записи и закрывает файл.
+     *
+     * @throws IOException Если отчёт не удалось записать.
+     */
+    @Override
+    public void close() throws IOException {
+        boolean interrupted = false;
+        boolean queued = false;
+        while (!queued) {
+            try {
+                queue.put(END);
+                queued = true;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            // Исходная ошибка записи не называет файл: без пути по сообщению не понять, что неполон именно отчёт
+            FileSystemException incomplete = new FileSystemException(path.toString(), null,
+                    "run report is incomplete: " + failure.getMessage());
+            incomplete.initCause(failure);
+            throw incomplete;
+        }
+        logger.info("Run report {}: {} records", path, written);
+    }
+
+    private void run() {
+        List<FileRecoveryResult> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (true) {
+                FileRecoveryResult first = queue.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    flush();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (FileRecoveryResult result : batch) {
+                    if (result == END) {
+                        flush();
+                        return;
+                    }
+                    write(result);
+                }
+                batch.clear();
+                if (queue.isEmpty()) {
+                    flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Run report writer interrupted: {}", path);
+        }
+    }
+
+    /**
+     * Записывает результат; после первой ошибки записи результаты отбрасываются,
+     * чтобы рабочие потоки не остановились на заполненной очереди.
+     */
+    private void write(FileRecoveryResult result) {
+        if (failure != null) {
+            return;
+        }
+        line.setLength(0);
+        if (format == ReportFormat.CSV) {
+            appendCsv(result);
+        } else {
+            appendJson(result);
+        }
+        line.append('\n');
+        try {
+            out.append(line);
+            written++;
+        } catch (IOException e) {
+            failure = e;
+            logger.error("Cannot write run report: {}", path, e);
+        }
+    }
+
+    private void flush() {
+        if (failure != null) {
+            return;
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            failure = e;
+            logger.error("Cannot write run report: {}", path, e);
+        }
+    }
+
+    private void appendJson(FileRecoveryResult result) {
+        line.append("{\"source\":");
+        JsonText.appendString(line, result.source().toString());
+        line.append(",\"target\":");
+        JsonText.appendString(line, result.target() == null ? null : result.target().toString());
+        line.append(",\"extension\":");
+        JsonText.appendString(line, result.extension());
+        line.append(",\"status\":");
+        JsonText.appendString(line, result.status().name());
+        line.append(",\"size\":").append(result.size());
+        line.append(",\"error\":");
+        JsonText.appendString(line, result.error() == null ? null : result.error().toString());
+        if (result.duplicateOf() != null) {
+            line.append(",\"duplicateOf\":");
+            JsonText.appendString(line, result.duplicateOf().toString());
+        }
+        line.append('}');
+    }
+
+    private void appendCsv(FileRecoveryResult result) {
+        appendCsvField(result.source().toString()).append(',');
+        appendCsvField(result.target() == null ? "" : result.target().toString()).append(',');
+        appendCsvField(result.extension() == null ? "" : result.extension()).append(',');
+        line.append(result.status().name()).append(',');
+        line.append(result.size()).append(',');
+        appendCsvField(result.error() == null ? "" : result.error().toString()).append(',');
+        appendCsvField(result.duplicateOf() == null ? "" : result.duplicateOf().toString());
+    }
+
+    private StringBuilder appendCsvField(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return line.append(value);
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        return line.append('"');
+    }
+}
@@ -0,0 +1,610 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Координатор распределённого восстановления: делит дерево каталогов на части по одному каталогу и раздаёт их
+ * рабочим процессам {@link ShardWorker}, подключающимся по TCP (протокол {@link ShardProtocol}).
+ * <p>
+ * Рабочий сам читает каталог своей части и возвращает вложенные каталоги как новые части, поэтому координатор
+ * не обходит дерево. Когда свободных частей нет, а рабочий простаивает, координатор просит рабочего с самой
+ * длинной очередью отдать её половину. Если рабочий отключился, его незавершённые части возвращаются в очередь
+ * без уже обработанных файлов.
+ * <p>
+ * Координатор ведёт общий журнал переименований и выдаёт разрешение на каждое переименование не больше одного
+ * раза, поэтому файл переименовывается ровно один раз, даже если часть обрабатывается повторно. Разрешения
+ * отправляет отдельный поток после одного сброса журнала на всю накопившуюся группу запросов всех рабочих.
+ * Результаты по файлам собираются в общую сводку, отчёт и журнал хода работы.
+ */
+final class ShardCoordinator implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(ShardCoordinator.class.getName());
+
+    /**
+     * Наименьшая очередь рабочего, половину которой имеет смысл отдать другому.
+     */
+    private static final long STEAL_THRESHOLD = 16;
+
+    private final Path root;
+    private final RecoveryOptions options;
+    private final Consumer<FileRecoveryResult> listener;
+    private final RenameJournal journal;
+    private final Set<Path> alreadyRenamed;
+    private final RunReportWriter report;
+    private final ServerSocket server;
+    private final Map<Path, Connection> claimed = new ConcurrentHashMap<>();
+    private final BlockingQueue<Grant> grants = new LinkedBlockingQueue<>();
+    private final LongAdder[] counters = new LongAdder[RecoveryStatus.values().length];
+    private final long startNanos = System.nanoTime();
+
+    // Состояние раздачи защищено монитором координатора
+    private final ArrayDeque<ShardProtocol.Shard> queue = new ArrayDeque<>();
+    private final Map<Long, Active> active = new HashMap<>();
+    private final ArrayDeque<Connection> idle = new ArrayDeque<>();
+    private final List<Connection> connections = new ArrayList<>();
+    private final Set<String> visitedDirectories = new HashSet<>();
+    private long nextShard;
+    private long shardsDone;
+    private long shardsStolen;
+    private long shardsRequeued;
+    private boolean finished;
+
+    /**
+     * Часть, выданная рабочему, и имена её файлов, по которым уже получен результат или которые отданы другим.
+     */
+    private static final class Active {
+        private final ShardProtocol.Shard shard;
+        private final Connection owner;
+        private final Set<String> excluded;
+        private boolean directoriesReported;
+
+        private Active(ShardProtocol.Shard shard, Connection owner) {
+            this.shard = shard;
+            this.owner = owner;
+            this.excluded = new HashSet<>(shard.excluded());
+        }
+    }
+
+    /**
+     * Ответ на запрос разрешения, ожидающий сброса журнала.
+     *
+     * @param connection Соединение рабочего.
+     * @param id         Номер запроса.
+     * @param sequence   Номер записи журнала или -1.
+     * @param granted    true, если разрешение выдано.
+     */
+    private record Grant(Connection connection, long id, long sequence, boolean granted) {
+    }
+
+    /**
+     * Создаёт координатор и открывает журнал и отчёт из параметров запуска.
+     *
+     * @param root     Корневой каталог.
+     * @param options  Параметры запуска; кэш результатов не поддерживается.
+     * @param listener Получатель результатов по каждому файлу; вызывается из потоков соединений.
+     * @param address  Адрес, на котором принимаются подключения рабочих; порт 0 — любой свободный.
+     * @throws IOException Если не удалось открыть журнал, создать отчёт или занять адрес.
+     */
+    ShardCoordinator(Path root, RecoveryOptions options, Consumer<FileRecoveryResult> listener,
+                     InetSocketAddress address) throws IOException {
+        if (options.cache() != null) {
+            throw new IllegalArgumentException("Classification cache is not supported by the coordinator");
+        }
+        this.root = root.toAbsolutePath().normalize();
+        this.options = options;
+        this.listener = listener;
+        this.report = options.report() != null ? RunReportWriter.open(options.report(), options.reportFormat()) : null;
+        RenameJournal opened = null;
+        try {
+            if (options.journal() != null) {
+                opened = RenameJournal.open(options.journal(), options.journalBatchSize(),
+                        options.journalCommitWindowMillis());
+                this.alreadyRenamed = options.resume() ? opened.resume() : Set.of();
+            } else {
+                this.alreadyRenamed = Set.of();
+            }
+            this.journal = opened;
+            this.server = new ServerSocket();
+            server.bind(address);
+        } catch (IOException | RuntimeException e) {
+            if (opened != null) {
+                opened.close();
+            }
+            if (report != null) {
+                report.close();
+            }
+            throw e;
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        queue.add(new ShardProtocol.Shard(nextShard++, this.root, 0, null, Set.of(), true));
+    }
+
+    /**
+     * Возвращает адрес, на котором принимаются подключения рабочих.
+     *
+     * @return Адрес с фактическим номером порта.
+     */
+    InetSocketAddress address() {
+        return (InetSocketAddress) server.getLocalSocketAddress();
+    }
+
+    /**
+     * Раздаёт части рабочим, пока не будет обработано всё дерево.
+     *
+     * @return Сводка по всем файлам.
+     * @throws InterruptedException Если ожидание было прервано.
+     */
+    RecoverySummary run() throws InterruptedException {
+        Thread acceptor = new Thread(this::accept, "shard-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        Thread granter = new Thread(this::sendGrants, "shard-grants");
+        granter.setDaemon(true);
+        granter.start();
+        logger.info("Coordinating recovery of {} on {}", root, address());
+        long interval = Math.max(1, options.metricsIntervalMillis());
+        synchronized (this) {
+            while (!finished) {
+                long deadline = System.currentTimeMillis() + interval;
+                for (long wait = interval; !finished && wait > 0; wait = deadline - System.currentTimeMillis()) {
+                    wait(wait);
+                }
+                if (!finished) {
+                    logProgress();
+                }
+            }
+        }
+        RecoverySummary summary = summary();
+        logger.info("Coordinated recovery finished in folder {}: {}", root, summary);
+        return summary;
+    }
+
+    /**
+     * Возвращает сводку по файлам, результаты по которым получены на текущий момент.
+     *
+     * @return Сводка по обработанным файлам.
+     */
+    RecoverySummary summary() {
+        Map<RecoveryStatus, Long> counts = new EnumMap<>(RecoveryStatus.class);
+        for (RecoveryStatus status : RecoveryStatus.values()) {
+            counts.put(status, counters[status.ordinal()].sum());
+        }
+        return new RecoverySummary(counts, System.nanoTime() - startNanos);
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                Thread thread = new Thread(connection::serve, "shard-connection-" + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    logger.error("Error while accepting worker connection", e);
+                }
+            }
+        }
+    }
+
+    private void logProgress() {
+        long backlog = 0;
+        for (Connection connection : connections) {
+            backlog += connection.backlog;
+        }
+        long processed = summary().total();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        logger.info(String.format(Locale.ROOT,
+                "Progress: files=%d rate=%.1f/s shards=%d/%d queued=%d workers=%d backlog=%d stolen=%d requeued=%d",
+                processed, processed / Math.max(seconds, 1e-3), shardsDone, nextShard, queue.size(),
+                connections.size(), backlog, shardsStolen, shardsRequeued));
+    }
+
+    /**
+     * Возвращает количество частей, составленных из файлов, которые загруженный рабочий отдал другим.
+     *
+     * @return Количество отданных частей.
+     */
+    synchronized long shardsStolen() {
+        return shardsStolen;
+    }
+
+    /**
+     * Возвращает количество частей, возвращённых в очередь после отключения рабочего.
+     *
+     * @return Количество возвращённых частей.
+     */
+    synchronized long shardsRequeued() {
+        return shardsRequeued;
+    }
+
+    /**
+     * Раздаёт части ожидающим рабочим; если частей нет, просит загруженного рабочего поделиться очередью.
+     * Вызывается под монитором координатора.
+     */
+    private void dispatch() {
+        while (!idle.isEmpty() && !queue.isEmpty()) {
+            Connection connection = idle.poll();
+            ShardProtocol.Shard shard = queue.poll();
+            active.put(shard.id(), new Active(shard, connection));
+            connection.send(out -> ShardProtocol.writeShard(out, shard));
+        }
+        if (!idle.isEmpty() && queue.isEmpty()) {
+            Connection victim = null;
+            for (Connection connection : connections) {
+                if (!connection.stealing && connection.backlog >= STEAL_THRESHOLD
+                        && (victim == null || connection.backlog > victim.backlog)) {
+                    victim = connection;
+                }
+            }
+            if (victim != null) {
+                victim.stealing = true;
+                victim.send(out -> out.writeByte(ShardProtocol.STEAL));
+            }
+        }
+        if (queue.isEmpty() && active.isEmpty() && !finished) {
+            finished = true;
+            for (Connection connection : connections) {
+                connection.send(out -> out.writeByte(ShardProtocol.EXIT));
+            }
+            notifyAll();
+        }
+    }
+
+    private void record(Active part, FileRecoveryResult result) {
+        if (result.status() == RecoveryStatus.UNCHANGED && alreadyRenamed.contains(result.source())) {
+            result = new FileRecoveryResult(result.source(), null, null, RecoveryStatus.SKIPPED, null, result.size());
+        }
+        counters[result.status().ordinal()].increment();
+        if (part != null) {
+            part.excluded.add(result.source().getFileName().toString());
+            if (result.target() != null) {
+                part.excluded.add(result.target().getFileName().toString());
+            }
+        }
+        if (report != null) {
+            report.accept(result);
+        }
+        try {
+            listener.accept(result);
+        } catch (RuntimeException e) {
+            logger.error("Result listener failed for file: {}", result.source(), e);
+        }
+    }
+
+    /**
+     * Выдаёт разрешение на переименование, если файл ещё никому не выдавался, и добавляет намерение в журнал.
+     * Ответ ставится в очередь и уходит рабочему после сброса журнала.
+     */
+    private void claim(Connection connection, long id, Path source, Path target) {
+        if (claimed.putIfAbsent(source, connection) != null) {
+            logger.warn("Rename already claimed, skipping: {}", source);
+            grants.add(new Grant(connection, id, -1, false));
+            return;
+        }
+        connection.granted.put(source, target);
+        grants.add(new Grant(connection, id, journal != null ? journal.planned(source, target) : -1, true));
+    }
+
+    /**
+     * Отправляет разрешения группами: ждёт сброса журнала до последней записи группы и отвечает всем её рабочим.
+     */
+    private void sendGrants() {
+        List<Grant> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(grants.take());
+                grants.drainTo(batch);
+                long sequence = -1;
+                for (Grant grant : batch) {
+                    sequence = Math.max(sequence, grant.sequence());
+                }
+                boolean durable = true;
+                if (journal != null && sequence >= 0) {
+                    try {
+                        journal.awaitDurable(sequence);
+                    } catch (IOException e) {
+                        logger.error("Cannot write rename journal, refusing renames", e);
+                        durable = false;
+                    }
+                }
+                for (Grant grant : batch) {
+                    boolean granted = grant.granted() && durable;
+                    grant.connection().send(out -> {
+                        out.writeByte(ShardProtocol.GRANT);
+                        out.writeLong(grant.id());
+                        out.writeBoolean(granted);
+                    });
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void renamed(Connection connection, Path source, Path target) {
+        connection.granted.remove(source);
+        if (journal != null) {
+            journal.completed(source, target);
+        }
+    }
+
+    /**
+     * Возвращает в очередь незавершённые части отключившегося рабочего и разбирает выданные ему разрешения:
+     * выполненное переименование записывается в журнал, невыполненное разрешается выдать повторно.
+     */
+    private void lost(Connection connection) {
+        for (Map.Entry<Path, Path> entry : connection.granted.entrySet()) {
+            Path source = entry.getKey();
+            if (Files.exists(entry.getValue()) && !Files.exists(source)) {
+                renamed(connection, source, entry.getValue());
+            } else {
+                claimed.remove(source, connection);
+            }
+        }
+        synchronized (this) {
+            connections.remove(connection);
+            idle.remove(connection);
+            for (var iterator = active.values().iterator(); iterator.hasNext(); ) {
+                Active part = iterator.next();
+                if (part.owner == connection) {
+                    iterator.remove();
+                    ShardProtocol.Shard shard = part.shard;
+                    queue.addFirst(new ShardProtocol.Shard(shard.id(), shard.directory(), shard.depth(), shard.names(),
+                            part.excluded, shard.directories() && !part.directoriesReported));
+                    shardsRequeued++;
+                    logger.warn("Requeued shard {} of lost worker {}: {}", shard.id(), connection.name,
+                            shard.directory());
+                }
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * Закрывает приём подключений, журнал переименований и отчёт.
+     *
+     * @throws IOException Если журнал переименований или отчёт не удалось дописать.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            server.close();
+        } catch (IOException e) {
+            logger.warn("Error while closing coordinator socket", e);
+        }
+        synchronized (this) {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+        IOException failure = null;
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.error("Error while closing rename journal", e);
+                failure = e;
+            }
+        }
+        if (report != null) {
+            try {
+                report.close();
+            } catch (IOException e) {
+                logger.error("Error while writing run report", e);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Запись сообщения в поток рабочего.
+     */
+    @FunctionalInterface
+    private interface Message {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Соединение с одним рабочим.
+     */
+    private final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final Map<Path, Path> granted = new ConcurrentHashMap<>();
+        private String name;
+        private volatile long backlog;
+        private boolean stealing;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.name = String.valueOf(socket.getRemoteSocketAddress());
+        }
+
+        private void serve() {
+            try {
+                if (in.readByte() != ShardProtocol.HELLO || in.readInt() != ShardProtocol.MAGIC
+                        || in.readInt() != ShardProtocol.VERSION) {
+                    throw new IOException("Unsupported worker protocol");
+                }
+                name = in.readUTF();
+                synchronized (ShardCoordinator.this) {
+                    if (finished) {
+                        send(stream -> stream.writeByte(ShardProtocol.EXIT));
+                        close();
+                        return;
+                    }
+                    connections.add(this);
+                }
+                send(stream -> {
+                    stream.writeByte(ShardProtocol.WELCOME);
+                    stream.writeBoolean(options.recursive());
+                    stream.writeInt(options.maxDepth());
+                    stream.writeByte(options.linkPolicy().ordinal());
+                    stream.writeBoolean(options.includeHidden());
+                    stream.writeBoolean(options.validate());
+                    ShardProtocol.writeFilter(stream, options);
+                });
+                logger.info("Worker connected: {}", name);
+                while (true) {
+                    byte type = in.readByte();
+                    switch (type) {
+                        case ShardProtocol.REQUEST -> {
+                            synchronized (ShardCoordinator.this) {
+                                idle.add(this);
+                                dispatch();
+                            }
+                        }
+                        case ShardProtocol.SUBDIRS -> subdirectories();
+                        case ShardProtocol.OFFER -> offer();
+                        case ShardProtocol.RESULT -> {
+                            long id = in.readLong();
+                            FileRecoveryResult result = ShardProtocol.readResult(in);
+                            Active part;
+                            synchronized (ShardCoordinator.this) {
+                                part = active.get(id);
+                                record(part, result);
+                            }
+                        }
+                        case ShardProtocol.CLAIM -> claim(this, in.readLong(), Path.of(in.readUTF()),
+                                Path.of(in.readUTF()));
+                        case ShardProtocol.RENAMED -> renamed(this, Path.of(in.readUTF()), Path.of(in.readUTF()));
+                        case ShardProtocol.DONE -> {
+                            long id = in.readLong();
+                            synchronized (ShardCoordinator.this) {
+                                if (active.remove(id) != null) {
+                                    shardsDone++;
+                                }
+                                dispatch();
+                            }
+                        }
+                        case ShardProtocol.PROGRESS -> {
+                            backlog = in.readLong();
+                            in.readLong();
+                            // Простаивающий рабочий мог прийти раньше, чем у этого накопилась очередь
+                            synchronized (ShardCoordinator.this) {
+                                if (!idle.isEmpty() && backlog >= STEAL_THRESHOLD) {
+                                    dispatch();
+                                }
+                            }
+                        }
+                        default -> throw new IOException("Unexpected message type " + type);
+                    }
+                }
+            } catch (IOException e) {
+                boolean done;
+                synchronized (ShardCoordinator.this) {
+                    done = finished;
+                }
+                if (!done) {
+                    if (e instanceof EOFException) {
+                        logger.warn("Worker disconnected: {}", name);
+                    } else {
+                        logger.error("Error while serving worker {}", name, e);
+                    }
+                }
+                lost(this);
+                close();
+            }
+        }
+
+        private void subdirectories() throws IOException {
+            long id = in.readLong();
+            int depth = in.readInt();
+            int count = in.readInt();
+            synchronized (ShardCoordinator.this) {
+                Active part = active.get(id);
+                if (part != null) {
+                    part.directoriesReported = true;
+                }
+                for (int i = 0; i < count; i++) {
+                    Path directory = Path.of(in.readUTF());
+                    String key = in.readUTF();
+                    // Идентификатор каталога отсекает циклы, когда ссылки на каталоги обходятся
+                    if (key.isEmpty() || visitedDirectories.add(key)) {
+                        queue.add(new ShardProtocol.Shard(nextShard++, directory, depth, null, Set.of(), true));
+                    }
+                }
+                dispatch();
+            }
+        }
+
+        private void offer() throws IOException {
+            long id = in.readLong();
+            List<String> names = ShardProtocol.readNames(in, in.readInt(), new ArrayList<>());
+            synchronized (ShardCoordinator.this) {
+                stealing = false;
+                Active part = active.get(id);
+                if (part != null && !names.isEmpty()) {
+                    part.excluded.addAll(names);
+                    queue.add(new ShardProtocol.Shard(nextShard++, part.shard.directory(), part.shard.depth(), names,
+                            Set.of(), false));
+                    shardsStolen++;
+                    logger.debug("Worker {} gave away {} files of shard {}", name, names.size(), id);
+                }
+                dispatch();
+            }
+        }
+
+        private void send(Message message) {
+            synchronized (out) {
+                try {
+                    message.writeTo(out);
+                    out.flush();
+                } catch (IOException e) {
+                    logger.warn("Cannot send message to worker {}", name, e);
+                    close();
+                }
+            }
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.warn("Error while closing connection to worker {}", name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.courr;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Протокол обмена координатора {@link ShardCoordinator} и рабочих процессов {@link ShardWorker}.
+ * Сообщение — байт типа и поля, записанные {@link DataOutputStream}; пути передаются строками,
+ * поэтому координатор и рабочие должны видеть дерево по одним и тем же путям.
+ * <p>
+ * Рабочий начинает с {@link #HELLO} и получает {@link #WELCOME} с параметрами обхода. Затем он запрашивает часть
+ * дерева ({@link #REQUEST}), получает её ({@link #SHARD}), возвращает найденные вложенные каталоги
+ * ({@link #SUBDIRS}) и результаты по файлам ({@link #RESULT}), а по завершении части сообщает {@link #DONE}.
+ * Перед перемещением файла рабочий получает разрешение координатора ({@link #CLAIM}, {@link #GRANT}).
+ * Если свободных частей нет, координатор просит самого загруженного рабочего отдать половину очереди
+ * ({@link #STEAL}, {@link #OFFER}).
+ */
+final class ShardProtocol {
+    static final int MAGIC = 0x43525348;
+    static final int VERSION = 2;
+
+    /**
+     * Рабочий: магическое число, версия, имя рабочего.
+     */
+    static final byte HELLO = 1;
+    /**
+     * Рабочий готов взять следующую часть.
+     */
+    static final byte REQUEST = 2;
+    /**
+     * Рабочий: номер части, количество и пары «путь каталога, идентификатор каталога».
+     */
+    static final byte SUBDIRS = 3;
+    /**
+     * Рабочий в ответ на {@link #STEAL}: номер части и имена отданных файлов, возможно пустой список.
+     */
+    static final byte OFFER = 4;
+    /**
+     * Рабочий: номер части и результат обработки файла.
+     */
+    static final byte RESULT = 5;
+    /**
+     * Рабочий: номер запроса, исходный и новый путь файла.
+     */
+    static final byte CLAIM = 6;
+    /**
+     * Рабочий: исходный и новый путь переименованного файла.
+     */
+    static final byte RENAMED = 7;
+    /**
+     * Рабочий: номер обработанной части.
+     */
+    static final byte DONE = 8;
+    /**
+     * Рабочий: количество файлов в очереди и обработанных файлов.
+     */
+    static final byte PROGRESS = 9;
+    /**
+     * Координатор: рекурсия, глубина, правило для ссылок, скрытые файлы, проверка структуры
+     * и условия отбора файлов {@link MetadataFilter}.
+     */
+    static final byte WELCOME = 17;
+    /**
+     * Координатор: часть дерева.
+     */
+    static final byte SHARD = 18;
+    /**
+     * Координатор просит отдать половину очереди.
+     */
+    static final byte STEAL = 19;
+    /**
+     * Координатор: номер запроса и разрешение на переименование.
+     */
+    static final byte GRANT = 20;
+    /**
+     * Координатор: работа закончена.
+     */
+    static final byte EXIT = 21;
+
+    /**
+     * Часть дерева: файлы одного каталога.
+     *
+     * @param id          Номер части.
+     * @param directory   Каталог.
+     * @param depth       Глубина каталога; у корня 0.
+     * @param names       Имена файлов или null, если обрабатываются все файлы каталога.
+     * @param excluded    Имена файлов, уже обработанных или переданных в другие части.
+     * @param directories true, если нужно сообщить о вложенных каталогах.
+     */
+    record Shard(long id, Path directory, int depth, List<String> names, Set<String> excluded, boolean directories) {
+    }
+
+    private ShardProtocol() {
+    }
+
+    static void writeShard(DataOutputStream out, Shard shard) throws IOException {
+        out.writeByte(SHARD);
+        out.writeLong(shard.id());
+        out.writeUTF(shard.directory().toString());
+        out.writeInt(shard.depth());
+        out.writeBoolean(shard.directories());
+        out.writeInt(shard.names() == null ? -1 : shard.names().size());
+        if (shard.names() != null) {
+            writeNames(out, shard.names());
+        }
+        out.writeInt(shard.excluded().size());
+        writeNames(out, shard.excluded());
+    }
+
+    static Shard readShard(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        Path directory = Path.of(in.readUTF());
+        int depth = in.readInt();
+        boolean directories = in.readBoolean();
+        int count = in.readInt();
+        List<String> names = count < 0 ? null : readNames(in, count, new ArrayList<>(count));
+        int excluded = in.readInt();
+        return new Shard(id, directory, depth, names, readNames(in, excluded, new HashSet<>()), directories);
+    }
+
+    static void writeResult(DataOutputStream out, long shard, FileRecoveryResult result) throws IOException {
+        out.writeByte(RESULT);
+        out.writeLong(shard);
+        out.writeUTF(result.source().toString());
+        out.writeUTF(result.target() == null ? "" : result.target().toString());
+        out.writeUTF(result.extension() == null ? "" : result.extension());
+        out.writeByte(result.status().ordinal());
+        out.writeUTF(result.error() == null ? "" : String.valueOf(result.error()));
+        out.writeLong(result.size());
+    }
+
+    static FileRecoveryResult readResult(DataInputStream in) throws IOException {
+        Path source = Path.of(in.readUTF());
+        String target = in.readUTF();
+        String extension = in.readUTF();
+        RecoveryStatus status = RecoveryStatus.values()[in.readByte()];
+        String error = in.readUTF();
+        long size = in.readLong();
+        return new FileRecoveryResult(source, target.isEmpty() ? null : Path.of(target),
+                extension.isEmpty() ? null : extension, status, error.isEmpty() ? null : new IOException(error), size);
+    }
+
+    static void writeFilter(DataOutputStream out, RecoveryOptions options) throws IOException {
+        out.writeLong(options.minSize());
+        out.writeLong(options.maxSize());
+        out.writeInt(options.includes().size());
+        writeNames(out, options.includes());
+        out.writeInt(options.excludes().size());
+        writeNames(out, options.excludes());
+        out.writeByte(options.extensionPolicy().ordinal());
+        writeInstant(out, options.modifiedAfter());
+        writeInstant(out, options.modifiedBefore());
+    }
+
+    static RecoveryOptions readFilter(DataInputStream in, RecoveryOptions options) throws IOException {
+        options.sizeRange(in.readLong(), in.readLong());
+        for (String pattern : readNames(in, in.readInt(), new ArrayList<>())) {
+            options.include(pattern);
+        }
+        for (String pattern : readNames(in, in.readInt(), new ArrayList<>())) {
+            options.exclude(pattern);
+        }
+        return options.extensionPolicy(ExtensionPolicy.values()[in.readByte()])
+                .modifiedAfter(readInstant(in))
+                .modifiedBefore(readInstant(in));
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant instant) throws IOException {
+        out.writeBoolean(instant != null);
+        if (instant != null) {
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+
+    static void writeNames(DataOutputStream out, Collection<String> names) throws IOException {
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    static <C extends Collection<String>> C readNames(DataInputStream in, int count, C names) throws IOException {
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+        return names;
+    }
+}
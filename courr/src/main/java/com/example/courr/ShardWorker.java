@@ -0,0 +1,450 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Рабочий процесс распределённого восстановления: получает от координатора {@link ShardCoordinator} части дерева,
+ * обрабатывает их движком {@link RecoveryEngine} и передаёт результаты обратно.
+ * <p>
+ * Файлы полученной части сначала читаются в локальную очередь, из которой их забирает движок; по просьбе
+ * координатора половина ещё не начатых файлов отдаётся другому рабочему. Следующая часть запрашивается, как только
+ * очередь опустела, не дожидаясь обработки начатых файлов. Каждое переименование выполняется только после
+ * разрешения координатора, который ведёт общий журнал, поэтому файл не переименовывается дважды,
+ * даже если часть после сбоя рабочего обрабатывается повторно. Если соединение потеряно или координатор
+ * не ответил на запрос переименования вовремя, файлы больше не переименовываются.
+ */
+final class ShardWorker implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(ShardWorker.class.getName());
+
+    private static final long PROGRESS_MILLIS = 100;
+    /**
+     * Сколько рабочий ждёт ответа координатора на запрос переименования, прежде чем счесть его потерянным.
+     */
+    private static final long CLAIM_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private final FileExtensionRecoveryService service;
+    private final int parallelism;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final BlockingQueue<Object> inbox = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Boolean> steals = new LinkedBlockingQueue<>();
+    private final Deque<Pending> queue = new ArrayDeque<>();
+    private final Map<Path, WorkerShard> inFlight = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Boolean>> claims = new ConcurrentHashMap<>();
+    private final AtomicLong nextClaim = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private WorkerShard feeding;
+    private volatile boolean closed;
+    /**
+     * Причина потери соединения; после неё новые запросы переименования сразу завершаются ошибкой.
+     */
+    private volatile IOException lost;
+
+    /**
+     * Файл, ожидающий передачи в движок.
+     */
+    private record Pending(Path file, BasicFileAttributes attributes) {
+    }
+
+    /**
+     * Полученная часть дерева и количество её файлов, ещё не обработанных движком.
+     */
+    private static final class WorkerShard {
+        private final long id;
+        /**
+         * Единица удерживается, пока файлы части передаются в движок.
+         */
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        private WorkerShard(long id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Подключается к координатору.
+     *
+     * @param service     Сервис, определяющий расширения файлов.
+     * @param coordinator Адрес координатора.
+     * @param parallelism Количество рабочих потоков движка.
+     * @throws IOException Если подключиться не удалось.
+     */
+    ShardWorker(FileExtensionRecoveryService service, InetSocketAddress coordinator, int parallelism)
+            throws IOException {
+        this.service = service;
+        this.parallelism = parallelism;
+        this.socket = new Socket(coordinator.getAddress(), coordinator.getPort());
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+    }
+
+    /**
+     * Обрабатывает части дерева, пока координатор не сообщит об окончании работы.
+     *
+     * @param listener Получатель результатов по каждому файлу; вызывается из рабочих потоков.
+     * @return Сводка по файлам, обработанным этим рабочим.
+     * @throws IOException          Если соединение с координатором потеряно.
+     * @throws InterruptedException Если работа была прервана.
+     */
+    RecoverySummary run(Consumer<FileRecoveryResult> listener)
+            throws IOException, InterruptedException {
+        synchronized (out) {
+            out.writeByte(ShardProtocol.HELLO);
+            out.writeInt(ShardProtocol.MAGIC);
+            out.writeInt(ShardProtocol.VERSION);
+            out.writeUTF(ProcessHandle.current().pid() + "@" + socket.getLocalSocketAddress());
+            out.flush();
+        }
+        if (in.readByte() != ShardProtocol.WELCOME) {
+            throw new IOException("Unexpected handshake from coordinator");
+        }
+        RecoveryOptions options = new RecoveryOptions()
+                .parallelism(parallelism)
+                .recursive(in.readBoolean())
+                .maxDepth(in.readInt())
+                .linkPolicy(LinkPolicy.values()[in.readByte()])
+                .includeHidden(in.readBoolean())
+                .validate(in.readBoolean());
+        ShardProtocol.readFilter(in, options);
+        Thread reader = new Thread(this::read, "shard-reader");
+        reader.setDaemon(true);
+        reader.start();
+        Thread progress = new Thread(this::reportProgress, "shard-progress");
+        progress.setDaemon(true);
+        progress.start();
+        DirectoryScanner scanner = new DirectoryScanner(options);
+        try (RecoveryEngine engine = new RecoveryEngine(service, options, result -> {
+            WorkerShard shard = inFlight.remove(result.source());
+            send(shard, result);
+            listener.accept(result);
+            if (shard != null) {
+                release(shard);
+            }
+        }, new RemoteRenames())) {
+            while (true) {
+                send(ShardProtocol.REQUEST);
+                Object message = inbox.take();
+                if (message instanceof IOException) {
+                    throw (IOException) message;
+                }
+                if (!(message instanceof ShardProtocol.Shard)) {
+                    break;
+                }
+                process((ShardProtocol.Shard) message, options, scanner, engine);
+            }
+            engine.awaitCompletion();
+            return engine.summary();
+        } finally {
+            progress.interrupt();
+        }
+    }
+
+    /**
+     * Читает файлы части в очередь и передаёт их движку.
+     */
+    private void process(ShardProtocol.Shard part, RecoveryOptions options, DirectoryScanner scanner,
+                         RecoveryEngine engine) throws InterruptedException, IOException {
+        WorkerShard shard = new WorkerShard(part.id());
+        List<String> subdirectories = new ArrayList<>();
+        if (part.names() == null) {
+            boolean descend = part.directories() && options.recursive() && part.depth() + 1 < options.maxDepth();
+            try {
+                scanner.scanLevel(part.directory(), (file, attributes) -> {
+                    if (!part.excluded().contains(file.getFileName().toString())) {
+                        enqueue(new Pending(file, attributes));
+                    }
+                }, (directory, attributes) -> {
+                    if (descend) {
+                        subdirectories.add(directory.toString());
+                        Object key = attributes.fileKey();
+                        subdirectories.add(key == null ? "" : key.toString());
+                    }
+                }, (path, error) -> fail(shard, engine, path, error));
+            } catch (IOException e) {
+                fail(shard, engine, part.directory(), e);
+            }
+        } else {
+            for (String name : part.names()) {
+                Path file = part.directory().resolve(name);
+                if (part.excluded().contains(name)) {
+                    continue;
+                }
+                try {
+                    enqueue(new Pending(file, Files.readAttributes(file, BasicFileAttributes.class)));
+                } catch (NoSuchFileException e) {
+                    logger.debug("File disappeared before processing: {}", file);
+                } catch (IOException e) {
+                    fail(shard, engine, file, e);
+                }
+            }
+        }
+        if (!subdirectories.isEmpty()) {
+            synchronized (out) {
+                out.writeByte(ShardProtocol.SUBDIRS);
+                out.writeLong(shard.id);
+                out.writeInt(part.depth() + 1);
+                out.writeInt(subdirectories.size() / 2);
+                ShardProtocol.writeNames(out, subdirectories);
+            }
+        }
+        synchronized (queue) {
+            feeding = shard;
+        }
+        while (true) {
+            Pending next;
+            synchronized (queue) {
+                next = queue.pollFirst();
+                if (next == null) {
+                    feeding = null;
+                    break;
+                }
+            }
+            shard.pending.incrementAndGet();
+            inFlight.put(next.file(), shard);
+            engine.submit(next.file(), next.attributes());
+        }
+        release(shard);
+    }
+
+    private void enqueue(Pending pending) {
+        synchronized (queue) {
+            queue.addLast(pending);
+        }
+    }
+
+    private void fail(WorkerShard shard, RecoveryEngine engine, Path path, IOException error) {
+        shard.pending.incrementAndGet();
+        inFlight.put(path, shard);
+        engine.reportFailure(path, error);
+    }
+
+    /**
+     * Отмечает обработку одного файла части; когда обработаны все, сообщает координатору.
+     */
+    private void release(WorkerShard shard) {
+        if (shard.pending.decrementAndGet() == 0) {
+            synchronized (out) {
+                try {
+                    out.writeByte(ShardProtocol.DONE);
+                    out.writeLong(shard.id);
+                    out.flush();
+                } catch (IOException e) {
+                    logger.error("Cannot report completed shard {}", shard.id, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Отдаёт координатору вторую половину очереди текущей части.
+     */
+    private void steal() throws IOException {
+        List<String> names = new ArrayList<>();
+        long shard = -1;
+        synchronized (queue) {
+            if (feeding != null) {
+                shard = feeding.id;
+                for (int count = queue.size() / 2; count > 0; count--) {
+                    names.add(queue.pollLast().file().getFileName().toString());
+                }
+            }
+        }
+        synchronized (out) {
+            out.writeByte(ShardProtocol.OFFER);
+            out.writeLong(shard);
+            out.writeInt(names.size());
+            ShardProtocol.writeNames(out, names);
+            out.flush();
+        }
+    }
+
+    private void send(WorkerShard shard, FileRecoveryResult result) {
+        processed.incrementAndGet();
+        synchronized (out) {
+            try {
+                ShardProtocol.writeResult(out, shard == null ? -1 : shard.id, result);
+            } catch (IOException e) {
+                logger.error("Cannot send result for file: {}", result.source(), e);
+            }
+        }
+    }
+
+    private void send(byte type) throws IOException {
+        synchronized (out) {
+            out.writeByte(type);
+            out.flush();
+        }
+    }
+
+    /**
+     * Читает сообщения координатора в отдельном потоке. Поток только читает: ответы отправляют другие потоки,
+     * поэтому координатор не блокируется на записи, пока рабочий ждёт его самого.
+     */
+    private void read() {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                switch (type) {
+                    case ShardProtocol.SHARD -> inbox.put(ShardProtocol.readShard(in));
+                    case ShardProtocol.STEAL -> steals.add(Boolean.TRUE);
+                    case ShardProtocol.GRANT -> {
+                        CompletableFuture<Boolean> claim = claims.remove(in.readLong());
+                        boolean granted = in.readBoolean();
+                        if (claim != null) {
+                            claim.complete(granted);
+                        }
+                    }
+                    case ShardProtocol.EXIT -> {
+                        inbox.put(Boolean.TRUE);
+                        return;
+                    }
+                    default -> throw new IOException("Unexpected message type " + type);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            IOException failure = closed ? new IOException("Worker closed", e)
+                    : new IOException("Connection to coordinator lost", e);
+            if (!closed && !(e instanceof EOFException)) {
+                logger.error("Error while reading from coordinator", e);
+            }
+            connectionLost(failure);
+            inbox.add(failure);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            connectionLost(new InterruptedIOException("Coordinator reader interrupted"));
+        }
+    }
+
+    /**
+     * Отмечает соединение потерянным и завершает ошибкой ожидающие запросы переименования. Запрос,
+     * добавленный после этого, увидит отметку сам: она записывается до обхода запросов.
+     */
+    private void connectionLost(IOException failure) {
+        if (lost == null) {
+            lost = failure;
+        }
+        claims.values().forEach(claim -> claim.completeExceptionally(failure));
+    }
+
+    /**
+     * Периодически сбрасывает накопленные результаты и сообщает координатору размер очереди;
+     * отвечает на просьбы отдать часть очереди.
+     */
+    private void reportProgress() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (steals.poll(PROGRESS_MILLIS, TimeUnit.MILLISECONDS) != null) {
+                    steal();
+                }
+                int backlog;
+                synchronized (queue) {
+                    backlog = queue.size();
+                }
+                synchronized (out) {
+                    out.writeByte(ShardProtocol.PROGRESS);
+                    out.writeLong(backlog);
+                    out.writeLong(processed.get());
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (!closed) {
+                logger.warn("Cannot report progress to coordinator", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        socket.close();
+    }
+
+    /**
+     * Журнал переименований, который спрашивает разрешение у координатора и сообщает ему о выполненных перемещениях.
+     */
+    private final class RemoteRenames implements RenameLog {
+
+        @Override
+        public boolean beforeRename(Path source, Path target) throws IOException {
+            long id = nextClaim.incrementAndGet();
+            CompletableFuture<Boolean> claim = new CompletableFuture<>();
+            claims.put(id, claim);
+            try {
+                IOException failure = lost;
+                if (failure != null) {
+                    throw new IOException("Rename not permitted: connection to coordinator lost", failure);
+                }
+                synchronized (out) {
+                    out.writeByte(ShardProtocol.CLAIM);
+                    out.writeLong(id);
+                    out.writeUTF(source.toString());
+                    out.writeUTF(target.toString());
+                    out.flush();
+                }
+                return claim.get(CLAIM_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for rename claim");
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            } catch (TimeoutException e) {
+                // Молчащий координатор считается потерянным: соединение закрывается, и работа завершается ошибкой
+                IOException failure = new IOException("Coordinator did not answer rename claim within "
+                        + CLAIM_TIMEOUT_MILLIS + " ms");
+                connectionLost(failure);
+                socket.close();
+                throw failure;
+            } finally {
+                claims.remove(id);
+            }
+        }
+
+        @Override
+        public void afterRename(Path source, Path target) {
+            synchronized (out) {
+                try {
+                    out.writeByte(ShardProtocol.RENAMED);
+                    out.writeUTF(source.toString());
+                    out.writeUTF(target.toString());
+                } catch (IOException e) {
+                    logger.error("Cannot report rename of file: {}", source, e);
+                }
+            }
+        }
+    }
+}
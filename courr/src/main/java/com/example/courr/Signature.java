@@ -0,0 +1,72 @@
+package com.example.courr;
+
+/**
+ * Сигнатура формата файла: последовательность «магических» байтов с маской по заданному смещению.
+ * Байт файла совпадает с байтом сигнатуры, если {@code (b & mask) == (pattern & mask)};
+ * маска 0x00 означает произвольный байт.
+ *
+ * @param extension Расширение, соответствующее формату.
+ * @param offset    Смещение сигнатуры от начала файла.
+ * @param pattern   Байты сигнатуры.
+ * @param mask      Маска для каждого байта сигнатуры.
+ * @param minSize   Минимальный размер файла этого формата в байтах.
+ */
+record Signature(String extension, long offset, byte[] pattern, byte[] mask, long minSize) {
+
+    /**
+     * Создаёт сигнатуру, проверяя согласованность байтов и маски.
+     *
+     * @param extension Расширение, соответствующее формату.
+     * @param offset    Смещение сигнатуры от начала файла.
+     * @param pattern   Байты сигнатуры.
+     * @param mask      Маска для каждого байта сигнатуры.
+     * @param minSize   Минимальный размер файла этого формата в байтах.
+     */
+    Signature {
+        if (extension.isEmpty() || offset < 0 || pattern.length == 0 || pattern.length != mask.length) {
+            throw new IllegalArgumentException("Invalid signature for " + extension);
+        }
+        minSize = Math.max(minSize, offset + pattern.length);
+    }
+
+    /**
+     * Возвращает длину сигнатуры.
+     *
+     * @return Количество байтов сигнатуры.
+     */
+    int length() {
+        return pattern.length;
+    }
+
+    /**
+     * Возвращает окно файла, которое нужно прочитать для проверки сигнатуры.
+     *
+     * @return Окно байтов файла.
+     */
+    ByteWindow window() {
+        return new ByteWindow(offset, pattern.length);
+    }
+
+    /**
+     * Проверяет совпадение сигнатуры с прочитанными окнами заголовка.
+     *
+     * @param header Заголовок файла.
+     * @return true, если сигнатура совпала.
+     */
+    boolean matches(FileHeader header) {
+        if (header.fileSize() < minSize) {
+            return false;
+        }
+        int position = header.positionOf(offset, pattern.length);
+        if (position < 0) {
+            return false;
+        }
+        byte[] bytes = header.array();
+        for (int i = 0; i < pattern.length; i++) {
+            if (((bytes[position + i] ^ pattern[i]) & mask[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Загружает таблицу сигнатур и компилирует её в {@link SignatureMatcher}.
+ * По умолчанию таблица читается из ресурса {@code /signatures.txt}; другой файл можно указать
+ * системным свойством {@value #TABLE_PROPERTY}. Скомпилированный набор сохраняется в двоичный снимок,
+ * имя которого содержит контрольную сумму таблицы, поэтому при следующих запусках таблица не разбирается,
+ * пока не изменится. Каталог снимков задаётся свойством {@value #CACHE_PROPERTY}.
+ */
+final class SignatureDatabase {
+    private static final Logger logger = LogManager.getLogger(SignatureDatabase.class.getName());
+
+    /**
+     * Системное свойство с путём к внешней таблице сигнатур.
+     */
+    static final String TABLE_PROPERTY = "courr.signatures";
+    /**
+     * Системное свойство с каталогом для двоичных снимков.
+     */
+    static final String CACHE_PROPERTY = "courr.signatures.cache";
+
+    private static final String TABLE_RESOURCE = "/signatures.txt";
+    private static final int SNAPSHOT_MAGIC = 0x43525347;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private SignatureDatabase() {
+    }
+
+    /**
+     * Загружает набор сигнатур из снимка или, если снимка нет, из таблицы.
+     *
+     * @return Скомпилированный набор сигнатур.
+     * @throws UncheckedIOException Если таблицу не удалось прочитать.
+     */
+    static SignatureMatcher load() {
+        byte[] table = readTable();
+        CRC32 crc = new CRC32();
+        crc.update(table);
+        Path snapshot = snapshotDirectory().resolve(String.format("courr-signatures-v%d-%08x.bin",
+                SNAPSHOT_VERSION, crc.getValue()));
+        SignatureMatcher matcher = readSnapshot(snapshot, crc.getValue());
+        if (matcher == null) {
+            matcher = new SignatureMatcher(parse(new String(table, StandardCharsets.UTF_8)), crc.getValue());
+            writeSnapshot(snapshot, crc.getValue(), matcher);
+        }
+        return matcher;
+    }
+
+    /**
+     * Разбирает текст таблицы сигнатур.
+     *
+     * @param text Текст таблицы.
+     * @return Сигнатуры в порядке строк таблицы.
+     * @throws IllegalArgumentException Если строка таблицы некорректна.
+     */
+    static List<Signature> parse(String text) {
+        List<Signature> signatures = new ArrayList<>();
+        String[] lines = text.split("\\R");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\\s+");
+            if (columns.length != 5) {
+                throw new IllegalArgumentException("Invalid signature table line " + (i + 1) + ": " + line);
+            }
+            try {
+                String pattern = columns[2];
+                if (pattern.length() % 2 != 0) {
+                    throw new IllegalArgumentException("odd number of hex digits");
+                }
+                byte[] bytes = new byte[pattern.length() / 2];
+                byte[] mask = new byte[bytes.length];
+                for (int j = 0; j < bytes.length; j++) {
+                    String token = pattern.substring(j * 2, j * 2 + 2);
+                    if (!token.equals("??")) {
+                        bytes[j] = (byte) Integer.parseInt(token, 16);
+                        mask[j] = columns[3].equals("-")
+                                ? (byte) 0xFF
+                                : (byte) Integer.parseInt(columns[3].substring(j * 2, j * 2 + 2), 16);
+                    }
+                }
+                long minSize = columns[4].equals("-") ? 0 : Long.decode(columns[4]);
+                signatures.add(new Signature(columns[0], Long.decode(columns[1]), bytes, mask, minSize));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid signature table line " + (i + 1) + ": " + line, e);
+            }
+        }
+        return signatures;
+    }
+
+    private static byte[] readTable() {
+        String external = System.getProperty(TABLE_PROPERTY);
+        try {
+            if (external != null) {
+                return Files.readAllBytes(Path.of(external));
+            }
+            try (InputStream in = SignatureDatabase.class.getResourceAsStream(TABLE_RESOURCE)) {
+                if (in == null) {
+                    throw new NoSuchFileException(TABLE_RESOURCE);
+                }
+                return in.readAllBytes();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read signature table", e);
+        }
+    }
+
+    private static Path snapshotDirectory() {
+        String directory = System.getProperty(CACHE_PROPERTY);
+        return Path.of(directory != null ? directory : System.getProperty("java.io.tmpdir"));
+    }
+
+    private static SignatureMatcher readSnapshot(Path snapshot, long crc) {
+        if (!Files.isRegularFile(snapshot)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION || in.readLong() != crc) {
+                return null;
+            }
+            return SignatureMatcher.readFrom(in, crc);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable signature snapshot: {}", snapshot, e);
+            return null;
+        }
+    }
+
+    private static void writeSnapshot(Path snapshot, long crc, SignatureMatcher matcher) {
+        Path temp = null;
+        try {
+            Files.createDirectories(snapshot.getParent());
+            temp = Files.createTempFile(snapshot.getParent(), "courr-signatures", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(crc);
+                matcher.writeTo(out);
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Cannot write signature snapshot: {}", snapshot, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    logger.warn("Cannot delete temporary signature snapshot: {}", temp, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package com.example.courr;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Скомпилированный набор сигнатур.
+ * Сигнатуры группируются по смещению; для каждой группы строится таблица переходов по первому байту
+ * и префиксное дерево по остальным, поэтому все сигнатуры группы проверяются за один проход без выделения памяти.
+ * Группа, в таблице которой для первого байта нет перехода, отбрасывается одним обращением к массиву.
+ * Если совпало несколько сигнатур, выбирается самая длинная; при равной длине — стоящая раньше в списке.
+ * Экземпляр неизменяем и может использоваться из нескольких потоков.
+ */
+final class SignatureMatcher {
+    private static final int NO_NODE = -1;
+
+    private final List<Signature> signatures;
+    /**
+     * Длины и минимальные размеры файлов сигнатур по индексу, чтобы при сопоставлении не обращаться к списку.
+     */
+    private final int[] lengths;
+    private final long[] minSizes;
+    private final long[] offsets;
+    private final Trie[] tries;
+    private final List<ByteWindow> windows;
+    private final long tableCrc;
+
+    /**
+     * Компилирует набор сигнатур.
+     *
+     * @param signatures Сигнатуры в порядке приоритета.
+     * @param tableCrc   Контрольная сумма CRC32 текста таблицы, из которой получены сигнатуры.
+     */
+    SignatureMatcher(List<Signature> signatures, long tableCrc) {
+        this.signatures = List.copyOf(signatures);
+        this.tableCrc = tableCrc;
+        TreeMap<Long, Node> groups = new TreeMap<>();
+        for (int i = 0; i < signatures.size(); i++) {
+            Signature signature = signatures.get(i);
+            groups.computeIfAbsent(signature.offset(), offset -> new Node()).insert(signature, 0, i);
+        }
+        this.offsets = new long[groups.size()];
+        this.tries = new Trie[groups.size()];
+        int group = 0;
+        for (Map.Entry<Long, Node> entry : groups.entrySet()) {
+            offsets[group] = entry.getKey();
+            tries[group] = Trie.compile(entry.getValue());
+            group++;
+        }
+        this.lengths = lengthsOf(this.signatures);
+        this.minSizes = minSizesOf(this.signatures);
+        this.windows = windowsOf(this.signatures, offsets);
+    }
+
+    private SignatureMatcher(List<Signature> signatures, long[] offsets, Trie[] tries, long tableCrc) {
+        this.signatures = List.copyOf(signatures);
+        this.tableCrc = tableCrc;
+        this.offsets = offsets;
+        this.tries = tries;
+        this.lengths = lengthsOf(this.signatures);
+        this.minSizes = minSizesOf(this.signatures);
+        this.windows = windowsOf(this.signatures, offsets);
+    }
+
+    /**
+     * Находит сигнатуру, совпадающую с прочитанными окнами заголовка.
+     *
+     * @param header Заголовок файла.
+     * @return Индекс сигнатуры или -1, если ни одна не совпала.
+     */
+    int match(FileHeader header) {
+        byte[] bytes = header.array();
+        int length = header.length();
+        int best = -1;
+        for (int group = 0; group < offsets.length; group++) {
+            long offset = offsets[group];
+            if (offset < length) {
+                // Начальное окно лежит в начале буфера, поэтому позиция байта равна его смещению
+                best = matchGroup(group, bytes, (int) offset, length - (int) offset, header.fileSize(), best);
+            } else {
+                int position = header.positionOf(offset, 1);
+                if (position >= 0) {
+                    best = matchGroup(group, bytes, position, header.remaining(offset), header.fileSize(), best);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Находит сигнатуру, совпадающую с началом массива байтов, не создавая {@link FileHeader}.
+     * Размером файла считается длина массива.
+     *
+     * @param bytes  Массив байтов начала файла.
+     * @param length Количество действительных байтов в массиве.
+     * @return Индекс сигнатуры или -1, если ни одна не совпала.
+     */
+    int match(byte[] bytes, int length) {
+        int best = -1;
+        // Смещения групп возрастают, поэтому первая группа за пределами массива завершает проверку
+        for (int group = 0; group < offsets.length && offsets[group] < length; group++) {
+            int position = (int) offsets[group];
+            best = matchGroup(group, bytes, position, length - position, length, best);
+        }
+        return best;
+    }
+
+    /**
+     * Возвращает расширение сигнатуры.
+     *
+     * @param index Индекс сигнатуры, возвращённый {@link #match(FileHeader)}.
+     * @return Расширение файла.
+     */
+    String extension(int index) {
+        return signatures.get(index).extension();
+    }
+
+    /**
+     * Возвращает контрольную сумму таблицы сигнатур: меняется при любом изменении таблицы.
+     *
+     * @return CRC32 текста таблицы.
+     */
+    long tableCrc() {
+        return tableCrc;
+    }
+
+    /**
+     * Возвращает сигнатуры в порядке приоритета.
+     *
+     * @return Неизменяемый список сигнатур.
+     */
+    List<Signature> signatures() {
+        return signatures;
+    }
+
+    /**
+     * Возвращает окна файла, которые нужно прочитать для проверки всех сигнатур: по одному на каждое смещение.
+     *
+     * @return Неизменяемый список окон.
+     */
+    List<ByteWindow> requiredWindows() {
+        return windows;
+    }
+
+    /**
+     * Записывает скомпилированный набор в двоичном виде.
+     *
+     * @param out Поток вывода.
+     * @throws IOException Если запись завершилась ошибкой.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(signatures.size());
+        for (Signature signature : signatures) {
+            out.writeUTF(signature.extension());
+            out.writeLong(signature.offset());
+            out.writeInt(signature.length());
+            out.write(signature.pattern());
+            out.write(signature.mask());
+            out.writeLong(signature.minSize());
+        }
+        out.writeInt(offsets.length);
+        for (int group = 0; group < offsets.length; group++) {
+            out.writeLong(offsets[group]);
+            tries[group].writeTo(out);
+        }
+    }
+
+    /**
+     * Читает скомпилированный набор, записанный {@link #writeTo(DataOutputStream)}.
+     *
+     * @param in       Поток ввода.
+     * @param tableCrc Контрольная сумма таблицы, из которой был скомпилирован набор.
+     * @return Набор сигнатур.
+     * @throws IOException Если чтение завершилось ошибкой.
+     */
+    static SignatureMatcher readFrom(DataInputStream in, long tableCrc) throws IOException {
+        int count = in.readInt();
+        List<Signature> signatures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String extension = in.readUTF();
+            long offset = in.readLong();
+            byte[] pattern = new byte[in.readInt()];
+            byte[] mask = new byte[pattern.length];
+            in.readFully(pattern);
+            in.readFully(mask);
+            signatures.add(new Signature(extension, offset, pattern, mask, in.readLong()));
+        }
+        int groups = in.readInt();
+        long[] offsets = new long[groups];
+        Trie[] tries = new Trie[groups];
+        for (int group = 0; group < groups; group++) {
+            offsets[group] = in.readLong();
+            tries[group] = Trie.readFrom(in);
+        }
+        return new SignatureMatcher(signatures, offsets, tries, tableCrc);
+    }
+
+    /**
+     * Проверяет группу сигнатур с одним смещением. Байт по смещению сначала сверяется с таблицей переходов корня:
+     * для большинства групп перехода нет, и дерево не обходится.
+     *
+     * @return Индекс лучшего совпадения с учётом группы или {@code best}.
+     */
+    private int matchGroup(int group, byte[] bytes, int position, int available, long fileSize, int best) {
+        Trie trie = tries[group];
+        if (trie.root[bytes[position] & 0xFF] == NO_NODE) {
+            return best;
+        }
+        return better(trie.match(bytes, position, available, fileSize, minSizes), best);
+    }
+
+    /**
+     * Выбирает из двух совпадений более длинную сигнатуру, при равной длине — стоящую раньше в списке.
+     *
+     * @param candidate Индекс совпавшей сигнатуры или -1.
+     * @param current   Индекс лучшего совпадения среди уже проверенных групп или -1.
+     * @return Индекс лучшего совпадения или -1.
+     */
+    private int better(int candidate, int current) {
+        if (candidate < 0 || current < 0) {
+            return Math.max(candidate, current);
+        }
+        int candidateLength = lengths[candidate];
+        int currentLength = lengths[current];
+        return candidateLength > currentLength || (candidateLength == currentLength && candidate < current)
+                ? candidate : current;
+    }
+
+    private static int[] lengthsOf(List<Signature> signatures) {
+        int[] lengths = new int[signatures.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = signatures.get(i).length();
+        }
+        return lengths;
+    }
+
+    private static long[] minSizesOf(List<Signature> signatures) {
+        long[] minSizes = new long[signatures.size()];
+        for (int i = 0; i < minSizes.length; i++) {
+            minSizes[i] = signatures.get(i).minSize();
+        }
+        return minSizes;
+    }
+
+    private static List<ByteWindow> windowsOf(List<Signature> signatures, long[] offsets) {
+        List<ByteWindow> windows = new ArrayList<>(offsets.length);
+        for (long offset : offsets) {
+            int length = 0;
+            for (Signature signature : signatures) {
+                if (signature.offset() == offset) {
+                    length = Math.max(length, signature.length());
+                }
+            }
+            windows.add(new ByteWindow(offset, length));
+        }
+        return Collections.unmodifiableList(windows);
+    }
+
+    /**
+     * Префиксное дерево сигнатур с общим смещением, развёрнутое в массивы.
+     */
+    private static final class Trie {
+        /**
+         * Переход из корня по первому байту.
+         */
+        private final int[] root;
+        /**
+         * Для узла {@code n} его переходы занимают позиции {@code [edgeStart[n], edgeStart[n + 1])}
+         * массивов {@code edgeBytes} и {@code edgeTargets}; байты переходов отсортированы.
+         */
+        private final int[] edgeStart;
+        private final byte[] edgeBytes;
+        private final int[] edgeTargets;
+        /**
+         * Переход по произвольному байту или {@link #NO_NODE}.
+         */
+        private final int[] anyTarget;
+        /**
+         * Индекс сигнатуры, заканчивающейся в узле, или -1.
+         */
+        private final int[] terminal;
+        /**
+         * Переходы всех узлов, развёрнутые по 256 на узел: переход из узла {@code n} по байту {@code b} —
+         * {@code transitions[n * 256 + b]}. Строится из списков переходов при загрузке и не сохраняется:
+         * шаг сопоставления — одно обращение к массиву вместо поиска в списке переходов узла.
+         */
+        private final int[] transitions;
+
+        private Trie(int[] root, int[] edgeStart, byte[] edgeBytes, int[] edgeTargets, int[] anyTarget, int[] terminal) {
+            this.root = root;
+            this.edgeStart = edgeStart;
+            this.edgeBytes = edgeBytes;
+            this.edgeTargets = edgeTargets;
+            this.anyTarget = anyTarget;
+            this.terminal = terminal;
+            this.transitions = new int[terminal.length << 8];
+            for (int node = 0; node < terminal.length; node++) {
+                Arrays.fill(transitions, node << 8, (node + 1) << 8, anyTarget[node]);
+                for (int edge = edgeStart[node]; edge < edgeStart[node + 1]; edge++) {
+                    transitions[node << 8 | edgeBytes[edge] & 0xFF] = edgeTargets[edge];
+                }
+            }
+        }
+
+        /**
+         * Разворачивает дерево в массивы; узлы нумеруются в ширину, корень — в таблицу на 256 переходов.
+         *
+         * @param trie Корень дерева.
+         * @return Развёрнутое дерево.
+         */
+        private static Trie compile(Node trie) {
+            List<Node> nodes = new ArrayList<>();
+            Deque<Node> queue = new ArrayDeque<>();
+            int[] root = new int[256];
+            for (int b = 0; b < 256; b++) {
+                Node child = trie.edges.getOrDefault(b, trie.any);
+                root[b] = child == null ? NO_NODE : number(child, nodes, queue);
+            }
+            int edgeCount = 0;
+            List<Node> order = new ArrayList<>();
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                order.add(node);
+                edgeCount += node.edges.size();
+                for (Node child : node.edges.values()) {
+                    number(child, nodes, queue);
+                }
+                if (node.any != null) {
+                    number(node.any, nodes, queue);
+                }
+            }
+
+            int[] edgeStart = new int[nodes.size() + 1];
+            byte[] edgeBytes = new byte[edgeCount];
+            int[] edgeTargets = new int[edgeCount];
+            int[] anyTarget = new int[nodes.size()];
+            int[] terminal = new int[nodes.size()];
+            int edge = 0;
+            for (Node node : order) {
+                edgeStart[node.id] = edge;
+                for (Map.Entry<Integer, Node> entry : node.edges.entrySet()) {
+                    edgeBytes[edge] = (byte) (int) entry.getKey();
+                    edgeTargets[edge] = entry.getValue().id;
+                    edge++;
+                }
+                anyTarget[node.id] = node.any == null ? NO_NODE : node.any.id;
+                terminal[node.id] = node.terminal;
+            }
+            edgeStart[nodes.size()] = edge;
+            return new Trie(root, edgeStart, edgeBytes, edgeTargets, anyTarget, terminal);
+        }
+
+        private static int number(Node node, List<Node> nodes, Deque<Node> queue) {
+            if (node.id < 0) {
+                node.id = nodes.size();
+                nodes.add(node);
+                queue.add(node);
+            }
+            return node.id;
+        }
+
+        /**
+         * Проходит дерево по байтам буфера.
+         *
+         * @param bytes      Буфер заголовка.
+         * @param from       Позиция первого байта в буфере.
+         * @param length     Количество доступных байтов.
+         * @param fileSize   Размер файла.
+         * @param minSizes   Минимальные размеры файлов сигнатур по индексу.
+         * @return Индекс самой длинной совпавшей сигнатуры или -1.
+         */
+        private int match(byte[] bytes, int from, int length, long fileSize, long[] minSizes) {
+            int node = root[bytes[from] & 0xFF];
+            int matched = -1;
+            int position = from + 1;
+            int end = from + length;
+            while (node != NO_NODE) {
+                int index = terminal[node];
+                if (index >= 0 && fileSize >= minSizes[index]) {
+                    matched = index;
+                }
+                if (position >= end) {
+                    break;
+                }
+                node = transitions[node << 8 | bytes[position++] & 0xFF];
+            }
+            return matched;
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            writeInts(out, root);
+            writeInts(out, edgeStart);
+            out.writeInt(edgeBytes.length);
+            out.write(edgeBytes);
+            writeInts(out, edgeTargets);
+            writeInts(out, anyTarget);
+            writeInts(out, terminal);
+        }
+
+        private static Trie readFrom(DataInputStream in) throws IOException {
+            int[] root = readInts(in);
+            int[] edgeStart = readInts(in);
+            byte[] edgeBytes = new byte[in.readInt()];
+            in.readFully(edgeBytes);
+            return new Trie(root, edgeStart, edgeBytes, readInts(in), readInts(in), readInts(in));
+        }
+
+        private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+            out.writeInt(values.length);
+            for (int value : values) {
+                out.writeInt(value);
+            }
+        }
+
+        private static int[] readInts(DataInputStream in) throws IOException {
+            int[] values = new int[in.readInt()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = in.readInt();
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Узел префиксного дерева на этапе компиляции.
+     * Переход по произвольному байту ({@link #any}) дублируется во все конкретные переходы узла,
+     * поэтому при сопоставлении достаточно одного пути без возвратов.
+     */
+    private static final class Node {
+        private final TreeMap<Integer, Node> edges = new TreeMap<>();
+        private Node any;
+        private int terminal = -1;
+        private int id = -1;
+
+        private void insert(Signature signature, int position, int index) {
+            if (position == signature.length()) {
+                // Сигнатура с меньшим индексом имеет приоритет
+                if (terminal < 0 || index < terminal) {
+                    terminal = index;
+                }
+                return;
+            }
+            int mask = signature.mask()[position] & 0xFF;
+            int value = signature.pattern()[position] & mask;
+            if (mask == 0) {
+                if (any == null) {
+                    any = new Node();
+                }
+                any.insert(signature, position + 1, index);
+                for (Node child : edges.values()) {
+                    child.insert(signature, position + 1, index);
+                }
+                return;
+            }
+            for (int b = 0; b < 256; b++) {
+                if ((b & mask) == value) {
+                    Node child = edges.get(b);
+                    if (child == null) {
+                        child = any == null ? new Node() : any.copy();
+                        edges.put(b, child);
+                    }
+                    child.insert(signature, position + 1, index);
+                }
+            }
+        }
+
+        private Node copy() {
+            Node copy = new Node();
+            copy.terminal = terminal;
+            copy.any = any == null ? null : any.copy();
+            for (Map.Entry<Integer, Node> entry : edges.entrySet()) {
+                copy.edges.put(entry.getKey(), entry.getValue().copy());
+            }
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.example.courr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Вторая ступень определения формата: уточняет или отклоняет расширение, найденное по сигнатуре,
+ * несколькими позиционными чтениями структуры файла. Двухбайтовые сигнатуры ({@code BM}, {@code MZ},
+ * кадр MP3, {@code FFD8}) часто совпадают случайно, а сигнатура ZIP не различает документы Office, JAR и APK.
+ * <p>
+ * Каждая проверка читает ограниченное количество байтов независимо от размера файла:
+ * <ul>
+ *     <li>BMP — заголовок файла и DIB, {@value #BMP_HEADER} байтов;</li>
+ *     <li>EXE — заголовок DOS и заголовок PE по смещению {@code e_lfanew}, 88 байтов;</li>
+ *     <li>MP3 — заголовок тега ID3 и четыре байта после тега или заголовки {@value #MP3_FRAMES} кадров
+ *     подряд, до 16 байтов;</li>
+ *     <li>JPEG — заголовки первых {@value #JPEG_SEGMENTS} сегментов, до 16 байтов;</li>
+ *     <li>ZIP — первый локальный заголовок, конец архива и не больше {@value #ZIP_DIRECTORY_BUDGET} байтов
+ *     центрального каталога;</li>
+ *     <li>MP4 — блок {@code ftyp}, {@value #FTYP_HEADER} байтов.</li>
+ * </ul>
+ * Экземпляр не является потокобезопасным: каждому рабочему потоку нужен собственный проверяющий.
+ */
+final class SignatureValidator {
+    /**
+     * Результат проверки, означающий, что структура файла не соответствует формату.
+     */
+    static final String REJECTED = "";
+
+    private static final int BMP_HEADER = 30;
+    private static final int DOS_HEADER = 64;
+    private static final int PE_HEADER = 24;
+    private static final int ID3_HEADER = 10;
+    private static final int MP3_FRAMES = 4;
+    private static final int JPEG_SEGMENTS = 4;
+    private static final int ZIP_LOCAL_HEADER = 30;
+    private static final int ZIP_MIMETYPE = 30 + 8 + 64;
+    private static final int ZIP_END = 22;
+    private static final int ZIP_TAIL = ZIP_END + 0xFFFF;
+    private static final int ZIP64_LOCATOR = 20;
+    private static final int ZIP64_END = 56;
+    private static final int ZIP_CENTRAL_HEADER = 46;
+    private static final int ZIP_DIRECTORY_BUDGET = 256 << 10;
+    private static final int FTYP_HEADER = 64;
+
+    private static final int[][] MP3_BITRATES = {
+            {32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            {32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+    };
+    private static final int[] MP3_SAMPLE_RATES = {44100, 48000, 32000};
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(ZIP_TAIL).order(ByteOrder.LITTLE_ENDIAN);
+    private FileChannel channel;
+    private long base;
+    private long size;
+    private long bytesRead;
+
+    /**
+     * Проверяет, есть ли для расширения структурная проверка.
+     *
+     * @param extension Расширение, найденное по сигнатуре.
+     * @return true, если {@link #validate} может уточнить или отклонить это расширение.
+     */
+    static boolean checks(String extension) {
+        return switch (extension) {
+            case "bmp", "exe", "mp3", "jpg", "zip", "mp4" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Проверяет структуру файла или участка канала, которому сигнатура присвоила расширение.
+     *
+     * @param channel   Канал файла.
+     * @param base      Смещение начала файла в канале.
+     * @param size      Размер файла в байтах.
+     * @param extension Расширение, найденное по сигнатуре.
+     * @return Уточнённое расширение, то же расширение, если проверки для него нет, или {@link #REJECTED}.
+     * @throws IOException Если чтение завершилось ошибкой.
+     */
+    String validate(FileChannel channel, long base, long size, String extension) throws IOException {
+        this.channel = channel;
+        this.base = base;
+        this.size = size;
+        this.bytesRead = 0;
+        return switch (extension) {
+            case "bmp" -> bitmap();
+            case "exe" -> executable();
+            case "mp3" -> mpegAudio();
+            case "jpg" -> jpeg();
+            case "zip" -> zip();
+            case "mp4" -> isoMedia();
+            default -> extension;
+        };
+    }
+
+    /**
+     * Возвращает количество байтов, прочитанных последним вызовом {@link #validate}.
+     *
+     * @return Количество байтов.
+     */
+    long bytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * BMP: нулевые зарезервированные поля, известный размер заголовка DIB, одна плоскость
+     * и допустимая глубина цвета.
+     */
+    private String bitmap() throws IOException {
+        ByteBuffer header = read(0, BMP_HEADER);
+        if (header.remaining() < BMP_HEADER || header.getInt(6) != 0) {
+            return REJECTED;
+        }
+        long declared = Integer.toUnsignedLong(header.getInt(2));
+        long dataOffset = Integer.toUnsignedLong(header.getInt(10));
+        int dib = header.getInt(14);
+        int planes;
+        int bitCount;
+        switch (dib) {
+            case 12 -> {
+                planes = header.getShort(22);
+                bitCount = header.getShort(24);
+            }
+            case 16, 40, 52, 56, 64, 108, 124 -> {
+                planes = header.getShort(26);
+                bitCount = header.getShort(28);
+            }
+            default -> {
+                return REJECTED;
+            }
+        }
+        boolean valid = planes == 1 && (bitCount == 1 || bitCount == 4 || bitCount == 8 || bitCount == 16
+                || bitCount == 24 || bitCount == 32)
+                && dataOffset >= 14 + dib && (declared == 0 || declared >= dataOffset);
+        return valid ? "bmp" : REJECTED;
+    }
+
+    /**
+     * EXE: заголовок PE (или NE, LE, LX) по смещению {@code e_lfanew}; библиотеки PE получают расширение dll.
+     * Программа DOS без такого заголовка принимается, если поля заголовка DOS согласованы.
+     */
+    private String executable() throws IOException {
+        ByteBuffer dos = read(0, DOS_HEADER);
+        if (dos.remaining() < DOS_HEADER) {
+            return REJECTED;
+        }
+        int lastPage = Short.toUnsignedInt(dos.getShort(2));
+        int pages = Short.toUnsignedInt(dos.getShort(4));
+        int headerParagraphs = Short.toUnsignedInt(dos.getShort(8));
+        int relocationTable = Short.toUnsignedInt(dos.getShort(0x18));
+        long newHeader = Integer.toUnsignedLong(dos.getInt(0x3C));
+        if (newHeader >= DOS_HEADER && newHeader + PE_HEADER <= size) {
+            ByteBuffer header = read(newHeader, PE_HEADER);
+            if (header.remaining() == PE_HEADER) {
+                if (header.getInt(0) == 0x00004550) {
+                    return (header.getShort(22) & 0x2000) != 0 ? "dll" : "exe";
+                }
+                int magic = Short.toUnsignedInt(header.getShort(0));
+                if (magic == 0x454E || magic == 0x454C || magic == 0x584C) {
+                    return "exe";
+                }
+            }
+        }
+        boolean dosProgram = lastPage < 512 && pages > 0 && headerParagraphs >= 2
+                && (relocationTable == 0x1C || relocationTable == 0x40) && headerParagraphs * 16L <= size;
+        return dosProgram ? "exe" : REJECTED;
+    }
+
+    /**
+     * MP3: цепочка из {@value #MP3_FRAMES} заголовков кадров с одинаковыми версией, слоем и частотой.
+     * Файл может кончиться раньше только точно на границе кадра; кадр, выходящий за конец файла, отклоняет его.
+     * Для тега ID3 проверяются версия и размер, а по данным после него распознаются FLAC и AAC ADTS.
+     */
+    private String mpegAudio() throws IOException {
+        ByteBuffer tag = read(0, ID3_HEADER);
+        if (tag.remaining() >= 3 && tag.get(0) == 'I' && tag.get(1) == 'D' && tag.get(2) == '3') {
+            if (tag.remaining() < ID3_HEADER || tag.get(3) < 2 || tag.get(3) > 4 || (tag.get(4) & 0xFF) == 0xFF) {
+                return REJECTED;
+            }
+            long tagSize = 0;
+            for (int i = 6; i < ID3_HEADER; i++) {
+                if ((tag.get(i) & 0x80) != 0) {
+                    return REJECTED;
+                }
+                tagSize = tagSize << 7 | tag.get(i);
+            }
+            long position = ID3_HEADER + tagSize + ((tag.get(5) & 0x10) != 0 ? ID3_HEADER : 0);
+            if (position > size) {
+                return REJECTED;
+            }
+            ByteBuffer audio = read(position, 4);
+            if (audio.remaining() < 4) {
+                return "mp3";
+            }
+            int word = audio.order(ByteOrder.BIG_ENDIAN).getInt(0);
+            audio.order(ByteOrder.LITTLE_ENDIAN);
+            if (word == 0x664C6143) {
+                return "flac";
+            }
+            if ((word & 0xFFF60000) == 0xFFF00000) {
+                return "aac";
+            }
+            // Тег ID3 уже проверен, поэтому файл с неожиданными данными после тега остаётся MP3
+            return "mp3";
+        }
+        return mpegFrames(0) ? "mp3" : REJECTED;
+    }
+
+    private boolean mpegFrames(long position) throws IOException {
+        int first = 0;
+        for (int frame = 0; frame < MP3_FRAMES; frame++) {
+            if (position == size) {
+                return frame > 0;
+            }
+            if (position + 4 > size) {
+                return false;
+            }
+            ByteBuffer bytes = read(position, 4);
+            int header = bytes.order(ByteOrder.BIG_ENDIAN).getInt(0);
+            bytes.order(ByteOrder.LITTLE_ENDIAN);
+            int length = mpegFrameLength(header);
+            if (length <= 0) {
+                return false;
+            }
+            if (frame == 0) {
+                first = header;
+            } else if ((header & 0xFFFE0C00) != (first & 0xFFFE0C00)) {
+                return false;
+            }
+            if (position + length > size) {
+                return false;
+            }
+            position += length;
+        }
+        return true;
+    }
+
+    /**
+     * Вычисляет длину кадра MPEG Audio по его заголовку.
+     *
+     * @param header Четыре байта заголовка в порядке big-endian.
+     * @return Длина кадра в байтах или -1, если заголовок недопустим.
+     */
+    private static int mpegFrameLength(int header) {
+        int version = header >>> 19 & 3;
+        int layer = header >>> 17 & 3;
+        int bitrateIndex = header >>> 12 & 15;
+        int rateIndex = header >>> 10 & 3;
+        if (header >>> 21 != 0x7FF || version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15
+                || rateIndex == 3 || (header & 3) == 2) {
+            return -1;
+        }
+        boolean mpeg1 = version == 3;
+        int table = mpeg1 ? 3 - layer : layer == 3 ? 3 : 4;
+        int bitrate = MP3_BITRATES[table][bitrateIndex - 1] * 1000;
+        int sampleRate = MP3_SAMPLE_RATES[rateIndex] >> (mpeg1 ? 0 : version == 2 ? 1 : 2);
+        int padding = header >>> 9 & 1;
+        if (layer == 3) {
+            return (12 * bitrate / sampleRate + padding) * 4;
+        }
+        return (layer == 1 && !mpeg1 ? 72 : 144) * bitrate / sampleRate + padding;
+    }
+
+    /**
+     * JPEG: за {@code FFD8} следуют сегменты с маркерами и длинами, пока не встретится начало кадра или данных.
+     * Сегмент, длина которого выходит за конец файла, отклоняет файл.
+     */
+    private String jpeg() throws IOException {
+        long position = 2;
+        for (int segment = 0; segment < JPEG_SEGMENTS; segment++) {
+            if (position == size) {
+                return segment > 0 ? "jpg" : REJECTED;
+            }
+            ByteBuffer bytes = read(position, 4);
+            if (bytes.remaining() < 4) {
+                return REJECTED;
+            }
+            int marker = bytes.get(1) & 0xFF;
+            if ((bytes.get(0) & 0xFF) != 0xFF || !isJpegMarker(marker)) {
+                return REJECTED;
+            }
+            int length = Short.toUnsignedInt(bytes.order(ByteOrder.BIG_ENDIAN).getShort(2));
+            bytes.order(ByteOrder.LITTLE_ENDIAN);
+            if (length < 2 || position + 2 + length > size) {
+                return REJECTED;
+            }
+            if (marker == 0xDA || marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8
+                    && marker != 0xCC) {
+                return "jpg";
+            }
+            position += 2 + length;
+        }
+        return "jpg";
+    }
+
+    private static boolean isJpegMarker(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF || marker >= 0xDB && marker <= 0xDD
+                || marker >= 0xE0 && marker <= 0xEF || marker == 0xDA || marker == 0xFE;
+    }
+
+    /**
+     * ZIP: тип OpenDocument и EPUB — по несжатому члену {@code mimetype} в начале архива, остальные —
+     * по именам в центральном каталоге. Если конец архива не найден (файл обрезан), расширение не меняется.
+     */
+    private String zip() throws IOException {
+        ByteBuffer local = read(0, ZIP_MIMETYPE);
+        if (local.remaining() >= ZIP_LOCAL_HEADER && local.getShort(8) == 0) {
+            int nameLength = Short.toUnsignedInt(local.getShort(26));
+            int dataStart = ZIP_LOCAL_HEADER + nameLength + Short.toUnsignedInt(local.getShort(28));
+            int dataLength = local.getInt(18);
+            if (nameLength == 8 && ascii(local, ZIP_LOCAL_HEADER, 8).equals("mimetype")
+                    && dataLength > 0 && dataStart + dataLength <= local.remaining()) {
+                String type = mimetypeExtension(ascii(local, dataStart, dataLength));
+                if (type != null) {
+                    return type;
+                }
+            }
+        }
+        long tailStart = Math.max(0, size - ZIP_TAIL);
+        ByteBuffer tail = read(tailStart, ZIP_TAIL);
+        int end = -1;
+        for (int i = tail.remaining() - ZIP_END; i >= 0; i--) {
+            if (tail.getInt(i) == 0x06054B50) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            return "zip";
+        }
+        long directorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+        long directoryOffset = Integer.toUnsignedLong(tail.getInt(end + 16));
+        if ((directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) && end >= ZIP64_LOCATOR
+                && tail.getInt(end - ZIP64_LOCATOR) == 0x07064B50) {
+            long zip64End = tail.getLong(end - ZIP64_LOCATOR + 8);
+            ByteBuffer record = read(zip64End, ZIP64_END);
+            if (record.remaining() < ZIP64_END || record.getInt(0) != 0x06064B50) {
+                return "zip";
+            }
+            directorySize = record.getLong(40);
+            directoryOffset = record.getLong(48);
+        }
+        return centralDirectory(directoryOffset, Math.min(directorySize, ZIP_DIRECTORY_BUDGET));
+    }
+
+    private String centralDirectory(long offset, long length) throws IOException {
+        boolean contentTypes = false;
+        boolean manifest = false;
+        String office = null;
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            ByteBuffer chunk = read(position, (int) Math.min(buffer.capacity(), end - position));
+            int entry = 0;
+            while (entry + ZIP_CENTRAL_HEADER <= chunk.remaining() && chunk.getInt(entry) == 0x02014B50) {
+                int nameLength = Short.toUnsignedInt(chunk.getShort(entry + 28));
+                int next = entry + ZIP_CENTRAL_HEADER + nameLength + Short.toUnsignedInt(chunk.getShort(entry + 30))
+                        + Short.toUnsignedInt(chunk.getShort(entry + 32));
+                if (entry + ZIP_CENTRAL_HEADER + nameLength > chunk.remaining()) {
+                    break;
+                }
+                String name = ascii(chunk, entry + ZIP_CENTRAL_HEADER, nameLength);
+                if (name.equals("AndroidManifest.xml") || name.equals("classes.dex")) {
+                    return "apk";
+                }
+                contentTypes |= name.equals("[Content_Types].xml");
+                manifest |= name.equals("META-INF/MANIFEST.MF");
+                if (office == null) {
+                    office = name.startsWith("word/") ? "docx" : name.startsWith("xl/") ? "xlsx"
+                            : name.startsWith("ppt/") ? "pptx" : null;
+                }
+                if (contentTypes && office != null) {
+                    return office;
+                }
+                entry = next;
+            }
+            if (entry == 0 || chunk.remaining() == 0) {
+                break;
+            }
+            position += entry;
+        }
+        return manifest ? "jar" : "zip";
+    }
+
+    private static String mimetypeExtension(String mimetype) {
+        return switch (mimetype) {
+            case "application/epub+zip" -> "epub";
+            case "application/vnd.oasis.opendocument.text" -> "odt";
+            case "application/vnd.oasis.opendocument.spreadsheet" -> "ods";
+            case "application/vnd.oasis.opendocument.presentation" -> "odp";
+            case "application/vnd.oasis.opendocument.graphics" -> "odg";
+            default -> null;
+        };
+    }
+
+    /**
+     * ISO Base Media: размер блока {@code ftyp} согласован с файлом, основной бренд из печатных символов
+     * определяет расширение; для HEIF учитываются совместимые бренды.
+     */
+    private String isoMedia() throws IOException {
+        ByteBuffer box = read(0, FTYP_HEADER);
+        if (box.remaining() < 16) {
+            return REJECTED;
+        }
+        long boxSize = Integer.toUnsignedLong(box.order(ByteOrder.BIG_ENDIAN).getInt(0));
+        box.order(ByteOrder.LITTLE_ENDIAN);
+        String brand = ascii(box, 8, 4);
+        if (boxSize < 16 || boxSize > size || boxSize % 4 != 0 || !brand.chars().allMatch(c -> c >= 0x20 && c < 0x7F)) {
+            return REJECTED;
+        }
+        if (brand.startsWith("3gp")) {
+            return "3gp";
+        }
+        if (brand.startsWith("3g2")) {
+            return "3g2";
+        }
+        switch (brand) {
+            case "qt  ":
+                return "mov";
+            case "M4A ", "M4B ":
+                return "m4a";
+            case "M4V ":
+                return "m4v";
+            case "crx ":
+                return "cr3";
+            case "avif", "avis":
+                return "avif";
+            case "heic", "heix", "heim", "heis":
+                return "heic";
+            case "mif1", "msf1":
+                int end = (int) Math.min(boxSize, box.remaining());
+                for (int i = 16; i + 4 <= end; i += 4) {
+                    if (ascii(box, i, 4).equals("avif")) {
+                        return "avif";
+                    }
+                }
+                return "heic";
+            default:
+                return "mp4";
+        }
+    }
+
+    private static String ascii(ByteBuffer bytes, int position, int length) {
+        byte[] text = new byte[length];
+        bytes.get(position, text);
+        return new String(text, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Читает до {@code length} байтов файла со смещения {@code offset}; байты за концом файла не читаются.
+     *
+     * @return Буфер с прочитанными байтами от позиции 0 до предела; действителен до следующего чтения.
+     */
+    private ByteBuffer read(long offset, int length) throws IOException {
+        buffer.clear();
+        if (offset < 0 || offset >= size) {
+            return buffer.limit(0);
+        }
+        buffer.limit((int) Math.min(length, size - offset));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, base + offset + buffer.position()) < 0) {
+                break;
+            }
+        }
+        bytesRead += buffer.position();
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,341 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Распределяет файлы по устройствам: у каждого хранилища {@link FileStore} своя очередь и свой предел
+ * одновременно читаемых файлов. Все очереди выполняются общим пулом рабочих потоков.
+ * <p>
+ * Начальный и наибольший предел зависят от вида устройства {@link Kind}. Дальше предел подстраивается
+ * по длительности открытия и чтения: если она заметно выросла относительно наименьшей наблюдавшейся,
+ * предел уменьшается на четверть, а если очередь упиралась в предел при нормальной длительности — растёт на единицу.
+ * На дисках с вращающимися пластинами очередь упорядочена по номеру индексного дескриптора, что сокращает
+ * перемещения головки; порядок действует в пределах файлов, уже переданных в обработку.
+ */
+final class StoreScheduler {
+    private static final Logger logger = LogManager.getLogger(StoreScheduler.class.getName());
+
+    /**
+     * Во столько раз средняя длительность окна может превышать наименьшую, прежде чем предел уменьшится.
+     */
+    private static final int LATENCY_TOLERANCE = 2;
+    /**
+     * Более короткие длительности считаются попаданием в кэш страниц и не уменьшают предел: их рост вызван
+     * загрузкой процессора, а не устройства.
+     */
+    private static final long CONGESTION_FLOOR_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    /**
+     * Наименьшее количество измерений в окне, по которому принимается решение о пределе.
+     */
+    private static final int MIN_WINDOW = 8;
+    private static final Path SYS_BLOCK = Path.of("/sys/class/block");
+    private static final Set<String> NETWORK_TYPES = Set.of("nfs", "nfs4", "cifs", "smb2", "smbfs", "9p",
+            "fuse.sshfs", "ceph", "glusterfs", "afs");
+
+    /**
+     * Вид устройства хранилища.
+     */
+    enum Kind {
+        /**
+         * Диск с вращающимися пластинами: немного параллельных чтений, упорядоченных по расположению.
+         */
+        ROTATIONAL,
+        /**
+         * Твердотельный накопитель или память: предел равен количеству рабочих потоков.
+         */
+        SOLID_STATE,
+        /**
+         * Сетевая файловая система: длительность определяется задержкой сети, поэтому начальный предел невелик,
+         * но может вырасти до количества рабочих потоков.
+         */
+        NETWORK
+    }
+
+    private final Executor executor;
+    private final int parallelism;
+    private final Map<String, Lane> devices = new ConcurrentHashMap<>();
+    private final Map<FileStore, Lane> stores = new ConcurrentHashMap<>();
+    private final Map<Path, Lane> directories = new ConcurrentHashMap<>();
+    private final List<Lane> lanes = new CopyOnWriteArrayList<>();
+    private Lane unknown;
+
+    /**
+     * Создаёт планировщик.
+     *
+     * @param executor    Пул рабочих потоков.
+     * @param parallelism Количество рабочих потоков; наибольший предел очереди.
+     */
+    StoreScheduler(Executor executor, int parallelism) {
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Возвращает очередь хранилища, на котором находится файл. Хранилище определяется один раз на устройство
+     * по идентификатору файла из атрибутов, а если его нет — один раз на каталог.
+     *
+     * @param file       Путь к файлу.
+     * @param attributes Атрибуты файла или null.
+     * @return Очередь хранилища.
+     */
+    Lane laneOf(Path file, BasicFileAttributes attributes) {
+        String device = attributes != null ? keyField(attributes.fileKey(), "dev=") : null;
+        if (device != null) {
+            Lane lane = devices.get(device);
+            return lane != null ? lane : devices.computeIfAbsent(device, key -> storeLane(file));
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Lane lane = directories.get(directory);
+        return lane != null ? lane : directories.computeIfAbsent(directory, key -> storeLane(file));
+    }
+
+    /**
+     * Отбрасывает задачи, ещё не переданные пулу.
+     */
+    void clear() {
+        for (Lane lane : lanes) {
+            lane.clear();
+        }
+    }
+
+    /**
+     * Записывает в журнал итоговые пределы и длительности по хранилищам.
+     */
+    void logSummary() {
+        for (Lane lane : lanes) {
+            logger.info("I/O lane {}: {}", lane.name, lane);
+        }
+    }
+
+    private Lane storeLane(Path file) {
+        FileStore store;
+        try {
+            store = Files.getFileStore(file);
+        } catch (IOException e) {
+            logger.debug("Cannot determine file store of {}: {}", file, e.toString());
+            synchronized (this) {
+                if (unknown == null) {
+                    unknown = newLane("unknown", "unknown", Kind.SOLID_STATE);
+                }
+                return unknown;
+            }
+        }
+        return stores.computeIfAbsent(store, key -> newLane(key.name(), key.type(), kindOf(key)));
+    }
+
+    private Lane newLane(String name, String type, Kind kind) {
+        Lane lane = switch (kind) {
+            case ROTATIONAL -> new Lane(name, kind, Math.min(2, parallelism), Math.min(4, parallelism));
+            case NETWORK -> new Lane(name, kind, Math.min(4, parallelism), parallelism);
+            case SOLID_STATE -> new Lane(name, kind, parallelism, parallelism);
+        };
+        lanes.add(lane);
+        logger.info("I/O lane {} ({}, {}): limit {} of {}", name, type, kind.name().toLowerCase(Locale.ROOT),
+                lane.limit, lane.maxLimit);
+        return lane;
+    }
+
+    /**
+     * Определяет вид устройства по типу файловой системы и, в Linux, по признаку
+     * {@code /sys/class/block/<устройство>/queue/rotational}; у раздела признак берётся у диска.
+     */
+    private static Kind kindOf(FileStore store) {
+        if (NETWORK_TYPES.contains(store.type().toLowerCase(Locale.ROOT))) {
+            return Kind.NETWORK;
+        }
+        String name = store.name();
+        if (!name.startsWith("/dev/") || !Files.isDirectory(SYS_BLOCK)) {
+            return Kind.SOLID_STATE;
+        }
+        try {
+            Path device = SYS_BLOCK.resolve(Path.of(name).toRealPath().getFileName().toString()).toRealPath();
+            Path flag = device.resolve("queue/rotational");
+            if (!Files.exists(flag)) {
+                flag = device.getParent().resolve("queue/rotational");
+            }
+            return Files.readString(flag).trim().equals("1") ? Kind.ROTATIONAL : Kind.SOLID_STATE;
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Cannot determine device kind of {}: {}", name, e.toString());
+            return Kind.SOLID_STATE;
+        }
+    }
+
+    /**
+     * Извлекает числовое поле из идентификатора файла вида {@code (dev=803,ino=1234)}, который возвращают
+     * файловые системы Unix.
+     *
+     * @return Значение поля или null, если идентификатора нет или он другого вида.
+     */
+    private static String keyField(Object fileKey, String field) {
+        if (fileKey == null) {
+            return null;
+        }
+        String key = fileKey.toString();
+        int start = key.indexOf(field);
+        if (start < 0) {
+            return null;
+        }
+        start += field.length();
+        int end = start;
+        while (end < key.length() && Character.isLetterOrDigit(key.charAt(end))) {
+            end++;
+        }
+        return end > start ? key.substring(start, end) : null;
+    }
+
+    private static long inodeOf(BasicFileAttributes attributes) {
+        String inode = attributes != null ? keyField(attributes.fileKey(), "ino=") : null;
+        try {
+            return inode != null ? Long.parseLong(inode) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Очередь одного хранилища с адаптивным пределом одновременно выполняемых задач.
+     */
+    final class Lane {
+        private final String name;
+        private final Kind kind;
+        private final int maxLimit;
+        private final Queue<Pending> queue;
+        private long sequence;
+        private int limit;
+        private int active;
+        private boolean saturated;
+        private int samples;
+        private long windowNanos;
+        private long baselineNanos;
+        private long files;
+        private long totalNanos;
+
+        private Lane(String name, Kind kind, int limit, int maxLimit) {
+            this.name = name;
+            this.kind = kind;
+            this.limit = limit;
+            this.maxLimit = maxLimit;
+            this.queue = kind == Kind.ROTATIONAL
+                    ? new PriorityQueue<>(Comparator.comparingLong(Pending::inode).thenComparingLong(Pending::sequence))
+                    : new ArrayDeque<>();
+        }
+
+        /**
+         * Ставит задачу в очередь хранилища и передаёт пулу столько задач, сколько позволяет предел.
+         *
+         * @param task       Задача обработки файла.
+         * @param attributes Атрибуты файла или null; по ним упорядочивается очередь диска.
+         */
+        void submit(Runnable task, BasicFileAttributes attributes) {
+            // Файлы без номера дескриптора остаются в порядке обхода, то есть сгруппированы по каталогам
+            long inode = kind == Kind.ROTATIONAL ? inodeOf(attributes) : -1;
+            synchronized (this) {
+                queue.add(new Pending(inode < 0 ? Long.MAX_VALUE : inode, sequence++, task));
+            }
+            dispatch();
+        }
+
+        /**
+         * Учитывает длительность открытия и чтения файла и при накоплении окна измерений пересматривает предел.
+         *
+         * @param nanos Длительность в наносекундах.
+         */
+        synchronized void latency(long nanos) {
+            files++;
+            totalNanos += nanos;
+            samples++;
+            windowNanos += nanos;
+            if (samples < Math.max(MIN_WINDOW, limit)) {
+                return;
+            }
+            long average = windowNanos / samples;
+            if (baselineNanos == 0 || average < baselineNanos) {
+                baselineNanos = average;
+            } else {
+                // Наименьшая длительность медленно забывается: после холодного старта кэша предел не должен застрять
+                baselineNanos += (average - baselineNanos) / 16;
+            }
+            if (average > baselineNanos * LATENCY_TOLERANCE && average > CONGESTION_FLOOR_NANOS && limit > 1) {
+                limit -= Math.max(1, limit / 4);
+            } else if (saturated && limit < maxLimit) {
+                limit++;
+            }
+            samples = 0;
+            windowNanos = 0;
+            saturated = false;
+        }
+
+        private void dispatch() {
+            while (true) {
+                Pending next;
+                synchronized (this) {
+                    if (queue.isEmpty()) {
+                        return;
+                    }
+                    if (active >= limit) {
+                        saturated = true;
+                        return;
+                    }
+                    next = queue.poll();
+                    active++;
+                }
+                try {
+                    executor.execute(() -> {
+                        try {
+                            next.task().run();
+                        } finally {
+                            finished();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // Пул остановлен: оставшиеся задачи отбрасываются так же, как очередь пула
+                    synchronized (this) {
+                        active--;
+                        queue.clear();
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void finished() {
+            synchronized (this) {
+                active--;
+            }
+            dispatch();
+        }
+
+        private synchronized void clear() {
+            queue.clear();
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format(Locale.ROOT, "%s files=%d limit=%d/%d mean=%dus", kind.name().toLowerCase(Locale.ROOT),
+                    files, limit, maxLimit, files == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos / files));
+        }
+    }
+
+    private record Pending(long inode, long sequence, Runnable task) {
+    }
+}
@@ -0,0 +1,687 @@
+package com.example.courr;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Определяет текстовые форматы по начальному окну файла, если ни одна двоичная сигнатура не совпала.
+ * <p>
+ * Сначала проверяется метка порядка байтов (UTF-8, UTF-16LE, UTF-16BE), затем кодировка: допустимый UTF-8
+ * или однобайтовый текст без управляющих символов. Байты проверяются по восемь за раз: слово из одних печатных
+ * символов ASCII пропускается одной проверкой, и только слова с управляющими или не-ASCII байтами разбираются
+ * побайтово. Затем по структуре начала текста определяются JSON и JSON Lines, HTML, XML, сценарии с
+ * {@code #!}, CSV и TSV; остальной текст получает расширение {@link #TEXT}.
+ * <p>
+ * Классификатор не выделяет память при работе, но хранит состояние разбора, поэтому не является
+ * потокобезопасным: каждому потоку нужен собственный экземпляр.
+ */
+final class TextClassifier {
+
+    /**
+     * Длина окна со смещения 0, которое читается для текстовых форматов: одна страница, поэтому чтение
+     * двоичного заголовка не требует дополнительных обращений к диску.
+     */
+    static final int WINDOW = 4096;
+
+    /**
+     * Расширение текста без распознанной структуры.
+     */
+    static final String TEXT = "txt";
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long SPACES = 0x2020202020202020L;
+
+    /**
+     * Символ, которым {@link #at(int)} заменяет любой символ за пределами ASCII.
+     */
+    private static final int NON_ASCII = 0x80;
+    private static final int MAX_DEPTH = 64;
+
+    private static final int BINARY = 0;
+    private static final int UTF8 = 1;
+    private static final int EIGHT_BIT = 2;
+
+    /**
+     * Результат разбора, если окно закончилось раньше, чем значение JSON.
+     */
+    private static final int RAN_OUT = -2;
+    private static final int INVALID = -1;
+
+    /**
+     * Состояния разбора JSON: ожидается значение, значение или конец массива, ключ или конец объекта, ключ,
+     * двоеточие, запятая или конец вложенного значения.
+     */
+    private static final int VALUE = 0;
+    private static final int VALUE_OR_CLOSE = 1;
+    private static final int KEY_OR_CLOSE = 2;
+    private static final int KEY = 3;
+    private static final int COLON = 4;
+    private static final int NEXT = 5;
+
+    private static final String[] LITERALS = {"true", "false", "null"};
+    private static final String[] HTML_TAGS = {"<!doctype html", "<html", "<head", "<body"};
+
+    /**
+     * Интерпретаторы строки {@code #!} и расширения сценариев; имя интерпретатора может оканчиваться версией.
+     */
+    private static final String[][] INTERPRETERS = {
+            {"sh", "sh"}, {"bash", "sh"}, {"dash", "sh"}, {"ash", "sh"}, {"zsh", "sh"}, {"ksh", "sh"},
+            {"python", "py"}, {"perl", "pl"}, {"ruby", "rb"}, {"node", "js"}, {"nodejs", "js"}, {"php", "php"},
+            {"lua", "lua"}, {"Rscript", "r"}, {"awk", "awk"}, {"gawk", "awk"}, {"tclsh", "tcl"}, {"pwsh", "ps1"}
+    };
+
+    /**
+     * Все расширения, которые может вернуть {@link #classify(FileHeader)}.
+     */
+    static final Set<String> EXTENSIONS = Stream.concat(
+            Stream.of(TEXT, "json", "jsonl", "xml", "html", "csv", "tsv"),
+            Arrays.stream(INTERPRETERS).map(pair -> pair[1])).collect(Collectors.toUnmodifiableSet());
+
+    private byte[] bytes;
+    private int start;
+    private int end;
+    private int unit;
+    private int low;
+    private boolean complete;
+
+    /**
+     * Определяет текстовый формат по начальному окну заголовка.
+     *
+     * @param header Заголовок файла.
+     * @return Расширение или пустая строка, если начало файла не похоже на текст.
+     */
+    String classify(FileHeader header) {
+        int length = header.length();
+        if (length == 0) {
+            return "";
+        }
+        byte[] b = header.array();
+        bytes = b;
+        complete = length >= header.fileSize();
+        unit = 1;
+        low = 0;
+        int b0 = b[0] & 0xFF;
+        int b1 = length > 1 ? b[1] & 0xFF : -1;
+        if (b0 == 0xEF && b1 == 0xBB && length > 2 && (b[2] & 0xFF) == 0xBF) {
+            start = 3;
+            end = length;
+            if (scan(start, end) != UTF8) {
+                return "";
+            }
+        } else if (b0 == 0xFF && b1 == 0xFE || b0 == 0xFE && b1 == 0xFF) {
+            start = 2;
+            end = 2 + ((length - 2) & ~1);
+            unit = 2;
+            low = b0 == 0xFF ? 0 : 1;
+            if (!utf16()) {
+                return "";
+            }
+        } else {
+            start = 0;
+            end = length;
+            if (scan(start, end) == BINARY) {
+                return "";
+            }
+        }
+        return sniff();
+    }
+
+    /**
+     * Проверяет, нужно ли сохранить имя файла: текстовый формат из {@link #EXTENSIONS} не заменяет расширение,
+     * которое уже есть у имени. Текстовых форматов и их синонимов гораздо больше, чем распознаётся
+     * по содержимому: {@code data.ndjson} — это JSON Lines, {@code pkg.lock} — JSON, {@code notes.md} — текст.
+     *
+     * @param name      Имя файла.
+     * @param extension Определённое расширение.
+     * @return true, если имя менять не нужно.
+     */
+    static boolean keepsName(String name, String extension) {
+        if (!EXTENSIONS.contains(extension)) {
+            return false;
+        }
+        int dot = name.lastIndexOf('.');
+        int slash = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'));
+        return dot > slash + 1 && dot < name.length() - 1;
+    }
+
+    /**
+     * Проверяет однобайтовое окно: возвращает {@link #UTF8}, если все последовательности UTF-8 допустимы,
+     * {@link #EIGHT_BIT}, если текст в однобайтовой кодировке, и {@link #BINARY} при нуле или управляющем символе.
+     */
+    private int scan(int from, int to) {
+        byte[] b = bytes;
+        boolean utf8 = true;
+        int i = from;
+        while (i < to) {
+            if (i + Long.BYTES <= to) {
+                long word = (long) LONG.get(b, i);
+                // Старший бит каждого байта сброшен, и вычитание пробела не даёт заёма: восемь печатных символов ASCII
+                if (((word | (word - SPACES)) & HIGH_BITS) == 0) {
+                    i += Long.BYTES;
+                    continue;
+                }
+            }
+            int c = b[i] & 0xFF;
+            if (c < 0x80) {
+                if (c < 0x20 && !allowedControl(c)) {
+                    return BINARY;
+                }
+                i++;
+                continue;
+            }
+            if (utf8) {
+                int n = sequenceLength(i, to);
+                if (n > 0) {
+                    i += n;
+                    continue;
+                }
+                if (n == RAN_OUT && !complete) {
+                    break;
+                }
+                utf8 = false;
+            }
+            i++;
+        }
+        return utf8 ? UTF8 : EIGHT_BIT;
+    }
+
+    /**
+     * Возвращает длину допустимой последовательности UTF-8, начинающейся с не-ASCII байта,
+     * 0 для недопустимой или {@link #RAN_OUT}, если окно закончилось внутри последовательности.
+     */
+    private int sequenceLength(int i, int to) {
+        byte[] b = bytes;
+        int c = b[i] & 0xFF;
+        int n;
+        int min = 0x80;
+        int max = 0xBF;
+        if (c >= 0xC2 && c <= 0xDF) {
+            n = 2;
+        } else if (c >= 0xE0 && c <= 0xEF) {
+            n = 3;
+            // Без избыточных кодировок и суррогатов
+            min = c == 0xE0 ? 0xA0 : 0x80;
+            max = c == 0xED ? 0x9F : 0xBF;
+        } else if (c >= 0xF0 && c <= 0xF4) {
+            n = 4;
+            min = c == 0xF0 ? 0x90 : 0x80;
+            max = c == 0xF4 ? 0x8F : 0xBF;
+        } else {
+            return 0;
+        }
+        for (int k = 1; k < n; k++) {
+            if (i + k >= to) {
+                return RAN_OUT;
+            }
+            int next = b[i + k] & 0xFF;
+            if (k == 1 ? next < min || next > max : (next & 0xC0) != 0x80) {
+                return 0;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Проверяет окно UTF-16: нет нулевых и управляющих символов, суррогаты образуют пары.
+     */
+    private boolean utf16() {
+        for (int p = start; p < end; p += 2) {
+            int c = unitAt(p);
+            if (c < 0x20 && !allowedControl(c)) {
+                return false;
+            }
+            if (c >= 0xD800 && c <= 0xDBFF) {
+                if (p + 2 >= end) {
+                    return !complete;
+                }
+                int next = unitAt(p + 2);
+                if (next < 0xDC00 || next > 0xDFFF) {
+                    return false;
+                }
+                p += 2;
+            } else if (c >= 0xDC00 && c <= 0xDFFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int unitAt(int p) {
+        return (bytes[p + low] & 0xFF) | (bytes[p + 1 - low] & 0xFF) << 8;
+    }
+
+    /**
+     * Управляющие символы, встречающиеся в тексте: BEL, BS, HT, LF, VT, FF, CR и ESC.
+     */
+    private static boolean allowedControl(int c) {
+        return c >= 0x07 && c <= 0x0D || c == 0x1B;
+    }
+
+    /**
+     * Возвращает символ ASCII в позиции окна или {@link #NON_ASCII} для остальных символов.
+     */
+    private int at(int p) {
+        if (unit == 1) {
+            int c = bytes[p] & 0xFF;
+            return c < 0x80 ? c : NON_ASCII;
+        }
+        return bytes[p + 1 - low] == 0 && bytes[p + low] >= 0 ? bytes[p + low] : NON_ASCII;
+    }
+
+    private String sniff() {
+        int p = skipWhitespace(start);
+        if (p >= end) {
+            return TEXT;
+        }
+        int c = at(p);
+        if (c == '#' && p == start && p + unit < end && at(p + unit) == '!') {
+            return script(p + 2 * unit);
+        }
+        if (c == '{' || c == '[') {
+            String json = json(p);
+            if (json != null) {
+                return json;
+            }
+        }
+        if (c == '<') {
+            String markup = markup(p);
+            if (markup != null) {
+                return markup;
+            }
+        }
+        String delimited = delimited();
+        return delimited != null ? delimited : TEXT;
+    }
+
+    private int skipWhitespace(int p) {
+        while (p < end) {
+            int c = at(p);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r' && c != '\f') {
+                break;
+            }
+            p += unit;
+        }
+        return p;
+    }
+
+    // Сценарии
+
+    private String script(int p) {
+        p = skipSpaces(p);
+        int tokenEnd = tokenEnd(p);
+        int name = baseName(p, tokenEnd);
+        if (matches(name, tokenEnd, "env")) {
+            // #!/usr/bin/env [-S] [параметры] интерпретатор
+            p = skipSpaces(tokenEnd);
+            while (p < end && at(p) == '-') {
+                p = skipSpaces(tokenEnd(p));
+            }
+            tokenEnd = tokenEnd(p);
+            name = baseName(p, tokenEnd);
+        }
+        for (String[] interpreter : INTERPRETERS) {
+            if (matchesVersioned(name, tokenEnd, interpreter[0])) {
+                return interpreter[1];
+            }
+        }
+        return TEXT;
+    }
+
+    private int skipSpaces(int p) {
+        while (p < end && (at(p) == ' ' || at(p) == '\t')) {
+            p += unit;
+        }
+        return p;
+    }
+
+    private int tokenEnd(int p) {
+        while (p < end) {
+            int c = at(p);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                break;
+            }
+            p += unit;
+        }
+        return p;
+    }
+
+    private int baseName(int from, int to) {
+        int name = from;
+        for (int p = from; p < to; p += unit) {
+            if (at(p) == '/') {
+                name = p + unit;
+            }
+        }
+        return name;
+    }
+
+    private boolean matches(int from, int to, String text) {
+        return (to - from) / unit == text.length() && startsWith(from, text, false);
+    }
+
+    /**
+     * Проверяет имя интерпретатора с необязательной версией: {@code python3}, {@code python3.11}.
+     */
+    private boolean matchesVersioned(int from, int to, String text) {
+        if ((to - from) / unit < text.length() || !startsWith(from, text, false)) {
+            return false;
+        }
+        for (int p = from + text.length() * unit; p < to; p += unit) {
+            int c = at(p);
+            if ((c < '0' || c > '9') && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWith(int p, String text, boolean ignoreCase) {
+        if (p + text.length() * unit > end) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++, p += unit) {
+            int c = at(p);
+            if (ignoreCase && c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Разметка
+
+    /**
+     * Определяет HTML по объявлению или одному из корневых элементов в окне, иначе XML по началу элемента.
+     */
+    private String markup(int p) {
+        for (int q = p; q < end; q += unit) {
+            if (at(q) == '<') {
+                for (String tag : HTML_TAGS) {
+                    if (startsWith(q, tag, true)) {
+                        int after = q + tag.length() * unit;
+                        if (after >= end || !isNameChar(at(after))) {
+                            return "html";
+                        }
+                    }
+                }
+            }
+        }
+        int next = p + unit < end ? at(p + unit) : -1;
+        return next == '?' || next == '!' || isNameStart(next) ? "xml" : null;
+    }
+
+    private static boolean isNameStart(int c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+    }
+
+    private static boolean isNameChar(int c) {
+        return isNameStart(c) || c >= '0' && c <= '9' || c == '-' || c == ':' || c == '.';
+    }
+
+    // JSON
+
+    /**
+     * Разбирает начало окна как последовательность значений JSON. Обрезанное окно принимается, если его начало
+     * не содержит ошибок; окно, покрывающее весь файл, должно заканчиваться полным значением.
+     *
+     * @return {@code json}, {@code jsonl} для нескольких значений, разделённых переводами строк, в том числе
+     * если обрезанное окно заканчивается внутри второго значения, или null.
+     */
+    private String json(int p) {
+        long objects = 0;
+        int depth = 0;
+        // Начатые значения верхнего уровня: обрезанное окно может закончиться внутри второго из них
+        int values = 1;
+        int state = VALUE;
+        while (true) {
+            int whitespace = p;
+            p = skipWhitespace(p);
+            if (p >= end) {
+                break;
+            }
+            int c = at(p);
+            if (state == NEXT && depth == 0) {
+                // Значение верхнего уровня закончилось; следующее допускается только с новой строки
+                if ((c != '{' && c != '[') || !hasNewline(whitespace, p)) {
+                    return null;
+                }
+                values++;
+                state = VALUE;
+            }
+            switch (state) {
+                case VALUE, VALUE_OR_CLOSE -> {
+                    if (c == ']' && state == VALUE_OR_CLOSE) {
+                        depth--;
+                        p += unit;
+                        state = NEXT;
+                    } else if (c == '{' || c == '[') {
+                        if (depth == MAX_DEPTH) {
+                            return complete ? null : "json";
+                        }
+                        objects = c == '{' ? objects | 1L << depth : objects & ~(1L << depth);
+                        depth++;
+                        p += unit;
+                        state = c == '{' ? KEY_OR_CLOSE : VALUE_OR_CLOSE;
+                    } else {
+                        p = scalar(p, c);
+                        state = NEXT;
+                    }
+                }
+                case KEY_OR_CLOSE, KEY -> {
+                    if (c == '}' && state == KEY_OR_CLOSE) {
+                        depth--;
+                        p += unit;
+                        state = NEXT;
+                    } else if (c == '"') {
+                        p = string(p);
+                        state = COLON;
+                    } else {
+                        return null;
+                    }
+                }
+                case COLON -> {
+                    if (c != ':') {
+                        return null;
+                    }
+                    p += unit;
+                    state = VALUE;
+                }
+                default -> {
+                    boolean object = (objects & 1L << (depth - 1)) != 0;
+                    if (c == ',') {
+                        p += unit;
+                        state = object ? KEY : VALUE;
+                    } else if (c == (object ? '}' : ']')) {
+                        depth--;
+                        p += unit;
+                    } else {
+                        return null;
+                    }
+                }
+            }
+            if (p == INVALID) {
+                return null;
+            }
+            if (p == RAN_OUT) {
+                break;
+            }
+        }
+        if (complete) {
+            if (p == RAN_OUT || state != NEXT || depth != 0) {
+                return null;
+            }
+        }
+        return values > 1 ? "jsonl" : "json";
+    }
+
+    private boolean hasNewline(int from, int to) {
+        for (int p = from; p < to; p += unit) {
+            if (at(p) == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int scalar(int p, int c) {
+        if (c == '"') {
+            return string(p);
+        }
+        if (c == '-' || c >= '0' && c <= '9') {
+            return number(p);
+        }
+        for (String literal : LITERALS) {
+            if (c == literal.charAt(0)) {
+                return literal(p, literal);
+            }
+        }
+        return INVALID;
+    }
+
+    private int string(int p) {
+        p += unit;
+        while (p < end) {
+            int c = at(p);
+            if (c == '"') {
+                return p + unit;
+            }
+            if (c < 0x20) {
+                return INVALID;
+            }
+            if (c == '\\') {
+                p += unit;
+                if (p >= end) {
+                    return RAN_OUT;
+                }
+                int escaped = at(p);
+                if (escaped == 'u') {
+                    for (int k = 0; k < 4; k++) {
+                        p += unit;
+                        if (p >= end) {
+                            return RAN_OUT;
+                        }
+                        if (Character.digit(at(p), 16) < 0) {
+                            return INVALID;
+                        }
+                    }
+                } else if ("\"\\/bfnrt".indexOf(escaped) < 0) {
+                    return INVALID;
+                }
+            }
+            p += unit;
+        }
+        return RAN_OUT;
+    }
+
+    private int number(int p) {
+        int digits = 0;
+        while (p < end) {
+            int c = at(p);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') {
+                return digits > 0 ? p : INVALID;
+            }
+            p += unit;
+        }
+        return RAN_OUT;
+    }
+
+    private int literal(int p, String literal) {
+        for (int i = 0; i < literal.length(); i++, p += unit) {
+            if (p >= end) {
+                return RAN_OUT;
+            }
+            if (at(p) != literal.charAt(i)) {
+                return INVALID;
+            }
+        }
+        return p;
+    }
+
+    // CSV и TSV
+
+    /**
+     * Ищет разделитель, который встречается одинаковое ненулевое количество раз во всех полных записях окна;
+     * разделители внутри кавычек не учитываются, пустые строки пропускаются. Нужно не меньше трёх записей
+     * или двух записей с тремя и более полями.
+     *
+     * @return {@code tsv}, {@code csv} или null.
+     */
+    private String delimited() {
+        int tabs = 0;
+        int commas = 0;
+        int semicolons = 0;
+        int firstTabs = -1;
+        int firstCommas = -1;
+        int firstSemicolons = -1;
+        boolean tabsAgree = true;
+        boolean commasAgree = true;
+        boolean semicolonsAgree = true;
+        boolean quoted = false;
+        boolean empty = true;
+        int records = 0;
+        for (int p = start; p <= end; p += unit) {
+            int c = p < end ? at(p) : -1;
+            if (c == -1 && !complete) {
+                break;
+            }
+            if (quoted) {
+                quoted = c != '"' && c != -1;
+                continue;
+            }
+            if (c == '\n' || c == -1) {
+                if (!empty) {
+                    if (records++ == 0) {
+                        firstTabs = tabs;
+                        firstCommas = commas;
+                        firstSemicolons = semicolons;
+                    } else {
+                        tabsAgree &= tabs == firstTabs;
+                        commasAgree &= commas == firstCommas;
+                        semicolonsAgree &= semicolons == firstSemicolons;
+                    }
+                }
+                tabs = 0;
+                commas = 0;
+                semicolons = 0;
+                empty = true;
+                continue;
+            }
+            if (c != '\r' && c != ' ') {
+                empty = false;
+            }
+            switch (c) {
+                case '"' -> quoted = true;
+                case '\t' -> tabs++;
+                case ',' -> commas++;
+                case ';' -> semicolons++;
+                default -> {
+                }
+            }
+        }
+        if (records < 2) {
+            return null;
+        }
+        if (tabsAgree && enoughFields(records, firstTabs)) {
+            return "tsv";
+        }
+        if (commasAgree && enoughFields(records, firstCommas) || semicolonsAgree && enoughFields(records, firstSemicolons)) {
+            return "csv";
+        }
+        return null;
+    }
+
+    private static boolean enoughFields(int records, int delimiters) {
+        return delimiters >= 1 && (records >= 3 || delimiters >= 2);
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.courr;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Быстрая оценка состава дерева без полного обхода: количество файлов, объём, доли форматов и длительность
+ * восстановления.
+ * <p>
+ * Оценка строится случайными спусками Кнута: спуск начинается в корне, на каждом уровне читает один каталог
+ * и переходит в случайный вложенный каталог. Каталог глубины {@code d} получает вес — произведение количеств
+ * вложенных каталогов на пути к нему, то есть обратную вероятность попасть в него; сумма файлов каталогов пути,
+ * умноженных на веса, — несмещённая оценка количества файлов дерева. В каждом каталоге пути определяется формат
+ * одного случайного файла с весом «вес каталога × количество файлов в нём», поэтому выборка стратифицирована
+ * по каталогам, а доли форматов получаются взвешенными.
+ * <p>
+ * Интервал количества файлов строится по разбросу оценок отдельных спусков. Интервалы долей — интервалы Уилсона
+ * по эффективному размеру выборки Киша {@code (Σw)² / Σw²}, который учитывает неравенство весов.
+ * Длительность восстановления прогнозируется по измеренной стоимости определения формата одного файла
+ * и чтения одной записи каталога.
+ */
+final class TypeEstimator {
+    private static final Logger logger = LogManager.getLogger(TypeEstimator.class.getName());
+
+    /**
+     * Квантиль нормального распределения для 95-процентных интервалов.
+     */
+    private static final double Z = 1.96;
+    /**
+     * Наибольшее количество файлов в запомненных списках каталогов: корень и верхние уровни читаются каждым спуском,
+     * поэтому их списки сохраняются, а нижние уровни при большом дереве читаются заново.
+     */
+    private static final int CACHED_FILES_LIMIT = 2_000_000;
+
+    /**
+     * Доля формата.
+     *
+     * @param extension Расширение или пустая строка для неопределённого формата.
+     * @param samples   Количество файлов выборки с этим форматом.
+     * @param share     Оценка доли файлов.
+     * @param low       Нижняя граница 95-процентного интервала доли.
+     * @param high      Верхняя граница 95-процентного интервала доли.
+     * @param files     Оценка количества файлов.
+     */
+    record Share(String extension, long samples, double share, double low, double high, double files) {
+    }
+
+    /**
+     * Итог оценки.
+     *
+     * @param walks            Количество спусков.
+     * @param samples          Количество файлов, формат которых определён.
+     * @param files            Оценка количества файлов.
+     * @param filesLow         Нижняя граница 95-процентного интервала количества файлов.
+     * @param filesHigh        Верхняя граница 95-процентного интервала количества файлов.
+     * @param bytes            Оценка объёма файлов в байтах.
+     * @param effectiveSamples Эффективный размер выборки Киша.
+     * @param shares           Доли форматов по убыванию.
+     * @param fileNanos        Средняя длительность открытия, чтения и определения формата одного файла.
+     * @param entryNanos       Средняя длительность чтения одной записи каталога.
+     * @param threads          Количество рабочих потоков, для которого сделан прогноз.
+     * @param elapsedNanos     Длительность оценки.
+     */
+    record Estimate(long walks, long samples, double files, double filesLow, double filesHigh, double bytes,
+                    double effectiveSamples, List<Share> shares, long fileNanos, long entryNanos, int threads,
+                    long elapsedNanos) {
+
+        /**
+         * Возвращает прогноз длительности определения форматов всех файлов рабочими потоками.
+         *
+         * @return Длительность в наносекундах.
+         */
+        long projectedClassifyNanos() {
+            return (long) (files * fileNanos / threads);
+        }
+
+        /**
+         * Возвращает прогноз длительности обхода дерева; обход выполняется одним потоком.
+         *
+         * @return Длительность в наносекундах.
+         */
+        long projectedScanNanos() {
+            return (long) (files * entryNanos);
+        }
+    }
+
+    /**
+     * Каталог, прочитанный одним уровнем.
+     */
+    private record Level(List<Path> files, long bytes, List<Path> directories) {
+    }
+
+    private final FileExtensionRecoveryService service;
+    private final RecoveryOptions options;
+    private final DirectoryScanner scanner;
+    private final MetadataFilter filter;
+    private final HeaderWindowReader reader;
+    private final SplittableRandom random;
+    private final Map<Path, Level> levels = new HashMap<>();
+    private final Map<Path, String> sampled = new HashMap<>();
+    private long cachedFiles;
+    private long listedEntries;
+    private long listingNanos;
+    private long classified;
+    private long classifyNanos;
+    private long errors;
+
+    /**
+     * Создаёт оценщик.
+     *
+     * @param service Сервис, определяющий расширения файлов.
+     * @param options Параметры запуска: правила обхода, глубина, отбор файлов и количество рабочих потоков.
+     * @param seed    Начальное значение генератора случайных чисел; одно значение даёт одну и ту же выборку.
+     */
+    TypeEstimator(FileExtensionRecoveryService service, RecoveryOptions options, long seed) {
+        this.service = service;
+        this.options = options;
+        this.scanner = new DirectoryScanner(options);
+        this.filter = MetadataFilter.of(options, service.knownExtensions());
+        this.reader = new HeaderWindowReader(service.requiredWindows());
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Выполняет спуски, пока не истечёт время или не будет выполнено наибольшее количество спусков.
+     *
+     * @param root           Корневой каталог.
+     * @param durationMillis Наибольшая длительность оценки в миллисекундах.
+     * @param maxWalks       Наибольшее количество спусков.
+     * @return Итог оценки.
+     * @throws IOException          Если корневой каталог не удалось прочитать.
+     * @throws InterruptedException Если оценка была прервана.
+     */
+    Estimate estimate(Path root, long durationMillis, long maxWalks) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        int maxDepth = options.recursive() ? options.maxDepth() : 1;
+        Map<String, double[]> weights = new HashMap<>();
+        Map<String, Long> counts = new HashMap<>();
+        double weightSum = 0;
+        double weightSquares = 0;
+        double filesSum = 0;
+        double filesSquares = 0;
+        double bytesSum = 0;
+        long walks = 0;
+        long samples = 0;
+        // Корень читается до проверки времени: без него оценки нет совсем
+        Level rootLevel = level(root);
+        do {
+            Path directory = root;
+            Level level = rootLevel;
+            double weight = 1;
+            double files = 0;
+            double bytes = 0;
+            for (int depth = 0; ; depth++) {
+                files += weight * level.files().size();
+                bytes += weight * level.bytes();
+                if (!level.files().isEmpty()) {
+                    Path sample = level.files().get(random.nextInt(level.files().size()));
+                    String extension = classify(sample);
+                    double w = weight * level.files().size();
+                    weights.computeIfAbsent(extension, key -> new double[1])[0] += w;
+                    counts.merge(extension, 1L, Long::sum);
+                    weightSum += w;
+                    weightSquares += w * w;
+                    samples++;
+                }
+                if (depth + 1 >= maxDepth || level.directories().isEmpty()) {
+                    break;
+                }
+                weight *= level.directories().size();
+                directory = level.directories().get(random.nextInt(level.directories().size()));
+                try {
+                    level = level(directory);
+                } catch (IOException e) {
+                    // Недоступный каталог считается пустым: оценка для этой ветви занижается так же, как при обходе
+                    errors++;
+                    logger.debug("Cannot list {}: {}", directory, e.toString());
+                    break;
+                }
+            }
+            walks++;
+            filesSum += files;
+            filesSquares += files * files;
+            bytesSum += bytes;
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Estimate interrupted");
+            }
+        } while (walks < maxWalks && System.nanoTime() < deadline);
+
+        double files = filesSum / walks;
+        double variance = walks > 1 ? Math.max(0, (filesSquares - walks * files * files) / (walks - 1)) : 0;
+        double margin = Z * Math.sqrt(variance / walks);
+        double effective = weightSquares > 0 ? weightSum * weightSum / weightSquares : 0;
+        List<Share> shares = new ArrayList<>(weights.size());
+        for (Map.Entry<String, double[]> entry : weights.entrySet()) {
+            double share = entry.getValue()[0] / weightSum;
+            double[] interval = wilson(share, effective);
+            shares.add(new Share(entry.getKey(), counts.get(entry.getKey()), share, interval[0], interval[1],
+                    share * files));
+        }
+        shares.sort(Comparator.comparingDouble(Share::share).reversed().thenComparing(Share::extension));
+        Estimate estimate = new Estimate(walks, samples, files, Math.max(0, files - margin), files + margin,
+                bytesSum / walks, effective, List.copyOf(shares), classified == 0 ? 0 : classifyNanos / classified,
+                listedEntries == 0 ? 0 : listingNanos / listedEntries, options.parallelism(),
+                System.nanoTime() - start);
+        logger.info("Estimate of {}: {} walks, {} samples, {} directories listed, {} errors", root, walks, samples,
+                levels.size(), errors);
+        return estimate;
+    }
+
+    /**
+     * Возвращает интервал Уилсона для доли {@code p} при размере выборки {@code n}.
+     */
+    private static double[] wilson(double p, double n) {
+        if (n <= 0) {
+            return new double[]{0, 1};
+        }
+        double z2 = Z * Z;
+        double denominator = 1 + z2 / n;
+        double center = (p + z2 / (2 * n)) / denominator;
+        double half = Z * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n)) / denominator;
+        return new double[]{Math.max(0, center - half), Math.min(1, center + half)};
+    }
+
+    /**
+     * Читает один уровень каталога по правилам обхода {@link DirectoryScanner} и условиям отбора {@link MetadataFilter}.
+     */
+    private Level level(Path directory) throws IOException, InterruptedException {
+        Level level = levels.get(directory);
+        if (level != null) {
+            return level;
+        }
+        List<Path> files = new ArrayList<>();
+        List<Path> directories = new ArrayList<>();
+        long[] bytes = new long[1];
+        long start = System.nanoTime();
+        scanner.scanLevel(directory, (file, attributes) -> {
+            listedEntries++;
+            if (filter == null || filter.accepts(file, attributes)) {
+                files.add(file);
+                bytes[0] += attributes.size();
+            }
+        }, (child, attributes) -> {
+            listedEntries++;
+            directories.add(child);
+        }, (path, error) -> errors++);
+        listingNanos += System.nanoTime() - start;
+        level = new Level(files, bytes[0], directories);
+        if (cachedFiles + files.size() <= CACHED_FILES_LIMIT) {
+            levels.put(directory, level);
+            cachedFiles += files.size();
+        }
+        return level;
+    }
+
+    /**
+     * Определяет формат файла выборки так же, как {@link RecoveryEngine}, и учитывает длительность.
+     * Файл, попавший в выборку повторно, не читается: его чтение из кэша страниц занизило бы стоимость файла.
+     *
+     * @return Расширение или пустая строка.
+     */
+    private String classify(Path file) {
+        String known = sampled.get(file);
+        if (known != null) {
+            return known;
+        }
+        String extension = read(file);
+        sampled.put(file, extension);
+        return extension;
+    }
+
+    private String read(Path file) {
+        long start = System.nanoTime();
+        try {
+            String extension = service.detectExtension(reader.read(file));
+            return extension == null ? "" : extension;
+        } catch (IOException e) {
+            errors++;
+            logger.debug("Cannot read sample {}: {}", file, e.toString());
+            return "";
+        } finally {
+            classifyNanos += System.nanoTime() - start;
+            classified++;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 module com.example.courr {
-    requires javafx.controls;
-    requires javafx.fxml;
+    // JavaFX нужен только графическому интерфейсу; консольный режим запускается без него
+    requires static javafx.controls;
+    requires static javafx.fxml;
     requires org.apache.commons.io;
     requires org.apache.logging.log4j;
+    requires java.management;
+    requires jdk.httpserver;
 
 
     opens com.example.courr to javafx.fxml;
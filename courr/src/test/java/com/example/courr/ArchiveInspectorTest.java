@@ -0,0 +1,305 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Проверяет переписывание архивов {@link ArchiveInspector}: архив с исправленными именами читается
+ * стандартными средствами, содержимое файлов не меняется, а ссылки TAR указывают на новые имена.
+ * Архивы ZIP и ZIP64 строятся {@link ZipOutputStream}, архивы TAR — побайтово в тесте.
+ */
+class ArchiveInspectorTest {
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16, 'J', 'F', 'I', 'F'};
+    private static final byte[] PDF = "%PDF-1.4\n%âã\n1 0 obj\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void zipEntriesAreRenamedAndDataIsCopied() throws IOException {
+        Path archive = directory.resolve("in.zip");
+        byte[] text = "plain notes\n".repeat(100).getBytes(StandardCharsets.US_ASCII);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(stored("photo", JPEG));
+            zip.write(JPEG);
+            zip.putNextEntry(new ZipEntry("docs/"));
+            zip.putNextEntry(new ZipEntry("docs/report"));
+            zip.write(PDF);
+            zip.putNextEntry(new ZipEntry("docs/notes.txt"));
+            zip.write(text);
+        }
+
+        Path output = directory.resolve("out.zip");
+        Map<String, String> found = inspect(archive, output);
+        assertEquals("zip", found.remove(""));
+        assertEquals(Map.of("photo", "jpg", "docs/report", "pdf", "docs/notes.txt", "txt"), found);
+
+        try (ZipFile zip = new ZipFile(output.toFile())) {
+            assertEquals(List.of("photo.jpg", "docs/", "docs/report.pdf", "docs/notes.txt"),
+                    Collections.list(zip.entries()).stream().map(ZipEntry::getName).toList());
+            assertArrayEquals(JPEG, zip.getInputStream(zip.getEntry("photo.jpg")).readAllBytes());
+            assertArrayEquals(PDF, zip.getInputStream(zip.getEntry("docs/report.pdf")).readAllBytes());
+            assertArrayEquals(text, zip.getInputStream(zip.getEntry("docs/notes.txt")).readAllBytes());
+        }
+    }
+
+    @Test
+    void zip64ArchiveIsRewritten() throws IOException {
+        // Больше 65535 записей: ZipOutputStream записывает конец центрального каталога в формате ZIP64
+        int entries = 0x10000 + 16;
+        Path archive = directory.resolve("in.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("photo"));
+            zip.write(JPEG);
+            for (int i = 1; i < entries; i++) {
+                zip.putNextEntry(new ZipEntry("empty" + i));
+            }
+        }
+        assertEquals(1, zip64EndRecords(archive));
+
+        Path output = directory.resolve("out.zip");
+        Map<String, String> found = inspect(archive, output);
+        assertEquals("jpg", found.get("photo"));
+        assertEquals(1, zip64EndRecords(output));
+        try (ZipFile zip = new ZipFile(output.toFile())) {
+            assertEquals(entries, zip.size());
+            assertArrayEquals(JPEG, zip.getInputStream(zip.getEntry("photo.jpg")).readAllBytes());
+            assertNull(zip.getEntry("photo"));
+            assertEquals(0, zip.getEntry("empty" + (entries - 1)).getSize());
+        }
+    }
+
+    @Test
+    void tarNamesAreRenamedInPlaceOfOrigin() throws IOException {
+        String longName = "deep/" + "nested-directory/".repeat(8) + "scan";
+        String gnuName = "gnu/" + "x".repeat(120);
+        TarBuilder tar = new TarBuilder();
+        tar.file("photo", JPEG);
+        tar.pax(Map.of("path", longName));
+        tar.file("ignored", PDF);
+        tar.gnuLongName(gnuName);
+        tar.file("ignored", JPEG);
+        tar.file("x".repeat(97), PDF);
+        Path archive = Files.write(directory.resolve("in.tar"), tar.finish());
+
+        Path output = directory.resolve("out.tar");
+        Map<String, String> found = inspect(archive, output);
+        assertEquals("tar", found.remove(""));
+        assertEquals(Map.of("photo", "jpg", longName, "pdf", gnuName, "jpg", "x".repeat(97), "pdf"), found);
+
+        List<TarEntry> entries = readTar(Files.readAllBytes(output));
+        assertEquals(List.of("photo.jpg", longName + ".pdf", gnuName + ".jpg", "x".repeat(97) + ".pdf"),
+                entries.stream().map(TarEntry::name).toList());
+        assertArrayEquals(JPEG, entries.get(0).data());
+        assertArrayEquals(PDF, entries.get(1).data());
+        assertEquals("pax", entries.get(1).origin());
+        assertEquals("gnu", entries.get(2).origin());
+        // Имя не помещается в поле заголовка и переносится в длинное имя GNU
+        assertEquals("gnu", entries.get(3).origin());
+    }
+
+    @Test
+    void tarLinksFollowRenamedTargets() throws IOException {
+        TarBuilder tar = new TarBuilder();
+        tar.entry("early", '2', "later", new byte[0]);
+        tar.file("photo", JPEG);
+        tar.file("later", JPEG);
+        tar.entry("hard", '1', "photo", new byte[0]);
+        tar.entry("dir/link", '2', "../photo", new byte[0]);
+        tar.pax(Map.of("linkpath", "photo"));
+        tar.entry("paxlink", '2', "ignored", new byte[0]);
+        Path archive = Files.write(directory.resolve("in.tar"), tar.finish());
+
+        Path output = directory.resolve("out.tar");
+        inspect(archive, output);
+
+        Map<String, TarEntry> entries = new LinkedHashMap<>();
+        for (TarEntry entry : readTar(Files.readAllBytes(output))) {
+            entries.put(entry.name(), entry);
+        }
+        assertEquals(List.of("early", "photo.jpg", "later", "hard", "dir/link", "paxlink"),
+                List.copyOf(entries.keySet()));
+        // Символическая ссылка записана раньше цели, поэтому цель не переименована
+        assertEquals("later", entries.get("early").link());
+        assertEquals("photo.jpg", entries.get("hard").link());
+        assertEquals("../photo.jpg", entries.get("dir/link").link());
+        assertEquals("photo.jpg", entries.get("paxlink").link());
+    }
+
+    private Map<String, String> inspect(Path archive, Path output) throws IOException {
+        Map<String, String> found = new HashMap<>();
+        try (ArchiveInspector inspector = new ArchiveInspector(new FileExtensionRecoveryService())) {
+            found.put("", inspector.inspect(archive, output, entry -> found.put(entry.name(), entry.extension())));
+        }
+        return found;
+    }
+
+    private static ZipEntry stored(String name, byte[] data) {
+        ZipEntry entry = new ZipEntry(name);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCrc(crc.getValue());
+        return entry;
+    }
+
+    private static int zip64EndRecords(Path archive) throws IOException {
+        byte[] bytes = Files.readAllBytes(archive);
+        int count = 0;
+        for (int i = 0; i + 4 <= bytes.length; i++) {
+            if (bytes[i] == 0x50 && bytes[i + 1] == 0x4B && bytes[i + 2] == 0x06 && bytes[i + 3] == 0x06) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Запись TAR после применения длинных имён GNU и заголовков PAX.
+     *
+     * @param origin Откуда взято имя: {@code ustar}, {@code gnu} или {@code pax}.
+     */
+    private record TarEntry(String name, char type, String link, byte[] data, String origin) {
+    }
+
+    private static List<TarEntry> readTar(byte[] tar) {
+        List<TarEntry> entries = new ArrayList<>();
+        Map<String, String> pax = new HashMap<>();
+        String longName = null;
+        String longLink = null;
+        for (int position = 0; position + 512 <= tar.length; ) {
+            byte[] header = Arrays.copyOfRange(tar, position, position + 512);
+            if (Arrays.equals(header, new byte[512])) {
+                break;
+            }
+            int size = Integer.parseInt(text(header, 124, 12).trim(), 8);
+            byte[] data = Arrays.copyOfRange(tar, position + 512, position + 512 + size);
+            char type = (char) header[156];
+            switch (type) {
+                case 'x' -> {
+                    String records = new String(data, StandardCharsets.UTF_8);
+                    for (String record : records.split("\n")) {
+                        String keyValue = record.substring(record.indexOf(' ') + 1);
+                        pax.put(keyValue.substring(0, keyValue.indexOf('=')),
+                                keyValue.substring(keyValue.indexOf('=') + 1));
+                    }
+                }
+                case 'L' -> longName = text(data, 0, data.length);
+                case 'K' -> longLink = text(data, 0, data.length);
+                default -> {
+                    String name = pax.containsKey("path") ? pax.get("path")
+                            : longName != null ? longName : text(header, 0, 100);
+                    String origin = pax.containsKey("path") ? "pax" : longName != null ? "gnu" : "ustar";
+                    String link = pax.containsKey("linkpath") ? pax.get("linkpath")
+                            : longLink != null ? longLink : text(header, 157, 100);
+                    entries.add(new TarEntry(name, type, link, data, origin));
+                    pax.clear();
+                    longName = null;
+                    longLink = null;
+                }
+            }
+            position += 512 + (size + 511) / 512 * 512;
+        }
+        return entries;
+    }
+
+    private static String text(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Строит архив TAR в формате POSIX ustar с заголовками PAX и длинными именами GNU.
+     */
+    private static final class TarBuilder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        void file(String name, byte[] data) throws IOException {
+            entry(name, '0', "", data);
+        }
+
+        void entry(String name, char type, String link, byte[] data) throws IOException {
+            bytes.write(header(name, type, link, data.length));
+            write(data);
+        }
+
+        void pax(Map<String, String> values) throws IOException {
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            for (Map.Entry<String, String> value : values.entrySet()) {
+                String body = " " + value.getKey() + "=" + value.getValue() + "\n";
+                int length = body.length() + 1;
+                while (length != body.length() + Integer.toString(length).length()) {
+                    length = body.length() + Integer.toString(length).length();
+                }
+                records.writeBytes((length + body).getBytes(StandardCharsets.UTF_8));
+            }
+            entry("PaxHeaders/entry", 'x', "", records.toByteArray());
+        }
+
+        void gnuLongName(String name) throws IOException {
+            entry("././@LongLink", 'L', "", (name + "\0").getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] finish() throws IOException {
+            bytes.write(new byte[1024]);
+            return bytes.toByteArray();
+        }
+
+        private void write(byte[] data) throws IOException {
+            bytes.write(data);
+            bytes.write(new byte[(512 - data.length % 512) % 512]);
+        }
+
+        private static byte[] header(String name, char type, String link, long size) {
+            byte[] header = new byte[512];
+            put(header, 0, name);
+            put(header, 100, "0000644");
+            put(header, 108, "0000000");
+            put(header, 116, "0000000");
+            put(header, 124, String.format("%011o", size));
+            put(header, 136, "00000000000");
+            header[156] = (byte) type;
+            put(header, 157, link);
+            put(header, 257, "ustar");
+            put(header, 263, "00");
+            Arrays.fill(header, 148, 156, (byte) ' ');
+            long sum = 0;
+            for (byte b : header) {
+                sum += b & 0xFF;
+            }
+            put(header, 148, String.format("%06o", sum));
+            header[155] = ' ';
+            return header;
+        }
+
+        private static void put(byte[] header, int offset, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(bytes, 0, header, offset, bytes.length);
+        }
+    }
+}
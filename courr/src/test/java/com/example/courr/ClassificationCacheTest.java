@@ -0,0 +1,152 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Проверяет кэш {@link ClassificationCache} на временном каталоге: попадания и промахи, недействительность
+ * записи после изменения файла, сброс кэша при смене отпечатка правил и удаление записей о невстреченных файлах.
+ */
+class ClassificationCacheTest {
+    private static final long FINGERPRINT = 0x1234_5678_0000_0003L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storedResultIsFoundAfterReload() throws IOException {
+        Path photo = file("photo", "jpeg");
+        Path text = file("text", "plain");
+        ClassificationCache cache = ClassificationCache.load(cachePath(), FINGERPRINT);
+        assertNull(cache.lookup(photo, attributes(photo)));
+        cache.put(photo, attributes(photo), "jpg");
+        cache.put(text, attributes(text), null);
+        assertEquals("jpg", cache.lookup(photo, attributes(photo)));
+        cache.save(false);
+
+        ClassificationCache reloaded = ClassificationCache.load(cachePath(), FINGERPRINT);
+        assertEquals("jpg", reloaded.lookup(photo, attributes(photo)));
+        assertEquals("", reloaded.lookup(text, attributes(text)));
+        assertNull(reloaded.lookup(file("other", "new"), attributes(directory.resolve("other"))));
+        assertEquals(2, reloaded.hits());
+        assertEquals(1, reloaded.misses());
+    }
+
+    @Test
+    void changedSizeOrModificationTimeInvalidatesRecord() throws IOException {
+        Path grown = file("grown", "data");
+        Path touched = file("touched", "data");
+        ClassificationCache cache = ClassificationCache.load(cachePath(), FINGERPRINT);
+        cache.put(grown, attributes(grown), "jpg");
+        cache.put(touched, attributes(touched), "png");
+        cache.save(false);
+
+        FileTime time = Files.getLastModifiedTime(grown);
+        Files.writeString(grown, "more data");
+        Files.setLastModifiedTime(grown, time);
+        Files.setLastModifiedTime(touched, FileTime.fromMillis(time.toMillis() + 5_000));
+
+        ClassificationCache reloaded = ClassificationCache.load(cachePath(), FINGERPRINT);
+        assertNull(reloaded.lookup(grown, attributes(grown)));
+        assertNull(reloaded.lookup(touched, attributes(touched)));
+    }
+
+    @Test
+    void differentFingerprintDiscardsWholeCache() throws IOException {
+        Path photo = file("photo", "jpeg");
+        ClassificationCache cache = ClassificationCache.load(cachePath(), FINGERPRINT);
+        cache.put(photo, attributes(photo), "jpg");
+        cache.save(false);
+
+        ClassificationCache changed = ClassificationCache.load(cachePath(), FINGERPRINT ^ 1);
+        assertNull(changed.lookup(photo, attributes(photo)));
+        changed.save(false);
+        // Кэш перезаписан с новым отпечатком, поэтому прежний отпечаток теперь тоже не подходит
+        assertNull(ClassificationCache.load(cachePath(), FINGERPRINT).lookup(photo, attributes(photo)));
+    }
+
+    @Test
+    void unseenRecordsAreEvictedOnlyAfterCompleteWalk() throws IOException {
+        Path kept = file("kept", "a");
+        Path deleted = file("deleted", "b");
+        ClassificationCache cache = ClassificationCache.load(cachePath(), FINGERPRINT);
+        cache.put(kept, attributes(kept), "jpg");
+        cache.put(deleted, attributes(deleted), "png");
+        cache.save(false);
+        BasicFileAttributes deletedAttributes = attributes(deleted);
+
+        // Неполный обход: невстреченная запись сохраняется
+        ClassificationCache partial = ClassificationCache.load(cachePath(), FINGERPRINT);
+        assertEquals("jpg", partial.lookup(kept, attributes(kept)));
+        partial.save(false);
+        assertEquals("png", ClassificationCache.load(cachePath(), FINGERPRINT).lookup(deleted, deletedAttributes));
+
+        // Полный обход: невстреченная запись удаляется
+        ClassificationCache complete = ClassificationCache.load(cachePath(), FINGERPRINT);
+        assertEquals("jpg", complete.lookup(kept, attributes(kept)));
+        complete.save(true);
+        ClassificationCache reloaded = ClassificationCache.load(cachePath(), FINGERPRINT);
+        assertEquals("jpg", reloaded.lookup(kept, attributes(kept)));
+        assertNull(reloaded.lookup(deleted, deletedAttributes));
+    }
+
+    @Test
+    void concurrentPutsAreAllStored() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            files.add(file("file" + i, Integer.toString(i)));
+        }
+        ClassificationCache cache = ClassificationCache.load(cachePath(), FINGERPRINT);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = thread; i < files.size(); i += 4) {
+                        Path file = files.get(i);
+                        cache.put(file, attributes(file), "ext" + i % 7);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        cache.save(false);
+
+        ClassificationCache reloaded = ClassificationCache.load(cachePath(), FINGERPRINT);
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals("ext" + i % 7, reloaded.lookup(files.get(i), attributes(files.get(i))));
+        }
+    }
+
+    private Path cachePath() {
+        return directory.resolve("cache/classification.bin");
+    }
+
+    private Path file(String name, String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content);
+    }
+
+    private static BasicFileAttributes attributes(Path file) throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет разбор пакетных запросов {@link ClassificationServer}: полный пакет, тело, оборванное внутри
+ * записи или её префикса, запись длиннее допустимой, а также ответ 503, когда рабочий поток и очередь заняты.
+ */
+class ClassificationServerTest {
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16, 'J', 'F', 'I', 'F'};
+    private static final byte[] PDF = "%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII);
+
+    private ClassificationServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        // Один рабочий поток и одно место в очереди, чтобы перегрузку можно было создать двумя запросами
+        server = new ClassificationServer(new FileExtensionRecoveryService(),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, 1);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void batchItemsAreClassifiedInOrder() throws IOException {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        item(batch, JPEG, JPEG.length);
+        item(batch, new byte[]{1, 2, 3}, -1);
+        item(batch, PDF, 1 << 20);
+        item(batch, new byte[0], 0);
+        Response response = post("/classify/batch", batch.toByteArray());
+        assertEquals(200, response.status());
+        assertEquals("{\"extensions\":[\"jpg\",null,\"pdf\",null]}", response.body());
+
+        assertEquals("{\"extensions\":[]}", post("/classify/batch", new byte[0]).body());
+    }
+
+    @Test
+    void truncatedBatchItemIsRejected() throws IOException {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        item(batch, JPEG, JPEG.length);
+        item(batch, PDF, PDF.length);
+        byte[] bytes = batch.toByteArray();
+        // Обрыв внутри байтов второй записи, внутри её размера и внутри префикса длины
+        for (int cut : new int[]{bytes.length - 1, JPEG.length + 12 + 6, JPEG.length + 12 + 2}) {
+            Response response = post("/classify/batch", Arrays.copyOf(bytes, cut));
+            assertEquals(400, response.status(), "cut at " + cut);
+            assertEquals("{\"error\":\"truncated batch item 1\"}", response.body());
+        }
+    }
+
+    @Test
+    void oversizedBatchItemIsRejected() throws IOException {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        item(batch, JPEG, JPEG.length);
+        DataOutputStream out = new DataOutputStream(batch);
+        out.writeInt(ClassificationServer.MAX_HEADER + 1);
+        out.writeLong(-1);
+        out.write(new byte[100]);
+        Response response = post("/classify/batch", batch.toByteArray());
+        assertEquals(413, response.status());
+        assertEquals("{\"error\":\"batch item 1 exceeds the limits\"}", response.body());
+
+        batch.reset();
+        new DataOutputStream(batch).writeInt(-5);
+        new DataOutputStream(batch).writeLong(-1);
+        assertEquals(413, post("/classify/batch", batch.toByteArray()).status());
+    }
+
+    @Test
+    void fullQueueIsAnsweredWithServiceUnavailable() throws Exception {
+        // Первый запрос занимает рабочий поток, второй — место в очереди: оба ждут остатка тела
+        try (Socket busy = slowRequest(); Socket queued = slowRequest()) {
+            Response response = post("/classify", JPEG);
+            assertEquals(503, response.status());
+            assertEquals("1", response.retryAfter());
+            assertEquals("{\"error\":\"request queue is full\"}", response.body());
+
+            // Отказ не задержал приём соединений: ожидавшие запросы выполняются, когда приходит остаток тела
+            for (Socket socket : new Socket[]{busy, queued}) {
+                socket.getOutputStream().write(JPEG, 4, JPEG.length - 4);
+                socket.getOutputStream().flush();
+                String answer = new String(socket.getInputStream().readNBytes(200), StandardCharsets.US_ASCII);
+                assertTrue(answer.startsWith("HTTP/1.1 200"), answer);
+                assertTrue(answer.endsWith("{\"extension\":\"jpg\"}"), answer);
+            }
+        }
+        assertTrue(post("/stats", null).body().contains("\"rejected\":1"));
+    }
+
+    /**
+     * Открывает соединение и отправляет запрос {@code /classify} без последних байтов тела.
+     */
+    private Socket slowRequest() throws IOException, InterruptedException {
+        Socket socket = new Socket(server.address().getAddress(), server.address().getPort());
+        socket.setSoTimeout(10_000);
+        OutputStream out = socket.getOutputStream();
+        out.write(("POST /classify HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\nContent-Length: "
+                + JPEG.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(JPEG, 0, 4);
+        out.flush();
+        // Запрос должен дойти до пула раньше следующего
+        Thread.sleep(200);
+        return socket;
+    }
+
+    private static void item(ByteArrayOutputStream batch, byte[] bytes, long size) throws IOException {
+        DataOutputStream out = new DataOutputStream(batch);
+        out.writeInt(bytes.length);
+        out.writeLong(size);
+        out.write(bytes);
+    }
+
+    private Response post(String path, byte[] body) throws IOException {
+        InetSocketAddress address = server.address();
+        URL url = new URL("http", address.getHostString(), address.getPort(), path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(10_000);
+        connection.setReadTimeout(10_000);
+        if (body != null) {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new Response(status, new String(in.readAllBytes(), StandardCharsets.UTF_8),
+                    connection.getHeaderField("Retry-After"));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private record Response(int status, String body, String retryAfter) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверяет {@link ContentHasher} на известных значениях XXH64 с нулевым начальным значением: пустые данные,
+ * данные короче одной полосы в 32 байта и длиннее её, а также независимость результата от деления на порции.
+ */
+class ContentHasherTest {
+
+    @Test
+    void emptyInput() {
+        assertEquals(0xEF46DB3751D8E999L, hash(new byte[0]));
+    }
+
+    @Test
+    void inputShorterThanStripe() {
+        assertEquals(0xD24EC4F1A98C6E5BL, hash(ascii("a")));
+        assertEquals(0x44BC2CF5AD770999L, hash(ascii("abc")));
+        assertEquals(0x32DD38952C4BC720L, hash(ascii("xxhash")));
+    }
+
+    @Test
+    void inputOfStripeOrLonger() {
+        assertEquals(0xFBCEA83C8A378BF1L, hash(ascii("Nobody inspects the spammish repetition")));
+        assertEquals(0xD45352830E83DF92L, hash(counting()));
+    }
+
+    @Test
+    void chunkingDoesNotChangeHash() {
+        byte[] data = counting();
+        for (int chunk : new int[]{1, 7, 31, 32, 33, 100}) {
+            ContentHasher hasher = new ContentHasher();
+            for (int offset = 0; offset < data.length; offset += chunk) {
+                hasher.update(data, offset, Math.min(chunk, data.length - offset));
+            }
+            assertEquals(0xD45352830E83DF92L, hasher.digest(), "chunk " + chunk);
+        }
+    }
+
+    @Test
+    void resetStartsNewHash() {
+        ContentHasher hasher = new ContentHasher();
+        byte[] data = counting();
+        hasher.update(data, 0, data.length);
+        hasher.reset();
+        byte[] abc = ascii("abc");
+        hasher.update(abc, 0, abc.length);
+        assertEquals(0x44BC2CF5AD770999L, hasher.digest());
+    }
+
+    private static long hash(byte[] data) {
+        ContentHasher hasher = new ContentHasher();
+        hasher.update(data, 0, data.length);
+        return hasher.digest();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Четыре повтора байтов 0..255 и «tail»: 1028 байтов, 32 полных полосы и остаток.
+     */
+    private static byte[] counting() {
+        byte[] data = new byte[1028];
+        for (int i = 0; i < 1024; i++) {
+            data[i] = (byte) i;
+        }
+        System.arraycopy(ascii("tail"), 0, data, 1024, 4);
+        return data;
+    }
+}
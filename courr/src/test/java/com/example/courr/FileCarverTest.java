@@ -0,0 +1,134 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Проверяет вырезание файлов {@link FileCarver} на образах, собранных в тесте: JPEG со вложенным эскизом
+ * вырезается целиком по собственному маркеру конца, а файл, пересекающий границу окна отображения образа,
+ * находится и извлекается без искажений.
+ */
+class FileCarverTest {
+    private static final byte FILL = 0x11;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void jpegWithNestedThumbnailIsCarvedWhole() throws IOException {
+        byte[] thumbnail = jpeg(new byte[0], 20);
+        byte[] photo = jpeg(thumbnail, 300);
+        byte[] image = new byte[8192];
+        Arrays.fill(image, FILL);
+        System.arraycopy(photo, 0, image, 1000, photo.length);
+        Path imagePath = Files.write(directory.resolve("image.dd"), image);
+
+        List<CarvedFile> jpegs = carve(imagePath, "jpg");
+        assertEquals(1, jpegs.size(), jpegs::toString);
+        CarvedFile carved = jpegs.get(0);
+        assertEquals(1000, carved.offset());
+        assertEquals(photo.length, carved.length());
+        assertFalse(carved.truncated());
+        assertArrayEquals(photo, Files.readAllBytes(carved.path()));
+    }
+
+    @Test
+    void fileSpanningMapWindowBoundaryIsCarved() throws IOException {
+        byte[] png = png(200);
+        // Сигнатура PNG начинается в первом окне и заканчивается во втором
+        long start = FileCarver.MAP_WINDOW - 4;
+        Path imagePath = directory.resolve("image.dd");
+        try (RandomAccessFile file = new RandomAccessFile(imagePath.toFile(), "rw")) {
+            file.setLength(FileCarver.MAP_WINDOW + (1 << 20));
+            file.seek(start);
+            file.write(png);
+        }
+
+        List<CarvedFile> pngs = carve(imagePath, "png");
+        assertEquals(1, pngs.size(), pngs::toString);
+        CarvedFile carved = pngs.get(0);
+        assertEquals(start, carved.offset());
+        assertEquals(png.length, carved.length());
+        assertFalse(carved.truncated());
+        assertArrayEquals(png, Files.readAllBytes(carved.path()));
+    }
+
+    private List<CarvedFile> carve(Path image, String extension) throws IOException {
+        Path output = Files.createDirectory(directory.resolve("carved"));
+        List<CarvedFile> found = new ArrayList<>();
+        new FileCarver(new FileExtensionRecoveryService(), output, 1, 16 << 20).carve(image, carved -> {
+            if (carved.extension().equals(extension)) {
+                found.add(carved);
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Строит JPEG: APP0, необязательный APP1 с эскизом, таблицу квантования, начало кадра, начало данных,
+     * данные без байтов {@code FF} и маркер конца.
+     */
+    private static byte[] jpeg(byte[] thumbnail, int scanLength) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xD8});
+        segment(out, 0xE0, new byte[]{'J', 'F', 'I', 'F', 0, 1, 1, 1, 0, 0x48, 0, 0x48, 0, 0});
+        if (thumbnail.length > 0) {
+            byte[] exif = new byte[6 + thumbnail.length];
+            System.arraycopy(new byte[]{'E', 'x', 'i', 'f', 0, 0}, 0, exif, 0, 6);
+            System.arraycopy(thumbnail, 0, exif, 6, thumbnail.length);
+            segment(out, 0xE1, exif);
+        }
+        byte[] table = new byte[65];
+        Arrays.fill(table, (byte) 0x10);
+        segment(out, 0xDB, table);
+        segment(out, 0xC0, new byte[]{8, 0, 16, 0, 16, 3, 1, 0x22, 0, 2, 0x11, 1, 3, 0x11, 1});
+        segment(out, 0xDA, new byte[]{1, 1, 0, 0, 0x3F, 0});
+        for (int i = 0; i < scanLength; i++) {
+            out.write(0x20 + i % 0x40);
+        }
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xD9});
+        return out.toByteArray();
+    }
+
+    private static void segment(ByteArrayOutputStream out, int marker, byte[] data) {
+        int length = data.length + 2;
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) marker, (byte) (length >> 8), (byte) length});
+        out.writeBytes(data);
+    }
+
+    /**
+     * Строит PNG: сигнатура, IHDR, IDAT заданной длины и IEND. Контрольные суммы не проверяются вырезателем
+     * и заполнены нулями, кроме суммы IEND, входящей в маркер конца.
+     */
+    private static byte[] png(int dataLength) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A});
+        chunk(out, "IHDR", new byte[]{0, 0, 0, 16, 0, 0, 0, 16, 8, 2, 0, 0, 0}, 0);
+        byte[] data = new byte[dataLength];
+        Arrays.fill(data, (byte) 0x33);
+        chunk(out, "IDAT", data, 0);
+        chunk(out, "IEND", new byte[0], 0xAE426082);
+        return out.toByteArray();
+    }
+
+    private static void chunk(ByteArrayOutputStream out, String type, byte[] data, int crc) {
+        int length = data.length;
+        out.writeBytes(new byte[]{(byte) (length >> 24), (byte) (length >> 16), (byte) (length >> 8), (byte) length});
+        out.writeBytes(type.getBytes());
+        out.writeBytes(data);
+        out.writeBytes(new byte[]{(byte) (crc >> 24), (byte) (crc >> 16), (byte) (crc >> 8), (byte) crc});
+    }
+}
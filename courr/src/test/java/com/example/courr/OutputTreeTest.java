@@ -0,0 +1,124 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет выходное дерево {@link OutputTree}: по умолчанию данные копируются, а жёсткие ссылки создаются
+ * только по запросу; суффикс {@code ~n} обходит имена других файлов исходного каталога и записи,
+ * уже существующие в выходном каталоге, которые при этом не заменяются.
+ */
+class OutputTreeTest {
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16, 'J', 'F', 'I', 'F'};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void dataIsCopiedByDefault() throws IOException {
+        Path source = Files.createDirectories(directory.resolve("source/nested"));
+        Path photo = Files.write(source.resolve("photo"), JPEG);
+        FileTime modified = FileTime.fromMillis(1_600_000_000_000L);
+        Files.setLastModifiedTime(photo, modified);
+        Path output = directory.resolve("output");
+        List<FileRecoveryResult> results = new CopyOnWriteArrayList<>();
+        new FileExtensionRecoveryService().recoverExtensions(directory.resolve("source").toString(),
+                new RecoveryOptions().recursive(true).output(output), results::add);
+
+        Path copy = output.resolve("nested/photo.jpg");
+        assertEquals(1, results.size());
+        assertEquals(copy, results.get(0).target());
+        assertFalse(Files.isSameFile(photo, copy));
+        assertEquals(1, Files.getAttribute(photo, "unix:nlink"));
+        assertArrayEquals(JPEG, Files.readAllBytes(copy));
+        assertEquals(modified, Files.getLastModifiedTime(copy));
+        assertTrue(Files.exists(photo));
+    }
+
+    @Test
+    void hardLinksAreCreatedOnRequest() throws IOException {
+        Path source = Files.createDirectories(directory.resolve("source"));
+        Path photo = Files.write(source.resolve("photo"), JPEG);
+        new FileExtensionRecoveryService().recoverExtensions(source.toString(),
+                new RecoveryOptions().output(directory.resolve("output")).outputLinks(true), result -> {
+                });
+
+        assertTrue(Files.isSameFile(photo, directory.resolve("output/photo.jpg")));
+    }
+
+    @Test
+    void suffixSkipsNamesOfOtherSourceFiles() throws IOException {
+        Path source = Files.createDirectories(directory.resolve("source"));
+        OutputTree tree = new OutputTree(source, directory.resolve("output"), false);
+        // «a» не может стать ни «a.jpg» (такой файл есть), ни «a~1.jpg» (его получит файл «a~1»)
+        Path plain = Files.write(source.resolve("a"), JPEG);
+        Path named = Files.write(source.resolve("a.jpg"), JPEG);
+        Path numbered = Files.write(source.resolve("a~1"), JPEG);
+
+        assertEquals("a~2.jpg", name(copy(tree, plain, "jpg")));
+        assertEquals("a.jpg", name(copy(tree, named, null)));
+        assertEquals("a~1.jpg", name(copy(tree, numbered, "jpg")));
+    }
+
+    @Test
+    void existingOutputEntriesAreNotReplaced() throws IOException {
+        Path source = Files.createDirectories(directory.resolve("source"));
+        Path output = Files.createDirectories(directory.resolve("output"));
+        byte[] earlier = {1, 2, 3};
+        Files.write(output.resolve("photo.jpg"), earlier);
+        Files.createDirectory(output.resolve("photo~1.jpg"));
+        Files.write(output.resolve("report.pdf"), earlier);
+        OutputTree tree = new OutputTree(source, output, false);
+        Path photo = Files.write(source.resolve("photo"), JPEG);
+        Path report = Files.write(source.resolve("report.pdf"), JPEG);
+
+        assertEquals("photo~2.jpg", name(copy(tree, photo, "jpg")));
+        // Суффикс имени, которое не меняется, тоже ставится перед расширением
+        assertEquals("report~1.pdf", name(copy(tree, report, null)));
+        assertArrayEquals(earlier, Files.readAllBytes(output.resolve("photo.jpg")));
+        assertArrayEquals(earlier, Files.readAllBytes(output.resolve("report.pdf")));
+        assertTrue(Files.isDirectory(output.resolve("photo~1.jpg")));
+        assertArrayEquals(JPEG, Files.readAllBytes(output.resolve("photo~2.jpg")));
+    }
+
+    @Test
+    void repeatedRunAddsSuffixedCopies() throws IOException {
+        Path source = Files.createDirectories(directory.resolve("source"));
+        Files.write(source.resolve("photo"), JPEG);
+        Path output = directory.resolve("output");
+        RecoveryOptions options = new RecoveryOptions().output(output).outputLinks(true);
+        FileExtensionRecoveryService service = new FileExtensionRecoveryService();
+        service.recoverExtensions(source.toString(), options, result -> {
+        });
+        service.recoverExtensions(source.toString(), options, result -> {
+        });
+
+        // Ссылка тоже не заменяет существующую запись
+        assertTrue(Files.isSameFile(output.resolve("photo.jpg"), output.resolve("photo~1.jpg")));
+        assertEquals(3, Files.getAttribute(source.resolve("photo"), "unix:nlink"));
+    }
+
+    private static Path copy(OutputTree tree, Path source, String extension) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            return tree.copy(source, channel, extension, null);
+        }
+    }
+
+    private static String name(Path path) {
+        return path.getFileName().toString();
+    }
+}
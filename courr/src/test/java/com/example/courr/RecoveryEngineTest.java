@@ -0,0 +1,114 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет обработку файлов {@link RecoveryEngine} на временном каталоге.
+ */
+class RecoveryEngineTest {
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16, 'J', 'F', 'I', 'F'};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void upperCaseExtensionIsKept() throws IOException {
+        Files.write(directory.resolve("photo.JPG"), JPEG);
+        Files.write(directory.resolve("photo"), JPEG);
+        List<FileRecoveryResult> results = recover(new RecoveryOptions());
+
+        assertEquals(2, results.size());
+        assertTrue(Files.exists(directory.resolve("photo.JPG")));
+        assertTrue(Files.exists(directory.resolve("photo.jpg")));
+        assertFalse(Files.exists(directory.resolve("photo.JPG.jpg")));
+        for (FileRecoveryResult result : results) {
+            RecoveryStatus expected = result.source().getFileName().toString().equals("photo.JPG")
+                    ? RecoveryStatus.UNCHANGED : RecoveryStatus.RENAMED;
+            assertEquals(expected, result.status(), result.source().toString());
+        }
+    }
+
+    @Test
+    void keepsNameIgnoresCase() {
+        assertTrue(RecoveryEngine.keepsName("photo.JPG", "jpg"));
+        assertTrue(RecoveryEngine.keepsName("Archive.Zip", "zip"));
+        assertFalse(RecoveryEngine.keepsName("photo", "jpg"));
+        assertFalse(RecoveryEngine.keepsName("photojpg", "jpg"));
+    }
+
+    @Test
+    void identicalFilesAreLinkedToOneInode() throws IOException {
+        byte[] content = Arrays.copyOf(JPEG, 5000);
+        Files.write(directory.resolve("first"), content);
+        Files.write(directory.resolve("second"), content);
+        Files.write(directory.resolve("other"), Arrays.copyOf(JPEG, 6000));
+        List<FileRecoveryResult> results = recover(new RecoveryOptions().duplicates(DuplicatePolicy.LINK));
+
+        assertEquals(3, results.size());
+        assertEquals(1, results.stream().filter(result -> result.duplicateOf() != null).count());
+        Path first = directory.resolve("first.jpg");
+        Path second = directory.resolve("second.jpg");
+        assertTrue(Files.isSameFile(first, second));
+        assertEquals(2, Files.getAttribute(first, "unix:nlink"));
+        assertEquals(Files.getAttribute(first, "unix:ino"), Files.getAttribute(second, "unix:ino"));
+        assertFalse(Files.isSameFile(first, directory.resolve("other.jpg")));
+        assertArrayEquals(content, Files.readAllBytes(second));
+        assertNoLinkTemporaries();
+    }
+
+    @Test
+    void hashCollisionWithDifferentContentIsLeftAlone() throws IOException {
+        // Индекс нашёл «копию» по совпавшему хешу, но содержимое различается в последнем байте
+        byte[] content = Arrays.copyOf(JPEG, 5000);
+        Path original = Files.write(directory.resolve("original.jpg"), content);
+        content[content.length - 1] = 1;
+        Path duplicate = Files.write(directory.resolve("duplicate.jpg"), content);
+
+        assertFalse(RecoveryEngine.linkDuplicate(duplicate, original));
+        assertFalse(Files.isSameFile(original, duplicate));
+        assertArrayEquals(content, Files.readAllBytes(duplicate));
+        assertEquals(1, Files.getAttribute(original, "unix:nlink"));
+        assertNoLinkTemporaries();
+    }
+
+    @Test
+    void failedLinkReplacementLeavesNoTemporaryFile() throws IOException {
+        Path original = Files.write(directory.resolve("original.jpg"), JPEG);
+        // Ссылка создаётся, но перенос на место непустого каталога не удаётся
+        Path occupied = Files.createDirectory(directory.resolve("occupied"));
+        Files.write(occupied.resolve("inside"), JPEG);
+
+        assertThrows(IOException.class, () -> RecoveryEngine.replaceWithLink(occupied, original));
+        assertTrue(Files.isDirectory(occupied));
+        assertEquals(1, Files.getAttribute(original, "unix:nlink"));
+        assertNoLinkTemporaries();
+    }
+
+    private void assertNoLinkTemporaries() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(), files.filter(file -> file.getFileName().toString().endsWith(".courr-link"))
+                    .toList());
+        }
+    }
+
+    private List<FileRecoveryResult> recover(RecoveryOptions options) throws IOException {
+        List<FileRecoveryResult> results = new CopyOnWriteArrayList<>();
+        new FileExtensionRecoveryService().recoverExtensions(directory.toString(), options, results::add);
+        return results;
+    }
+}
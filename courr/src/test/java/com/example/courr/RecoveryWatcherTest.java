@@ -0,0 +1,87 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет наблюдение за каталогом {@link RecoveryWatcher}: файл, записываемый частями, обрабатывается
+ * один раз и только после последней записи, а сводка учитывает все обработанные файлы.
+ */
+class RecoveryWatcherTest {
+    private static final long SETTLE_MILLIS = 500;
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16, 'J', 'F', 'I', 'F'};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void fileWrittenInChunksIsClassifiedOnceAfterLastWrite() throws Exception {
+        List<FileRecoveryResult> results = new CopyOnWriteArrayList<>();
+        AtomicLong resultNanos = new AtomicLong();
+        AtomicReference<RecoverySummary> summary = new AtomicReference<>();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread watcher = new Thread(() -> {
+            try {
+                summary.set(new FileExtensionRecoveryService().watchExtensions(directory.toString(),
+                        new RecoveryOptions().watchSettleMillis(SETTLE_MILLIS), result -> {
+                            resultNanos.compareAndSet(0, System.nanoTime());
+                            results.add(result);
+                        }));
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        });
+        watcher.start();
+        // Наблюдатель должен успеть зарегистрировать каталог до появления файла
+        Thread.sleep(300);
+
+        Path file = directory.resolve("incoming");
+        long size = 0;
+        long lastWrite;
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW)) {
+            out.write(JPEG);
+            out.flush();
+            size += JPEG.length;
+            for (int chunk = 0; chunk < 6; chunk++) {
+                Thread.sleep(SETTLE_MILLIS / 4);
+                byte[] data = new byte[4096];
+                out.write(data);
+                out.flush();
+                size += data.length;
+            }
+            lastWrite = System.nanoTime();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (results.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        // Повторная обработка, если бы она была, успела бы случиться за несколько интервалов ожидания
+        Thread.sleep(SETTLE_MILLIS * 3);
+        watcher.interrupt();
+        watcher.join(TimeUnit.SECONDS.toMillis(20));
+
+        assertNull(failure.get());
+        assertEquals(1, results.size(), results::toString);
+        FileRecoveryResult result = results.get(0);
+        assertEquals(RecoveryStatus.RENAMED, result.status());
+        assertEquals(size, result.size());
+        assertTrue(resultNanos.get() - lastWrite >= TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS));
+        assertTrue(Files.exists(directory.resolve("incoming.jpg")));
+        assertEquals(1, summary.get().count(RecoveryStatus.RENAMED));
+    }
+}
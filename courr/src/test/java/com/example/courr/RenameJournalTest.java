@@ -0,0 +1,169 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет журнал переименований {@link RenameJournal} на временном каталоге: восстановление после сбоя
+ * между записью намерения и записью о завершении, обрезку оборванной записи и отмену переименований.
+ */
+class RenameJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void plannedRenameWithoutCompletionIsResumedAndUndone() throws IOException {
+        Path journalPath = directory.resolve("journal");
+        Path moved = file("moved", "moved");
+        Path notMoved = file("not-moved", "not moved");
+        try (RenameJournal journal = RenameJournal.open(journalPath, 1, 0)) {
+            // Сбой после перемещения, но до записи о завершении
+            journal.beforeRename(moved, moved.resolveSibling("moved.jpg"));
+            Files.move(moved, moved.resolveSibling("moved.jpg"));
+            // Сбой до перемещения
+            journal.beforeRename(notMoved, notMoved.resolveSibling("not-moved.png"));
+        }
+
+        try (RenameJournal journal = RenameJournal.open(journalPath, 1, 0)) {
+            Set<Path> done = journal.resume();
+            assertEquals(Set.of(moved.resolveSibling("moved.jpg").toAbsolutePath()), done);
+        }
+        List<RenameJournal.Entry> entries = RenameJournal.read(journalPath);
+        assertEquals(RenameJournal.RecordType.COMPLETED, entries.get(entries.size() - 1).type());
+
+        RecoverySummary summary = RenameJournal.undo(journalPath);
+        assertEquals(1, summary.count(RecoveryStatus.RENAMED));
+        assertTrue(Files.exists(moved));
+        assertFalse(Files.exists(moved.resolveSibling("moved.jpg")));
+        assertTrue(Files.exists(notMoved));
+    }
+
+    @Test
+    void tornFinalRecordIsDropped() throws IOException {
+        Path journalPath = directory.resolve("journal");
+        Path a = directory.resolve("a");
+        Path b = directory.resolve("b");
+        try (RenameJournal journal = RenameJournal.open(journalPath, 1, 0)) {
+            journal.beforeRename(a, a.resolveSibling("a.jpg"));
+            journal.afterRename(a, a.resolveSibling("a.jpg"));
+            journal.beforeRename(b, b.resolveSibling("b.jpg"));
+        }
+        long whole = Files.size(journalPath);
+        try (RenameJournal journal = RenameJournal.open(journalPath, 1, 0)) {
+            journal.afterRename(b, b.resolveSibling("b.jpg"));
+        }
+        // Последняя запись обрывается на середине, как при сбое во время записи
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+            channel.truncate(whole + (Files.size(journalPath) - whole) / 2);
+        }
+
+        assertEquals(3, RenameJournal.read(journalPath).size());
+        try (RenameJournal journal = RenameJournal.open(journalPath, 1, 0)) {
+            assertEquals(whole, Files.size(journalPath));
+            journal.afterRename(b, b.resolveSibling("b.jpg"));
+        }
+        List<RenameJournal.Entry> entries = RenameJournal.read(journalPath);
+        assertEquals(4, entries.size());
+        assertEquals(new RenameJournal.Entry(RenameJournal.RecordType.COMPLETED, b.toAbsolutePath(),
+                b.resolveSibling("b.jpg").toAbsolutePath()), entries.get(3));
+    }
+
+    @Test
+    void corruptedRecordEndsTheJournal() throws IOException {
+        Path journalPath = directory.resolve("journal");
+        Path a = directory.resolve("a");
+        try (RenameJournal journal = RenameJournal.open(journalPath, 1, 0)) {
+            journal.beforeRename(a, a.resolveSibling("a.jpg"));
+            journal.afterRename(a, a.resolveSibling("a.jpg"));
+        }
+        byte[] bytes = Files.readAllBytes(journalPath);
+        bytes[bytes.length - 6] ^= 1;
+        Files.write(journalPath, bytes);
+
+        assertEquals(1, RenameJournal.read(journalPath).size());
+    }
+
+    @Test
+    void foreignFileIsRejected() throws IOException {
+        Path journalPath = file("journal", "not a journal");
+        assertThrows(IOException.class, () -> RenameJournal.read(journalPath));
+        assertThrows(IOException.class, () -> RenameJournal.open(journalPath, 1, 0));
+        assertArrayEquals("not a journal".getBytes(), Files.readAllBytes(journalPath));
+    }
+
+    @Test
+    void undoAfterPartialRunRestoresRenamedFilesAndSecondUndoDoesNothing() throws IOException {
+        Path journalPath = directory.resolve("journal");
+        Path data = Files.createDirectory(directory.resolve("data"));
+        byte[] jpeg = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16, 'J', 'F', 'I', 'F'};
+        byte[] pdf = "%PDF-1.4\n".getBytes();
+        for (int i = 0; i < 20; i++) {
+            Files.write(data.resolve("file" + i), i % 2 == 0 ? jpeg : pdf);
+        }
+        new FileExtensionRecoveryService().recoverExtensions(data.toString(),
+                new RecoveryOptions().journal(journalPath), result -> {
+                });
+        assertTrue(Files.exists(data.resolve("file0.jpg")));
+        assertTrue(Files.exists(data.resolve("file1.pdf")));
+        // Прерванный запуск: намерение сохранено, файл не перемещён
+        Path extra = file("data/extra", "text");
+        try (RenameJournal journal = RenameJournal.open(journalPath, 1, 0)) {
+            journal.beforeRename(extra, extra.resolveSibling("extra.txt"));
+        }
+
+        RecoverySummary first = RenameJournal.undo(journalPath);
+        assertEquals(20, first.count(RecoveryStatus.RENAMED));
+        assertEquals(0, first.count(RecoveryStatus.FAILED));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(Files.exists(data.resolve("file" + i)), "file" + i);
+        }
+        assertTrue(Files.exists(extra));
+        try (var files = Files.list(data)) {
+            assertEquals(21, files.count());
+        }
+
+        long size = Files.size(journalPath);
+        RecoverySummary second = RenameJournal.undo(journalPath);
+        assertEquals(0, second.total());
+        assertEquals(size, Files.size(journalPath));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(Files.exists(data.resolve("file" + i)), "file" + i);
+        }
+    }
+
+    @Test
+    void undoSkipsFileWhoseOriginalNameIsTaken() throws IOException {
+        Path journalPath = directory.resolve("journal");
+        Path a = file("a", "first");
+        try (RenameJournal journal = RenameJournal.open(journalPath, 1, 0)) {
+            journal.beforeRename(a, a.resolveSibling("a.jpg"));
+            Files.move(a, a.resolveSibling("a.jpg"));
+            journal.afterRename(a, a.resolveSibling("a.jpg"));
+        }
+        file("a", "second");
+
+        RecoverySummary summary = RenameJournal.undo(journalPath);
+        assertEquals(1, summary.count(RecoveryStatus.SKIPPED));
+        assertEquals("second", Files.readString(a));
+        assertEquals("first", Files.readString(a.resolveSibling("a.jpg")));
+    }
+
+    private Path file(String name, String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content);
+    }
+}
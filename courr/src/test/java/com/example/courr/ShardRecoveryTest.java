@@ -0,0 +1,145 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет распределённое восстановление с рабочими в отдельных JVM: координатор {@link ShardCoordinator}
+ * работает в процессе теста, рабочие запускаются командой {@code work}. Первый рабочий убивается посреди
+ * большой части; часть возвращается в очередь, два других рабочих делят её между собой, а каждый файл
+ * переименовывается ровно один раз.
+ */
+class ShardRecoveryTest {
+    private static final int FILES = 6000;
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16, 'J', 'F', 'I', 'F'};
+    private static final byte[] PDF = "%PDF-1.4\n".getBytes();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void lostWorkerIsReplacedAndEveryFileIsRenamedOnce() throws Exception {
+        Path root = Files.createDirectories(directory.resolve("tree/big"));
+        for (int i = 0; i < FILES; i++) {
+            Files.write(root.resolve("file" + i), i % 2 == 0 ? JPEG : PDF);
+        }
+        Path journal = directory.resolve("journal");
+        AtomicLong results = new AtomicLong();
+        AtomicReference<RecoverySummary> summary = new AtomicReference<>();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Process> workers = new ArrayList<>();
+        try (ShardCoordinator coordinator = new ShardCoordinator(root.getParent(),
+                new RecoveryOptions().recursive(true).journal(journal), result -> results.incrementAndGet(),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            Thread runner = new Thread(() -> {
+                try {
+                    summary.set(coordinator.run());
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            });
+            runner.start();
+
+            workers.add(startWorker(coordinator.address(), 1));
+            awaitResults(results, 300, directory.resolve("worker1.log"));
+            // Рабочий убивается без предупреждения посреди части из FILES файлов
+            workers.get(0).destroyForcibly().waitFor();
+            long beforeLoss = results.get();
+            assertTrue(beforeLoss < FILES, "worker finished before it was killed");
+
+            workers.add(startWorker(coordinator.address(), 2));
+            workers.add(startWorker(coordinator.address(), 3));
+            runner.join(TimeUnit.MINUTES.toMillis(3));
+            assertNull(failure.get());
+            assertTrue(summary.get() != null, "coordinator did not finish");
+            assertTrue(coordinator.shardsRequeued() >= 1, "shard of the lost worker was not requeued");
+            assertTrue(coordinator.shardsStolen() >= 1, "idle worker did not receive stolen files");
+            // Оставшиеся рабочие завершаются сами, получив от координатора сообщение о конце работы
+            for (int i = 1; i < workers.size(); i++) {
+                assertTrue(workers.get(i).waitFor(30, TimeUnit.SECONDS));
+                assertEquals(RecoveryCli.EXIT_OK, workers.get(i).exitValue(), "worker " + (i + 1));
+            }
+        } finally {
+            for (Process worker : workers) {
+                worker.destroyForcibly();
+            }
+        }
+
+        // Каждый файл получил расширение ровно один раз
+        List<String> names;
+        try (Stream<Path> files = Files.list(root)) {
+            names = files.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+        assertEquals(FILES, names.size());
+        for (int i = 0; i < FILES; i++) {
+            assertTrue(names.contains("file" + i + (i % 2 == 0 ? ".jpg" : ".pdf")), "file" + i);
+        }
+        // Разрешение, выданное убитому рабочему до переименования, может быть выдано повторно,
+        // но выполнено каждое переименование ровно один раз
+        Map<Path, Integer> completed = new HashMap<>();
+        Set<Path> planned = new HashSet<>();
+        for (RenameJournal.Entry entry : RenameJournal.read(journal)) {
+            if (entry.type() == RenameJournal.RecordType.PLANNED) {
+                planned.add(entry.source());
+            } else if (entry.type() == RenameJournal.RecordType.COMPLETED) {
+                completed.merge(entry.source(), 1, Integer::sum);
+            }
+        }
+        assertEquals(FILES, planned.size());
+        assertEquals(planned, completed.keySet());
+        assertTrue(completed.values().stream().allMatch(count -> count == 1), "file renamed twice");
+    }
+
+    private static void awaitResults(AtomicLong results, long count, Path log) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (results.get() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(results.get() >= count, () -> "worker produced no results: " + read(log));
+    }
+
+    private static String read(Path log) {
+        try {
+            return Files.readString(log);
+        } catch (IOException e) {
+            return e.toString();
+        }
+    }
+
+    /**
+     * Запускает рабочего в отдельной JVM с тем же путём модулей, что и у теста, и журналированием теста.
+     */
+    private Process startWorker(InetSocketAddress coordinator, int number) throws IOException, URISyntaxException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Path logging = Path.of(ShardRecoveryTest.class.getResource("/log4j2-test.xml").toURI());
+        return new ProcessBuilder(java, "-Dlog4j2.configurationFile=" + logging,
+                "-p", System.getProperty("jdk.module.path"),
+                "-m", "com.example.courr/com.example.courr.Launcher",
+                "work", "--quiet", "--connect", coordinator.getHostString() + ":" + coordinator.getPort())
+                .directory(directory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(directory.resolve("worker" + number + ".log").toFile())
+                .start();
+    }
+}
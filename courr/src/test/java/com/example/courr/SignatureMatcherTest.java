@@ -0,0 +1,219 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверяет, что префиксное дерево {@link SignatureMatcher} определяет те же форматы, что и прежняя цепочка
+ * условий {@code detectExtension}, а быстрые пути сопоставления — то же, что последовательная проверка сигнатур.
+ * Заголовки строятся из сигнатур со случайными остальными байтами; в половине из них один байт сигнатуры
+ * искажается, чтобы проверялись и почти совпадения.
+ */
+class SignatureMatcherTest {
+    private static final int HEADERS = 200_000;
+
+    /**
+     * Сигнатуры прежней цепочки условий в её порядке; ISO и TAR в ней проверялись со смещения 0.
+     */
+    private static final String BASELINE_TABLE = """
+            jpg   0  FFD8                      -  -
+            png   0  89504E470D0A1A0A          -  -
+            pdf   0  25504446                  -  -
+            gif   0  474946383961              -  -
+            gif   0  474946383761              -  -
+            mp3   0  494433                    -  -
+            mp3   0  FFFB                      -  -
+            mp3   0  FFF3                      -  -
+            mp3   0  FFF2                      -  -
+            exe   0  4D5A                      -  -
+            zip   0  504B0304                  -  -
+            rar   0  526172211A070100          -  -
+            wav   0  52494646????????57415645  -  -
+            ico   0  00000100                  -  -
+            bmp   0  424D                      -  -
+            tif   0  4D4D002A                  -  -
+            tif   0  49492A00                  -  -
+            elf   0  7F454C46                  -  -
+            class 0  CAFEBABE                  -  -
+            psd   0  38425053                  -  -
+            iso   0  4344303031                -  -
+            midi  0  4D546864                  -  -
+            7z    0  377ABCAF271C              -  -
+            mkv   0  1A45DFA3                  -  -
+            xml   0  3C3F786D6C20              -  -
+            webp  0  52494646????????57454250  -  -
+            rtf   0  7B5C72746631              -  -
+            tar   0  7573746172003030          -  -
+            tar   0  7573746172202000          -  -
+            avi   0  52494646????????41564920  -  -
+            """;
+
+    @Test
+    void compiledTableMatchesBaselineChain() {
+        SignatureMatcher matcher = new SignatureMatcher(SignatureDatabase.parse(BASELINE_TABLE), 0);
+        Random random = new Random(1);
+        for (int i = 0; i < HEADERS; i++) {
+            byte[] bytes = header(matcher.signatures(), random, 600);
+            String expected = baseline(bytes);
+            assertEquals(expected, extension(matcher, matcher.match(bytes, bytes.length)), () -> hex(bytes));
+            assertEquals(expected, extension(matcher, matcher.match(FileHeader.wrap(bytes, bytes.length))),
+                    () -> hex(bytes));
+        }
+    }
+
+    @Test
+    void shippedTableMatchesLinearScan() throws IOException {
+        SignatureMatcher matcher = SignatureDatabase.load();
+        SignatureMatcher restored = roundTrip(matcher);
+        Random random = new Random(2);
+        for (int i = 0; i < HEADERS / 10; i++) {
+            // Часть заголовков покрывает дескриптор ISO 9660 и блок ustar, часть обрывается раньше
+            byte[] bytes = header(matcher.signatures(), random, random.nextInt(8) == 0 ? 0x8100 : 600);
+            FileHeader header = FileHeader.wrap(bytes, bytes.length);
+            int expected = linear(matcher.signatures(), header);
+            assertEquals(expected, matcher.match(header), () -> hex(bytes));
+            assertEquals(expected, matcher.match(bytes, bytes.length), () -> hex(bytes));
+            assertEquals(expected, restored.match(header), () -> hex(bytes));
+        }
+    }
+
+    /**
+     * Последовательная проверка сигнатур по правилу {@link SignatureMatcher}: самая длинная, при равной длине —
+     * стоящая раньше.
+     */
+    private static int linear(List<Signature> signatures, FileHeader header) {
+        int best = -1;
+        for (int i = 0; i < signatures.size(); i++) {
+            if (signatures.get(i).matches(header)
+                    && (best < 0 || signatures.get(i).length() > signatures.get(best).length())) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static SignatureMatcher roundTrip(SignatureMatcher matcher) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            matcher.writeTo(out);
+        }
+        return SignatureMatcher.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                matcher.tableCrc());
+    }
+
+    private static String extension(SignatureMatcher matcher, int index) {
+        return index >= 0 ? matcher.extension(index) : "";
+    }
+
+    /**
+     * Строит заголовок случайной длины: случайные байты, поверх которых в большинстве случаев записана
+     * случайная сигнатура, а в половине таких случаев один её байт искажён.
+     */
+    private static byte[] header(List<Signature> signatures, Random random, int maxLength) {
+        byte[] bytes = new byte[16 + random.nextInt(maxLength - 16)];
+        random.nextBytes(bytes);
+        if (random.nextInt(10) == 0) {
+            return bytes;
+        }
+        Signature signature = signatures.get(random.nextInt(signatures.size()));
+        int offset = (int) signature.offset();
+        byte[] pattern = signature.pattern();
+        byte[] mask = signature.mask();
+        for (int i = 0; i < pattern.length && offset + i < bytes.length; i++) {
+            bytes[offset + i] = (byte) (pattern[i] & mask[i] | bytes[offset + i] & ~mask[i]);
+        }
+        int mutated = offset + random.nextInt(pattern.length);
+        if (random.nextBoolean() && mutated < bytes.length) {
+            bytes[mutated] ^= (byte) (1 + random.nextInt(255));
+        }
+        return bytes;
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < Math.min(bytes.length, 16); i++) {
+            text.append(String.format("%02X", bytes[i]));
+        }
+        return text + " (" + bytes.length + " bytes)";
+    }
+
+    // Прежняя цепочка условий detectExtension; заголовки не короче 16 байтов, поэтому проверки длины опущены
+
+    private static String baseline(byte[] b) {
+        if (starts(b, 0xFF, 0xD8)) {
+            return "jpg";
+        } else if (starts(b, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "png";
+        } else if (starts(b, 0x25, 0x50, 0x44, 0x46)) {
+            return "pdf";
+        } else if (starts(b, 0x47, 0x49, 0x46, 0x38) && (b[4] == 0x39 || b[4] == 0x37) && b[5] == 0x61) {
+            return "gif";
+        } else if (starts(b, 0x49, 0x44, 0x33) || starts(b, 0xFF, 0xFB) || starts(b, 0xFF, 0xF3)
+                || starts(b, 0xFF, 0xF2)) {
+            return "mp3";
+        } else if (starts(b, 0x4D, 0x5A)) {
+            return "exe";
+        } else if (starts(b, 0x50, 0x4B, 0x03, 0x04)) {
+            return "zip";
+        } else if (starts(b, 0x52, 0x61, 0x72, 0x21, 0x1A, 0x07, 0x01, 0x00)) {
+            return "rar";
+        } else if (riff(b, 0x57, 0x41, 0x56, 0x45)) {
+            return "wav";
+        } else if (starts(b, 0x00, 0x00, 0x01, 0x00)) {
+            return "ico";
+        } else if (starts(b, 0x42, 0x4D)) {
+            return "bmp";
+        } else if (starts(b, 0x4D, 0x4D, 0x00, 0x2A) || starts(b, 0x49, 0x49, 0x2A, 0x00)) {
+            return "tif";
+        } else if (starts(b, 0x7F, 0x45, 0x4C, 0x46)) {
+            return "elf";
+        } else if (starts(b, 0xCA, 0xFE, 0xBA, 0xBE)) {
+            return "class";
+        } else if (starts(b, 0x38, 0x42, 0x50, 0x53)) {
+            return "psd";
+        } else if (starts(b, 0x43, 0x44, 0x30, 0x30, 0x31)) {
+            return "iso";
+        } else if (starts(b, 0x4D, 0x54, 0x68, 0x64)) {
+            return "midi";
+        } else if (starts(b, 0x37, 0x7A, 0xBC, 0xAF, 0x27, 0x1C)) {
+            return "7z";
+        } else if (starts(b, 0x1A, 0x45, 0xDF, 0xA3)) {
+            return "mkv";
+        } else if (starts(b, 0x3C, 0x3F, 0x78, 0x6D, 0x6C, 0x20)) {
+            return "xml";
+        } else if (riff(b, 0x57, 0x45, 0x42, 0x50)) {
+            return "webp";
+        } else if (starts(b, 0x7B, 0x5C, 0x72, 0x74, 0x66, 0x31)) {
+            return "rtf";
+        } else if (starts(b, 0x75, 0x73, 0x74, 0x61, 0x72, 0x00, 0x30, 0x30)
+                || starts(b, 0x75, 0x73, 0x74, 0x61, 0x72, 0x20, 0x20, 0x00)) {
+            return "tar";
+        } else if (riff(b, 0x41, 0x56, 0x49, 0x20)) {
+            return "avi";
+        }
+        return "";
+    }
+
+    private static boolean starts(byte[] b, int... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (b[i] != (byte) values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean riff(byte[] b, int... form) {
+        return starts(b, 0x52, 0x49, 0x46, 0x46) && b[8] == (byte) form[0] && b[9] == (byte) form[1]
+                && b[10] == (byte) form[2] && b[11] == (byte) form[3];
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет вторую ступень определения формата {@link SignatureValidator} на файлах, собранных в тесте:
+ * цепочки кадров MP3, поля заголовка BMP, признак библиотеки PE, центральный каталог ZIP и блок {@code ftyp}.
+ */
+class SignatureValidatorTest {
+    private static final String REJECTED = SignatureValidator.REJECTED;
+    /**
+     * MPEG-1 Layer III, 128 кбит/с, 44,1 кГц, без дополнения: кадр длиной 417 байтов.
+     */
+    private static final int MP3_FRAME = 0xFFFB9000;
+    private static final int MP3_FRAME_LENGTH = 417;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mp3FrameChainIsFollowed() throws IOException {
+        assertEquals("mp3", validate(mp3(MP3_FRAME, MP3_FRAME, MP3_FRAME, MP3_FRAME, MP3_FRAME), "mp3"));
+        // Файл может кончиться точно на границе кадра
+        assertEquals("mp3", validate(mp3(MP3_FRAME, MP3_FRAME), "mp3"));
+    }
+
+    @Test
+    void brokenMp3FrameChainIsRejected() throws IOException {
+        byte[] frames = mp3(MP3_FRAME, MP3_FRAME, MP3_FRAME);
+        assertEquals(REJECTED, validate(Arrays.copyOf(frames, frames.length - 100), "mp3"));
+        // Второй кадр с другой частотой дискретизации
+        assertEquals(REJECTED, validate(mp3(MP3_FRAME, MP3_FRAME | 0x400, MP3_FRAME), "mp3"));
+        // Недопустимый индекс битрейта
+        assertEquals(REJECTED, validate(mp3(MP3_FRAME | 0xF000, MP3_FRAME), "mp3"));
+    }
+
+    @Test
+    void id3TagIsFollowedByAudioFormat() throws IOException {
+        byte[] tag = {'I', 'D', '3', 3, 0, 0, 0, 0, 0, 10, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+        assertEquals("flac", validate(concat(tag, "fLaC".getBytes(StandardCharsets.US_ASCII)), "mp3"));
+        assertEquals("mp3", validate(concat(tag, mp3(MP3_FRAME)), "mp3"));
+        byte[] badVersion = tag.clone();
+        badVersion[3] = 9;
+        assertEquals(REJECTED, validate(badVersion, "mp3"));
+    }
+
+    @Test
+    void bitmapHeaderFieldsAreChecked() throws IOException {
+        assertEquals("bmp", validate(bitmap(54 + 48, 54, 40, 24), "bmp"));
+        // Размер в заголовке может быть нулевым
+        assertEquals("bmp", validate(bitmap(0, 54, 40, 24), "bmp"));
+        // Размер файла меньше смещения данных
+        assertEquals(REJECTED, validate(bitmap(40, 54, 40, 24), "bmp"));
+        // Смещение данных внутри заголовка DIB
+        assertEquals(REJECTED, validate(bitmap(54 + 48, 30, 40, 24), "bmp"));
+        assertEquals(REJECTED, validate(bitmap(54 + 48, 54, 40, 7), "bmp"));
+        assertEquals(REJECTED, validate(bitmap(54 + 48, 54, 41, 24), "bmp"));
+        assertEquals(REJECTED, validate(Arrays.copyOf(bitmap(54 + 48, 54, 40, 24), 20), "bmp"));
+    }
+
+    @Test
+    void portableExecutableLibraryFlagGivesDll() throws IOException {
+        assertEquals("exe", validate(portableExecutable(0x0102), "exe"));
+        assertEquals("dll", validate(portableExecutable(0x2102), "exe"));
+        byte[] text = new byte[200];
+        Arrays.fill(text, (byte) 'M');
+        text[1] = 'Z';
+        assertEquals(REJECTED, validate(text, "exe"));
+    }
+
+    @Test
+    void zipCentralDirectoryDistinguishesContainers() throws IOException {
+        assertEquals("docx", validate(zip("[Content_Types].xml", "word/document.xml"), "zip"));
+        assertEquals("xlsx", validate(zip("xl/workbook.xml", "[Content_Types].xml"), "zip"));
+        assertEquals("jar", validate(zip("META-INF/MANIFEST.MF", "com/example/Main.class"), "zip"));
+        assertEquals("apk", validate(zip("AndroidManifest.xml", "classes.dex"), "zip"));
+        assertEquals("zip", validate(zip("readme.txt"), "zip"));
+        assertEquals("odt", validate(openDocument(), "zip"));
+    }
+
+    @Test
+    void zipWithoutCentralDirectoryKeepsExtension() throws IOException {
+        byte[] archive = zip("[Content_Types].xml", "word/document.xml");
+        // Архив обрезан перед центральным каталогом: конец архива не найден, расширение не уточняется
+        int directoryStart = indexOf(archive, new byte[]{'P', 'K', 1, 2});
+        assertTrue(directoryStart > 0);
+        assertEquals("zip", validate(Arrays.copyOf(archive, directoryStart), "zip"));
+    }
+
+    @Test
+    void ftypBoxGivesBrand() throws IOException {
+        assertEquals("mp4", validate(ftyp(24, "isom", "isom", "mp41"), "mp4"));
+        assertEquals("mov", validate(ftyp(20, "qt  ", "qt  "), "mp4"));
+        assertEquals("m4a", validate(ftyp(20, "M4A ", "isom"), "mp4"));
+        assertEquals("3gp", validate(ftyp(20, "3gp5", "isom"), "mp4"));
+        assertEquals("avif", validate(ftyp(24, "mif1", "mif1", "avif"), "mp4"));
+        assertEquals("heic", validate(ftyp(24, "mif1", "mif1", "heic"), "mp4"));
+    }
+
+    @Test
+    void inconsistentFtypBoxIsRejected() throws IOException {
+        // Блок длиннее файла
+        assertEquals(REJECTED, validate(Arrays.copyOf(ftyp(64, "isom", "isom"), 32), "mp4"));
+        assertEquals(REJECTED, validate(ftyp(22, "isom", "isom"), "mp4"));
+        assertEquals(REJECTED, validate(ftyp(20, "is\1m", "isom"), "mp4"));
+        assertEquals(REJECTED, validate(Arrays.copyOf(ftyp(20, "isom", "isom"), 12), "mp4"));
+    }
+
+    @Test
+    void regionInsideLargerFileIsValidated() throws IOException {
+        byte[] bitmap = bitmap(54 + 48, 54, 40, 24);
+        byte[] image = new byte[4096];
+        System.arraycopy(bitmap, 0, image, 1000, bitmap.length);
+        Path file = Files.write(directory.resolve("image"), image);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            SignatureValidator validator = new SignatureValidator();
+            assertEquals("bmp", validator.validate(channel, 1000, bitmap.length, "bmp"));
+            assertTrue(validator.bytesRead() <= 30);
+            assertEquals(REJECTED, validator.validate(channel, 1001, bitmap.length, "bmp"));
+        }
+    }
+
+    @Test
+    void formatsWithoutCheckAreKept() throws IOException {
+        assertEquals("png", validate(new byte[]{(byte) 0x89, 'P', 'N', 'G'}, "png"));
+    }
+
+    private String validate(byte[] bytes, String extension) throws IOException {
+        Path file = Files.write(directory.resolve("file"), bytes);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new SignatureValidator().validate(channel, 0, bytes.length, extension);
+        }
+    }
+
+    private static byte[] mp3(int... headers) {
+        ByteBuffer frames = ByteBuffer.allocate(headers.length * MP3_FRAME_LENGTH);
+        for (int i = 0; i < headers.length; i++) {
+            frames.putInt(i * MP3_FRAME_LENGTH, headers[i]);
+        }
+        return frames.array();
+    }
+
+    private static byte[] bitmap(int fileSize, int dataOffset, int dibSize, int bitCount) {
+        ByteBuffer header = ByteBuffer.allocate(54 + 48).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 'B').put((byte) 'M').putInt(fileSize).putInt(0).putInt(dataOffset);
+        header.putInt(dibSize).putInt(4).putInt(4).putShort((short) 1).putShort((short) bitCount);
+        return header.array();
+    }
+
+    private static byte[] portableExecutable(int characteristics) {
+        ByteBuffer file = ByteBuffer.allocate(0x80 + 24).order(ByteOrder.LITTLE_ENDIAN);
+        file.put(0, (byte) 'M').put(1, (byte) 'Z');
+        file.putShort(2, (short) 0x90).putShort(4, (short) 3).putShort(8, (short) 4).putShort(0x18, (short) 0x40);
+        file.putInt(0x3C, 0x80);
+        file.putInt(0x80, 0x00004550);
+        file.putShort(0x84, (short) 0x8664);
+        file.putShort(0x80 + 22, (short) characteristics);
+        return file.array();
+    }
+
+    private static byte[] zip(String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (String name : names) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(name.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] openDocument() throws IOException {
+        byte[] mimetype = "application/vnd.oasis.opendocument.text".getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            ZipEntry entry = new ZipEntry("mimetype");
+            CRC32 crc = new CRC32();
+            crc.update(mimetype);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(mimetype.length);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            zip.write(mimetype);
+            zip.putNextEntry(new ZipEntry("content.xml"));
+            zip.write("<office:document-content/>".getBytes(StandardCharsets.US_ASCII));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Строит блок {@code ftyp} заданного размера с основным и совместимыми брендами и дополняет файл нулями
+     * до 64 байтов.
+     */
+    private static byte[] ftyp(int size, String brand, String... compatible) {
+        ByteBuffer box = ByteBuffer.allocate(Math.max(64, size));
+        box.putInt(size).put("ftyp".getBytes(StandardCharsets.ISO_8859_1));
+        box.put(brand.getBytes(StandardCharsets.ISO_8859_1)).putInt(0);
+        for (String name : compatible) {
+            box.put(name.getBytes(StandardCharsets.ISO_8859_1));
+        }
+        return box.array();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (Arrays.equals(data, i, i + pattern.length, pattern, 0, pattern.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
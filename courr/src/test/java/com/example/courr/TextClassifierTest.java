@@ -0,0 +1,116 @@
+package com.example.courr;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверяет определение текстовых форматов {@link TextClassifier}: пословную проверку байтов окна, границы
+ * между JSON и JSON Lines в полном и обрезанном окне и распознавание CSV и TSV.
+ */
+class TextClassifierTest {
+    private final TextClassifier classifier = new TextClassifier();
+
+    @Test
+    void controlCharacterIsFoundAtAnyPositionOfWord() {
+        byte[] text = ascii("The quick brown fox jumps over the lazy dog.");
+        assertEquals(TextClassifier.TEXT, classify(text));
+        // Позиции внутри слов по восемь байтов и в хвосте окна короче слова
+        for (int i = 0; i < text.length; i++) {
+            for (byte control : new byte[]{0x00, 0x01, 0x1F}) {
+                byte[] binary = text.clone();
+                binary[i] = control;
+                assertEquals("", classify(binary), "control " + control + " at " + i);
+            }
+        }
+    }
+
+    @Test
+    void allowedControlCharactersAreText() {
+        assertEquals(TextClassifier.TEXT, classify(ascii("line one\r\n\tline two\fpage\u001b[0m\n")));
+    }
+
+    @Test
+    void nonAsciiBytesAreCheckedAsUtf8OrSingleByteText() {
+        byte[] utf8 = "Съешь же ещё этих мягких французских булок".getBytes(StandardCharsets.UTF_8);
+        assertEquals(TextClassifier.TEXT, classify(utf8));
+        // Однобайтовая кодировка тоже текст
+        assertEquals(TextClassifier.TEXT, classify("Съешь же ещё этих булок".getBytes(Charset.forName("windows-1251"))));
+        byte[] broken = Arrays.copyOf(utf8, utf8.length);
+        broken[9] = 0x02;
+        assertEquals("", classify(broken));
+        // Обрезанное окно может закончиться посреди многобайтовой последовательности
+        assertEquals(TextClassifier.TEXT, classifyTruncated(Arrays.copyOf(utf8, 3)));
+    }
+
+    @Test
+    void completeJsonValues() {
+        assertEquals("json", classify(ascii("{\"name\": \"value\", \"list\": [1, 2.5e3, true, null]}\n")));
+        assertEquals("json", classify(ascii("  [{\"a\": {}}, []]")));
+        assertEquals("jsonl", classify(ascii("{\"id\": 1}\n{\"id\": 2}\n")));
+        assertEquals("jsonl", classify(ascii("[1]\r\n[2]")));
+    }
+
+    @Test
+    void malformedCompleteJsonIsNotJson() {
+        // Два значения в одной строке
+        assertEquals(TextClassifier.TEXT, classify(ascii("{\"id\": 1} {\"id\": 2}")));
+        // Незакрытое значение в окне, покрывающем весь файл
+        assertEquals(TextClassifier.TEXT, classify(ascii("{\"id\": 1")));
+        assertEquals(TextClassifier.TEXT, classify(ascii("{\"id\" 1}")));
+        assertEquals(TextClassifier.TEXT, classify(ascii("{\"id\": 1}\n2")));
+    }
+
+    @Test
+    void truncatedWindowWithOneValueIsJson() {
+        assertEquals("json", classifyTruncated(ascii("{\"records\": [{\"id\": 1}, {\"id\": 2}, {\"na")));
+        assertEquals("json", classifyTruncated(ascii("{\"id\": 1}\n")));
+    }
+
+    @Test
+    void truncatedWindowEndingInsideSecondValueIsJsonLines() {
+        assertEquals("jsonl", classifyTruncated(ascii("{\"id\": 1, \"name\": \"first\"}\n{\"id\": 2, \"na")));
+        assertEquals("jsonl", classifyTruncated(ascii("{\"id\": 1}\n{\"id\": 2}")));
+        assertEquals("jsonl", classifyTruncated(ascii("{\"id\": 1}\n{\"id\": 2}\n{")));
+        // Ошибка в начале второго значения всё равно отвергает JSON
+        assertEquals(TextClassifier.TEXT, classifyTruncated(ascii("{\"id\": 1}\n{id")));
+    }
+
+    @Test
+    void delimitedRecords() {
+        assertEquals("csv", classify(ascii("name,age,city\nAnn,31,Oslo\nBob,42,Rome\n")));
+        assertEquals("csv", classify(ascii("name;age\nAnn;31\nBob;42\n")));
+        assertEquals("tsv", classify(ascii("name\tage\nAnn\t31\nBob\t42\n")));
+        // Разделители внутри кавычек не учитываются
+        assertEquals("csv", classify(ascii("name,note\n\"Ann\",\"a, b\"\n\"Bob\",c\n")));
+        // Две записи с двумя полями — ещё не таблица
+        assertEquals(TextClassifier.TEXT, classify(ascii("a,b\nc,d\n")));
+        assertEquals("csv", classify(ascii("a,b,c\nd,e,f\n")));
+        assertEquals(TextClassifier.TEXT, classify(ascii("name,age\nAnn,31,Oslo\nBob,42\n")));
+    }
+
+    @Test
+    void partialLastRecordOfTruncatedWindowIsIgnored() {
+        assertEquals("csv", classifyTruncated(ascii("name,age,city\nAnn,31,Oslo\nBob,42,Rome\nCarl,2")));
+        assertEquals(TextClassifier.TEXT, classify(ascii("name,age,city\nAnn,31,Oslo\nBob,42,Rome\nCarl,2")));
+    }
+
+    private String classify(byte[] bytes) {
+        return classifier.classify(FileHeader.wrap(bytes, bytes.length));
+    }
+
+    /**
+     * Классифицирует окно как начало файла, который длиннее окна.
+     */
+    private String classifyTruncated(byte[] bytes) {
+        return classifier.classify(FileHeader.wrap(bytes, bytes.length, bytes.length + 1000L));
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}